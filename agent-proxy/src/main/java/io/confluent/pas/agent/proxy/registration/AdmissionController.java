@@ -0,0 +1,195 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.proxy.registration.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of requests waiting for a response, globally and per registration.
+ * <p>
+ * A permit is acquired before the request is produced and released once the response handler is
+ * removed (response received, timeout or cancellation). Requests exceeding a limit are rejected
+ * immediately with a {@link TooManyRequestsException} instead of piling up until they time out.
+ * A limit lower or equal to 0 disables the corresponding check.
+ */
+@Slf4j
+public class AdmissionController {
+
+    static final String IN_FLIGHT_METRIC = "agent.proxy.requests.in-flight";
+    static final String REJECTED_METRIC = "agent.proxy.requests.rejected";
+
+    /**
+     * An acquired permit, released when the request is no longer in flight.
+     */
+    public interface Permit extends AutoCloseable {
+        /**
+         * Releases the permit. Calling it more than once has no effect.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * In-flight requests of a registration.
+     */
+    private record RegistrationState(AtomicInteger inFlight, Gauge inFlightGauge, Counter rejected) {
+    }
+
+    private final int maxInFlight;
+    private final int maxInFlightPerRegistration;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter globalRejected;
+    private final Map<String, RegistrationState> registrations = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a controller without any limit.
+     *
+     * @return the controller
+     */
+    public static AdmissionController unlimited() {
+        return new AdmissionController(0, 0, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Creates a new controller.
+     *
+     * @param maxInFlight                Maximum number of requests in flight across all registrations
+     * @param maxInFlightPerRegistration Maximum number of requests in flight for a single registration
+     * @param meterRegistry              Registry used to expose the in-flight and rejection metrics
+     */
+    public AdmissionController(int maxInFlight,
+                               int maxInFlightPerRegistration,
+                               MeterRegistry meterRegistry) {
+        this.maxInFlight = maxInFlight;
+        this.maxInFlightPerRegistration = maxInFlightPerRegistration;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder(IN_FLIGHT_METRIC, inFlight, AtomicInteger::get)
+                .description("Number of requests waiting for a response")
+                .tag("registration", "all")
+                .register(meterRegistry);
+        this.globalRejected = Counter.builder(REJECTED_METRIC)
+                .description("Number of requests rejected because of the in-flight limit")
+                .tag("registration", "all")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Acquires a permit for a request to the registration.
+     *
+     * @param registration The registration the request is sent to
+     * @return The permit, to be closed once the request is no longer in flight
+     * @throws TooManyRequestsException if the global or the registration limit is reached
+     */
+    public Permit acquire(Registration registration) {
+        final RegistrationState state = registrations.computeIfAbsent(registration.getName(), this::createState);
+
+        if (!tryIncrement(inFlight, maxInFlight)) {
+            globalRejected.increment();
+            log.warn("Rejecting request to {}: {} requests already in flight", registration.getName(), maxInFlight);
+            throw new TooManyRequestsException("Too many requests in flight, limit is " + maxInFlight);
+        }
+
+        if (!tryIncrement(state.inFlight(), maxInFlightPerRegistration)) {
+            inFlight.decrementAndGet();
+            state.rejected().increment();
+            log.warn("Rejecting request to {}: {} requests already in flight for the registration",
+                    registration.getName(), maxInFlightPerRegistration);
+            throw new TooManyRequestsException("Too many requests in flight for " + registration.getName()
+                    + ", limit is " + maxInFlightPerRegistration);
+        }
+
+        final AtomicBoolean released = new AtomicBoolean(false);
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                state.inFlight().decrementAndGet();
+                inFlight.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Drops the state and the meters of a torn down registration. Permits still held keep
+     * decrementing the state they were acquired from.
+     *
+     * @param registration The registration
+     */
+    public void remove(Registration registration) {
+        final RegistrationState state = registrations.remove(registration.getName());
+        if (state != null) {
+            meterRegistry.remove(state.inFlightGauge());
+            meterRegistry.remove(state.rejected());
+        }
+    }
+
+    /**
+     * @return the number of requests in flight across all registrations
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @param registration The registration
+     * @return the number of requests in flight for the registration
+     */
+    public int getInFlight(Registration registration) {
+        final RegistrationState state = registrations.get(registration.getName());
+        return state == null ? 0 : state.inFlight().get();
+    }
+
+    /**
+     * Creates the counters and meters of a registration.
+     *
+     * @param name The registration name
+     * @return The registration state
+     */
+    private RegistrationState createState(String name) {
+        final AtomicInteger registrationInFlight = new AtomicInteger();
+
+        final Gauge inFlightGauge = Gauge.builder(IN_FLIGHT_METRIC, registrationInFlight, AtomicInteger::get)
+                .description("Number of requests waiting for a response")
+                .tag("registration", name)
+                .register(meterRegistry);
+        final Counter rejected = Counter.builder(REJECTED_METRIC)
+                .description("Number of requests rejected because of the in-flight limit")
+                .tag("registration", name)
+                .register(meterRegistry);
+
+        return new RegistrationState(registrationInFlight, inFlightGauge, rejected);
+    }
+
+    /**
+     * Increments the counter unless the limit is reached.
+     *
+     * @param counter The counter
+     * @param limit   The limit, disabled if lower or equal to 0
+     * @return true if the counter was incremented
+     */
+    private static boolean tryIncrement(AtomicInteger counter, int limit) {
+        if (limit <= 0) {
+            counter.incrementAndGet();
+            return true;
+        }
+
+        int current;
+        do {
+            current = counter.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + 1));
+
+        return true;
+    }
+}
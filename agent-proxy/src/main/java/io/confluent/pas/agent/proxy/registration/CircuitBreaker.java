@@ -0,0 +1,183 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import io.confluent.pas.agent.proxy.registration.exceptions.CircuitOpenException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Circuit breaker of a registration.
+ * <p>
+ * The breaker trips after a number of consecutive response timeouts. While open, calls are
+ * rejected immediately with a {@link CircuitOpenException} instead of waiting for the full response
+ * timeout. Once the open duration has elapsed, a single probe request is let through: the breaker
+ * closes again if the probe receives a response and re-opens if it times out.
+ * <p>
+ * Any response, including an error response, proves that the agent is alive and resets the
+ * failure count. A failure threshold lower or equal to 0 disables the breaker.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Point in time view of the breaker.
+     *
+     * @param name                The registration name
+     * @param state               The state of the breaker
+     * @param consecutiveFailures The number of consecutive timeouts
+     * @param openedAt            When the breaker last opened, null if it never opened
+     */
+    public record Snapshot(String name, State state, int consecutiveFailures, Instant openedAt) {
+    }
+
+    /**
+     * A call admitted by the breaker. Its outcome must be reported with {@link #onSuccess()} or
+     * {@link #onTimeout()}; closing it without outcome gives the probe slot back.
+     */
+    public final class Call implements AutoCloseable {
+        private final boolean probe;
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+
+        private Call(boolean probe) {
+            this.probe = probe;
+        }
+
+        /**
+         * Reports that a response was received.
+         */
+        public void onSuccess() {
+            if (completed.compareAndSet(false, true)) {
+                recordSuccess();
+            }
+        }
+
+        /**
+         * Reports that the call timed out waiting for a response.
+         */
+        public void onTimeout() {
+            if (completed.compareAndSet(false, true)) {
+                recordFailure(probe);
+            }
+        }
+
+        /**
+         * Ends the call. A probe ended without outcome lets the next call probe the agent.
+         */
+        @Override
+        public void close() {
+            if (completed.compareAndSet(false, true) && probe) {
+                abortProbe();
+            }
+        }
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final Clock clock;
+
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures = 0;
+    private long openedAt = -1;
+
+    /**
+     * Creates a new circuit breaker.
+     *
+     * @param name             The registration name
+     * @param failureThreshold Number of consecutive timeouts tripping the breaker, disabled if lower or equal to 0
+     * @param openDuration     Time the breaker stays open before letting a probe through
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this(name, failureThreshold, openDuration, Clock.systemUTC());
+    }
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, Clock clock) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDuration.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Admits a call.
+     *
+     * @return The call, whose outcome must be reported
+     * @throws CircuitOpenException if the breaker is open, or half-open with a probe in flight
+     */
+    public Call acquire() {
+        // Fast path, no locking while the agent is healthy
+        if (state == State.CLOSED) {
+            return new Call(false);
+        }
+
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return new Call(false);
+            }
+
+            if (state == State.OPEN && clock.millis() - openedAt >= openDurationMs) {
+                log.info("Circuit breaker of {} is half-open, probing the agent", name);
+                state = State.HALF_OPEN;
+                return new Call(true);
+            }
+        }
+
+        throw new CircuitOpenException("Registration " + name + " is not responding, circuit breaker is open");
+    }
+
+    /**
+     * @return the state of the breaker
+     */
+    public synchronized Snapshot getSnapshot() {
+        return new Snapshot(
+                name,
+                state,
+                consecutiveFailures,
+                openedAt < 0 ? null : Instant.ofEpochMilli(openedAt));
+    }
+
+    private void recordSuccess() {
+        // Nothing to reset in the common case
+        if (state == State.CLOSED && consecutiveFailures == 0) {
+            return;
+        }
+
+        synchronized (this) {
+            if (state != State.CLOSED) {
+                log.info("Circuit breaker of {} is closed", name);
+            }
+
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        }
+    }
+
+    private synchronized void recordFailure(boolean probe) {
+        if (failureThreshold <= 0) {
+            return;
+        }
+
+        consecutiveFailures++;
+        if (probe || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            log.warn("Circuit breaker of {} is open after {} consecutive timeouts", name, consecutiveFailures);
+            state = State.OPEN;
+            openedAt = clock.millis();
+        }
+    }
+
+    private synchronized void abortProbe() {
+        if (state == State.HALF_OPEN) {
+            // Keep the original opening time so that the next call probes right away
+            state = State.OPEN;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides when and where a request of a hedged registration is sent again.
+ * <p>
+ * A registration opts in by setting its {@code hedgePercentile}. When no response arrived once the latency
+ * at that percentile has elapsed, the request is sent again to another partition of the request topic, so
+ * that it is consumed by another agent instance of the consumer group. The first response wins, the others
+ * are discarded. Requests are not hedged until enough latencies have been observed, and never sooner than
+ * the minimum delay, so that hedging cannot double the load of a fast registration.
+ */
+@Slf4j
+public class HedgingPolicy {
+
+    static final String HEDGED_METRIC = "agent.proxy.requests.hedged";
+
+    private final long minDelay;
+    private final Scheduler scheduler;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> hedged = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a policy with a minimum delay of 20 milliseconds, without metrics.
+     *
+     * @return the policy
+     */
+    public static HedgingPolicy withDefaults() {
+        return new HedgingPolicy(20, Schedulers.parallel(), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Creates a new policy.
+     *
+     * @param minDelay      Minimum time in milliseconds before a request is sent again
+     * @param scheduler     Scheduler timing the hedge delays
+     * @param meterRegistry Registry used to expose the number of hedged requests
+     */
+    public HedgingPolicy(long minDelay, Scheduler scheduler, MeterRegistry meterRegistry) {
+        this.minDelay = minDelay;
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return the scheduler timing the hedge delays
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the time after which a request without response is sent again.
+     *
+     * @param registration      The registration the request is sent to
+     * @param latencyPercentile The latency of the registration at its hedge percentile, -1 if unknown
+     * @return The delay in milliseconds, -1 if the request is not hedged
+     */
+    public long getDelay(Registration registration, long latencyPercentile) {
+        // Batched requests share their record, they cannot be sent again on their own
+        if (!registration.isHedged() || registration.isBatched() || latencyPercentile < 0) {
+            return -1;
+        }
+
+        return Math.max(latencyPercentile, minDelay);
+    }
+
+    /**
+     * Chooses the partition a request is sent again to, any partition other than the one it was sent to.
+     *
+     * @param registration   The registration the request is sent to
+     * @param sentPartition  The partition the request was sent to
+     * @param partitionCount The number of partitions of the request topic
+     * @return The partition, -1 if the topic has a single partition
+     */
+    public int choosePartition(Registration registration, int sentPartition, int partitionCount) {
+        if (partitionCount < 2) {
+            log.debug("Not hedging the request to {}, its request topic has a single partition",
+                    registration.getName());
+            return -1;
+        }
+
+        hedged.computeIfAbsent(registration.getName(), this::createCounter).increment();
+        final int offset = 1 + ThreadLocalRandom.current().nextInt(partitionCount - 1);
+        return (sentPartition + offset) % partitionCount;
+    }
+
+    /**
+     * @param registration The registration
+     * @return the number of requests of the registration sent again
+     */
+    public long getHedgedRequests(Registration registration) {
+        final Counter counter = hedged.get(registration.getName());
+        return counter == null ? 0 : (long) counter.count();
+    }
+
+    private Counter createCounter(String name) {
+        return Counter.builder(HEDGED_METRIC)
+                .description("Number of requests sent again because their response was late")
+                .tag("registration", name)
+                .register(meterRegistry);
+    }
+}
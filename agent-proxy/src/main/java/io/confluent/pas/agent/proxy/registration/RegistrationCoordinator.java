@@ -1,27 +1,38 @@
 package io.confluent.pas.agent.proxy.registration;
 
-import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
 import io.confluent.pas.agent.common.services.KafkaConfiguration;
-import io.confluent.pas.agent.common.services.KafkaPropertiesFactory;
 import io.confluent.pas.agent.common.services.RegistrationService;
 import io.confluent.pas.agent.common.services.RegistrationServiceHandler;
+import io.confluent.pas.agent.common.services.RegistrationStore;
 import io.confluent.pas.agent.common.services.schemas.Registration;
 import io.confluent.pas.agent.common.services.schemas.RegistrationKey;
+import io.confluent.pas.agent.common.utils.ShardedExecutor;
 import io.confluent.pas.agent.proxy.registration.events.DeletedRegistrationEvent;
 import io.confluent.pas.agent.proxy.registration.events.NewRegistrationEvent;
+import io.confluent.pas.agent.proxy.registration.events.UpdatedRegistrationEvent;
 import io.confluent.pas.agent.proxy.registration.handlers.CompositeHandler;
+import io.confluent.pas.agent.proxy.registration.liveness.LivenessTracker;
+import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
+import io.confluent.pas.agent.proxy.registration.schemas.SchemaCache;
+import io.confluent.pas.agent.proxy.registration.sharding.ShardManager;
 import io.confluent.pas.agent.proxy.rest.a2a.A2AAsyncServer;
 import io.confluent.pas.agent.proxy.rest.agents.AgentAsyncServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
 import io.modelcontextprotocol.server.McpAsyncServer;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The RegistrationCoordinator is the central component responsible for managing
@@ -63,14 +74,20 @@ public class RegistrationCoordinator implements DisposableBean {
     private final RequestResponseHandler requestResponseHandler;
 
     /**
-     * Thread-safe map of registration handlers indexed by registration name
+     * Thread-safe map of registration handlers indexed by registration name, sorted by name so that
+     * the registrations can be paged through
      */
-    private final Map<String, CompositeHandler> handlers = new ConcurrentHashMap<>();
+    private final NavigableMap<String, CompositeHandler> handlers = new ConcurrentSkipListMap<>();
 
     /**
-     * Client for interacting with the Schema Registry
+     * Version of the active registrations, incremented each time a handler is added, updated or removed
      */
-    private final SchemaRegistryClient schemaRegistryClient;
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Cache of the registration schemas, shared by all the handlers
+     */
+    private final SchemaCache schemaCache;
 
     /**
      * Service for managing registrations in Kafka
@@ -82,6 +99,52 @@ public class RegistrationCoordinator implements DisposableBean {
      */
     private final ApplicationEventPublisher applicationEventPublisher;
 
+    /**
+     * Executor processing the registrations, sharded by registration name so that the changes of a
+     * registration are applied in order while different registrations are processed in parallel
+     */
+    private final ShardedExecutor registrationExecutor;
+
+    /**
+     * Locates the node owning each registration when the registry is sharded across the nodes
+     */
+    @Getter
+    private final ShardManager shardManager;
+
+    /**
+     * Tracks whether the registrations have a live agent consuming their requests
+     */
+    private final LivenessTracker livenessTracker;
+
+    /**
+     * Optional collaborators of a coordinator built outside of Spring. The defaults process the
+     * registrations on the calling thread, on a single node, with the liveness tracking disabled.
+     *
+     * @param registrationExecutor Executor processing the registrations
+     * @param shardManager         Locates the node owning each registration
+     * @param livenessTracker      Tracks whether the registrations have a live agent
+     */
+    public record Options(ShardedExecutor registrationExecutor,
+                          ShardManager shardManager,
+                          LivenessTracker livenessTracker) {
+
+        public static Options defaults() {
+            return new Options(ShardedExecutor.direct(), ShardManager.local(), LivenessTracker.disabled());
+        }
+
+        public Options withRegistrationExecutor(ShardedExecutor registrationExecutor) {
+            return new Options(registrationExecutor, shardManager, livenessTracker);
+        }
+
+        public Options withShardManager(ShardManager shardManager) {
+            return new Options(registrationExecutor, shardManager, livenessTracker);
+        }
+
+        public Options withLivenessTracker(LivenessTracker livenessTracker) {
+            return new Options(registrationExecutor, shardManager, livenessTracker);
+        }
+    }
+
     /**
      * Primary constructor used by Spring for dependency injection.
      * Initializes the coordinator with required dependencies and sets up the
@@ -92,8 +155,15 @@ public class RegistrationCoordinator implements DisposableBean {
      *                                  responses
      * @param mcpServer                 MCP protocol server instance
      * @param restServer                REST protocol server instance
+     * @param schemaCache               Cache of the registration schemas
      * @param applicationEventPublisher Spring event publisher for broadcasting
      *                                  events
+     * @param shardManager              Locates the node owning each registration
+     * @param livenessTracker           Tracks whether the registrations have a live agent
+     * @param meterRegistry             Registry of the time-to-ready metric
+     * @param registrationParallelism   Number of registrations processed concurrently
+     * @param registryStore             Local store backing the registry, memory or a persistent KCache store
+     * @param registryStoreDir          Directory of the persistent registry store
      */
     @Autowired
     public RegistrationCoordinator(KafkaConfiguration kafkaConfiguration,
@@ -101,7 +171,14 @@ public class RegistrationCoordinator implements DisposableBean {
                                    McpAsyncServer mcpServer,
                                    AgentAsyncServer restServer,
                                    A2AAsyncServer a2aAsyncServer,
-                                   ApplicationEventPublisher applicationEventPublisher) {
+                                   SchemaCache schemaCache,
+                                   ApplicationEventPublisher applicationEventPublisher,
+                                   ShardManager shardManager,
+                                   LivenessTracker livenessTracker,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${kafka.registration-parallelism:8}") int registrationParallelism,
+                                   @Value("${kafka.registry-store:" + RegistrationStore.MEMORY + "}") String registryStore,
+                                   @Value("${kafka.registry-store-dir:#{null}}") String registryStoreDir) {
         // Create a registration handler that will forward registration events to our
         // onRegistration method
         // This avoids the circular reference issue during construction
@@ -115,13 +192,31 @@ public class RegistrationCoordinator implements DisposableBean {
         this.mcpServer = mcpServer;
         this.restServer = restServer;
         this.a2AAsyncServer = a2aAsyncServer;
-        this.schemaRegistryClient = KafkaPropertiesFactory.getSchemRegistryClient(kafkaConfiguration);
+        this.schemaCache = schemaCache;
         this.applicationEventPublisher = applicationEventPublisher;
+        this.shardManager = shardManager;
+        this.livenessTracker = livenessTracker;
+        this.registrationExecutor = new ShardedExecutor("registration", registrationParallelism, false);
+        final RegistrationStore store = new RegistrationStore(registryStore, registryStoreDir);
         this.registrationService = new RegistrationService<>(
                 kafkaConfiguration,
                 RegistrationKey.class,
                 Registration.class,
+                false,
+                store,
                 registrationHandler);
+        // Hand the registrations over when nodes join or leave
+        shardManager.addListener(this::rebalance);
+        // Hide the tools whose agents are gone and list them again when they come back
+        livenessTracker.addListener(this::checkLiveness);
+
+        TimeGauge.builder("agent.proxy.registry.time-to-ready",
+                        registrationService,
+                        TimeUnit.MILLISECONDS,
+                        service -> service.getTimeToReady().toMillis())
+                .description("Time taken to load the registry at startup")
+                .tag("store", store.backingCache())
+                .register(meterRegistry);
     }
 
     /**
@@ -132,25 +227,30 @@ public class RegistrationCoordinator implements DisposableBean {
      *                                  responses
      * @param mcpServer                 MCP protocol server instance
      * @param restServer                REST protocol server instance
-     * @param schemaRegistryClient      Client for interacting with Schema Registry
+     * @param schemaCache               Cache of the registration schemas
      * @param registrationService       Pre-configured registration service
      * @param applicationEventPublisher Spring event publisher for broadcasting
      *                                  events
+     * @param options                   Executor, shard manager and liveness tracker of the coordinator
      */
     public RegistrationCoordinator(RequestResponseHandler requestResponseHandler,
                                    McpAsyncServer mcpServer,
                                    AgentAsyncServer restServer,
                                    A2AAsyncServer a2aAsyncServer,
-                                   SchemaRegistryClient schemaRegistryClient,
+                                   SchemaCache schemaCache,
                                    RegistrationService<RegistrationKey, Registration> registrationService,
-                                   ApplicationEventPublisher applicationEventPublisher) {
+                                   ApplicationEventPublisher applicationEventPublisher,
+                                   Options options) {
         this.requestResponseHandler = requestResponseHandler;
         this.mcpServer = mcpServer;
         this.restServer = restServer;
         this.a2AAsyncServer = a2aAsyncServer;
-        this.schemaRegistryClient = schemaRegistryClient;
+        this.schemaCache = schemaCache;
         this.registrationService = registrationService;
         this.applicationEventPublisher = applicationEventPublisher;
+        this.registrationExecutor = options.registrationExecutor();
+        this.shardManager = options.shardManager();
+        this.livenessTracker = options.livenessTracker();
     }
 
     /**
@@ -174,6 +274,30 @@ public class RegistrationCoordinator implements DisposableBean {
         return new ArrayList<>(handlers.values());
     }
 
+    /**
+     * Returns a live view of the active registration handlers in name order, starting from a name.
+     *
+     * @param fromName  The name to start from, null to start from the first registration
+     * @param inclusive Whether the registration with the given name is included
+     * @return The handlers sorted by registration name
+     */
+    public Collection<CompositeHandler> getRegistrationHandlers(String fromName, boolean inclusive) {
+        return fromName == null
+                ? handlers.values()
+                : handlers.tailMap(fromName, inclusive).values();
+    }
+
+    /**
+     * Returns the version of the active registrations.
+     * The version changes each time a registration is added, updated or removed, so that clients
+     * can check whether the registrations changed since they last read them.
+     *
+     * @return The version of the active registrations
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     /**
      * Registers a new tool with the system.
      * This will publish the registration to Kafka, which will then trigger
@@ -196,32 +320,92 @@ public class RegistrationCoordinator implements DisposableBean {
         registrationService.unregister(new RegistrationKey(name));
     }
 
+    /**
+     * Registers several tools with the system in a single batch.
+     *
+     * @param registrations The registration details of the tools
+     */
+    public void registerAll(Collection<Registration> registrations) {
+        final Map<RegistrationKey, Registration> batch = new LinkedHashMap<>();
+        registrations.forEach(registration -> batch.put(new RegistrationKey(registration.getName()), registration));
+        registrationService.registerAll(batch);
+    }
+
+    /**
+     * Unregisters several tools from the system.
+     *
+     * @param names The names of the tools to unregister
+     */
+    public void unregisterAll(Collection<String> names) {
+        registrationService.unregisterAll(names.stream().map(RegistrationKey::new).toList());
+    }
+
     /**
      * Callback method invoked by the RegistrationService when registrations change.
      * This method is the entry point for processing registration changes from
      * Kafka.
      * <p>
-     * It first updates the request/response handler with the new registrations,
-     * then processes each registration individually.
+     * It first updates the request/response handler with the new registrations owned
+     * by this node, then schedules each registration on the lane of its name. The callback thread
+     * does not wait for the handlers to be initialized or torn down.
      *
      * @param registrations Map of registration keys to their corresponding
      *                      registrations
      */
     void onRegistration(Map<RegistrationKey, Registration> registrations) {
-        // Update the request/response handler with all registrations
-        requestResponseHandler.addRegistrations(registrations.values());
+        // Update the request/response handler with the registrations served by this node
+        if (!shardManager.isEnabled()) {
+            requestResponseHandler.addRegistrations(registrations.values());
+        } else {
+            final List<Registration> owned = registrations.values()
+                    .stream()
+                    .filter(registration -> registration != null && isOwned(registration))
+                    .toList();
+            if (!owned.isEmpty()) {
+                requestResponseHandler.addRegistrations(owned);
+            }
+        }
+        // Load the schemas in the background, before the handlers need them
+        final List<Registration> changed = getChangedRegistrations(registrations);
+        if (!changed.isEmpty()) {
+            schemaCache.prefetch(changed);
+        }
 
         // Process each registration individually
         for (Map.Entry<RegistrationKey, Registration> entry : registrations.entrySet()) {
-            handleRegistration(entry.getKey(), entry.getValue());
+            final RegistrationKey key = entry.getKey();
+            final Registration registration = entry.getValue();
+            registrationExecutor.execute(key.getName(), () -> handleRegistration(key, registration));
         }
     }
 
+    /**
+     * Returns the registrations whose schemas may not be cached yet: the new ones and the ones differing from
+     * the registration of their handler. Unchanged re-publishes and rebalance replays are left out, their
+     * schemas are already cached and refreshed in the background.
+     *
+     * @param registrations Map of registration keys to their corresponding registrations
+     * @return The new or changed registrations
+     */
+    private List<Registration> getChangedRegistrations(Map<RegistrationKey, Registration> registrations) {
+        return registrations.entrySet()
+                .stream()
+                .filter(entry -> entry.getValue() != null)
+                .filter(entry -> {
+                    final CompositeHandler handler = handlers.get(entry.getKey().getName());
+                    return handler == null || !RegistrationDiff.of(handler.getRegistration(), entry.getValue()).isEmpty();
+                })
+                .map(Map.Entry::getValue)
+                .toList();
+    }
+
     /**
      * Processes a single registration or unregistration event.
      * <p>
      * A null registration value indicates an unregistration event.
      * Otherwise, it handles the registration as a create or update operation.
+     * A registration identical to the current one is ignored, a changed one is updated in place.
+     * A registration moving to or away from this node gets its handler replaced.
      *
      * @param key          The registration key containing the tool name
      * @param registration The registration details, or null if unregistering
@@ -229,25 +413,103 @@ public class RegistrationCoordinator implements DisposableBean {
     private void handleRegistration(RegistrationKey key, Registration registration) {
         final String registrationName = key.getName();
 
+        final CompositeHandler handler = handlers.get(registrationName);
+
         // Handle unregistration
         if (registration == null) {
-            if (handlers.containsKey(registrationName)) {
+            if (handler != null) {
                 unregisterHandler(registrationName);
+                schemaCache.invalidate(handler.getRegistration());
             }
             return;
         }
 
-        // Handle registration update or creation
-        if (handlers.containsKey(registrationName)) {
-            log.info("Registration already exists, updating: {}", registrationName);
-            // First unregister the existing handler to clean up resources
-            unregisterHandler(registrationName);
-        } else {
+        // Handle registration creation or update
+        final boolean local = isOwned(registration);
+        if (handler == null) {
             log.info("Received new registration: {}", registrationName);
+            createHandler(registration, registrationName, local);
+            return;
         }
 
-        // Create a new handler for the registration
-        createHandler(registration, registrationName);
+        if (handler.isLocal() != local) {
+            log.info("Registration {} moved {} this node", registrationName, local ? "to" : "away from");
+            unregisterHandler(registrationName);
+            if (!local) {
+                requestResponseHandler.removeRegistration(handler.getRegistration());
+            }
+            createHandler(registration, registrationName, local);
+            return;
+        }
+
+        // Agents re-publish their registration when they restart, most of the time unchanged
+        final RegistrationDiff diff = RegistrationDiff.of(handler.getRegistration(), registration);
+        if (diff.isEmpty()) {
+            log.debug("Registration unchanged, ignoring: {}", registrationName);
+            return;
+        }
+
+        if (diff.isTypeChange()) {
+            // A tool cannot be turned into a resource in place
+            log.info("Registration type changed, replacing: {}", registrationName);
+            unregisterHandler(registrationName);
+            createHandler(registration, registrationName, local);
+            return;
+        }
+
+        updateHandler(registrationName, handler, registration, diff);
+    }
+
+    /**
+     * Updates the handler of an existing registration in place.
+     * <p>
+     * The handler stays in the active handlers map and registered with the servers, so
+     * the tool never disappears and the requests in flight are not affected.
+     *
+     * @param registrationName The name of the registration
+     * @param handler          The handler of the registration
+     * @param registration     The updated registration details
+     * @param diff             The difference with the current registration
+     */
+    private void updateHandler(String registrationName,
+                               CompositeHandler handler,
+                               Registration registration,
+                               RegistrationDiff diff) {
+        log.info("Updating registration: {}, changed fields: {}", registrationName, diff);
+
+        final Registration previous = handler.getRegistration();
+        try {
+            // Block the lane of the registration until complete, so that its next change waits for it
+            handler.update(registration, new RegistrationSchemas(schemaCache, registration))
+                    .doOnSuccess(v -> completeUpdate(registrationName, previous, registration, diff))
+                    .doOnError(e -> log.error("Error updating registration: {}", registrationName, e))
+                    .block();
+        } catch (Exception e) {
+            log.error("Error updating handler for registration: {}", registrationName, e);
+        }
+    }
+
+    /**
+     * Completes the update of a registration.
+     * <p>
+     * The schemas of topics no longer used are evicted from the cache and an updated
+     * registration event is published to notify other components.
+     *
+     * @param registrationName The name of the registration
+     * @param previous         The registration before the update
+     * @param registration     The updated registration
+     * @param diff             The difference between both registrations
+     */
+    private void completeUpdate(String registrationName,
+                                Registration previous,
+                                Registration registration,
+                                RegistrationDiff diff) {
+        log.info("Updated registration: {}", registrationName);
+        version.incrementAndGet();
+        if (diff.getChangedFields().contains("requestTopicName") || diff.getChangedFields().contains("responseTopicName")) {
+            schemaCache.invalidate(previous);
+        }
+        applicationEventPublisher.publishEvent(new UpdatedRegistrationEvent(this, previous, registration));
     }
 
     /**
@@ -258,18 +520,24 @@ public class RegistrationCoordinator implements DisposableBean {
      *
      * @param registration     The registration details
      * @param registrationName The name of the registration
+     * @param local            True if the registration is owned by this node
      */
-    private void createHandler(Registration registration, String registrationName) {
+    private void createHandler(Registration registration, String registrationName, boolean local) {
         try {
             // Create a new composite handler for the registration
             final CompositeHandler handler = new CompositeHandler(
                     registration,
                     requestResponseHandler,
-                    schemaRegistryClient,
-                    this);
+                    schemaCache,
+                    this,
+                    local);
 
-            // Initialize the handler asynchronously and block until complete
+            // Block the lane of the registration until complete, so that its next change waits for it
             handler.initialize()
+                    // A registration without live agent starts hidden
+                    .then(Mono.defer(() -> livenessTracker.isAlive(registration)
+                            ? Mono.<Void>empty()
+                            : handler.setAvailable(false)))
                     .doOnSuccess(v -> handleSuccessfulRegistration(registrationName, handler, registration))
                     .doOnError(e -> handleFailedRegistration(registrationName, e))
                     .block();
@@ -294,6 +562,7 @@ public class RegistrationCoordinator implements DisposableBean {
         log.info("Added registration: {}", registrationName);
         // Store the handler for future reference
         handlers.put(registrationName, handler);
+        version.incrementAndGet();
         // Notify other components about the new registration
         applicationEventPublisher.publishEvent(new NewRegistrationEvent(this, registration));
     }
@@ -330,7 +599,7 @@ public class RegistrationCoordinator implements DisposableBean {
             return;
         }
 
-        // Tear down the handler asynchronously and block until complete
+        // Block the lane of the registration until complete, so that its next change waits for it
         handler.teardown()
                 .doOnSuccess(v -> completeUnregistration(registrationName, handler))
                 .doOnError(e -> log.error("Error unregistering {}", registrationName, e))
@@ -350,10 +619,71 @@ public class RegistrationCoordinator implements DisposableBean {
         log.info("Unregistered {}", registrationName);
         // Remove the handler from the active handlers
         handlers.remove(registrationName);
+        version.incrementAndGet();
         // Notify other components about the deleted registration
         applicationEventPublisher.publishEvent(new DeletedRegistrationEvent(this, handler.getRegistration()));
     }
 
+    /**
+     * Checks if a registration is served by this node.
+     * Resources are served by every node, the tools by the node owning them.
+     *
+     * @param registration The registration
+     * @return true if the registration is served by this node
+     */
+    private boolean isOwned(Registration registration) {
+        return registration.isResource() || shardManager.isLocal(registration.getName());
+    }
+
+    /**
+     * Processes all the registrations again after the members of the registry sharding changed.
+     * The registrations whose owner changed get their handler replaced, the others are unchanged.
+     */
+    void rebalance() {
+        log.info("Rebalancing the registrations across {} nodes", shardManager.getMembers().size());
+
+        final Map<RegistrationKey, Registration> registrations = new LinkedHashMap<>();
+        registrationService.getAllRegistrations()
+                .forEach(registration -> registrations.put(new RegistrationKey(registration.getName()), registration));
+        onRegistration(registrations);
+    }
+
+    /**
+     * Applies the latest liveness check to the registrations, on their lane so that it is ordered
+     * with their changes.
+     */
+    void checkLiveness() {
+        handlers.forEach((name, handler) -> {
+            if (handler.isAvailable() != livenessTracker.isAlive(handler.getRegistration())) {
+                registrationExecutor.execute(name, () -> applyLiveness(name));
+            }
+        });
+    }
+
+    /**
+     * Makes a registration available or not depending on the liveness of its agents.
+     *
+     * @param registrationName The name of the registration
+     */
+    private void applyLiveness(String registrationName) {
+        final CompositeHandler handler = handlers.get(registrationName);
+        if (handler == null) {
+            return;
+        }
+
+        final boolean alive = livenessTracker.isAlive(handler.getRegistration());
+        if (handler.isAvailable() == alive) {
+            return;
+        }
+
+        log.info("Registration {} is now {}", registrationName, alive ? "available" : "unavailable");
+        try {
+            handler.setAvailable(alive).block();
+        } catch (Exception e) {
+            log.error("Error changing the availability of {}", registrationName, e);
+        }
+    }
+
     /**
      * Cleans up resources when the Spring container is shutting down.
      * Implemented from DisposableBean interface.
@@ -362,5 +692,7 @@ public class RegistrationCoordinator implements DisposableBean {
     public void destroy() {
         // Close the registration service to release Kafka resources
         registrationService.close();
+        // Let the pending registrations complete
+        registrationExecutor.close();
     }
 }
@@ -0,0 +1,83 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Structural difference between two versions of a registration.
+ * <p>
+ * Registrations are compared on their JSON representation, so that every serialized field, including
+ * the ones of the sub-types, is taken into account without having to be listed here.
+ */
+@Getter
+public class RegistrationDiff {
+
+    /**
+     * Names of the fields whose value differs, in alphabetical order
+     */
+    private final Set<String> changedFields;
+
+    /**
+     * True if the registration changed from a tool to a resource or the other way around
+     */
+    private final boolean typeChange;
+
+    private RegistrationDiff(Set<String> changedFields, boolean typeChange) {
+        this.changedFields = Collections.unmodifiableSet(changedFields);
+        this.typeChange = typeChange;
+    }
+
+    /**
+     * Compares two versions of a registration.
+     *
+     * @param previous The registration currently in use
+     * @param updated  The registration received
+     * @return The difference between the two registrations
+     */
+    public static RegistrationDiff of(Registration previous, Registration updated) {
+        final JsonNode previousNode = JsonUtils.toJsonNode(previous);
+        final JsonNode updatedNode = JsonUtils.toJsonNode(updated);
+
+        final Set<String> fieldNames = new TreeSet<>();
+        previousNode.fieldNames().forEachRemaining(fieldNames::add);
+        updatedNode.fieldNames().forEachRemaining(fieldNames::add);
+
+        final Set<String> changedFields = new TreeSet<>();
+        for (String fieldName : fieldNames) {
+            if (!Objects.equals(normalize(previousNode.get(fieldName)), normalize(updatedNode.get(fieldName)))) {
+                changedFields.add(fieldName);
+            }
+        }
+
+        return new RegistrationDiff(changedFields, previous.getClass() != updated.getClass());
+    }
+
+    /**
+     * @return true if both registrations are identical
+     */
+    public boolean isEmpty() {
+        return changedFields.isEmpty() && !typeChange;
+    }
+
+    /**
+     * Missing and null fields are considered equal.
+     *
+     * @param node The field value
+     * @return The value, null if missing or null
+     */
+    private static JsonNode normalize(JsonNode node) {
+        return node == null || node.isNull() ? null : node;
+    }
+
+    @Override
+    public String toString() {
+        return changedFields.toString();
+    }
+}
@@ -1,18 +1,21 @@
 package io.confluent.pas.agent.proxy.registration;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.pas.agent.common.services.schemas.Registration;
-import io.confluent.pas.agent.common.utils.JsonUtils;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Request;
-import io.confluent.pas.agent.proxy.frameworks.java.models.Response;
+import io.confluent.pas.agent.proxy.registration.exceptions.CircuitOpenException;
+import io.confluent.pas.agent.proxy.registration.exceptions.TooManyRequestsException;
 import io.confluent.pas.agent.proxy.registration.kafka.ConsumerService;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponseEnvelope;
+import io.confluent.pas.agent.proxy.registration.kafka.exceptions.TimeoutException;
 import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -29,9 +32,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * The channel maintains a counter for request indices to uniquely identify each
  * request
  * and correlate it with its corresponding response.
+ * <p>
+ * When the registration is hedged, a request still without response once its hedge delay elapsed is sent
+ * again, with a new request index, to another partition of the request topic. Both requests share the
+ * correlation ID: the first response is processed, the later ones find no handler and are discarded.
  */
 @Slf4j
-@Builder
 public class RequestResponseChannel implements AutoCloseable {
 
     /**
@@ -49,7 +55,7 @@ public class RequestResponseChannel implements AutoCloseable {
          */
         void process(RequestResponseChannel channel,
                      String correlationId,
-                     Response response);
+                     ResponseEnvelope response);
     }
 
     // Atomic counter to ensure thread-safe request indexing
@@ -64,6 +70,13 @@ public class RequestResponseChannel implements AutoCloseable {
     private final ResponseProcessor responseProcessor;
     // Schemas for validating request and response formats
     private final RegistrationSchemas schemas;
+    // Circuit breaker call, reporting whether the agent answered
+    private final CircuitBreaker.Call call;
+    // In-flight permit held until the channel is closed
+    private final AdmissionController.Permit permit;
+    // Hedged request scheduled while waiting for the response, if any
+    private volatile Disposable hedge;
+    private volatile boolean closed;
 
     /**
      * Creates a new request-response channel.
@@ -72,27 +85,56 @@ public class RequestResponseChannel implements AutoCloseable {
      * @param registration           service registration details
      * @param requestResponseHandler handler for sending requests and receiving
      *                               responses
-     * @param processor              callback for processing received responses
+     * @param responseProcessor      callback for processing received responses
+     * @param schemas                schemas for the request and response formats
+     * @throws CircuitOpenException     if the circuit breaker of the registration is open
+     * @throws TooManyRequestsException if the in-flight limit is reached
      */
+    @Builder
     public RequestResponseChannel(String correlationId,
                                   Registration registration,
                                   RequestResponseHandler requestResponseHandler,
-                                  ResponseProcessor processor,
+                                  ResponseProcessor responseProcessor,
                                   RegistrationSchemas schemas) {
         this.correlationId = correlationId;
         this.registration = registration;
         this.requestResponseHandler = requestResponseHandler;
-        this.responseProcessor = processor;
+        this.responseProcessor = responseProcessor;
         this.schemas = schemas;
 
-        // Register handlers for responses and errors immediately upon construction
-        registerResponseHandler();
+        // Admission control happens before anything is registered or produced
+        this.call = requestResponseHandler.getCircuitBreaker(registration).acquire();
+        try {
+            this.permit = requestResponseHandler.acquirePermit(registration);
+        } catch (TooManyRequestsException e) {
+            call.close();
+            throw e;
+        }
+
+        // Register handlers for responses and errors immediately upon construction.
+        // The permit and the breaker call are given back if the registration fails, otherwise the
+        // registration would stay at its in-flight limit and a half-open breaker would keep probing.
+        try {
+            registerResponseHandler();
+        } catch (RuntimeException e) {
+            permit.close();
+            call.close();
+            throw e;
+        }
     }
 
     @Override
     public void close() {
+        closed = true;
+        cancelHedge();
+
         // Unregister the handlers when the channel is closed
-        requestResponseHandler.unregisterHandler(registration, correlationId);
+        try {
+            requestResponseHandler.unregisterHandler(registration, correlationId);
+        } finally {
+            call.close();
+            permit.close();
+        }
     }
 
     /**
@@ -110,28 +152,18 @@ public class RequestResponseChannel implements AutoCloseable {
 
     /**
      * Creates a handler for successful responses.
-     * This handler deserializes the response and forwards it to the processor.
+     * The response has already been decoded from the record, it is forwarded as is to the processor.
      *
      * @param processor callback to forward the processed response to
      * @return a response handler for successful responses
      */
     private ConsumerService.ResponseHandler createSuccessResponseHandler(ResponseProcessor processor) {
         return response -> {
-            try {
-                // Convert JsonNode to Response object for easier handling
-                final Response responseMessage = JsonUtils.toObject(response.toString(), Response.class);
-                processor.process(
-                        this,
-                        correlationId,
-                        responseMessage);
-            } catch (JsonProcessingException e) {
-                // Handle JSON parsing errors by forwarding them as error responses
-                log.error("Error parsing response", e);
-                processor.process(
-                        this,
-                        correlationId,
-                        new Response(e));
-            }
+            call.onSuccess();
+            processor.process(
+                    this,
+                    correlationId,
+                    response);
         };
     }
 
@@ -146,10 +178,13 @@ public class RequestResponseChannel implements AutoCloseable {
     private ConsumerService.ErrorHandler createErrorResponseHandler(ResponseProcessor processor) {
         return error -> {
             log.error("Error processing response", error);
+            if (error instanceof TimeoutException) {
+                call.onTimeout();
+            }
             processor.process(
                     this,
                     correlationId,
-                    new Response(error));
+                    ResponseEnvelope.error(error));
         };
     }
 
@@ -169,8 +204,46 @@ public class RequestResponseChannel implements AutoCloseable {
         return sendRequestToHandler(requestMessage, idx);
     }
 
+    /**
+     * Schedules the request to be sent again to another partition if no response arrived within the delay.
+     *
+     * @param request       the request payload
+     * @param sentPartition the partition the request was sent to
+     * @param delay         the hedge delay in milliseconds
+     */
+    private void scheduleHedge(Map<String, Object> request, int sentPartition, long delay) {
+        hedge = Mono.delay(Duration.ofMillis(delay), requestResponseHandler.getHedgeScheduler())
+                .then(Mono.defer(() -> {
+                    if (closed) {
+                        return Mono.empty();
+                    }
+
+                    final Request hedgedRequest = new Request(requestIndex.getAndIncrement(), request);
+                    final Key key = requestResponseHandler.createKey(registration, correlationId);
+                    final JsonNode envelope = schemas.getRequestSchema().envelope(hedgedRequest);
+                    return requestResponseHandler.sendHedgedRequest(registration, sentPartition, key, envelope);
+                }))
+                .subscribe(
+                        v -> {
+                        },
+                        error -> log.warn("Error sending hedged request {}", correlationId, error));
+
+        // The response may have arrived while the hedge was being scheduled
+        if (closed) {
+            cancelHedge();
+        }
+    }
+
+    private void cancelHedge() {
+        final Disposable scheduled = hedge;
+        if (scheduled != null) {
+            scheduled.dispose();
+        }
+    }
+
     /**
      * Sends the prepared request to the handler and returns the request index.
+     * The request is held back until the response topic is ready.
      * Logs any errors that occur during sending.
      *
      * @param requestMessage the prepared request object
@@ -178,12 +251,28 @@ public class RequestResponseChannel implements AutoCloseable {
      * @return a mono that emits the request index once the request is sent
      */
     private Mono<Integer> sendRequestToHandler(Request requestMessage, int idx) {
-        final JsonNode envelope = schemas.getRequestSchema().envelope(requestMessage);
+        // Readiness barrier: the request is only produced once the response topic is assigned
+        // and positioned, otherwise a fast response could be missed.
+        // Defer the envelope creation so that any failure is surfaced through the Mono
+        return requestResponseHandler.awaitResponseTopic(registration)
+                .then(Mono.defer(() -> {
+                    final Key key = requestResponseHandler.createKey(registration, correlationId);
+                    if (registration.isBatched()) {
+                        return requestResponseHandler.sendBatchedRequest(registration, key, requestMessage, schemas);
+                    }
+
+                    final JsonNode envelope = schemas.getRequestSchema().envelope(requestMessage);
+                    final long hedgeDelay = registration.isHedged()
+                            ? requestResponseHandler.getHedgeDelay(registration)
+                            : -1;
+                    if (hedgeDelay < 0) {
+                        return requestResponseHandler.sendRequest(registration, key, envelope);
+                    }
 
-        return requestResponseHandler.sendRequest(
-                        registration,
-                        new Key(correlationId),
-                        envelope)
+                    return requestResponseHandler.sendHedgeableRequest(registration, key, envelope)
+                            .doOnNext(partition -> scheduleHedge(requestMessage.getPayload(), partition, hedgeDelay))
+                            .then();
+                }))
                 .doOnError(error -> log.error("Error sending request", error))
                 .then(Mono.just(idx)); // Return the index after send completes
     }
@@ -0,0 +1,158 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.confluent.pas.agent.common.services.KafkaConfiguration;
+import io.confluent.pas.agent.common.services.ProducerProfile;
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
+import io.confluent.pas.agent.common.utils.ShardedExecutor;
+import io.confluent.pas.agent.proxy.registration.kafka.ConsumerService;
+import io.confluent.pas.agent.proxy.registration.kafka.ProducerService;
+import io.confluent.pas.agent.proxy.registration.kafka.ReplyRouting;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponseTimeoutPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+/**
+ * Configuration class creating the {@link RequestResponseHandler} from the kafka.* properties.
+ */
+@Configuration(proxyBeanMethods = false)
+public class RequestResponseConfiguration {
+
+    /**
+     * Time to wait for a response, and how it adapts to the observed latencies
+     */
+    @Value("${kafka.response-timeout:${kafka.response.timeout:10000}}")
+    private long responseTimeout;
+    @Value("${kafka.response-timeout-mode:" + ResponseTimeoutPolicy.MODE_STATIC + "}")
+    private String responseTimeoutMode;
+    @Value("${kafka.response-timeout-percentile:0.99}")
+    private double responseTimeoutPercentile;
+    @Value("${kafka.response-timeout-factor:2.0}")
+    private double responseTimeoutFactor;
+    @Value("${kafka.response-timeout-min:1000}")
+    private long responseTimeoutMin;
+    @Value("${kafka.response-timeout-max:120000}")
+    private long responseTimeoutMax;
+    @Value("${kafka.response-timeout-min-samples:50}")
+    private int responseTimeoutMinSamples;
+
+    /**
+     * Response partitions consumed by this instance
+     */
+    @Value("${kafka.reply-routing:shared}")
+    private String replyRouting;
+    @Value("${kafka.reply-partition:-1}")
+    private int replyPartition;
+
+    /**
+     * Executor dispatching the responses to their handlers
+     */
+    @Value("${kafka.response-dispatch-threads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int dispatchThreads;
+    @Value("${kafka.response-dispatch-virtual-threads:false}")
+    private boolean dispatchVirtualThreads;
+    @Value("${kafka.response-dispatch-queue-capacity:0}")
+    private int dispatchQueueCapacity;
+
+    /**
+     * Limits of the requests in flight, globally and per registration (0 for no limit)
+     */
+    @Value("${kafka.max-in-flight:0}")
+    private int maxInFlight;
+    @Value("${kafka.max-in-flight-per-registration:0}")
+    private int maxInFlightPerRegistration;
+
+    /**
+     * Circuit breaker of each registration
+     */
+    @Value("${kafka.circuit-breaker-failure-threshold:5}")
+    private int circuitBreakerThreshold;
+    @Value("${kafka.circuit-breaker-open-duration:30000}")
+    private long circuitBreakerOpenDuration;
+
+    @Value("${kafka.result-cache-max-weight:10485760}")
+    private long resultCacheMaxWeight;
+
+    @Value("${kafka.hedge-min-delay:20}")
+    private long hedgeMinDelay;
+
+    /**
+     * Directory and retention of the offloaded response fields (disabled if the directory is empty)
+     */
+    @Value("${kafka.claim-check-directory:}")
+    private String claimCheckDirectory;
+    @Value("${kafka.claim-check-retention:3600000}")
+    private long claimCheckRetention;
+
+    @Value("${kafka.producer-profile:default}")
+    private String producerProfile;
+
+    /**
+     * Creates the handler sending the requests and receiving their responses.
+     *
+     * @param kafkaConfiguration  the kafka configuration
+     * @param observationRegistry the registry of the request observations
+     * @param meterRegistry       the registry of the metrics
+     * @return the request/response handler
+     */
+    @Bean
+    public RequestResponseHandler requestResponseHandler(KafkaConfiguration kafkaConfiguration,
+                                                         ObservationRegistry observationRegistry,
+                                                         MeterRegistry meterRegistry) {
+        final ConsumerService consumerService = new ConsumerService(
+                kafkaConfiguration,
+                ConsumerService.Options.defaults(responseTimeout)
+                        .withReplyRouting(ReplyRouting.from(replyRouting, kafkaConfiguration.clientId(), replyPartition))
+                        .withDispatcher(new ShardedExecutor(
+                                "response-dispatcher",
+                                dispatchThreads,
+                                dispatchVirtualThreads,
+                                dispatchQueueCapacity))
+                        .withTimeoutPolicy(new ResponseTimeoutPolicy(
+                                responseTimeout,
+                                responseTimeoutMode,
+                                responseTimeoutPercentile,
+                                responseTimeoutFactor,
+                                responseTimeoutMin,
+                                responseTimeoutMax,
+                                responseTimeoutMinSamples)));
+
+        return new RequestResponseHandler(
+                new ProducerService(kafkaConfiguration, ProducerProfile.fromValue(producerProfile, ProducerProfile.DEFAULT)),
+                consumerService,
+                observationRegistry,
+                RequestResponseHandler.Options.defaults()
+                        .withAdmissionController(new AdmissionController(maxInFlight, maxInFlightPerRegistration, meterRegistry))
+                        .withCircuitBreaker(circuitBreakerThreshold, Duration.ofMillis(circuitBreakerOpenDuration))
+                        .withResultCache(new ResultCache(
+                                resultCacheMaxWeight,
+                                maxCacheTtl(claimCheckDirectory, claimCheckRetention),
+                                Ticker.systemTicker(),
+                                meterRegistry))
+                        .withHedgingPolicy(new HedgingPolicy(hedgeMinDelay, Schedulers.parallel(), meterRegistry))
+                        .withClaimCheck(ClaimCheck.create(claimCheckDirectory, 0), Duration.ofMillis(claimCheckRetention)));
+    }
+
+    /**
+     * Returns the maximum time to live of the cached responses. The offloaded fields are written before their
+     * response is received, capping the time to live to half the retention leaves the other half for the
+     * response to arrive, so that a cached response never references a deleted field.
+     *
+     * @param claimCheckDirectory The directory of the offloaded fields, blank if disabled
+     * @param claimCheckRetention The retention of the offloaded fields in milliseconds, 0 to keep them
+     * @return The maximum time to live, zero for none
+     */
+    static Duration maxCacheTtl(String claimCheckDirectory, long claimCheckRetention) {
+        if (claimCheckDirectory == null || claimCheckDirectory.isBlank() || claimCheckRetention <= 0) {
+            return Duration.ZERO;
+        }
+
+        return Duration.ofMillis(claimCheckRetention / 2);
+    }
+}
@@ -1,53 +1,205 @@
 package io.confluent.pas.agent.proxy.registration;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import io.confluent.pas.agent.common.services.KafkaConfiguration;
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
 import io.confluent.pas.agent.common.services.schemas.Registration;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Request;
+import io.confluent.pas.agent.proxy.registration.exceptions.TooManyRequestsException;
 import io.confluent.pas.agent.proxy.registration.kafka.ProducerService;
 import io.confluent.pas.agent.proxy.registration.kafka.ConsumerService;
+import io.confluent.pas.agent.proxy.registration.kafka.RequestBatcher;
+import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
 import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handle requests and responses
  */
 @Slf4j
-@Component
 public class RequestResponseHandler implements DisposableBean {
 
     private final ProducerService producerService;
     private final ConsumerService consumerService;
     private final ObservationRegistry observationRegistry;
+    private final AdmissionController admissionController;
+    private final int circuitBreakerThreshold;
+    private final Duration circuitBreakerOpenDuration;
+    private final ResultCache resultCache;
+    private final HedgingPolicy hedgingPolicy;
+    private final ClaimCheck claimCheck;
+    private final Disposable claimCheckSweeper;
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final Map<String, RequestBatcher> batchers = new ConcurrentHashMap<>();
 
-    @Autowired
-    public RequestResponseHandler(KafkaConfiguration kafkaConfiguration,
-                                  ObservationRegistry observationRegistry,
-                                  @Value("${kafka.response.timeout:10000}") long responseTimeout) {
-        this(new ProducerService(kafkaConfiguration),
-                new ConsumerService(kafkaConfiguration, responseTimeout),
-                observationRegistry);
+    /**
+     * Optional collaborators and settings of the handler. The defaults admit every request, never open the
+     * circuit breakers, use the default result cache and hedging policy and leave the claim check disabled.
+     *
+     * @param admissionController        Limits the requests in flight
+     * @param circuitBreakerThreshold    Consecutive failures opening the circuit breaker of a registration, 0 to disable
+     * @param circuitBreakerOpenDuration Time a circuit breaker stays open
+     * @param resultCache                Cache of the responses of the registrations declaring a time to live
+     * @param hedgingPolicy              Decides when a request without response is sent again
+     * @param claimCheck                 Resolves the references of the offloaded response fields, null if disabled
+     * @param claimCheckRetention        Age after which the offloaded fields are deleted, zero to keep them
+     */
+    public record Options(AdmissionController admissionController,
+                          int circuitBreakerThreshold,
+                          Duration circuitBreakerOpenDuration,
+                          ResultCache resultCache,
+                          HedgingPolicy hedgingPolicy,
+                          ClaimCheck claimCheck,
+                          Duration claimCheckRetention) {
+
+        public static Options defaults() {
+            return new Options(
+                    AdmissionController.unlimited(),
+                    0,
+                    Duration.ZERO,
+                    ResultCache.withDefaults(),
+                    HedgingPolicy.withDefaults(),
+                    null,
+                    Duration.ZERO);
+        }
+
+        public Options withAdmissionController(AdmissionController admissionController) {
+            return new Options(admissionController, circuitBreakerThreshold, circuitBreakerOpenDuration,
+                    resultCache, hedgingPolicy, claimCheck, claimCheckRetention);
+        }
+
+        public Options withCircuitBreaker(int circuitBreakerThreshold, Duration circuitBreakerOpenDuration) {
+            return new Options(admissionController, circuitBreakerThreshold, circuitBreakerOpenDuration,
+                    resultCache, hedgingPolicy, claimCheck, claimCheckRetention);
+        }
+
+        public Options withResultCache(ResultCache resultCache) {
+            return new Options(admissionController, circuitBreakerThreshold, circuitBreakerOpenDuration,
+                    resultCache, hedgingPolicy, claimCheck, claimCheckRetention);
+        }
+
+        public Options withHedgingPolicy(HedgingPolicy hedgingPolicy) {
+            return new Options(admissionController, circuitBreakerThreshold, circuitBreakerOpenDuration,
+                    resultCache, hedgingPolicy, claimCheck, claimCheckRetention);
+        }
+
+        public Options withClaimCheck(ClaimCheck claimCheck, Duration claimCheckRetention) {
+            return new Options(admissionController, circuitBreakerThreshold, circuitBreakerOpenDuration,
+                    resultCache, hedgingPolicy, claimCheck, claimCheckRetention);
+        }
     }
 
+    /**
+     * @param producerService     Sends the requests
+     * @param consumerService     Receives the responses
+     * @param observationRegistry Registry of the request observations
+     * @param options             Admission, circuit breaker, result cache, hedging and claim check of the handler
+     */
     public RequestResponseHandler(ProducerService producerService,
                                   ConsumerService consumerService,
-                                  ObservationRegistry observationRegistry) {
+                                  ObservationRegistry observationRegistry,
+                                  Options options) {
         this.producerService = producerService;
         this.consumerService = consumerService;
         this.observationRegistry = observationRegistry;
+        this.admissionController = options.admissionController();
+        this.circuitBreakerThreshold = options.circuitBreakerThreshold();
+        this.circuitBreakerOpenDuration = options.circuitBreakerOpenDuration();
+        this.resultCache = options.resultCache();
+        this.hedgingPolicy = options.hedgingPolicy();
+        this.claimCheck = options.claimCheck();
+        final Duration claimCheckRetention = options.claimCheckRetention();
+        this.claimCheckSweeper = claimCheck == null || claimCheckRetention.isZero()
+                ? null
+                : Flux.interval(claimCheckRetention.dividedBy(4), Schedulers.boundedElastic())
+                .subscribe(tick -> deleteExpiredBlobs(claimCheckRetention));
     }
 
     public void addRegistrations(Collection<Registration> registrations) {
         consumerService.addRegistrations(registrations);
     }
 
+    /**
+     * Stops receiving the responses of a registration no longer served by this instance.
+     *
+     * @param registration The service registration details
+     */
+    public void removeRegistration(Registration registration) {
+        consumerService.removeRegistration(registration);
+    }
+
+    /**
+     * Returns the circuit breaker of a registration, creating it if needed.
+     *
+     * @param registration The service registration details
+     * @return The circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker(Registration registration) {
+        return circuitBreakers.computeIfAbsent(
+                registration.getName(),
+                name -> new CircuitBreaker(name, circuitBreakerThreshold, circuitBreakerOpenDuration));
+    }
+
+    /**
+     * Drops the circuit breaker of a registration, a new registration starts with a closed breaker.
+     *
+     * @param registration The service registration details
+     */
+    public void removeCircuitBreaker(Registration registration) {
+        circuitBreakers.remove(registration.getName());
+    }
+
+    /**
+     * Drops the in-flight state and the meters of a registration.
+     *
+     * @param registration The service registration details
+     */
+    public void removeAdmissionState(Registration registration) {
+        admissionController.remove(registration);
+    }
+
+    /**
+     * Returns the cache of the responses of the registrations declaring a time to live.
+     *
+     * @return The result cache
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Returns the claim check resolving the references of the response fields offloaded by the agents.
+     *
+     * @return The claim check, null if disabled
+     */
+    public ClaimCheck getClaimCheck() {
+        return claimCheck;
+    }
+
+    /**
+     * Acquires an in-flight permit for a request to the registration.
+     *
+     * @param registration The service registration details
+     * @return The permit, to be closed once the response handler is unregistered
+     * @throws TooManyRequestsException if the global or the registration in-flight limit is reached
+     */
+    public AdmissionController.Permit acquirePermit(Registration registration) {
+        return admissionController.acquire(registration);
+    }
+
     public void registerHandler(Registration registration,
                                 String correlationId,
                                 ConsumerService.ResponseHandler handler,
@@ -63,14 +215,155 @@ public class RequestResponseHandler implements DisposableBean {
         consumerService.unregisterResponseHandler(registration, correlationId);
     }
 
+    /**
+     * Waits for the response topic of the registration to be ready to receive responses.
+     *
+     * @param registration The service registration details
+     * @return A mono completing once the response topic is assigned and positioned
+     */
+    public Mono<Void> awaitResponseTopic(Registration registration) {
+        return Mono.fromFuture(() -> consumerService.whenResponseTopicReady(registration));
+    }
+
+    /**
+     * Creates the key of a request so that its response is routed back to this instance.
+     *
+     * @param registration  The service registration details
+     * @param correlationId The correlation ID of the request
+     * @return The request key
+     */
+    public Key createKey(Registration registration, String correlationId) {
+        return consumerService.createKey(registration, correlationId);
+    }
+
     public Mono<Void> sendRequest(Registration registration,
                                   Key key,
                                   JsonNode request) {
-        return producerService.send(registration.getRequestTopicName(), key, request);
+        return producerService.send(registration, null, key, request).then();
+    }
+
+    /**
+     * Returns the time after which a request without response is sent again to another partition.
+     *
+     * @param registration The service registration details
+     * @return The delay in milliseconds, -1 if the requests of the registration are not hedged yet
+     */
+    public long getHedgeDelay(Registration registration) {
+        if (!registration.isHedged()) {
+            return -1;
+        }
+
+        return hedgingPolicy.getDelay(
+                registration,
+                consumerService.getLatencyPercentile(registration, registration.getHedgePercentile()));
+    }
+
+    /**
+     * Returns the scheduler timing the hedge delays.
+     *
+     * @return The scheduler
+     */
+    public Scheduler getHedgeScheduler() {
+        return hedgingPolicy.getScheduler();
+    }
+
+    /**
+     * Sends a request which may be hedged, letting the partitioner choose its partition.
+     *
+     * @param registration The service registration details
+     * @param key          The key of the request
+     * @param request      The request
+     * @return A mono emitting the partition the request was written to
+     */
+    public Mono<Integer> sendHedgeableRequest(Registration registration,
+                                              Key key,
+                                              JsonNode request) {
+        return producerService.send(registration, null, key, request);
+    }
+
+    /**
+     * Sends a request again, to a partition other than the one it was first sent to.
+     *
+     * @param registration  The service registration details
+     * @param sentPartition The partition the request was first sent to
+     * @param key           The key of the request
+     * @param request       The request
+     * @return A mono completing once the request is sent, or immediately if the request topic has a single partition
+     */
+    public Mono<Void> sendHedgedRequest(Registration registration,
+                                        int sentPartition,
+                                        Key key,
+                                        JsonNode request) {
+        // The partition count may need a metadata lookup, which blocks: keep it off the hedge timer thread
+        return Mono.fromCallable(() -> producerService.getPartitionCount(registration))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(partitionCount -> {
+                    final int partition = hedgingPolicy.choosePartition(registration, sentPartition, partitionCount);
+                    if (partition < 0) {
+                        return Mono.empty();
+                    }
+
+                    log.debug("Hedging request {} to {} on partition {}",
+                            key.getCorrelationId(), registration.getName(), partition);
+                    return producerService.send(registration, partition, key, request).then();
+                });
+    }
+
+    /**
+     * Sends a request through the batcher of the registration.
+     * The request is packed with the other requests sent to the registration within the linger time.
+     *
+     * @param registration The service registration details, with batching enabled
+     * @param key          The key of the request
+     * @param request      The request
+     * @param schemas      The schemas of the registration
+     * @return A mono completing once the batch holding the request is sent
+     */
+    public Mono<Void> sendBatchedRequest(Registration registration,
+                                         Key key,
+                                         Request request,
+                                         RegistrationSchemas schemas) {
+        return batchers.computeIfAbsent(
+                        registration.getName(),
+                        name -> new RequestBatcher(registration, producerService))
+                .send(key, request, schemas);
+    }
+
+    /**
+     * Flushes and drops the batcher of a registration.
+     *
+     * @param registration The service registration details
+     */
+    public void removeBatcher(Registration registration) {
+        final RequestBatcher batcher = batchers.remove(registration.getName());
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    /**
+     * Deletes the offloaded response fields older than the retention, their responses are no longer awaited
+     * nor cached.
+     *
+     * @param retention The retention of the offloaded fields
+     */
+    private void deleteExpiredBlobs(Duration retention) {
+        try {
+            final int deleted = claimCheck.getBlobStore().deleteOlderThan(Instant.now().minus(retention));
+            if (deleted > 0) {
+                log.debug("Deleted {} expired blobs", deleted);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete the expired blobs", e);
+        }
     }
 
     @Override
     public void destroy() throws Exception {
+        if (claimCheckSweeper != null) {
+            claimCheckSweeper.dispose();
+        }
+        batchers.values().forEach(RequestBatcher::close);
         consumerService.close();
         producerService.close();
     }
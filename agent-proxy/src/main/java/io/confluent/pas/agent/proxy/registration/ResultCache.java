@@ -0,0 +1,311 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponsePayload;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches the responses of the registrations declaring a {@code cacheTtlMs}.
+ * <p>
+ * Each registration has its own bounded cache, sized by the weight of its responses in bytes and expiring
+ * them once their time to live elapsed. The time to live and the maximum weight are declared by the
+ * registration, the proxy maximum weight applies when it does not declare one. The time to live is capped
+ * so that a cached response never outlives the claim-check blobs it references. The responses are cached
+ * undecoded, so that the MCP, REST and A2A calls of a registration share the same entries, and only the
+ * completed responses are cached: errors and timeouts are never served from the cache.
+ * <p>
+ * The cache of a registration is dropped when the registration is updated or removed, and can be
+ * invalidated through the Control API. Hits and misses are exposed as metrics, along with the hit ratio,
+ * until the registration is removed.
+ */
+@Slf4j
+public class ResultCache {
+
+    static final String REQUESTS_METRIC = "agent.proxy.results.cache.requests";
+    static final String HIT_RATIO_METRIC = "agent.proxy.results.cache.hit-ratio";
+
+    /**
+     * Hit and miss counters of a registration and its hit ratio gauge, kept when its cache is dropped and
+     * removed with the registration.
+     */
+    private record Counters(Counter hits, Counter misses, Gauge hitRatio) {
+
+        static double hitRatio(Counter hits, Counter misses) {
+            final double total = hits.count() + misses.count();
+            return total == 0 ? Double.NaN : hits.count() / total;
+        }
+    }
+
+    /**
+     * The cache of a registration and the settings it was built with.
+     */
+    private record RegistrationCache(long ttlMs, long maxWeight, Cache<String, ResponsePayload> cache) {
+    }
+
+    /**
+     * Statistics of the cache of a registration.
+     *
+     * @param name      The registration name
+     * @param ttlMs     The time to live of the responses in milliseconds
+     * @param maxWeight The maximum size of the cached responses in bytes
+     * @param entries   The number of cached responses
+     * @param weight    The size of the cached responses in bytes
+     * @param hits      The number of requests served from the cache
+     * @param misses    The number of requests sent to the agent
+     * @param evictions The number of responses evicted before they expired
+     * @param hitRatio  The ratio of requests served from the cache
+     */
+    public record Snapshot(String name,
+                           long ttlMs,
+                           long maxWeight,
+                           long entries,
+                           long weight,
+                           long hits,
+                           long misses,
+                           long evictions,
+                           double hitRatio) {
+    }
+
+    private final long defaultMaxWeight;
+    private final Duration maxTtl;
+    private final Ticker ticker;
+    private final MeterRegistry meterRegistry;
+    private final Counters globalCounters;
+    private final Map<String, RegistrationCache> caches = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache of 10 MB per registration, without metrics.
+     *
+     * @return the cache
+     */
+    public static ResultCache withDefaults() {
+        return new ResultCache(10 * 1024 * 1024, Duration.ZERO, Ticker.systemTicker(), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param defaultMaxWeight Maximum size in bytes of the cached responses of a registration without its own
+     * @param maxTtl           Maximum time to live of the responses, zero for none. Cached responses may hold
+     *                         claim-check references, they must expire before the referenced fields are swept
+     * @param ticker           Time source of the expiry of the responses
+     * @param meterRegistry    Registry used to expose the hit and miss metrics
+     */
+    public ResultCache(long defaultMaxWeight, Duration maxTtl, Ticker ticker, MeterRegistry meterRegistry) {
+        this.defaultMaxWeight = defaultMaxWeight;
+        this.maxTtl = maxTtl;
+        this.ticker = ticker;
+        this.meterRegistry = meterRegistry;
+        this.globalCounters = createCounters("all");
+    }
+
+    /**
+     * Returns the cached response of a request, or sends the request and caches its response.
+     *
+     * @param registration The registration the request is sent to
+     * @param key          The key of the request, see {@link SingleFlight#key}
+     * @param request      Supplier of the request, only invoked on a miss
+     * @return The response
+     */
+    public Mono<ResponsePayload> get(Registration registration, String key, Supplier<Mono<ResponsePayload>> request) {
+        if (!registration.isCached()) {
+            return Mono.defer(request);
+        }
+
+        return Mono.defer(() -> {
+            final Cache<String, ResponsePayload> cache = getCache(registration);
+            final Counters registrationCounters = getCounters(registration);
+
+            final ResponsePayload cached = cache.getIfPresent(key);
+            if (cached != null) {
+                registrationCounters.hits().increment();
+                globalCounters.hits().increment();
+                return Mono.just(cached);
+            }
+
+            registrationCounters.misses().increment();
+            globalCounters.misses().increment();
+            return request.get()
+                    .map(ResponsePayload::compact)
+                    .doOnNext(payload -> cache.put(key, payload));
+        });
+    }
+
+    /**
+     * Drops the cached responses of a registration.
+     *
+     * @param registration The registration
+     */
+    public void invalidate(Registration registration) {
+        final RegistrationCache removed = caches.remove(registration.getName());
+        if (removed != null) {
+            log.debug("Dropped {} cached responses of {}", removed.cache().estimatedSize(), registration.getName());
+            removed.cache().invalidateAll();
+        }
+    }
+
+    /**
+     * Drops the cached responses of a registration no longer served, along with its metrics.
+     *
+     * @param registration The registration
+     */
+    public void remove(Registration registration) {
+        invalidate(registration);
+
+        final Counters removed = counters.remove(registration.getName());
+        if (removed != null) {
+            meterRegistry.remove(removed.hits());
+            meterRegistry.remove(removed.misses());
+            meterRegistry.remove(removed.hitRatio());
+        }
+    }
+
+    /**
+     * Drops the cached responses of every registration.
+     */
+    public void invalidateAll() {
+        caches.values().forEach(registrationCache -> registrationCache.cache().invalidateAll());
+        caches.clear();
+    }
+
+    /**
+     * Returns the statistics of the cache of a registration.
+     *
+     * @param registration The registration
+     * @return The statistics, empty if the registration does not cache its responses
+     */
+    public Snapshot getSnapshot(Registration registration) {
+        final RegistrationCache registrationCache = caches.get(registration.getName());
+        final Counters registrationCounters = counters.get(registration.getName());
+        final long hits = registrationCounters == null ? 0 : (long) registrationCounters.hits().count();
+        final long misses = registrationCounters == null ? 0 : (long) registrationCounters.misses().count();
+        final double hitRatio = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+
+        if (registrationCache == null) {
+            return new Snapshot(registration.getName(), 0, 0, 0, 0, hits, misses, 0, hitRatio);
+        }
+
+        final Cache<String, ResponsePayload> cache = registrationCache.cache();
+        final CacheStats stats = cache.stats();
+        final long weight = cache.policy().eviction()
+                .flatMap(Policy.Eviction::weightedSize)
+                .orElse(0L);
+
+        return new Snapshot(
+                registration.getName(),
+                registrationCache.ttlMs(),
+                registrationCache.maxWeight(),
+                cache.estimatedSize(),
+                weight,
+                hits,
+                misses,
+                stats.evictionCount(),
+                hitRatio);
+    }
+
+    /**
+     * Returns the statistics of the caches of the registrations.
+     *
+     * @param registrations The registrations
+     * @return The statistics of the registrations caching their responses
+     */
+    public Collection<Snapshot> getSnapshots(Collection<Registration> registrations) {
+        return registrations.stream()
+                .filter(Registration::isCached)
+                .map(this::getSnapshot)
+                .toList();
+    }
+
+    /**
+     * Returns the cache of a registration, building it again if the registration changed its settings.
+     *
+     * @param registration The registration
+     * @return The cache
+     */
+    private Cache<String, ResponsePayload> getCache(Registration registration) {
+        final long ttlMs = maxTtl.isZero()
+                ? registration.getCacheTtlMs()
+                : Math.min(registration.getCacheTtlMs(), maxTtl.toMillis());
+        final long maxWeight = registration.getCacheMaxWeight() != null && registration.getCacheMaxWeight() > 0
+                ? registration.getCacheMaxWeight()
+                : defaultMaxWeight;
+
+        // Looked up without locking on the hot path, the cache is only built again when its settings changed
+        final RegistrationCache existing = caches.get(registration.getName());
+        if (existing != null && existing.ttlMs() == ttlMs && existing.maxWeight() == maxWeight) {
+            return existing.cache();
+        }
+
+        return caches.compute(registration.getName(), (name, current) -> {
+            if (current != null && current.ttlMs() == ttlMs && current.maxWeight() == maxWeight) {
+                return current;
+            }
+
+            if (ttlMs < registration.getCacheTtlMs()) {
+                log.warn("Caching the responses of {} for {} ms instead of {} ms, the claim-check retention is shorter",
+                        name, ttlMs, registration.getCacheTtlMs());
+            }
+            log.debug("Caching the responses of {} for {} ms, up to {} bytes", name, ttlMs, maxWeight);
+            return new RegistrationCache(ttlMs, maxWeight, Caffeine.newBuilder()
+                    .expireAfterWrite(Duration.ofMillis(ttlMs))
+                    .ticker(ticker)
+                    .maximumWeight(maxWeight)
+                    .<String, ResponsePayload>weigher((key, payload) -> key.length() + payload.size())
+                    .recordStats()
+                    .build());
+        }).cache();
+    }
+
+    /**
+     * Returns the counters of a registration, creating them if needed.
+     *
+     * @param registration The registration
+     * @return The counters
+     */
+    private Counters getCounters(Registration registration) {
+        final Counters existing = counters.get(registration.getName());
+        return existing != null ? existing : counters.computeIfAbsent(registration.getName(), this::createCounters);
+    }
+
+    /**
+     * Creates the hit and miss counters of a registration.
+     *
+     * @param name The registration name, all for the proxy-wide counters
+     * @return The counters
+     */
+    private Counters createCounters(String name) {
+        final Counter hits = Counter.builder(REQUESTS_METRIC)
+                .description("Number of requests to a caching registration, by cache result")
+                .tag("registration", name)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        final Counter misses = Counter.builder(REQUESTS_METRIC)
+                .description("Number of requests to a caching registration, by cache result")
+                .tag("registration", name)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        final Gauge hitRatio = Gauge.builder(HIT_RATIO_METRIC, () -> Counters.hitRatio(hits, misses))
+                .description("Ratio of the requests served from the cache")
+                .tag("registration", name)
+                .register(meterRegistry);
+
+        return new Counters(hits, misses, hitRatio);
+    }
+}
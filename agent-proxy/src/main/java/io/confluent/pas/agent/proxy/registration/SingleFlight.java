@@ -0,0 +1,107 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls into a single one.
+ * <p>
+ * The first call for a key is executed, the calls made with the same key while it is in flight wait
+ * for its outcome instead of being executed again, and every caller receives the same result or error.
+ * The key is forgotten as soon as the call completes, results are never served to later calls.
+ * A caller cancelling only stops waiting, the call is cancelled once every caller cancelled.
+ *
+ * @param <V> The result type
+ */
+@Slf4j
+public class SingleFlight<V> {
+
+    /**
+     * Serializes the arguments with sorted keys, so that the same arguments always give the same key
+     */
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * A call in flight, shared by all its callers.
+     */
+    private class Flight {
+        private final Mono<V> result;
+
+        Flight(String key, Supplier<Mono<V>> call) {
+            this.result = call.get()
+                    .doFinally(signal -> inFlight.remove(key, this))
+                    .share();
+        }
+    }
+
+    /**
+     * Executes a call, or joins the identical call already in flight.
+     *
+     * @param key  The key identifying identical calls
+     * @param call Supplier of the call, only invoked if no identical call is in flight
+     * @return The result of the call
+     */
+    public Mono<V> execute(String key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            final boolean[] created = {false};
+            final Flight flight = inFlight.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return new Flight(k, call);
+            });
+
+            if (!created[0]) {
+                coalesced.incrementAndGet();
+                log.debug("Joining the call in flight for {}", key);
+            }
+
+            return flight.result;
+        });
+    }
+
+    /**
+     * @return the number of calls in flight
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the number of calls which joined an identical call instead of being executed
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Creates the key of a call from its name and a hash of its canonicalised arguments.
+     *
+     * @param name      The name of the called registration
+     * @param arguments The arguments of the call
+     * @return The key of the call
+     */
+    public static String key(String name, Map<String, Object> arguments) {
+        try {
+            final byte[] canonical = CANONICAL_MAPPER.writeValueAsBytes(arguments == null ? Map.of() : arguments);
+            final byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical);
+            return name + ":" + HexFormat.of().formatHex(hash);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Cannot create the key of a call to " + name, e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package io.confluent.pas.agent.proxy.registration.events;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event for a registration updated in place.
+ */
+@Getter
+public class UpdatedRegistrationEvent extends ApplicationEvent {
+
+    private final Registration previousRegistration;
+    private final Registration registration;
+
+    public UpdatedRegistrationEvent(Object source, Registration previousRegistration, Registration registration) {
+        super(source);
+        this.previousRegistration = previousRegistration;
+        this.registration = registration;
+    }
+
+}
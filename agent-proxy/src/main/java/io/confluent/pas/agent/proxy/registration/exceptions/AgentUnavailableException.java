@@ -0,0 +1,11 @@
+package io.confluent.pas.agent.proxy.registration.exceptions;
+
+/**
+ * Exception thrown when a request is rejected because no live agent consumes the requests of the registration.
+ */
+public class AgentUnavailableException extends RuntimeException {
+
+    public AgentUnavailableException(String message) {
+        super(message);
+    }
+}
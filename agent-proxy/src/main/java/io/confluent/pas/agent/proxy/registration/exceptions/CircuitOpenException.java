@@ -0,0 +1,11 @@
+package io.confluent.pas.agent.proxy.registration.exceptions;
+
+/**
+ * Exception thrown when a request is rejected because the circuit breaker of the registration is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package io.confluent.pas.agent.proxy.registration.exceptions;
+
+/**
+ * Exception thrown when a request is rejected because too many requests are already in flight.
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
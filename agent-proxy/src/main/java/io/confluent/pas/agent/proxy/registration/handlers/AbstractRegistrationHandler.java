@@ -1,16 +1,20 @@
 package io.confluent.pas.agent.proxy.registration.handlers;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
 import io.confluent.pas.agent.common.services.schemas.Registration;
-import io.confluent.pas.agent.common.utils.AsyncUtils;
-import io.confluent.pas.agent.common.utils.JsonUtils;
-import io.confluent.pas.agent.proxy.frameworks.java.models.Response;
 import io.confluent.pas.agent.proxy.registration.RequestResponseHandler;
+import io.confluent.pas.agent.proxy.registration.SingleFlight;
+import io.confluent.pas.agent.proxy.registration.exceptions.AgentUnavailableException;
+import io.confluent.pas.agent.proxy.registration.exceptions.CircuitOpenException;
+import io.confluent.pas.agent.proxy.registration.exceptions.TooManyRequestsException;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponseEnvelope;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponsePayload;
 import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
 import io.confluent.pas.agent.proxy.registration.RequestResponseChannel;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.MonoSink;
 
@@ -27,22 +31,22 @@ import java.util.function.Function;
  * @param <SRV> The server type that processes the registration
  */
 @Slf4j
-@AllArgsConstructor
 public abstract class AbstractRegistrationHandler<REG extends Registration, SRV, RES> implements RegistrationHandler {
     private static final String ERROR_PROCESSING_RESPONSE = "Failed to process response";
     private static final String UNKNOWN_RESPONSE_STATUS = "Unknown response status";
+    private static final ResponsePayload EMPTY_PAYLOAD = new ResponsePayload(NullNode.getInstance());
 
     /**
-     * The registration data to be processed
+     * The registration data to be processed, swapped when the registration is updated
      */
     @Getter
-    protected final REG registration;
+    protected volatile REG registration;
 
     /**
-     * Registration schemas used for validation
+     * Registration schemas used for validation, swapped when the registration is updated
      */
     @Getter
-    protected final RegistrationSchemas schemas;
+    protected volatile RegistrationSchemas schemas;
 
     /**
      * Server instance that handles the registration
@@ -58,18 +62,75 @@ public abstract class AbstractRegistrationHandler<REG extends Registration, SRV,
     /**
      * Function to convert the response payload into a specific result type
      */
-    private Function<JsonNode, RES> resultSupplier;
+    private final Function<ResponsePayload, RES> resultSupplier;
 
+    /**
+     * False when no live agent consumes the requests, the requests then fail fast
+     */
+    protected volatile boolean available = true;
+
+    /**
+     * Identical concurrent requests in flight, when the registration coalesces its requests
+     */
+    @Getter
+    private final SingleFlight<ResponsePayload> singleFlight = new SingleFlight<>();
+
+    /**
+     * @param registration           The registration data to be processed
+     * @param schemas                Registration schemas used for validation
+     * @param registrationServer     Server instance that handles the registration
+     * @param requestResponseHandler Handler for processing registration requests and responses
+     * @param resultSupplier         Function to convert the response payload into a specific result type
+     */
+    protected AbstractRegistrationHandler(REG registration,
+                                          RegistrationSchemas schemas,
+                                          SRV registrationServer,
+                                          RequestResponseHandler requestResponseHandler,
+                                          Function<ResponsePayload, RES> resultSupplier) {
+        this.registration = registration;
+        this.schemas = schemas;
+        this.registrationServer = registrationServer;
+        this.requestResponseHandler = requestResponseHandler;
+        this.resultSupplier = resultSupplier;
+    }
+
+    /**
+     * Swaps the registration and schemas used by the next requests.
+     * The requests in flight keep the registration of the channel they were created with.
+     *
+     * @param registration The updated registration
+     * @param schemas      The schemas of the updated registration
+     * @return a Mono that completes when the update is complete
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Mono<Void> update(Registration registration, RegistrationSchemas schemas) {
+        this.registration = (REG) registration;
+        this.schemas = schemas;
+        return Mono.empty();
+    }
+
+    /**
+     * Makes the registration available or not.
+     *
+     * @param available false if no live agent consumes the requests
+     * @return a Mono that completes immediately
+     */
+    @Override
+    public Mono<Void> setAvailable(boolean available) {
+        this.available = available;
+        return Mono.empty();
+    }
 
     /**
      * Creates a new RequestResponseChannel for handling communication between client and server.
      * The channel is configured with a unique correlation ID and response processor that
      * delegates to processResponse method.
      *
-     * @param sink MonoSink that will receive the final result of type RES
+     * @param sink MonoSink that will receive the response payload
      * @return configured RequestResponseChannel instance
      */
-    protected RequestResponseChannel getNewChannel(MonoSink<RES> sink) {
+    protected RequestResponseChannel getNewChannel(MonoSink<ResponsePayload> sink) {
         // Generate unique ID to correlate requests with responses
         final String correlationId = UUID.randomUUID().toString();
 
@@ -86,30 +147,93 @@ public abstract class AbstractRegistrationHandler<REG extends Registration, SRV,
 
 
     /**
-     * Processes a request asynchronously by creating a new channel and sending the request through it.
-     * The method handles the request lifecycle, including channel creation, request sending, and cleanup.
+     * Processes a request. When the registration caches its responses, a request identical to one already
+     * answered, same registration and same arguments, is served from the cache until the response expires.
+     * When the registration coalesces its requests, a request identical to one already in flight waits for
+     * the response of the request in flight instead of being sent again.
      *
      * @param arguments Map of key-value pairs containing the request parameters
      * @return Mono that emits the result of type RES when the request completes
      */
     protected Mono<RES> onRequest(Map<String, Object> arguments) {
-        return Mono.create(sink -> AsyncUtils.executeConsumer(
-                        sink,
-                        (resultSink) -> {
-                            // Create new channel for handling request/response communication
-                            RequestResponseChannel channel = getNewChannel(resultSink);
-
-                            // Ensure that the channel is closed when the resultSink is disposed
-                            resultSink.onDispose(channel::close);
-
-                            // Send the request through the channel and handle success/error cases
-                            channel.sendRequest(arguments)
-                                    .doOnError(error -> log.error("Error processing request", error))
-                                    .doOnSuccess((ignore) -> log.debug("Request sent successfully"))
-                                    .block();
-                        }
-                )
-        );
+        final REG currentRegistration = registration;
+        if (!currentRegistration.isCached() && !currentRegistration.isCoalesced()) {
+            return toResult(sendRequest(arguments));
+        }
+
+        final String key = SingleFlight.key(currentRegistration.getName(), arguments);
+        if (!currentRegistration.isCached()) {
+            return toResult(singleFlight.execute(key, () -> sendRequest(arguments)));
+        }
+
+        return toResult(requestResponseHandler.getResultCache().get(
+                currentRegistration,
+                key,
+                () -> currentRegistration.isCoalesced()
+                        ? singleFlight.execute(key, () -> sendRequest(arguments))
+                        : sendRequest(arguments)));
+    }
+
+    /**
+     * Converts the response payload into the result type, once per caller.
+     *
+     * @param response The response payload
+     * @return Mono that emits the result of type RES
+     */
+    private Mono<RES> toResult(Mono<ResponsePayload> response) {
+        return response.handle((payload, sink) -> {
+            try {
+                sink.next(resultSupplier.apply(payload));
+            } catch (Exception e) {
+                log.error(ERROR_PROCESSING_RESPONSE, e);
+                sink.error(e);
+            }
+        });
+    }
+
+    /**
+     * Processes a request asynchronously by creating a new channel and sending the request through it.
+     * The method handles the request lifecycle, including channel creation, request sending, and cleanup.
+     * <p>
+     * The whole path is non-blocking: the channel registers its response handler, the Kafka send is
+     * subscribed to, and the caller's thread is released immediately. The result is emitted once the
+     * response is received (or an error occurs).
+     *
+     * @param arguments Map of key-value pairs containing the request parameters
+     * @return Mono that emits the response payload when the request completes
+     */
+    private Mono<ResponsePayload> sendRequest(Map<String, Object> arguments) {
+        return Mono.create(sink -> {
+            if (!available) {
+                sink.error(new AgentUnavailableException(
+                        "No live agent for registration " + registration.getName()));
+                return;
+            }
+
+            // Create new channel for handling request/response communication,
+            // rejected requests fail fast without being produced
+            final RequestResponseChannel channel;
+            try {
+                channel = getNewChannel(sink);
+            } catch (CircuitOpenException | TooManyRequestsException e) {
+                sink.error(e);
+                return;
+            }
+
+            // Ensure that the send is cancelled and the channel closed when the sink is disposed, e.g. when the
+            // caller cancels, so that no request is produced once nobody awaits its response
+            final Disposable.Swap sending = Disposables.swap();
+            sink.onDispose(Disposables.composite(sending, channel::close));
+
+            // Send the request through the channel and handle success/error cases
+            sending.update(channel.sendRequest(arguments)
+                    .subscribe(
+                            idx -> log.debug("Request {} sent successfully", idx),
+                            error -> {
+                                log.error("Error processing request", error);
+                                sink.error(error);
+                            }));
+        });
     }
 
     /**
@@ -119,18 +243,19 @@ public abstract class AbstractRegistrationHandler<REG extends Registration, SRV,
      * @param channel       the channel through which the response was received
      * @param correlationId the correlation ID of the request
      * @param response      the response from the handler
-     * @param sink          the sink to receive the result
+     * @param sink          the sink to receive the response payload
      */
     protected void processResponse(RequestResponseChannel channel,
                                    String correlationId,
-                                   Response response,
-                                   MonoSink<RES> sink) {
+                                   ResponseEnvelope response,
+                                   MonoSink<ResponsePayload> sink) {
         switch (response.getStatus()) {
             case ERROR:
                 handleErrorResponse(correlationId, response, sink);
                 break;
             case COMPLETED:
-                handleCompletedResponse(response.getPayload(), sink);
+                // The payload is handed over undecoded, so that it is only converted once to the result type
+                sink.success(response.getPayload() == null ? EMPTY_PAYLOAD : response.getPayload());
                 break;
             case INPUT_REQUIRED:
                 // Reserved for future implementation of interactive tools
@@ -143,21 +268,6 @@ public abstract class AbstractRegistrationHandler<REG extends Registration, SRV,
         }
     }
 
-    /**
-     * Handles a successful response by creating appropriate tool contents.
-     *
-     * @param payload the response payload
-     * @param sink    the sink to receive the result
-     */
-    private void handleCompletedResponse(Map<String, Object> payload, MonoSink<RES> sink) {
-        try {
-            sink.success(resultSupplier.apply(JsonUtils.toJsonNode(payload)));
-        } catch (Exception e) {
-            log.error(ERROR_PROCESSING_RESPONSE, e);
-            sink.error(e);
-        }
-    }
-
     /**
      * Handles an error response by extracting error details and passing to the
      * sink.
@@ -167,8 +277,8 @@ public abstract class AbstractRegistrationHandler<REG extends Registration, SRV,
      * @param sink          the sink to receive the error
      */
     private void handleErrorResponse(String correlationId,
-                                     Response response,
-                                     MonoSink<RES> sink) {
+                                     ResponseEnvelope response,
+                                     MonoSink<ResponsePayload> sink) {
         final String errorMessage = response.getMessage();
         final Throwable exception = response.getException().toThrowable();
         log.error("Error processing request {}: {}", correlationId, errorMessage);
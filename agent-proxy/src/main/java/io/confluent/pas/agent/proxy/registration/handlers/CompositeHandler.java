@@ -1,21 +1,22 @@
 package io.confluent.pas.agent.proxy.registration.handlers;
 
-import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
-import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
 import io.confluent.pas.agent.common.services.schemas.Registration;
 import io.confluent.pas.agent.common.services.schemas.ResourceRegistration;
+import io.confluent.pas.agent.proxy.registration.CircuitBreaker;
 import io.confluent.pas.agent.proxy.registration.RegistrationCoordinator;
 import io.confluent.pas.agent.proxy.registration.RequestResponseHandler;
+import io.confluent.pas.agent.proxy.registration.ResultCache;
 import io.confluent.pas.agent.proxy.registration.handlers.a2a.A2AHandler;
+import io.confluent.pas.agent.proxy.registration.handlers.mcp.ForwardingToolHandler;
 import io.confluent.pas.agent.proxy.registration.handlers.mcp.McpResourceHandler;
 import io.confluent.pas.agent.proxy.registration.handlers.mcp.McpToolHandler;
 import io.confluent.pas.agent.proxy.registration.handlers.rest.RestHandler;
 import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
+import io.confluent.pas.agent.proxy.registration.schemas.SchemaCache;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
@@ -42,10 +43,10 @@ public class CompositeHandler implements RegistrationHandler {
 
     /**
      * The registration configuration that defines the behavior of this composite
-     * handler
+     * handler, swapped when the registration is updated
      */
     @Getter
-    private final Registration registration;
+    private volatile Registration registration;
 
     /**
      * Handler for processing requests and responses between the agent and clients
@@ -56,7 +57,7 @@ public class CompositeHandler implements RegistrationHandler {
      * Schemas associated with the registration for serialization/deserialization
      */
     @Getter
-    private final RegistrationSchemas schemas;
+    private volatile RegistrationSchemas schemas;
 
     /**
      * The coordinator that manages the lifecycle of registrations
@@ -67,27 +68,53 @@ public class CompositeHandler implements RegistrationHandler {
     @Getter
     private final boolean isResourceRegistration;
 
+    /**
+     * True if the registration is owned by this node, false if its calls are forwarded to its owner
+     */
+    @Getter
+    private final boolean local;
+
+    /**
+     * False while no live agent consumes the requests of the registration
+     */
+    @Getter
+    private volatile boolean available = true;
+
     /**
      * Constructs a new CompositeHandler with the specified components.
      *
      * @param registration           The registration configuration
      * @param requestResponseHandler Handler for processing requests and responses
-     * @param schemaRegistryClient   Client for schema registry interactions
+     * @param schemaCache            Cache of the schemas shared by all the registrations
+     * @param coordinator            The registration coordinator
+     */
+    public CompositeHandler(Registration registration,
+                            RequestResponseHandler requestResponseHandler,
+                            SchemaCache schemaCache,
+                            RegistrationCoordinator coordinator) {
+        this(registration, requestResponseHandler, schemaCache, coordinator, true);
+    }
+
+    /**
+     * Constructs a new CompositeHandler for a registration owned by this node or by another one.
+     *
+     * @param registration           The registration configuration
+     * @param requestResponseHandler Handler for processing requests and responses
+     * @param schemaCache            Cache of the schemas shared by all the registrations
      * @param coordinator            The registration coordinator
-     * @throws RestClientException If there's an error communicating with the schema
-     *                             registry
-     * @throws IOException         If there's an error reading or writing data
+     * @param local                  True if the registration is owned by this node
      */
     public CompositeHandler(Registration registration,
                             RequestResponseHandler requestResponseHandler,
-                            SchemaRegistryClient schemaRegistryClient,
-                            RegistrationCoordinator coordinator)
-            throws RestClientException, IOException {
+                            SchemaCache schemaCache,
+                            RegistrationCoordinator coordinator,
+                            boolean local) {
+        this.local = local;
         this.registration = registration;
         this.isResourceRegistration = registration instanceof ResourceRegistration;
         this.requestResponseHandler = requestResponseHandler;
         this.coordinator = coordinator;
-        this.schemas = new RegistrationSchemas(schemaRegistryClient, registration);
+        this.schemas = new RegistrationSchemas(schemaCache, registration);
     }
 
     /**
@@ -96,7 +123,8 @@ public class CompositeHandler implements RegistrationHandler {
      * For ResourceRegistration types, creates and initializes only an MCP resource
      * handler.
      * For other Registration types, creates and initializes both MCP and REST tool
-     * handlers.
+     * handlers. A tool owned by another node is only listed by the MCP server, its calls
+     * are forwarded to the owner and its REST calls redirected.
      *
      * @return A Mono that completes when all handlers are initialized
      */
@@ -118,6 +146,12 @@ public class CompositeHandler implements RegistrationHandler {
                     () -> new A2AHandler(registration, schemas, requestResponseHandler,
                             coordinator.getA2AAsyncServer()),
                     "A2A handler"));
+        } else if (!local) {
+            // For tools owned by another node, forward the MCP calls to the owner
+            ops.add(registerHandler(
+                    () -> new ForwardingToolHandler(registration, schemas, requestResponseHandler,
+                            coordinator.getMcpServer(), coordinator.getShardManager()),
+                    "MCP forwarding tool handler"));
         } else {
             // For tool registrations, register both MCP and REST tool handlers
             ops.add(registerHandler(
@@ -139,6 +173,83 @@ public class CompositeHandler implements RegistrationHandler {
         return Mono.when(ops);
     }
 
+    /**
+     * Updates all handlers managed by this composite handler in place.
+     * <p>
+     * The handlers stay registered with their servers while the registration is swapped, so the
+     * tool or resource never disappears. The requests in flight complete with the registration they
+     * were sent with. The circuit breaker is kept, the batcher is flushed and recreated with the
+     * settings of the updated registration on the next request, and the cached responses are dropped
+     * as the updated agent may answer differently.
+     *
+     * @param registration The updated registration, of the same type
+     * @param schemas      The schemas of the updated registration
+     * @return A Mono that completes when all handlers are updated
+     */
+    @Override
+    public Mono<Void> update(Registration registration, RegistrationSchemas schemas) {
+        if ((registration instanceof ResourceRegistration) != isResourceRegistration) {
+            return Mono.error(new IllegalArgumentException(
+                    "Cannot change the type of registration " + registration.getName()));
+        }
+
+        final Registration previous = this.registration;
+        this.registration = registration;
+        this.schemas = schemas;
+        requestResponseHandler.removeBatcher(previous);
+        requestResponseHandler.getResultCache().invalidate(previous);
+
+        final List<Mono<Void>> updateOperations = handlers.stream()
+                .map(handler -> handler.update(registration, schemas)
+                        .onErrorResume(error -> {
+                            log.error("Error during handler update", error);
+                            return Mono.empty(); // Continue with other updates even if this one fails
+                        }))
+                .toList();
+
+        return Mono.when(updateOperations);
+    }
+
+    /**
+     * Makes all the handlers available or not. Unavailable tools are hidden from the MCP clients and
+     * the requests to an unavailable registration fail fast.
+     *
+     * @param available false if no live agent consumes the requests
+     * @return A Mono that completes when all handlers applied the availability
+     */
+    @Override
+    public Mono<Void> setAvailable(boolean available) {
+        this.available = available;
+
+        final List<Mono<Void>> operations = handlers.stream()
+                .map(handler -> handler.setAvailable(available)
+                        .onErrorResume(error -> {
+                            log.error("Error changing handler availability", error);
+                            return Mono.empty();
+                        }))
+                .toList();
+
+        return Mono.when(operations);
+    }
+
+    /**
+     * Returns the circuit breaker shared by all the handlers of the registration.
+     *
+     * @return The circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return requestResponseHandler.getCircuitBreaker(registration);
+    }
+
+    /**
+     * Returns the statistics of the cached responses of the registration.
+     *
+     * @return The statistics
+     */
+    public ResultCache.Snapshot getResultCacheSnapshot() {
+        return requestResponseHandler.getResultCache().getSnapshot(registration);
+    }
+
     /**
      * Tears down all handlers managed by this composite handler.
      * <p>
@@ -149,6 +260,12 @@ public class CompositeHandler implements RegistrationHandler {
      */
     @Override
     public Mono<Void> teardown() {
+        // A new registration starts with a closed breaker and its own batching settings
+        requestResponseHandler.removeCircuitBreaker(registration);
+        requestResponseHandler.removeAdmissionState(registration);
+        requestResponseHandler.removeBatcher(registration);
+        requestResponseHandler.getResultCache().remove(registration);
+
         if (handlers.isEmpty()) {
             log.info("No handlers to tear down");
             return Mono.empty();
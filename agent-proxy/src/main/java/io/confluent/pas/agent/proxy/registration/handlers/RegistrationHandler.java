@@ -30,6 +30,24 @@ public interface RegistrationHandler {
      */
     Mono<Void> initialize();
 
+    /**
+     * Updates the tool or resource in place, without removing it from the server.
+     *
+     * @param registration the updated registration, with the same name and type
+     * @param schemas      the schemas of the updated registration
+     * @return a Mono that completes when the update is complete
+     */
+    Mono<Void> update(Registration registration, RegistrationSchemas schemas);
+
+    /**
+     * Makes the tool or resource available or not. The requests to an unavailable tool or resource
+     * fail fast instead of waiting for a response which will never come.
+     *
+     * @param available false if no live agent consumes the requests
+     * @return a Mono that completes when the availability is applied
+     */
+    Mono<Void> setAvailable(boolean available);
+
     /**
      * Teardown the tool or resource with the specified server.
      *
@@ -1,7 +1,6 @@
 package io.confluent.pas.agent.proxy.registration.handlers.a2a;
 
 import io.confluent.pas.agent.common.services.schemas.Registration;
-import io.confluent.pas.agent.common.utils.JsonUtils;
 import io.confluent.pas.agent.proxy.registration.RequestResponseHandler;
 import io.confluent.pas.agent.proxy.registration.handlers.AbstractRegistrationHandler;
 import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
@@ -16,7 +15,8 @@ public class A2AHandler extends AbstractRegistrationHandler<Registration, A2AAsy
                       RegistrationSchemas schemas,
                       RequestResponseHandler requestResponseHandler,
                       A2AAsyncServer asyncServer) {
-        super(registration, schemas, asyncServer, requestResponseHandler, JsonUtils::toMap);
+        super(registration, schemas, asyncServer, requestResponseHandler,
+                (payload) -> payload.asMap(requestResponseHandler.getClaimCheck()));
     }
 
     @Override
@@ -26,6 +26,14 @@ public class A2AHandler extends AbstractRegistrationHandler<Registration, A2AAsy
                 this::onRequest);
     }
 
+    /**
+     * Replaces the agent card and endpoint, the previous ones are served until they are replaced.
+     */
+    @Override
+    public Mono<Void> update(Registration registration, RegistrationSchemas schemas) {
+        return super.update(registration, schemas).then(initialize());
+    }
+
     @Override
     public Mono<Void> teardown() {
         return Mono.empty();
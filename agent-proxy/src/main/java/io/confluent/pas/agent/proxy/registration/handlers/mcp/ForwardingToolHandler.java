@@ -0,0 +1,58 @@
+package io.confluent.pas.agent.proxy.registration.handlers.mcp;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import io.confluent.pas.agent.proxy.registration.RequestResponseHandler;
+import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
+import io.confluent.pas.agent.proxy.registration.sharding.ShardManager;
+import io.modelcontextprotocol.server.McpAsyncServer;
+import io.modelcontextprotocol.spec.McpSchema;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handler for MCP tools owned by another proxy node.
+ * The tool is listed by this node like any other tool, but its calls are forwarded to the owner
+ * instead of being sent to Kafka, so that only the owner consumes the response topic.
+ */
+@Slf4j
+public class ForwardingToolHandler extends McpToolHandler {
+
+    private final ShardManager shardManager;
+
+    /**
+     * Constructs a new ForwardingToolHandler instance.
+     *
+     * @param registration           the tool registration details
+     * @param schemas                the registration schemas used for validation
+     * @param requestResponseHandler the handler for processing requests and
+     *                               responses
+     * @param mcpServer              the MCP server instance
+     * @param shardManager           the shard manager locating the owner of the tool
+     */
+    public ForwardingToolHandler(Registration registration,
+                                 RegistrationSchemas schemas,
+                                 RequestResponseHandler requestResponseHandler,
+                                 McpAsyncServer mcpServer,
+                                 ShardManager shardManager) {
+        super(registration, schemas, requestResponseHandler, mcpServer);
+        this.shardManager = shardManager;
+    }
+
+    /**
+     * Forwards the call to the node owning the tool.
+     *
+     * @param arguments the arguments of the call
+     * @return a Mono emitting the result returned by the owner
+     */
+    @Override
+    protected Mono<McpSchema.CallToolResult> onRequest(Map<String, Object> arguments) {
+        return shardManager.forward(registration.getName(), arguments)
+                .map(response -> new McpSchema.CallToolResult(
+                        List.of(new McpSchema.TextContent(JsonUtils.toJsonNode(response).toString())),
+                        false));
+    }
+}
@@ -1,5 +1,7 @@
 package io.confluent.pas.agent.proxy.registration.handlers.mcp;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.pas.agent.common.services.schemas.Registration;
 import io.confluent.pas.agent.common.services.schemas.ResourceRegistration;
 import io.confluent.pas.agent.common.services.schemas.ResourceResponse;
 import io.confluent.pas.agent.common.utils.JsonUtils;
@@ -16,7 +18,6 @@ import reactor.core.publisher.Mono;
 
 import javax.naming.OperationNotSupportedException;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Handler for Model Context Protocol (MCP) resource registration and request
@@ -45,11 +46,13 @@ public class McpResourceHandler extends AbstractRegistrationHandler<ResourceRegi
                               RequestResponseHandler requestResponseHandler,
                               McpAsyncServer mcpServer) {
         super(registration, schemas, mcpServer, requestResponseHandler, (payload) -> {
+            // The MCP resource contents are strings, the offloaded blob or text cannot be streamed
+            final JsonNode response = payload.asNode(requestResponseHandler.getClaimCheck());
             final ResourceResponse.ResponseType responseType = ResourceResponse.ResponseType.fromValue(
-                    payload.get("type").asText());
+                    response.get("type").asText());
 
             final McpSchema.ResourceContents content = createResourceContents(
-                    JsonUtils.toMap(payload),
+                    response,
                     responseType);
             return new McpSchema.ReadResourceResult(List.of(content));
         });
@@ -76,6 +79,37 @@ public class McpResourceHandler extends AbstractRegistrationHandler<ResourceRegi
         return registrationServer.addResource(createResourceRegistration(annotations));
     }
 
+    /**
+     * Updates the resource in place.
+     * The resource specification delegates to this handler, so the resource is only re-registered,
+     * and the clients notified, if its definition changed.
+     *
+     * @param registration The updated resource registration
+     * @param schemas      The schemas of the updated registration
+     * @return A Mono that completes when the resource has been updated
+     */
+    @Override
+    public Mono<Void> update(Registration registration, RegistrationSchemas schemas) {
+        final McpSchema.Annotations annotations = createAnnotations();
+        final McpSchema.Resource previousResource = createResource(annotations);
+
+        return super.update(registration, schemas)
+                .then(Mono.defer(() -> {
+                    if (createResource(annotations).equals(previousResource)) {
+                        return Mono.empty();
+                    }
+
+                    if (this.registration.isTemplate()) {
+                        log.error(TEMPLATE_NOT_SUPPORTED_MESSAGE);
+                        return Mono.error(new OperationNotSupportedException(TEMPLATE_NOT_SUPPORTED_MESSAGE));
+                    }
+
+                    log.info("Updating resource {}", registration.getName());
+                    return registrationServer.removeResource(previousResource.uri())
+                            .then(registrationServer.addResource(createResourceRegistration(annotations)));
+                }));
+    }
+
     /**
      * Tears down the resource by removing it from the MCP server.
      *
@@ -105,16 +139,24 @@ public class McpResourceHandler extends AbstractRegistrationHandler<ResourceRegi
      * @return The async resource specification
      */
     private McpServerFeatures.AsyncResourceSpecification createResourceRegistration(McpSchema.Annotations annotations) {
-        McpSchema.Resource resource = new McpSchema.Resource(
+        return new McpServerFeatures.AsyncResourceSpecification(
+                createResource(annotations),
+                (exchange, rcsRequest) -> onRequest(JsonUtils.toMap(rcsRequest)));
+    }
+
+    /**
+     * Creates the MCP resource definition.
+     *
+     * @param annotations The annotations to apply to the resource
+     * @return The resource definition
+     */
+    private McpSchema.Resource createResource(McpSchema.Annotations annotations) {
+        return new McpSchema.Resource(
                 registration.getUrl(),
                 registration.getName(),
                 registration.getDescription(),
                 registration.getMimeType(),
                 annotations);
-
-        return new McpServerFeatures.AsyncResourceSpecification(
-                resource,
-                (exchange, rcsRequest) -> onRequest(JsonUtils.toMap(rcsRequest)));
     }
 
     /**
@@ -126,7 +168,7 @@ public class McpResourceHandler extends AbstractRegistrationHandler<ResourceRegi
      * @return The created resource contents
      */
     private static McpSchema.ResourceContents createResourceContents(
-            Map<String, Object> response,
+            JsonNode response,
             ResourceResponse.ResponseType responseType) {
 
         if (responseType == ResourceResponse.ResponseType.BLOB) {
@@ -142,7 +184,7 @@ public class McpResourceHandler extends AbstractRegistrationHandler<ResourceRegi
      * @param response The response payload
      * @return The blob resource contents
      */
-    private static McpSchema.BlobResourceContents createBlobContents(Map<String, Object> response) {
+    private static McpSchema.BlobResourceContents createBlobContents(JsonNode response) {
         BlobResourceResponse resource = JsonUtils.toObject(response, BlobResourceResponse.class);
         return new McpSchema.BlobResourceContents(
                 resource.getUri(),
@@ -156,7 +198,7 @@ public class McpResourceHandler extends AbstractRegistrationHandler<ResourceRegi
      * @param response The response payload
      * @return The text resource contents
      */
-    private static McpSchema.TextResourceContents createTextContents(Map<String, Object> response) {
+    private static McpSchema.TextResourceContents createTextContents(JsonNode response) {
         TextResourceResponse resource = JsonUtils.toObject(response, TextResourceResponse.class);
         return new McpSchema.TextResourceContents(
                 resource.getUri(),
@@ -1,8 +1,6 @@
 package io.confluent.pas.agent.proxy.registration.handlers.mcp;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import io.confluent.pas.agent.common.services.schemas.Registration;
-import io.confluent.pas.agent.common.utils.JsonUtils;
 import io.confluent.pas.agent.proxy.registration.RequestResponseHandler;
 import io.confluent.pas.agent.proxy.registration.handlers.AbstractRegistrationHandler;
 import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
@@ -37,15 +35,11 @@ public class McpToolHandler extends AbstractRegistrationHandler<Registration, Mc
                           RegistrationSchemas schemas,
                           RequestResponseHandler requestResponseHandler,
                           McpAsyncServer mcpServer) {
-        super(registration, schemas, mcpServer, requestResponseHandler, (payload) -> {
-            try {
-                final String result = JsonUtils.toString(payload);
-                return new McpSchema.CallToolResult(List.of(new McpSchema.TextContent(result)), false);
-            } catch (JsonProcessingException e) {
-                log.error("Failed to convert response payload to string: {}", e.getMessage());
-                throw new RuntimeException(e);
-            }
-        });
+        // The raw JSON payload is used as is for the text content, it is only parsed to load its offloaded
+        // fields: the MCP content is a string, they cannot be streamed
+        super(registration, schemas, mcpServer, requestResponseHandler, (payload) ->
+                new McpSchema.CallToolResult(List.of(new McpSchema.TextContent(
+                        payload.asString(requestResponseHandler.getClaimCheck()))), false));
     }
 
     /**
@@ -65,6 +59,59 @@ public class McpToolHandler extends AbstractRegistrationHandler<Registration, Mc
         return registrationServer.addTool(toolRegistration);
     }
 
+    /**
+     * Updates the tool in place.
+     * The tool specification delegates to this handler, so the tool is only re-registered, and the
+     * clients notified, if its definition changed. The MCP server rejects a tool whose name is
+     * already registered, the previous definition therefore has to be removed first. A hidden tool
+     * is only updated, it is registered again with its new definition once available.
+     *
+     * @param registration the updated registration
+     * @param schemas      the schemas of the updated registration
+     * @return a Mono that completes when the update is done
+     */
+    @Override
+    public Mono<Void> update(Registration registration, RegistrationSchemas schemas) {
+        final McpSchema.Tool previousTool = createToolSchema();
+
+        return super.update(registration, schemas)
+                .then(Mono.defer(() -> {
+                    final McpSchema.Tool tool = createToolSchema();
+                    if (!available || tool.equals(previousTool)) {
+                        return Mono.empty();
+                    }
+
+                    log.info("Updating tool {}", registration.getName());
+                    return registrationServer.removeTool(registration.getName())
+                            .then(registrationServer.addTool(createToolSpecification(tool)));
+                }));
+    }
+
+    /**
+     * Hides the tool from the MCP clients while no live agent consumes its requests, and lists it
+     * again once an agent is back.
+     *
+     * @param available false if no live agent consumes the requests
+     * @return a Mono that completes when the tool is removed or added
+     */
+    @Override
+    public Mono<Void> setAvailable(boolean available) {
+        if (available == this.available) {
+            return Mono.empty();
+        }
+
+        return super.setAvailable(available)
+                .then(Mono.defer(() -> {
+                    if (available) {
+                        log.info("Listing tool {} again, an agent is available", registration.getName());
+                        return registrationServer.addTool(createToolSpecification(createToolSchema()));
+                    }
+
+                    log.info("Hiding tool {}, no agent is available", registration.getName());
+                    return registrationServer.removeTool(registration.getName());
+                }));
+    }
+
     /**
      * Creates the tool schema definition for MCP.
      *
@@ -96,6 +143,11 @@ public class McpToolHandler extends AbstractRegistrationHandler<Registration, Mc
      */
     @Override
     public Mono<Void> teardown() {
+        if (!available) {
+            // The tool is already hidden
+            return Mono.empty();
+        }
+
         log.info("Removing tool {}", registration.getName());
         return registrationServer.removeTool(registration.getName());
     }
@@ -1,9 +1,9 @@
 package io.confluent.pas.agent.proxy.registration.handlers.rest;
 
 import io.confluent.pas.agent.common.services.schemas.Registration;
-import io.confluent.pas.agent.common.utils.JsonUtils;
 import io.confluent.pas.agent.proxy.registration.RequestResponseHandler;
 import io.confluent.pas.agent.proxy.registration.handlers.AbstractRegistrationHandler;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponsePayload;
 import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
 import io.confluent.pas.agent.proxy.rest.agents.AgentAsyncServer;
 import lombok.extern.slf4j.Slf4j;
@@ -18,7 +18,7 @@ public class RestHandler extends AbstractRegistrationHandler<Registration, Agent
                        RegistrationSchemas schemas,
                        RequestResponseHandler requestResponseHandler,
                        AgentAsyncServer agentAsyncServer) {
-        super(registration, schemas, agentAsyncServer, requestResponseHandler, JsonUtils::toMap);
+        super(registration, schemas, agentAsyncServer, requestResponseHandler, ResponsePayload::asMap);
     }
 
     @Override
@@ -29,8 +29,16 @@ public class RestHandler extends AbstractRegistrationHandler<Registration, Agent
                 this::onRequest);
     }
 
+    /**
+     * Replaces the endpoint, the previous one is served until it is replaced.
+     */
+    @Override
+    public Mono<Void> update(Registration registration, RegistrationSchemas schemas) {
+        return super.update(registration, schemas).then(initialize());
+    }
+
     @Override
     public Mono<Void> teardown() {
-        return null;
+        return registrationServer.removeRegistration(registration.getName());
     }
 }
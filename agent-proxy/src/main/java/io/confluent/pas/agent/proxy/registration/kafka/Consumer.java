@@ -2,22 +2,34 @@ package io.confluent.pas.agent.proxy.registration.kafka;
 
 import io.confluent.pas.agent.common.services.KafkaConfiguration;
 import io.confluent.pas.agent.common.services.KafkaPropertiesFactory;
-import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.Deserializer;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Consumer class for managing Kafka topic subscriptions and message processing.
+ * <p>
+ * Partitions of the response topics are assigned manually and incrementally, no consumer group
+ * rebalance is involved when a topic is added or removed. Newly assigned partitions are positioned
+ * at their end before the topic is reported as ready through {@link #whenReady(String)}, so that
+ * any message produced after readiness is guaranteed to be consumed. The {@link ReplyRouting}
+ * decides which partitions of each topic are assigned to this instance.
  *
  * @param <K> Key type for Kafka messages
  * @param <V> Value type for Kafka messages
@@ -25,39 +37,39 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class Consumer<K, V> implements Closeable {
 
-    @FunctionalInterface
-    public interface TimeoutChecker {
-        void checkTimeouts(long lastCheck);
-    }
+    private static final Duration PARTITION_LOOKUP_TIMEOUT = Duration.ofSeconds(5);
+    private static final long PARTITION_LOOKUP_BACKOFF_MS = 500;
 
     private final ExecutorService executorSvc = Executors.newSingleThreadExecutor();
     private final KafkaConsumer<K, V> kafkaConsumer;
 
     private final ConsumerHandler<K, V> consumerHandler;
-    private final List<String> topics = Collections.synchronizedList(new ArrayList<>());
-    private final TimeoutChecker timeoutChecker;
+    private final ReplyRouting replyRouting;
+    // Subscribed topics with their readiness
+    private final Map<String, CompletableFuture<Void>> topics = new ConcurrentHashMap<>();
+    // Partitions currently assigned per topic, only updated from the polling thread
+    private final Map<String, List<TopicPartition>> assignedTopics = new ConcurrentHashMap<>();
     private volatile boolean subscriptionUpdated = false;
     private volatile boolean stopRequested = false;
+    private long nextPartitionLookup = 0;
 
     /**
-     * Constructs a Consumer instance with the specified Kafka configuration and
-     * message types.
+     * Constructs a Consumer instance with the specified Kafka configuration, deserializers
+     * and reply routing.
      *
      * @param kafkaConfiguration Kafka configuration containing connection and auth details
-     * @param requestClass       Class type for message values
-     * @param timeoutChecker     The timeout checker to use
+     * @param keyDeserializer    Deserializer for message keys
+     * @param valueDeserializer  Deserializer for message values
+     * @param replyRouting       Routing deciding which partitions are consumed
      */
     public Consumer(KafkaConfiguration kafkaConfiguration,
-            Class<V> requestClass,
+            Deserializer<K> keyDeserializer,
+            Deserializer<V> valueDeserializer,
             ConsumerHandler<K, V> consumerHandler,
-            TimeoutChecker timeoutChecker) {
+            ReplyRouting replyRouting) {
         this(consumerHandler,
-                new KafkaConsumer<>(KafkaPropertiesFactory.getConsumerProperties(
-                        kafkaConfiguration,
-                        false,
-                        Key.class,
-                        requestClass)),
-                timeoutChecker);
+                new KafkaConsumer<>(getConsumerProperties(kafkaConfiguration), keyDeserializer, valueDeserializer),
+                replyRouting);
     }
 
     /**
@@ -65,34 +77,49 @@ public class Consumer<K, V> implements Closeable {
      *
      * @param consumerHandler The handler to process messages
      * @param kafkaConsumer   The Kafka consumer to use
-     * @param timeoutChecker  The timeout checker to use
+     */
+    public Consumer(ConsumerHandler<K, V> consumerHandler,
+            KafkaConsumer<K, V> kafkaConsumer) {
+        this(consumerHandler, kafkaConsumer, ReplyRouting.shared());
+    }
+
+    /**
+     * Constructs a Consumer instance with the specified Kafka consumer, handler and reply routing.
+     *
+     * @param consumerHandler The handler to process messages
+     * @param kafkaConsumer   The Kafka consumer to use
+     * @param replyRouting    Routing deciding which partitions are consumed
      */
     public Consumer(ConsumerHandler<K, V> consumerHandler,
             KafkaConsumer<K, V> kafkaConsumer,
-            TimeoutChecker timeoutChecker) {
+            ReplyRouting replyRouting) {
         this.kafkaConsumer = kafkaConsumer;
         this.consumerHandler = consumerHandler;
-        this.timeoutChecker = timeoutChecker;
+        this.replyRouting = replyRouting;
 
         executorSvc.submit(this::runLoop);
     }
 
     public boolean isSubscribed(String topic) {
-        return topics.contains(topic);
+        return topics.containsKey(topic);
     }
 
     /**
-     * Subscribes to a Kafka topic with the specified handler.
+     * Subscribes to a Kafka topic with the specified handler. Subscribing to a topic already
+     * subscribed has no effect, concurrent first requests on a topic share the same subscription.
      *
      * @param topic The topic to subscribe to
+     * @return A future completing when the topic is ready to be consumed
      */
-    public void subscribe(String topic) {
-        if (topics.contains(topic)) {
-            throw new IllegalArgumentException("Subscription already exists for topic: " + topic);
+    public CompletableFuture<Void> subscribe(String topic) {
+        final CompletableFuture<Void> readiness = new CompletableFuture<>();
+        final CompletableFuture<Void> existing = topics.putIfAbsent(topic, readiness);
+        if (existing != null) {
+            return existing.copy();
         }
 
-        topics.add(topic);
         subscriptionUpdated = true;
+        return readiness.copy();
     }
 
     /**
@@ -101,7 +128,7 @@ public class Consumer<K, V> implements Closeable {
      * @param topicsToAdd The topics to subscribe to
      */
     public void subscribe(Collection<String> topicsToAdd) {
-        topics.addAll(topicsToAdd);
+        topicsToAdd.forEach(topic -> topics.putIfAbsent(topic, new CompletableFuture<>()));
         subscriptionUpdated = true;
     }
 
@@ -111,10 +138,46 @@ public class Consumer<K, V> implements Closeable {
      * @param topic The topic to unsubscribe from
      */
     public void unsubscribe(String topic) {
-        topics.remove(topic);
+        final CompletableFuture<Void> readiness = topics.remove(topic);
+        if (readiness != null) {
+            readiness.completeExceptionally(new IllegalStateException("Unsubscribed from topic: " + topic));
+        }
+
         subscriptionUpdated = true;
     }
 
+    /**
+     * Returns a future completing once the partitions of the topic are assigned and positioned.
+     *
+     * @param topic The subscribed topic
+     * @return A future completing when the topic is ready to be consumed
+     */
+    public CompletableFuture<Void> whenReady(String topic) {
+        final CompletableFuture<Void> readiness = topics.get(topic);
+        if (readiness == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Not subscribed to topic: " + topic));
+        }
+
+        // Callers get a copy so that they cannot complete or cancel the shared future
+        return readiness.copy();
+    }
+
+    /**
+     * Returns the partition responses must be produced to for this instance to receive them.
+     * Only meaningful once the topic is ready.
+     *
+     * @param topic The subscribed topic
+     * @return The reply partition, null when all the partitions are consumed
+     */
+    public Integer getReplyPartition(String topic) {
+        if (replyRouting.getMode() == ReplyRouting.Mode.SHARED) {
+            return null;
+        }
+
+        final List<TopicPartition> partitions = assignedTopics.get(topic);
+        return partitions == null || partitions.isEmpty() ? null : partitions.getFirst().partition();
+    }
+
     /**
      * Closes the consumer, stopping the polling loop and releasing resources.
      *
@@ -144,11 +207,9 @@ public class Consumer<K, V> implements Closeable {
     void runLoop() {
         log.info("Starting Consumer Service");
 
-        long lastCheck = System.currentTimeMillis();
-
         while (!stopRequested) {
-            updateSubscriptions();
-            if (topics.isEmpty()) {
+            updateAssignment();
+            if (assignedTopics.isEmpty()) {
                 try {
                     Thread.sleep(100);
                 } catch (InterruptedException e) {
@@ -162,19 +223,8 @@ public class Consumer<K, V> implements Closeable {
             try {
                 var records = kafkaConsumer.poll(Duration.ofMillis(100));
 
-                // Process the records before checking for timeouts
+                // Timeouts are handled by the ConsumerService scheduler, the loop only delivers records
                 records.forEach(this::processRecord);
-
-                try {
-                    // Check for timeouts in the registered handlers
-                    timeoutChecker.checkTimeouts(lastCheck);
-
-                    // Update the last check time
-                    lastCheck = System.currentTimeMillis();
-                } catch (Exception e) {
-                    log.error("Error checking timeouts", e);
-                }
-
             } catch (WakeupException e) {
                 if (!stopRequested) {
                     log.error("Unexpected WakeupException", e);
@@ -189,18 +239,95 @@ public class Consumer<K, V> implements Closeable {
     }
 
     /**
-     * Updates the Kafka topic subscriptions based on the current handlers.
+     * Updates the partition assignment based on the subscribed topics. Only the partitions of
+     * added topics are positioned, the ones already assigned keep their position. Topics whose
+     * partitions cannot be found yet are retried after a backoff.
      */
-    private void updateSubscriptions() {
-        if (subscriptionUpdated) {
-            log.info("Updating subscriptions");
-            kafkaConsumer.unsubscribe();
-            if (!topics.isEmpty()) {
-                kafkaConsumer.subscribe(topics);
+    private void updateAssignment() {
+        final long now = System.currentTimeMillis();
+        final boolean retryLookup = nextPartitionLookup > 0 && now >= nextPartitionLookup;
+        if (!subscriptionUpdated && !retryLookup) {
+            return;
+        }
+
+        subscriptionUpdated = false;
+        nextPartitionLookup = 0;
+
+        final boolean removed = assignedTopics.keySet().removeIf(topic -> !topics.containsKey(topic));
+
+        final Map<String, List<TopicPartition>> addedTopics = new HashMap<>();
+        for (String topic : topics.keySet()) {
+            if (assignedTopics.containsKey(topic)) {
+                continue;
+            }
+
+            final List<TopicPartition> partitions = lookupPartitions(topic);
+            if (partitions.isEmpty()) {
+                log.warn("No partitions found for topic: {}, retrying later", topic);
+                nextPartitionLookup = now + PARTITION_LOOKUP_BACKOFF_MS;
             } else {
-                log.info("No topics to subscribe to");
+                addedTopics.put(topic, partitions);
             }
-            subscriptionUpdated = false;
+        }
+
+        if (removed || !addedTopics.isEmpty()) {
+            assignedTopics.putAll(addedTopics);
+            final List<TopicPartition> newPartitions = addedTopics.values()
+                    .stream()
+                    .flatMap(List::stream)
+                    .toList();
+
+            try {
+                log.info("Updating assignment, adding partitions: {}", newPartitions);
+                kafkaConsumer.assign(assignedTopics.values()
+                        .stream()
+                        .flatMap(List::stream)
+                        .toList());
+
+                if (!newPartitions.isEmpty()) {
+                    // Only responses produced from now on are of interest. The position is resolved
+                    // eagerly, seekToEnd alone is lazy and would leave a window for lost responses.
+                    kafkaConsumer.seekToEnd(newPartitions);
+                    newPartitions.forEach(kafkaConsumer::position);
+                }
+            } catch (KafkaException e) {
+                log.error("Failed to assign partitions, retrying later", e);
+                addedTopics.keySet().forEach(assignedTopics::remove);
+                subscriptionUpdated = true;
+                nextPartitionLookup = now + PARTITION_LOOKUP_BACKOFF_MS;
+                return;
+            }
+        }
+
+        // A topic may have been removed and subscribed again while still assigned
+        assignedTopics.keySet().forEach(topic -> {
+            final CompletableFuture<Void> readiness = topics.get(topic);
+            if (readiness != null) {
+                readiness.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Looks up the partitions of a topic.
+     *
+     * @param topic The topic
+     * @return The partitions of the topic, empty if the topic is not known yet
+     */
+    private List<TopicPartition> lookupPartitions(String topic) {
+        try {
+            final List<PartitionInfo> partitions = kafkaConsumer.partitionsFor(topic, PARTITION_LOOKUP_TIMEOUT);
+            if (partitions == null) {
+                return List.of();
+            }
+
+            return replyRouting.selectPartitions(partitions.stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .sorted(Comparator.comparingInt(TopicPartition::partition))
+                    .toList());
+        } catch (KafkaException e) {
+            log.warn("Failed to lookup partitions for topic: {}", topic, e);
+            return List.of();
         }
     }
 
@@ -210,16 +337,36 @@ public class Consumer<K, V> implements Closeable {
      * @param record The Kafka record to process
      */
     void processRecord(ConsumerRecord<K, V> record) {
-        if (!topics.contains(record.topic())) {
+        if (!topics.containsKey(record.topic())) {
             log.warn("Received message from unregistered topic: {}", record.topic());
             return;
         }
 
         try {
             log.info("Processing message from topic: {}", record.topic());
-            consumerHandler.onMessage(record.topic(), record.key(), record.value());
+            consumerHandler.onMessage(record);
         } catch (Exception e) {
             log.error("Failed to process message", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates the consumer properties. Offsets are never committed, the partitions are
+     * positioned at their end when assigned. The deserializers are provided to the consumer
+     * directly.
+     *
+     * @param kafkaConfiguration Kafka configuration containing connection and auth details
+     * @return The consumer properties
+     */
+    private static Properties getConsumerProperties(KafkaConfiguration kafkaConfiguration) {
+        final Properties properties = KafkaPropertiesFactory.getConsumerProperties(
+                kafkaConfiguration,
+                false,
+                null,
+                byte[].class);
+        properties.remove(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG);
+        properties.remove(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG);
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        return properties;
+    }
+}
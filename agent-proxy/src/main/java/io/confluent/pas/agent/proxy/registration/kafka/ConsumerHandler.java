@@ -1,5 +1,7 @@
 package io.confluent.pas.agent.proxy.registration.kafka;
 
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
 /**
  * Consumer Service Handler interface.
  *
@@ -11,9 +13,7 @@ public interface ConsumerHandler<K, V> {
     /**
      * Handles the received message.
      *
-     * @param topic Topic name
-     * @param key   Message key
-     * @param value Message value
+     * @param record The received record, giving access to the topic, key, value and headers
      */
-    void onMessage(String topic, K key, V value);
+    void onMessage(ConsumerRecord<K, V> record);
 }
\ No newline at end of file
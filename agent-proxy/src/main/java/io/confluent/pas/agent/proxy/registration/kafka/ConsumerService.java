@@ -1,16 +1,28 @@
 package io.confluent.pas.agent.proxy.registration.kafka;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.kafka.serializers.json.KafkaJsonSchemaDeserializer;
 import io.confluent.pas.agent.common.services.KafkaConfiguration;
+import io.confluent.pas.agent.common.services.KafkaPropertiesFactory;
 import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.common.utils.ShardedExecutor;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.Deserializer;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import io.confluent.pas.agent.proxy.registration.kafka.exceptions.TimeoutException;
@@ -39,7 +51,7 @@ public class ConsumerService implements Closeable {
          *
          * @param response The response message to handle
          */
-        void handle(JsonNode response);
+        void handle(ResponseEnvelope response);
     }
 
     /**
@@ -61,12 +73,16 @@ public class ConsumerService implements Closeable {
      * @param responseHandler Handler for processing response messages
      * @param errorHandler    Handler for processing errors that occur during
      *                        message handling
-     * @param expiredAt       The timestamp when the handler will expire
+     * @param timeout         The timeout scheduled to expire the handler
+     * @param registeredAt    When the handler was registered, in nanoseconds
+     * @param deadline        When the handler expires, in milliseconds since the epoch
      */
     public record RegistrationHandler(
             ResponseHandler responseHandler,
             ErrorHandler errorHandler,
-            long expiredAt) {
+            TimeoutScheduler.Timeout timeout,
+            long registeredAt,
+            long deadline) {
     }
 
     /**
@@ -75,10 +91,13 @@ public class ConsumerService implements Closeable {
      *
      * @param registration         The service registration details
      * @param registrationHandlers Map of correlation IDs to their handlers
+     * @param draining             Set once the registration is no longer served by this instance, the topic is
+     *                             unsubscribed when its last handler completes or times out
      */
     public record RegistrationItem(
             Registration registration,
-            Map<String, RegistrationHandler> registrationHandlers) {
+            Map<String, RegistrationHandler> registrationHandlers,
+            AtomicBoolean draining) {
     }
 
     /**
@@ -88,40 +107,117 @@ public class ConsumerService implements Closeable {
     @Getter
     private final Map<String, RegistrationItem> responseHandlers = new ConcurrentHashMap<>();
 
-    private final long responseTimeout;
+    private final ResponseTimeoutPolicy timeoutPolicy;
 
     /**
-     * The Kafka consumer used to receive messages.
+     * The scheduler used to expire handlers waiting for a response.
      */
-    private final Consumer<Key, JsonNode> consumer;
+    private final TimeoutScheduler timeoutScheduler;
+
+    /**
+     * The Kafka consumer used to receive messages. Records are kept as raw bytes until a
+     * handler is found for their correlation ID.
+     */
+    private final Consumer<byte[], byte[]> consumer;
+
+    /**
+     * Executor dispatching the responses to their handlers, sharded by correlation ID so that
+     * the polling thread only polls.
+     */
+    private final ShardedExecutor dispatcher;
+
+    /**
+     * Deserializer for the keys of the responses not carrying the correlation ID header.
+     */
+    private final Deserializer<Key> keyDeserializer;
+
+    /**
+     * Decoder for the responses, only applied to the ones with a handler.
+     */
+    private final Deserializer<ResponseEnvelope> valueDeserializer;
+
+    /**
+     * Optional collaborators of the service. The defaults consume the shared reply partitions, dispatch
+     * the responses on the polling thread and wait a fixed time for each response.
+     *
+     * @param replyRouting     Routing deciding which response partitions are consumed, only used when the
+     *                         service creates its own consumer
+     * @param dispatcher       Executor dispatching the responses to their handlers
+     * @param timeoutScheduler Creates the scheduler used to expire handlers, closed with the service
+     * @param timeoutPolicy    Decides how long each request waits for its response
+     */
+    public record Options(ReplyRouting replyRouting,
+                          ShardedExecutor dispatcher,
+                          Supplier<TimeoutScheduler> timeoutScheduler,
+                          ResponseTimeoutPolicy timeoutPolicy) {
+
+        /**
+         * @param responseTimeout The maximum time to wait for a response before timing out
+         */
+        public static Options defaults(long responseTimeout) {
+            return new Options(
+                    ReplyRouting.shared(),
+                    ShardedExecutor.direct(),
+                    TimeoutScheduler::new,
+                    ResponseTimeoutPolicy.fixed(responseTimeout));
+        }
+
+        public Options withReplyRouting(ReplyRouting replyRouting) {
+            return new Options(replyRouting, dispatcher, timeoutScheduler, timeoutPolicy);
+        }
+
+        public Options withDispatcher(ShardedExecutor dispatcher) {
+            return new Options(replyRouting, dispatcher, timeoutScheduler, timeoutPolicy);
+        }
+
+        public Options withTimeoutScheduler(Supplier<TimeoutScheduler> timeoutScheduler) {
+            return new Options(replyRouting, dispatcher, timeoutScheduler, timeoutPolicy);
+        }
+
+        public Options withTimeoutPolicy(ResponseTimeoutPolicy timeoutPolicy) {
+            return new Options(replyRouting, dispatcher, timeoutScheduler, timeoutPolicy);
+        }
+    }
 
     /**
      * Creates a new ConsumerService with the specified Kafka configuration.
      *
      * @param kafkaConfiguration The Kafka configuration to use
-     * @param responseTimeout    The maximum time to wait for a response before
-     *                           timing out
+     * @param options            Reply routing, dispatcher, timeout scheduler and timeout policy of the service
      */
-    public ConsumerService(KafkaConfiguration kafkaConfiguration, long responseTimeout) {
+    public ConsumerService(KafkaConfiguration kafkaConfiguration, Options options) {
         this.consumer = new Consumer<>(
                 kafkaConfiguration,
-                JsonNode.class,
+                new ByteArrayDeserializer(),
+                new ByteArrayDeserializer(),
                 this::handleResponse,
-                this::checkTimeouts);
-        this.responseTimeout = responseTimeout;
+                options.replyRouting());
+        this.keyDeserializer = createDeserializer(kafkaConfiguration, Key.class, true);
+        this.valueDeserializer = new ResponseEnvelopeDeserializer();
+        this.dispatcher = options.dispatcher();
+        this.timeoutScheduler = options.timeoutScheduler().get();
+        this.timeoutPolicy = options.timeoutPolicy();
     }
 
     /**
      * Creates a new ConsumerService with the specified consumer.
      * Primarily used for testing with mock consumers.
      *
-     * @param consumer        The consumer to use
-     * @param responseTimeout The maximum time to wait for a response before
-     *                        timing out
+     * @param consumer          The consumer to use
+     * @param keyDeserializer   The deserializer for keys
+     * @param valueDeserializer The deserializer for values
+     * @param options           Dispatcher, timeout scheduler and timeout policy of the service
      */
-    public ConsumerService(Consumer<Key, JsonNode> consumer, long responseTimeout) {
+    public ConsumerService(Consumer<byte[], byte[]> consumer,
+                           Deserializer<Key> keyDeserializer,
+                           Deserializer<ResponseEnvelope> valueDeserializer,
+                           Options options) {
         this.consumer = Objects.requireNonNull(consumer, "Consumer must not be null");
-        this.responseTimeout = responseTimeout;
+        this.dispatcher = Objects.requireNonNull(options.dispatcher(), "Dispatcher must not be null");
+        this.keyDeserializer = Objects.requireNonNull(keyDeserializer, "KeyDeserializer must not be null");
+        this.valueDeserializer = Objects.requireNonNull(valueDeserializer, "ValueDeserializer must not be null");
+        this.timeoutPolicy = Objects.requireNonNull(options.timeoutPolicy(), "TimeoutPolicy must not be null");
+        this.timeoutScheduler = Objects.requireNonNull(options.timeoutScheduler().get(), "TimeoutScheduler must not be null");
     }
 
     /**
@@ -143,8 +239,100 @@ public class ConsumerService implements Closeable {
         consumer.subscribe(topics);
     }
 
+    /**
+     * Unsubscribes from the response topic of a registration no longer served by this instance.
+     * The topic is kept while responses are still expected on it, it is drained: the pending requests
+     * time out or complete normally, and the topic is unsubscribed once the last one is done.
+     *
+     * @param registration The service registration details
+     */
+    public void removeRegistration(Registration registration) {
+        Objects.requireNonNull(registration, "Registration must not be null");
+
+        final String responseTopic = registration.getResponseTopicName();
+        final RegistrationItem registrationItem = responseHandlers.get(responseTopic);
+        if (registrationItem == null) {
+            log.info("Unsubscribing from response topic: {}", responseTopic);
+            timeoutPolicy.remove(registration);
+            consumer.unsubscribe(responseTopic);
+            return;
+        }
+
+        log.info("Draining response topic: {}", responseTopic);
+        registrationItem.draining().set(true);
+        unsubscribeIfDrained(responseTopic);
+    }
+
+    /**
+     * Unsubscribes from a draining response topic once no response is expected on it anymore. Runs under
+     * the lock of the topic entry, so that a handler registered meanwhile either keeps the topic or
+     * subscribes to it again.
+     *
+     * @param responseTopic The response topic
+     */
+    private void unsubscribeIfDrained(String responseTopic) {
+        responseHandlers.computeIfPresent(responseTopic, (topic, item) -> {
+            if (!item.draining().get() || !item.registrationHandlers().isEmpty()) {
+                return item;
+            }
+
+            log.info("Unsubscribing from drained response topic: {}", topic);
+            timeoutPolicy.remove(item.registration());
+            consumer.unsubscribe(topic);
+            return null;
+        });
+    }
+
+    /**
+     * Returns a future completing once the response topic of the registration is assigned and
+     * positioned, i.e. once a response produced from now on is guaranteed to be received.
+     *
+     * @param registration The service registration details
+     * @return A future completing when the response topic is ready
+     */
+    public CompletableFuture<Void> whenResponseTopicReady(Registration registration) {
+        Objects.requireNonNull(registration, "Registration must not be null");
+
+        return consumer.whenReady(registration.getResponseTopicName());
+    }
+
+    /**
+     * Returns a percentile of the response latencies recently observed by a registration.
+     *
+     * @param registration The service registration details
+     * @param percentile   The percentile, e.g. 0.95
+     * @return The latency in milliseconds, -1 until enough responses have been received
+     */
+    public long getLatencyPercentile(Registration registration, double percentile) {
+        return timeoutPolicy.getLatencyPercentile(registration, percentile);
+    }
+
+    /**
+     * Creates the key of a request, carrying the reply partition when responses are routed
+     * to this instance, and the deadline of the response handler registered for the correlation ID.
+     *
+     * @param registration  The service registration details
+     * @param correlationId The correlation ID of the request
+     * @return The request key
+     */
+    public Key createKey(Registration registration, String correlationId) {
+        Objects.requireNonNull(registration, "Registration must not be null");
+
+        final Key key = new Key(correlationId, consumer.getReplyPartition(registration.getResponseTopicName()));
+        final RegistrationItem item = responseHandlers.get(registration.getResponseTopicName());
+        final RegistrationHandler handler = item == null || correlationId == null
+                ? null
+                : item.registrationHandlers().get(correlationId.toLowerCase());
+        if (handler != null) {
+            key.setDeadline(handler.deadline());
+        }
+
+        return key;
+    }
+
     /**
      * Registers a handler for responses with a specific correlation ID.
+     * The handler expires after the timeout given by the timeout policy for the registration.
      *
      * @param registration  The service registration details
      * @param correlationId The correlation ID to associate with the handler
@@ -169,28 +357,39 @@ public class ConsumerService implements Closeable {
         log.info("Registering response handler for topic: {} with correlation ID: {}",
                 responseTopic, normalizedCorrelationId);
 
-        // Subscribe to the topic if not already subscribed
-        if (!consumer.isSubscribed(responseTopic)) {
-            log.debug("Subscribing to response topic: {}", responseTopic);
-            consumer.subscribe(responseTopic);
-        }
-
         // Add the handler to the map, creating a new registration item if necessary
         responseHandlers.compute(responseTopic, (topic, existingItem) -> {
             if (existingItem == null) {
                 log.debug("Creating new registration item for topic: {}", responseTopic);
-                existingItem = new RegistrationItem(registration, new ConcurrentHashMap<>());
+                existingItem = new RegistrationItem(registration, new ConcurrentHashMap<>(), new AtomicBoolean());
+            } else {
+                // The registration is served again, keep its topic
+                existingItem.draining().set(false);
             }
 
-            Map<String, RegistrationHandler> handlers = existingItem.registrationHandlers();
-            if (handlers.containsKey(normalizedCorrelationId)) {
+            // Subscribe to the topic, a no-op if already subscribed. Done under the lock of the entry so
+            // that it cannot be undone by the unsubscription of a drained topic
+            consumer.subscribe(responseTopic);
+
+            final Map<String, RegistrationHandler> handlers = existingItem.registrationHandlers();
+            final long registeredAt = System.nanoTime();
+            final long responseTimeout = timeoutPolicy.getTimeout(registration);
+            final TimeoutScheduler.Timeout timeout = timeoutScheduler.schedule(
+                    expired -> onTimeout(registration, normalizedCorrelationId, handlers, expired),
+                    responseTimeout,
+                    TimeUnit.MILLISECONDS);
+
+            final RegistrationHandler previous = handlers.put(normalizedCorrelationId, new RegistrationHandler(
+                    handler,
+                    errorHandler,
+                    timeout,
+                    registeredAt,
+                    System.currentTimeMillis() + responseTimeout));
+            if (previous != null) {
                 log.warn("Overwriting existing handler for correlation ID: {}", normalizedCorrelationId);
+                previous.timeout().cancel();
             }
 
-            final long expiredAt = System.currentTimeMillis() + responseTimeout;
-            handlers.put(normalizedCorrelationId,
-                    new RegistrationHandler(handler, errorHandler, expiredAt));
-
             return existingItem;
         });
     }
@@ -216,8 +415,12 @@ public class ConsumerService implements Closeable {
         RegistrationItem registrationItem = responseHandlers.get(responseTopic);
         if (registrationItem != null) {
             Map<String, RegistrationHandler> handlers = registrationItem.registrationHandlers();
-            handlers.remove(normalizedCorrelationId);
+            final RegistrationHandler handler = handlers.remove(normalizedCorrelationId);
+            if (handler != null) {
+                handler.timeout().cancel();
+            }
             log.debug("Handler removed for correlation ID: {}", normalizedCorrelationId);
+            unsubscribeIfDrained(responseTopic);
         } else {
             log.warn("No registration item found for topic: {}", responseTopic);
         }
@@ -232,18 +435,23 @@ public class ConsumerService implements Closeable {
     public void close() throws IOException {
         log.info("Closing ConsumerService");
         consumer.close();
+        dispatcher.close();
+        timeoutScheduler.close();
+        keyDeserializer.close();
+        valueDeserializer.close();
     }
 
     /**
      * Handles a response message by routing it to the appropriate handler based on
      * the correlation ID.
-     * This method is called by the consumer when a message is received.
+     * This method is called by the consumer when a message is received. Only the correlation ID
+     * is read on the polling thread, the handler runs on the dispatcher lane of the correlation ID
+     * and the value is only deserialized once a handler has been found.
      *
-     * @param topic   The topic the message was received on
-     * @param key     The message key (contains correlation ID)
-     * @param message The message content
+     * @param record The raw record received
      */
-    void handleResponse(String topic, Key key, JsonNode message) {
+    void handleResponse(ConsumerRecord<byte[], byte[]> record) {
+        final String topic = record.topic();
         if (log.isDebugEnabled()) {
             log.debug("Received response on topic: {}", topic);
         }
@@ -255,37 +463,81 @@ public class ConsumerService implements Closeable {
             return;
         }
 
-        // Find and execute the handler
-        String correlationId = key.getCorrelationId().toLowerCase();
-        processMessageWithHandler(topic, message, correlationId, registrationItem.registrationHandlers);
+        final String correlationId = getCorrelationId(record);
+        if (correlationId == null) {
+            log.warn("No correlation ID found for response on topic: {}", topic);
+            return;
+        }
+
+        // Find and execute the handler on the lane of the correlation ID
+        final String normalizedCorrelationId = correlationId.toLowerCase();
+        dispatcher.execute(normalizedCorrelationId, () -> processMessageWithHandler(
+                registrationItem.registration(),
+                () -> valueDeserializer.deserialize(topic, record.headers(), record.value()),
+                normalizedCorrelationId,
+                registrationItem.registrationHandlers));
+    }
+
+    /**
+     * Extracts the correlation ID of a record, from its header when present, otherwise from its key.
+     *
+     * @param record The raw record
+     * @return The correlation ID, null if it cannot be found
+     */
+    private String getCorrelationId(ConsumerRecord<byte[], byte[]> record) {
+        final Header header = record.headers().lastHeader(Key.CORRELATION_ID_HEADER);
+        if (header != null && header.value() != null) {
+            return new String(header.value(), StandardCharsets.UTF_8);
+        }
+
+        // Responses produced without the header, fall back on the key
+        if (record.key() == null) {
+            return null;
+        }
+
+        try {
+            final Key key = keyDeserializer.deserialize(record.topic(), record.headers(), record.key());
+            return key == null ? null : key.getCorrelationId();
+        } catch (SerializationException e) {
+            log.error("Failed to deserialize key on topic: {}", record.topic(), e);
+            return null;
+        }
     }
 
     /**
      * Processes a message using the appropriate handler for the given correlation
      * ID.
      *
-     * @param topic         The topic the message was received on
-     * @param message       The message content
+     * @param registration  The registration the message was received for
+     * @param message       Supplier deserializing the message content
      * @param correlationId The correlation ID
      * @param handlers      Map of correlation IDs to handlers
      */
     private void processMessageWithHandler(
-            String topic,
-            JsonNode message,
+            Registration registration,
+            Supplier<ResponseEnvelope> message,
             String correlationId,
             Map<String, RegistrationHandler> handlers) {
+        final String topic = registration.getResponseTopicName();
 
-        // Find the handler for this correlation ID
-        RegistrationHandler handler = handlers.get(correlationId);
+        // Claim the handler for this correlation ID, racing with its timeout
+        RegistrationHandler handler = handlers.remove(correlationId);
         if (handler == null) {
-            log.warn("No handler found for correlation ID: {} on topic: {}", correlationId, topic);
+            // Expected, not worth a warning: in shared reply routing every replica reads every response, and
+            // a hedged request or a timed out one gets a response no longer awaited
+            log.debug("No handler found for correlation ID: {} on topic: {}", correlationId, topic);
             return;
         }
 
+        handler.timeout().cancel();
+        timeoutPolicy.record(registration, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - handler.registeredAt()));
+        log.debug("Handler removed for correlation ID: {}", correlationId);
+        unsubscribeIfDrained(topic);
+
         try {
             // Execute the handler
             log.debug("Executing handler for correlation ID: {}", correlationId);
-            handler.responseHandler().handle(message);
+            handler.responseHandler().handle(message.get());
             log.debug("Handler execution completed for correlation ID: {}", correlationId);
         } catch (Exception e) {
             log.error("Error processing message with correlation ID: {}", correlationId, e);
@@ -295,39 +547,52 @@ public class ConsumerService implements Closeable {
                 log.error("Error handler failed for correlation ID: {}",
                         correlationId, errorHandlingException);
             }
-        } finally {
-            // Remove the handler after processing
-            handlers.remove(correlationId);
-            log.debug("Handler removed for correlation ID: {}", correlationId);
         }
     }
 
     /**
-     * Checks for timeouts in the registered handlers.
+     * Creates a JSON schema deserializer.
      *
-     * @param lastCheck The last time the timeout was checked
+     * @param kafkaConfiguration The Kafka configuration to use
+     * @param type               The type to deserialize to
+     * @param isKey              Whether the deserializer is for keys
+     * @return The configured deserializer
      */
-    public void checkTimeouts(long lastCheck) {
-        long now = System.currentTimeMillis();
-
-        // Check for timeouts in the registered handlers
-        responseHandlers.forEach((topic, registrationItem) -> {
-            Map<String, RegistrationHandler> handlers = registrationItem.registrationHandlers();
-            List<String> correlationIdsToRemove = new ArrayList<>();
-
-            // Check for timeouts in the registered handlers
-            handlers.forEach((correlationId, handler) -> {
-                if (handler.expiredAt() > 0 && now > handler.expiredAt()) {
-                    log.warn("Timeout for correlation ID: {} on topic: {}", correlationId, topic);
+    private static <T> Deserializer<T> createDeserializer(KafkaConfiguration kafkaConfiguration,
+                                                          Class<T> type,
+                                                          boolean isKey) {
+        final Deserializer<T> deserializer = new KafkaJsonSchemaDeserializer<>();
+        deserializer.configure(KafkaPropertiesFactory.getSchemaRegistryConfig(kafkaConfiguration, type, isKey), isKey);
+        return deserializer;
+    }
 
-                    handler.errorHandler()
-                            .onError(new TimeoutException("Timeout for correlation ID: " + correlationId));
-                    correlationIdsToRemove.add(correlationId);
-                }
-            });
+    /**
+     * Called by the timeout scheduler when a handler did not receive its response in time.
+     * The handler is only notified if it has not been claimed by a response in the meantime.
+     *
+     * @param registration  The registration of the request
+     * @param correlationId The correlation ID
+     * @param handlers      Map of correlation IDs to handlers
+     * @param timeout       The timeout that expired
+     */
+    private void onTimeout(Registration registration,
+                           String correlationId,
+                           Map<String, RegistrationHandler> handlers,
+                           TimeoutScheduler.Timeout timeout) {
+        final RegistrationHandler handler = handlers.get(correlationId);
+        if (handler == null || handler.timeout() != timeout || !handlers.remove(correlationId, handler)) {
+            return;
+        }
 
-            // Remove the expired handlers
-            correlationIdsToRemove.forEach(handlers::remove);
-        });
+        // The response took at least this long, so that a timeout found too short grows
+        timeoutPolicy.record(registration, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - handler.registeredAt()));
+        log.warn("Timeout for correlation ID: {} on topic: {}", correlationId, registration.getResponseTopicName());
+        try {
+            handler.errorHandler()
+                    .onError(new TimeoutException("Timeout for correlation ID: " + correlationId));
+        } catch (Exception e) {
+            log.error("Error handler failed for correlation ID: {}", correlationId, e);
+        }
+        unsubscribeIfDrained(registration.getResponseTopicName());
     }
-}
\ No newline at end of file
+}
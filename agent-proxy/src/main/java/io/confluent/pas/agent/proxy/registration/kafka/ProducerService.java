@@ -3,28 +3,92 @@ package io.confluent.pas.agent.proxy.registration.kafka;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.pas.agent.common.services.KafkaConfiguration;
 import io.confluent.pas.agent.common.services.KafkaPropertiesFactory;
+import io.confluent.pas.agent.common.services.ProducerProfile;
+import io.confluent.pas.agent.common.services.schemas.Registration;
 import io.confluent.pas.agent.common.utils.Lazy;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import reactor.core.publisher.Mono;
 
 import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * ProducerService class that handles sending messages to Kafka topics.
- * This class uses a lazy-initialized KafkaProducer to send messages asynchronously.
+ * This class uses a lazy-initialized KafkaProducer per {@link ProducerProfile} to send messages asynchronously,
+ * the requests of a registration being sent by the producer of its profile.
  */
 @Slf4j
-@AllArgsConstructor
 public class ProducerService implements Closeable {
 
-    private final Lazy<KafkaProducer<Key, JsonNode>> producer;
+    static final Duration PARTITION_COUNT_REFRESH = Duration.ofMinutes(1);
+
+    /**
+     * Partition count of a topic, with the time it was read at.
+     */
+    private record PartitionCount(int count, long fetchedAt) {
+    }
+
+    private final Map<ProducerProfile, Lazy<KafkaProducer<Key, JsonNode>>> producers = new EnumMap<>(ProducerProfile.class);
+    private final Map<String, PartitionCount> partitionCounts = new ConcurrentHashMap<>();
+    private final ProducerProfile defaultProfile;
+
+    /**
+     * Creates a service sending every message with the same producer.
+     *
+     * @param producer the producer
+     */
+    public ProducerService(Lazy<KafkaProducer<Key, JsonNode>> producer) {
+        this(profile -> producer, ProducerProfile.DEFAULT);
+    }
 
     public ProducerService(KafkaConfiguration kafkaConfiguration) {
-        this(new Lazy<>(() -> new KafkaProducer<>(KafkaPropertiesFactory.getProducerProperties(kafkaConfiguration))));
+        this(kafkaConfiguration, ProducerProfile.DEFAULT);
+    }
+
+    /**
+     * @param kafkaConfiguration the Kafka configuration
+     * @param defaultProfile     the profile of the registrations without their own
+     */
+    public ProducerService(KafkaConfiguration kafkaConfiguration, ProducerProfile defaultProfile) {
+        this(profile -> new Lazy<>(() -> new KafkaProducer<>(
+                        KafkaPropertiesFactory.getProducerProperties(kafkaConfiguration, profile))),
+                defaultProfile);
+    }
+
+    /**
+     * @param producerFactory creates the producer of a profile, only instantiated once used
+     * @param defaultProfile  the profile of the registrations without their own
+     */
+    public ProducerService(Function<ProducerProfile, Lazy<KafkaProducer<Key, JsonNode>>> producerFactory,
+                           ProducerProfile defaultProfile) {
+        for (ProducerProfile profile : ProducerProfile.values()) {
+            producers.put(profile, producerFactory.apply(profile));
+        }
+        this.defaultProfile = defaultProfile;
+    }
+
+    /**
+     * Returns the profile the requests of a registration are sent with.
+     *
+     * @param registration the registration
+     * @return the profile of the registration, the default profile if it has none or an unknown one
+     */
+    public ProducerProfile getProfile(Registration registration) {
+        try {
+            return ProducerProfile.fromValue(registration.getProducerProfile(), defaultProfile);
+        } catch (IllegalArgumentException e) {
+            log.warn("Sending the requests to {} with the {} profile: {}",
+                    registration.getName(), defaultProfile, e.getMessage());
+            return defaultProfile;
+        }
     }
 
     /**
@@ -36,25 +100,102 @@ public class ProducerService implements Closeable {
      * @return a Mono that will complete when the message is sent
      */
     public Mono<Void> send(String topic, Key key, JsonNode value) {
+        return send(topic, null, key, value).then();
+    }
+
+    /**
+     * Send a message to a partition of a topic.
+     *
+     * @param topic     the topic
+     * @param partition the partition, null to let the partitioner choose it from the key
+     * @param key       the key
+     * @param value     the value
+     * @return a Mono that will emit the partition the message was written to once it is sent
+     */
+    public Mono<Integer> send(String topic, Integer partition, Key key, JsonNode value) {
+        return send(defaultProfile, topic, partition, key, value);
+    }
+
+    /**
+     * Send a request to the request topic of a registration, with the producer of its profile.
+     *
+     * @param registration the registration
+     * @param partition    the partition, null to let the partitioner choose it from the key
+     * @param key          the key
+     * @param value        the value
+     * @return a Mono that will emit the partition the message was written to once it is sent
+     */
+    public Mono<Integer> send(Registration registration, Integer partition, Key key, JsonNode value) {
+        return send(getProfile(registration), registration.getRequestTopicName(), partition, key, value);
+    }
+
+    /**
+     * Send a message to a partition of a topic with the producer of a profile.
+     *
+     * @param profile   the producer profile
+     * @param topic     the topic
+     * @param partition the partition, null to let the partitioner choose it from the key
+     * @param key       the key
+     * @param value     the value
+     * @return a Mono that will emit the partition the message was written to once it is sent
+     */
+    public Mono<Integer> send(ProducerProfile profile, String topic, Integer partition, Key key, JsonNode value) {
         return Mono.create(sink -> {
-            final ProducerRecord<Key, JsonNode> record = new ProducerRecord<>(topic, key, value);
+            final ProducerRecord<Key, JsonNode> record = new ProducerRecord<>(topic, partition, key, value);
+            if (key.getCorrelationId() != null) {
+                record.headers().add(Key.CORRELATION_ID_HEADER, key.getCorrelationId().getBytes(StandardCharsets.UTF_8));
+            }
+            // Lets the agents reply on the partition consumed by this instance
+            if (key.getReplyPartition() != null) {
+                record.headers().add(Key.REPLY_PARTITION_HEADER, key.getReplyPartition().toString().getBytes(StandardCharsets.UTF_8));
+            }
+            // Lets the agents skip the requests the proxy no longer waits for
+            if (key.getDeadline() != null) {
+                record.headers().add(Key.DEADLINE_HEADER, key.getDeadline().toString().getBytes(StandardCharsets.UTF_8));
+            }
 
-            producer.get()
+            producers.get(profile).get()
                     .send(record, (metadata, exception) -> {
                         if (exception != null) {
                             log.error("Error sending message to topic: {}", topic, exception);
                             sink.error(exception);
                         } else {
-                            sink.success();
+                            sink.success(metadata.partition());
                         }
                     });
         });
     }
 
+    /**
+     * Returns the number of partitions of the request topic of a registration, from the metadata known by
+     * the producer of its profile. The count is cached per topic so that the hedged requests do not wait
+     * for the metadata, it is refreshed once older than {@link #PARTITION_COUNT_REFRESH} to pick up added
+     * partitions. Reading the metadata may block, callers must not run on a non-blocking thread.
+     *
+     * @param registration the registration
+     * @return the number of partitions
+     */
+    public int getPartitionCount(Registration registration) {
+        final String topic = registration.getRequestTopicName();
+        final long now = System.nanoTime();
+        final PartitionCount cached = partitionCounts.get(topic);
+        if (cached != null && now - cached.fetchedAt() < PARTITION_COUNT_REFRESH.toNanos()) {
+            return cached.count();
+        }
+
+        // Fetched outside of the map, the metadata lookup may block up to max.block.ms. Concurrent callers
+        // may fetch the same count, the last one wins
+        final int count = producers.get(getProfile(registration)).get().partitionsFor(topic).size();
+        partitionCounts.put(topic, new PartitionCount(count, now));
+        return count;
+    }
+
     @Override
     public void close() {
-        if (producer.isInitialized()) {
-            producer.get().close();
-        }
+        // Profiles may share their producer
+        producers.values().stream()
+                .distinct()
+                .filter(Lazy::isInitialized)
+                .forEach(producer -> producer.get().close());
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Defines how responses are routed back to the proxy instances.
+ * <ul>
+ * <li>{@link Mode#SHARED}: every instance consumes all the partitions of the response topics, so every
+ * response is read by every instance and discarded by those not awaiting it</li>
+ * <li>{@link Mode#INSTANCE}: every instance consumes a single reply partition of each response topic
+ * and asks the agents to produce its responses to that partition</li>
+ * </ul>
+ * The partitions are assigned, not split through a consumer group: a response must reach the instance
+ * which sent the request. The instance mode lets several proxy instances share the response topics
+ * without each of them reading the responses of the others. The reply partition is either configured
+ * explicitly or derived from the instance identifier.
+ */
+@Slf4j
+@Getter
+public class ReplyRouting {
+
+    public enum Mode {
+        SHARED,
+        INSTANCE
+    }
+
+    private final Mode mode;
+    private final String instanceId;
+    private final int replyPartition;
+
+    private ReplyRouting(Mode mode, String instanceId, int replyPartition) {
+        this.mode = mode;
+        this.instanceId = instanceId;
+        this.replyPartition = replyPartition;
+    }
+
+    /**
+     * @return A routing where every instance consumes all the partitions
+     */
+    public static ReplyRouting shared() {
+        return new ReplyRouting(Mode.SHARED, null, -1);
+    }
+
+    /**
+     * Creates a per-instance routing.
+     *
+     * @param instanceId     Identifier of this instance, a random one is generated if blank
+     * @param replyPartition Explicit reply partition, negative to derive it from the instance identifier
+     * @return A routing where the instance consumes its own reply partition
+     */
+    public static ReplyRouting instance(String instanceId, int replyPartition) {
+        if (StringUtils.isBlank(instanceId)) {
+            instanceId = UUID.randomUUID().toString();
+            log.warn("No client id configured, using a random instance id for reply routing: {}", instanceId);
+        }
+
+        return new ReplyRouting(Mode.INSTANCE, instanceId, replyPartition);
+    }
+
+    /**
+     * Creates the routing from its configuration.
+     *
+     * @param mode           The routing mode, shared or instance
+     * @param instanceId     Identifier of this instance
+     * @param replyPartition Explicit reply partition, negative to derive it from the instance identifier
+     * @return The reply routing
+     */
+    public static ReplyRouting from(String mode, String instanceId, int replyPartition) {
+        final Mode routingMode = StringUtils.isBlank(mode)
+                ? Mode.SHARED
+                : Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+
+        return routingMode == Mode.SHARED ? shared() : instance(instanceId, replyPartition);
+    }
+
+    /**
+     * Selects the partitions of a response topic consumed by this instance.
+     *
+     * @param partitions All the partitions of the response topic
+     * @return The partitions to consume
+     */
+    public List<TopicPartition> selectPartitions(List<TopicPartition> partitions) {
+        if (mode == Mode.SHARED || partitions.isEmpty()) {
+            return partitions;
+        }
+
+        final int index = replyPartition >= 0
+                ? replyPartition % partitions.size()
+                : Math.floorMod(instanceId.hashCode(), partitions.size());
+        if (replyPartition >= partitions.size()) {
+            log.warn("Reply partition {} exceeds the {} partitions of topic {}, using partition {}",
+                    replyPartition, partitions.size(), partitions.getFirst().topic(), index);
+        }
+
+        return List.of(partitions.get(index));
+    }
+}
@@ -0,0 +1,172 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.proxy.frameworks.java.models.BatchEntry;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Request;
+import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packs the requests sent to a registration into batched records.
+ * <p>
+ * Requests are accumulated until the batch is full or the linger time of the first request has
+ * elapsed, then produced as a single record whose batch carries every request with its own
+ * correlation ID. The agent unpacks the batch and answers each request separately, so responses
+ * are routed exactly as for single requests. A batch holding a single request is produced as a
+ * plain request.
+ */
+@Slf4j
+public class RequestBatcher implements Closeable {
+
+    /**
+     * A request waiting to be sent.
+     */
+    private record PendingRequest(Key key, Request request, RegistrationSchemas schemas, MonoSink<Void> sink) {
+    }
+
+    private final Registration registration;
+    private final ProducerService producerService;
+    private final Scheduler scheduler;
+    private final int maxBatchSize;
+    private final long lingerMs;
+
+    private final Object lock = new Object();
+    private List<PendingRequest> pending;
+    private Disposable lingerTask;
+
+    public RequestBatcher(Registration registration, ProducerService producerService) {
+        this(registration, producerService, Schedulers.parallel());
+    }
+
+    public RequestBatcher(Registration registration, ProducerService producerService, Scheduler scheduler) {
+        this.registration = registration;
+        this.producerService = producerService;
+        this.scheduler = scheduler;
+        this.maxBatchSize = registration.getMaxBatchSize();
+        this.lingerMs = registration.getBatchLingerMs() == null ? 0 : Math.max(0, registration.getBatchLingerMs());
+        this.pending = new ArrayList<>(maxBatchSize);
+    }
+
+    /**
+     * Adds a request to the current batch.
+     *
+     * @param key     The key of the request, holding its correlation ID
+     * @param request The request
+     * @param schemas The schemas of the registration
+     * @return A mono completing once the batch holding the request is sent
+     */
+    public Mono<Void> send(Key key, Request request, RegistrationSchemas schemas) {
+        return Mono.create(sink -> add(new PendingRequest(key, request, schemas, sink)));
+    }
+
+    /**
+     * Sends the pending requests right away.
+     */
+    public void flush() {
+        final List<PendingRequest> batch;
+        synchronized (lock) {
+            batch = takeBatch();
+        }
+
+        sendBatch(batch);
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void add(PendingRequest request) {
+        List<PendingRequest> batch = null;
+
+        synchronized (lock) {
+            pending.add(request);
+
+            if (pending.size() >= maxBatchSize || lingerMs == 0) {
+                batch = takeBatch();
+            } else if (pending.size() == 1) {
+                // The linger time starts with the first request of the batch
+                lingerTask = scheduler.schedule(this::flush, lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        sendBatch(batch);
+    }
+
+    /**
+     * Takes the pending requests, must be called while holding the lock.
+     *
+     * @return The pending requests
+     */
+    private List<PendingRequest> takeBatch() {
+        if (lingerTask != null) {
+            lingerTask.dispose();
+            lingerTask = null;
+        }
+
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+
+        final List<PendingRequest> batch = pending;
+        pending = new ArrayList<>(maxBatchSize);
+        return batch;
+    }
+
+    private void sendBatch(List<PendingRequest> batch) {
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+
+        final PendingRequest first = batch.getFirst();
+        final Request request;
+        if (batch.size() == 1) {
+            request = first.request();
+        } else {
+            request = Request.batch(batch.stream()
+                    .map(pendingRequest -> new BatchEntry(
+                            pendingRequest.key().getCorrelationId(),
+                            pendingRequest.request().getRequestIndex(),
+                            pendingRequest.request().getPayload(),
+                            pendingRequest.key().getDeadline()))
+                    .toList());
+        }
+
+        final JsonNode envelope;
+        try {
+            envelope = first.schemas().getRequestSchema().envelope(request);
+        } catch (Exception e) {
+            log.error("Error creating the batch for {}", registration.getName(), e);
+            batch.forEach(pendingRequest -> pendingRequest.sink().error(e));
+            return;
+        }
+
+        log.debug("Sending a batch of {} requests to {}", batch.size(), registration.getName());
+
+        // The key of the first request carries the reply partition shared by the whole batch, the deadline
+        // of each batched request is carried by its entry
+        final Key key = batch.size() == 1
+                ? first.key()
+                : new Key(first.key().getCorrelationId(), first.key().getReplyPartition());
+
+        producerService.send(registration, null, key, envelope)
+                .then()
+                .subscribe(
+                        v -> {
+                        },
+                        error -> batch.forEach(pendingRequest -> pendingRequest.sink().error(error)),
+                        () -> batch.forEach(pendingRequest -> pendingRequest.sink().success()));
+    }
+}
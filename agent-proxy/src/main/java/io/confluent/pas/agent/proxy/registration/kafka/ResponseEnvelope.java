@@ -0,0 +1,41 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import io.confluent.pas.agent.proxy.frameworks.java.models.ResponseStatus;
+import io.confluent.pas.agent.proxy.frameworks.java.models.SerializableException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Response received from an agent, decoded in a single pass from the record bytes.
+ * The payload is left undecoded, see {@link ResponsePayload}.
+ */
+@Getter
+@AllArgsConstructor
+public class ResponseEnvelope {
+    /**
+     * Index of the request the response corresponds to, -1 for errors raised by the proxy.
+     */
+    private final int requestIndex;
+    private final ResponseStatus status;
+    private final String message;
+    private final SerializableException exception;
+    /**
+     * The payload of the response, null if the response has none.
+     */
+    private final ResponsePayload payload;
+
+    /**
+     * Creates an error response from an exception raised while waiting for or processing a response.
+     *
+     * @param error The error
+     * @return An error response
+     */
+    public static ResponseEnvelope error(Throwable error) {
+        return new ResponseEnvelope(
+                -1,
+                ResponseStatus.ERROR,
+                error.getMessage(),
+                new SerializableException(error),
+                null);
+    }
+}
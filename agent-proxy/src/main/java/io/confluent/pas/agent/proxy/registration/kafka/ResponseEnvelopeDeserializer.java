@@ -0,0 +1,99 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import io.confluent.pas.agent.proxy.frameworks.java.models.ResponseStatus;
+import io.confluent.pas.agent.proxy.frameworks.java.models.SerializableException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+
+/**
+ * Decodes responses in a single streaming pass over the record bytes.
+ * <p>
+ * The Schema Registry wire format header (magic byte and schema id) is skipped, the envelope
+ * fields are read as they are streamed and the payload is captured as a slice of the record
+ * bytes without being parsed into a tree.
+ */
+public class ResponseEnvelopeDeserializer implements Deserializer<ResponseEnvelope> {
+
+    private static final byte MAGIC_BYTE = 0x0;
+    private static final int HEADER_SIZE = 5;
+
+    @Override
+    public ResponseEnvelope deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        // JSON never starts with a 0 byte, if present this is the Schema Registry header
+        final int start = data.length > HEADER_SIZE && data[0] == MAGIC_BYTE ? HEADER_SIZE : 0;
+
+        try (JsonParser parser = JsonUtils.createParser(data, start, data.length - start)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new SerializationException("Response on topic " + topic + " is not a JSON object");
+            }
+
+            int requestIndex = -1;
+            ResponseStatus status = null;
+            String message = null;
+            SerializableException exception = null;
+            ResponsePayload payload = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                final JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+
+                switch (field) {
+                    case "requestIndex" -> requestIndex = parser.getIntValue();
+                    case "status" -> status = ResponseStatus.fromString(parser.getText());
+                    case "message" -> message = parser.getText();
+                    case "exception" -> exception = parser.readValueAs(SerializableException.class);
+                    case "payload" -> payload = readPayload(parser, data, start);
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (status == null) {
+                throw new SerializationException("Response on topic " + topic + " has no status");
+            }
+
+            return new ResponseEnvelope(requestIndex, status, message, exception, payload);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new SerializationException("Failed to decode response on topic " + topic, e);
+        }
+    }
+
+    /**
+     * Captures the payload as a slice of the record bytes.
+     *
+     * @param parser The parser positioned on the first token of the payload
+     * @param data   The record bytes
+     * @param start  The offset of the JSON document in the record bytes
+     * @return The payload
+     * @throws IOException if the payload cannot be read
+     */
+    private ResponsePayload readPayload(JsonParser parser, byte[] data, int start) throws IOException {
+        if (!parser.currentToken().isStructStart()) {
+            // Scalar tokens may not be fully read yet, their end offset is not reliable
+            return new ResponsePayload(parser.<JsonNode>readValueAsTree());
+        }
+
+        // Offsets are relative to the start of the JSON document
+        final int from = start + (int) parser.currentTokenLocation().getByteOffset();
+        parser.skipChildren();
+        final int to = start + (int) parser.currentLocation().getByteOffset();
+
+        if (from < start || to > data.length || from >= to) {
+            throw new SerializationException("Unable to locate the response payload");
+        }
+
+        return new ResponsePayload(data, from, to - from);
+    }
+}
@@ -0,0 +1,178 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Payload of a response, kept as the raw JSON slice of the record it was received in.
+ * <p>
+ * The payload is only converted on demand, and only to the representation the protocol needs:
+ * the raw JSON text for MCP, a map for REST, or a tree when the payload needs to be inspected.
+ * The fields offloaded by the agent to the claim check are kept as references unless the payload is
+ * converted with the claim check resolving them.
+ */
+public class ResponsePayload {
+
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+    // Parsed lazily by whichever thread first needs the tree, volatile so that it is safely published
+    private volatile JsonNode node;
+
+    /**
+     * Creates a payload backed by a slice of a buffer.
+     *
+     * @param buffer The buffer containing the UTF-8 encoded JSON payload
+     * @param offset The offset of the payload in the buffer
+     * @param length The length of the payload
+     */
+    public ResponsePayload(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Creates a payload from an already parsed tree.
+     *
+     * @param node The payload
+     */
+    public ResponsePayload(JsonNode node) {
+        this.buffer = null;
+        this.offset = 0;
+        this.length = 0;
+        this.node = node;
+    }
+
+    /**
+     * @return the size of the payload in bytes, as received or once serialized
+     */
+    public int size() {
+        return buffer == null ? utf8Length(node.toString()) : length;
+    }
+
+    /**
+     * Copies the payload out of the record it was received in, so that keeping the payload does not keep
+     * the whole record, and the other responses it may be batched with, in memory.
+     *
+     * @return a payload backed by its own buffer
+     */
+    public ResponsePayload compact() {
+        if (buffer == null || (offset == 0 && length == buffer.length)) {
+            return this;
+        }
+
+        return new ResponsePayload(Arrays.copyOfRange(buffer, offset, offset + length), 0, length);
+    }
+
+    /**
+     * @return the payload as JSON text, without parsing it
+     */
+    public String asString() {
+        if (buffer == null) {
+            return node.toString();
+        }
+
+        return new String(buffer, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the payload as a JSON tree, parsed once
+     * @throws UncheckedIOException if the payload is not valid JSON
+     */
+    public JsonNode asNode() {
+        JsonNode parsed = node;
+        if (parsed == null) {
+            // Concurrent callers may both parse the payload, they get equal trees
+            try {
+                parsed = JsonUtils.toJsonNode(buffer, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to parse response payload", e);
+            }
+            node = parsed;
+        }
+
+        return parsed;
+    }
+
+    /**
+     * @return the payload as a map, parsed directly from the raw JSON
+     * @throws UncheckedIOException if the payload is not valid JSON
+     */
+    public Map<String, Object> asMap() {
+        if (buffer == null) {
+            return JsonUtils.toMap(node);
+        }
+
+        try {
+            return JsonUtils.toMap(buffer, offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse response payload", e);
+        }
+    }
+
+    /**
+     * @param claimCheck The claim check resolving the offloaded fields, null if disabled
+     * @return the payload as JSON text, with its offloaded fields loaded in memory
+     * @throws UncheckedIOException if an offloaded field cannot be read
+     */
+    public String asString(ClaimCheck claimCheck) {
+        final String json = asString();
+        if (claimCheck == null || !ClaimCheck.mayHoldReferences(json)) {
+            return json;
+        }
+
+        return claimCheck.resolve(asNode()).toString();
+    }
+
+    /**
+     * @param claimCheck The claim check resolving the offloaded fields, null if disabled
+     * @return the payload as a JSON tree, with its offloaded fields loaded in memory
+     * @throws UncheckedIOException if the payload is not valid JSON or an offloaded field cannot be read
+     */
+    public JsonNode asNode(ClaimCheck claimCheck) {
+        return claimCheck == null ? asNode() : claimCheck.resolve(asNode());
+    }
+
+    /**
+     * @param claimCheck The claim check resolving the offloaded fields, null if disabled
+     * @return the payload as a map, with its offloaded fields loaded in memory
+     * @throws UncheckedIOException if the payload is not valid JSON or an offloaded field cannot be read
+     */
+    public Map<String, Object> asMap(ClaimCheck claimCheck) {
+        return claimCheck == null ? asMap() : claimCheck.resolve(asMap());
+    }
+
+    /**
+     * Counts the bytes of the UTF-8 encoding of a string, without encoding it.
+     *
+     * @param value The string
+     * @return the number of bytes
+     */
+    static int utf8Length(String value) {
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                // A surrogate pair encodes a single code point on 4 bytes
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,214 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides how long a request waits for its response.
+ * <p>
+ * A registration setting its own {@code responseTimeoutMs} always gets it. Otherwise, in static mode,
+ * every registration gets the default timeout. In adaptive mode, the timeout of a registration is
+ * derived from the latencies it recently observed: a percentile of the latencies, multiplied by a
+ * factor and clamped between the bounds. The default timeout is used until enough latencies have been
+ * observed.
+ * <p>
+ * The latencies of the requests which timed out are recorded as well, so that a timeout found too short
+ * grows on its own instead of hiding the slow responses.
+ * <p>
+ * The latencies of the hedged registrations are recorded whatever the mode, their percentiles decide when
+ * a request without response is sent again.
+ */
+@Slf4j
+public class ResponseTimeoutPolicy {
+
+    /**
+     * The same timeout for every registration without its own timeout
+     */
+    public static final String MODE_STATIC = "static";
+
+    /**
+     * A timeout derived from the latencies of each registration without its own timeout
+     */
+    public static final String MODE_ADAPTIVE = "adaptive";
+
+    /**
+     * Number of latencies kept per registration
+     */
+    static final int WINDOW_SIZE = 512;
+
+    /**
+     * Number of latencies recorded between two computations of the timeout
+     */
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    private final long defaultTimeout;
+    private final boolean adaptive;
+    private final double percentile;
+    private final double factor;
+    private final long minTimeout;
+    private final long maxTimeout;
+    private final int minSamples;
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a policy.
+     *
+     * @param defaultTimeout Timeout in milliseconds of the registrations without their own timeout
+     * @param mode           static or adaptive
+     * @param percentile     Percentile of the latencies the adaptive timeout is derived from, e.g. 0.99
+     * @param factor         Factor applied to the percentile
+     * @param minTimeout     Lower bound of the adaptive timeout, in milliseconds
+     * @param maxTimeout     Upper bound of the adaptive timeout, in milliseconds
+     * @param minSamples     Number of latencies observed before the adaptive timeout is used
+     */
+    public ResponseTimeoutPolicy(long defaultTimeout,
+                                 String mode,
+                                 double percentile,
+                                 double factor,
+                                 long minTimeout,
+                                 long maxTimeout,
+                                 int minSamples) {
+        if (!MODE_STATIC.equalsIgnoreCase(mode) && !MODE_ADAPTIVE.equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("Unknown response timeout mode: " + mode
+                    + ", expected " + MODE_STATIC + " or " + MODE_ADAPTIVE);
+        }
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("The response timeout percentile must be in ]0, 1]: " + percentile);
+        }
+        if (minTimeout > maxTimeout) {
+            throw new IllegalArgumentException("The minimum response timeout " + minTimeout
+                    + " is greater than the maximum " + maxTimeout);
+        }
+
+        this.defaultTimeout = defaultTimeout;
+        this.adaptive = MODE_ADAPTIVE.equalsIgnoreCase(mode);
+        this.percentile = percentile;
+        this.factor = factor;
+        this.minTimeout = minTimeout;
+        this.maxTimeout = maxTimeout;
+        this.minSamples = Math.max(1, Math.min(minSamples, WINDOW_SIZE));
+    }
+
+    /**
+     * @param defaultTimeout Timeout in milliseconds of the registrations without their own timeout
+     * @return a policy giving the same timeout to every registration without its own timeout
+     */
+    public static ResponseTimeoutPolicy fixed(long defaultTimeout) {
+        return new ResponseTimeoutPolicy(defaultTimeout, MODE_STATIC, 1, 1, 0, Long.MAX_VALUE, 1);
+    }
+
+    /**
+     * @return true if the timeouts are derived from the observed latencies
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Returns the time a request of a registration waits for its response.
+     *
+     * @param registration The registration
+     * @return The timeout in milliseconds
+     */
+    public long getTimeout(Registration registration) {
+        final Integer configured = registration.getResponseTimeoutMs();
+        if (configured != null && configured > 0) {
+            return configured;
+        }
+
+        if (!adaptive) {
+            return defaultTimeout;
+        }
+
+        final LatencyWindow window = windows.get(registration.getName());
+        return window == null || window.timeout < 0 ? defaultTimeout : window.timeout;
+    }
+
+    /**
+     * Records the time a request of a registration waited for its response.
+     *
+     * @param registration The registration
+     * @param latencyMs    The latency in milliseconds, or the timeout if the request timed out
+     */
+    public void record(Registration registration, long latencyMs) {
+        if (!adaptive && !registration.isHedged()) {
+            return;
+        }
+
+        windows.computeIfAbsent(registration.getName(), name -> new LatencyWindow())
+                .record(registration.getName(), latencyMs);
+    }
+
+    /**
+     * Returns a percentile of the latencies recently observed by a registration. The percentiles are
+     * computed from a snapshot of the latencies refreshed every few responses.
+     *
+     * @param registration The registration
+     * @param percentile   The percentile, e.g. 0.95
+     * @return The latency in milliseconds, -1 until enough latencies have been observed
+     */
+    public long getLatencyPercentile(Registration registration, double percentile) {
+        final LatencyWindow window = windows.get(registration.getName());
+        return window == null ? -1 : window.getPercentile(percentile);
+    }
+
+    /**
+     * Forgets the latencies of a registration.
+     *
+     * @param registration The registration
+     */
+    public void remove(Registration registration) {
+        windows.remove(registration.getName());
+    }
+
+    /**
+     * Latencies recently observed by a registration, their sorted snapshot and the timeout derived from them.
+     */
+    private class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+        private volatile long timeout = -1;
+        private volatile long[] sorted;
+
+        synchronized void record(String name, long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+
+            // Sorting the window on each response would be wasteful, the timeout moves slowly anyway
+            if (count >= minSamples && (timeout < 0 || next % RECOMPUTE_INTERVAL == 0)) {
+                final long[] snapshot = Arrays.copyOf(samples, count);
+                Arrays.sort(snapshot);
+                sorted = snapshot;
+                final long computed = Math.clamp((long) Math.ceil(valueAt(snapshot, percentile) * factor),
+                        minTimeout,
+                        maxTimeout);
+                if (computed != timeout) {
+                    log.debug("Response timeout of {} is now {} ms", name, computed);
+                    timeout = computed;
+                }
+            }
+        }
+
+        long getPercentile(double percentile) {
+            final long[] snapshot = sorted;
+            return snapshot == null ? -1 : valueAt(snapshot, percentile);
+        }
+    }
+
+    /**
+     * Returns the value at a percentile of sorted latencies.
+     *
+     * @param sorted     The latencies, sorted
+     * @param percentile The percentile
+     * @return The latency
+     */
+    private static long valueAt(long[] sorted, double percentile) {
+        return sorted[Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,361 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed wheel timer used to expire pending response handlers.
+ * <p>
+ * Timeouts are hashed into a fixed number of buckets according to their deadline. A dedicated
+ * thread advances the wheel one bucket per tick and only visits the entries of the current bucket,
+ * which makes scheduling, cancellation and expiry O(1) amortised regardless of the number of
+ * pending timeouts. Cancelled entries are queued and unlinked from their bucket on the next tick, so that
+ * the task of a request which got its response, and everything it captures, is not kept until the wheel
+ * reaches its bucket.
+ * <p>
+ * Expiry callbacks run on the timer thread, independently of the Kafka poll loop.
+ */
+@Slf4j
+public class TimeoutScheduler implements Closeable {
+
+    /**
+     * Task executed when a timeout expires.
+     */
+    @FunctionalInterface
+    public interface TimeoutTask {
+        /**
+         * Called when the timeout expires.
+         *
+         * @param timeout The timeout that expired
+         */
+        void run(Timeout timeout);
+    }
+
+    /**
+     * Handle on a scheduled timeout.
+     */
+    public interface Timeout {
+        /**
+         * Cancels the timeout. The task will not run if the timeout has not expired yet.
+         *
+         * @return true if the timeout was cancelled, false if it already expired or was cancelled
+         */
+        boolean cancel();
+
+        /**
+         * @return true if the timeout has expired and its task has been executed
+         */
+        boolean isExpired();
+
+        /**
+         * @return true if the timeout has been cancelled
+         */
+        boolean isCancelled();
+    }
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    /**
+     * A timeout entry stored in a bucket of the wheel.
+     */
+    private final class WheelTimeout implements Timeout {
+        private final TimeoutTask task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+        private long remainingRounds;
+        // Bucket holding the timeout and its neighbours in the bucket, only accessed by the timer thread
+        private Bucket bucket;
+        private WheelTimeout next;
+        private WheelTimeout prev;
+
+        private WheelTimeout(TimeoutTask task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+                return false;
+            }
+
+            pendingTimeouts.decrementAndGet();
+            cancelledTimeouts.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+                return;
+            }
+
+            pendingTimeouts.decrementAndGet();
+            try {
+                task.run(this);
+            } catch (Exception e) {
+                log.error("Error executing timeout task", e);
+            }
+        }
+    }
+
+    /**
+     * A bucket of the wheel, a doubly linked list of timeouts so that a cancelled one is unlinked in O(1).
+     * Only accessed by the timer thread.
+     */
+    private final class Bucket {
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        private void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+            }
+            tail = timeout;
+            bucketedTimeouts.incrementAndGet();
+        }
+
+        private void remove(WheelTimeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+
+            timeout.bucket = null;
+            timeout.next = null;
+            timeout.prev = null;
+            bucketedTimeouts.decrementAndGet();
+        }
+
+        /**
+         * Expires all the timeouts of the bucket which reached their deadline.
+         */
+        private void expireTimeouts() {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                final WheelTimeout next = timeout.next;
+
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+
+                timeout = next;
+            }
+        }
+    }
+
+    private final long tickDuration;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final Queue<WheelTimeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingTimeouts = new AtomicLong();
+    private final AtomicLong bucketedTimeouts = new AtomicLong();
+    private final Thread workerThread;
+    private final long startTime;
+    private volatile boolean stopRequested = false;
+    private long tick;
+
+    /**
+     * Creates a scheduler with a 10ms tick and 512 buckets.
+     */
+    public TimeoutScheduler() {
+        this(Duration.ofMillis(10), 512);
+    }
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param tickDuration Duration of a single tick, i.e. the precision of the timeouts
+     * @param wheelSize    Number of buckets in the wheel, rounded up to the next power of two
+     */
+    public TimeoutScheduler(Duration tickDuration, int wheelSize) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0");
+        }
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("wheelSize must be greater than 0");
+        }
+
+        // Round the wheel size up to a power of two so that the bucket can be found with a mask
+        int normalizedSize = 1;
+        while (normalizedSize < wheelSize) {
+            normalizedSize <<= 1;
+        }
+
+        this.tickDuration = tickDuration.toNanos();
+        this.mask = normalizedSize - 1;
+        this.wheel = new Bucket[normalizedSize];
+        for (int i = 0; i < normalizedSize; i++) {
+            wheel[i] = new Bucket();
+        }
+
+        this.startTime = System.nanoTime();
+        this.workerThread = new Thread(this::runLoop, "response-timeout-scheduler");
+        this.workerThread.setDaemon(true);
+        this.workerThread.start();
+    }
+
+    /**
+     * Schedules a task to be executed once the delay has elapsed.
+     *
+     * @param task  The task to execute
+     * @param delay The delay before the task is executed
+     * @param unit  The unit of the delay
+     * @return A handle that can be used to cancel the timeout
+     */
+    public Timeout schedule(TimeoutTask task, long delay, TimeUnit unit) {
+        if (stopRequested) {
+            throw new IllegalStateException("Scheduler has been closed");
+        }
+
+        final long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+        final WheelTimeout timeout = new WheelTimeout(task, deadline);
+
+        pendingTimeouts.incrementAndGet();
+        newTimeouts.add(timeout);
+
+        return timeout;
+    }
+
+    /**
+     * @return the number of timeouts which are neither expired nor cancelled
+     */
+    public long getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * @return the number of timeouts held by the buckets of the wheel, cancelled ones included until unlinked
+     */
+    long getBucketedTimeouts() {
+        return bucketedTimeouts.get();
+    }
+
+    /**
+     * Stops the scheduler. Pending timeouts are discarded without being executed.
+     */
+    @Override
+    public void close() {
+        stopRequested = true;
+        workerThread.interrupt();
+
+        try {
+            workerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while waiting for the timeout scheduler to stop", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Main loop of the timer thread.
+     */
+    private void runLoop() {
+        log.info("Starting timeout scheduler");
+
+        while (!stopRequested) {
+            if (!waitForNextTick()) {
+                continue;
+            }
+
+            removeCancelledTimeouts();
+            transferNewTimeouts();
+            wheel[(int) (tick & mask)].expireTimeouts();
+            tick++;
+        }
+
+        log.info("Timeout scheduler stopped");
+    }
+
+    /**
+     * Unlinks the cancelled timeouts from their bucket. The ones not transferred yet are dropped by
+     * {@link #transferNewTimeouts()}.
+     */
+    private void removeCancelledTimeouts() {
+        WheelTimeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * Moves the newly scheduled timeouts into their bucket.
+     */
+    private void transferNewTimeouts() {
+        WheelTimeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            final long calculated = timeout.deadline / tickDuration;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+
+            // Timeouts already in the past are expired on the current tick
+            final long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * Sleeps until the next tick.
+     *
+     * @return true once the next tick is reached, false if the scheduler is stopping
+     */
+    private boolean waitForNextTick() {
+        final long deadline = tickDuration * (tick + 1);
+
+        while (true) {
+            final long currentTime = System.nanoTime() - startTime;
+            final long sleepTimeMs = (deadline - currentTime + 999_999) / 1_000_000;
+
+            if (sleepTimeMs <= 0) {
+                return true;
+            }
+
+            try {
+                Thread.sleep(sleepTimeMs);
+            } catch (InterruptedException e) {
+                if (stopRequested) {
+                    return false;
+                }
+            }
+        }
+    }
+}
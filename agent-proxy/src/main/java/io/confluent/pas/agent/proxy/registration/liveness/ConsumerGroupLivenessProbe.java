@@ -0,0 +1,84 @@
+package io.confluent.pas.agent.proxy.registration.liveness;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.ConsumerGroupListing;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Liveness derived from the consumer groups of the cluster.
+ * <p>
+ * A registration is alive as long as a member of a consumer group is assigned a partition of its
+ * request topic. This works with agents which do not publish heartbeats, at the cost of describing
+ * all the consumer groups of the cluster on each refresh.
+ */
+@Slf4j
+public class ConsumerGroupLivenessProbe implements LivenessProbe {
+
+    private final Admin admin;
+    private final Duration timeout;
+    private volatile Set<String> consumedTopics = Set.of();
+
+    /**
+     * Creates a probe.
+     *
+     * @param admin   Admin client of the cluster
+     * @param timeout Maximum time to wait for the consumer groups
+     */
+    public ConsumerGroupLivenessProbe(Admin admin, Duration timeout) {
+        this.admin = admin;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void refresh() {
+        try {
+            final List<String> groupIds = admin.listConsumerGroups()
+                    .valid()
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .stream()
+                    .map(ConsumerGroupListing::groupId)
+                    .toList();
+
+            final Collection<ConsumerGroupDescription> groups = groupIds.isEmpty()
+                    ? List.of()
+                    : admin.describeConsumerGroups(groupIds)
+                    .all()
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .values();
+
+            final Set<String> topics = new HashSet<>();
+            groups.forEach(group -> group.members().forEach(member ->
+                    member.assignment().topicPartitions().stream()
+                            .map(TopicPartition::topic)
+                            .forEach(topics::add)));
+
+            consumedTopics = topics;
+        } catch (Exception e) {
+            // Keep the previous state rather than hiding every tool while the cluster is unreachable
+            log.warn("Failed to describe the consumer groups", e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isAlive(Registration registration) {
+        return consumedTopics.contains(registration.getRequestTopicName());
+    }
+
+    @Override
+    public void close() {
+        admin.close();
+    }
+}
@@ -0,0 +1,104 @@
+package io.confluent.pas.agent.proxy.registration.liveness;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.confluent.pas.agent.common.services.AgentHeartbeat;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Liveness derived from the heartbeats published by the agents.
+ * <p>
+ * A registration is alive as long as a new heartbeat of one of its agent instances was read within the
+ * timeout. The heartbeats are read from a compacted topic holding the last heartbeat of each instance.
+ * The expiry is based on the local time the heartbeats are read at, not on the time they carry, so that
+ * clock skew between the agents and the proxy does not hide a healthy tool.
+ */
+@Slf4j
+public class HeartbeatLivenessProbe implements LivenessProbe {
+
+    /**
+     * Last heartbeat read from an agent instance, with the local time it was read at.
+     */
+    private record ReceivedHeartbeat(long heartbeat, long receivedAt) {
+    }
+
+    private final Map<String, String> heartbeats;
+    private final Duration timeout;
+    private final Clock clock;
+    private final Map<String, ReceivedHeartbeat> receivedHeartbeats = new ConcurrentHashMap<>();
+    private volatile Map<String, Long> lastHeartbeats = Map.of();
+
+    /**
+     * Creates a probe.
+     *
+     * @param heartbeats Heartbeats of the agent instances, serialized heartbeat by key
+     * @param timeout    Time after which an instance without heartbeat is considered gone
+     * @param clock      Clock of the heartbeat expiry
+     */
+    public HeartbeatLivenessProbe(Map<String, String> heartbeats, Duration timeout, Clock clock) {
+        this.heartbeats = heartbeats;
+        this.timeout = timeout;
+        this.clock = clock;
+    }
+
+    @Override
+    public void refresh() {
+        final long now = clock.millis();
+        final Map<String, Long> latest = new HashMap<>();
+        heartbeats.forEach((key, value) -> {
+            final AgentHeartbeat heartbeat = parse(value);
+            if (heartbeat == null) {
+                return;
+            }
+
+            // The heartbeat of an instance is only compared with its previous one, never with the local clock
+            final ReceivedHeartbeat received = receivedHeartbeats.compute(key, (id, previous) ->
+                    previous != null && previous.heartbeat() == heartbeat.timestamp()
+                            ? previous
+                            : new ReceivedHeartbeat(heartbeat.timestamp(), now));
+            latest.merge(heartbeat.registration(), received.receivedAt(), Math::max);
+        });
+        receivedHeartbeats.keySet().removeIf(key -> !heartbeats.containsKey(key));
+
+        lastHeartbeats = latest;
+    }
+
+    @Override
+    public boolean isAlive(Registration registration) {
+        final Long lastHeartbeat = lastHeartbeats.get(registration.getName());
+        return lastHeartbeat != null && clock.millis() - lastHeartbeat <= timeout.toMillis();
+    }
+
+    @Override
+    public void close() {
+        if (heartbeats instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                log.error("Error closing the heartbeat cache", e);
+            }
+        }
+    }
+
+    private static AgentHeartbeat parse(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return JsonUtils.toObject(value, AgentHeartbeat.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring invalid heartbeat: {}", value, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.confluent.pas.agent.proxy.registration.liveness;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+
+import java.io.Closeable;
+
+/**
+ * Source telling whether the requests of a registration are consumed by a live agent.
+ */
+public interface LivenessProbe extends Closeable {
+
+    /**
+     * Reloads the state of the agents, called on a regular basis.
+     */
+    void refresh();
+
+    /**
+     * Checks if a registration has a live agent, as of the last refresh.
+     *
+     * @param registration The registration
+     * @return true if at least one agent consumes the requests of the registration
+     */
+    boolean isAlive(Registration registration);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,192 @@
+package io.confluent.pas.agent.proxy.registration.liveness;
+
+import io.confluent.pas.agent.common.services.KafkaConfiguration;
+import io.confluent.pas.agent.common.services.KafkaPropertiesFactory;
+import io.confluent.pas.agent.common.services.RegistrationStore;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.kcache.KafkaCache;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.common.serialization.Serdes;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks whether the registrations have a live agent consuming their requests.
+ * <p>
+ * The liveness is derived from the agent heartbeats or from the consumer groups of the cluster,
+ * depending on the mode. The probe is refreshed on a regular basis and the listeners are notified
+ * after each refresh, so that the tools without live agent are hidden and fail fast. When liveness
+ * tracking is disabled, every registration is considered alive.
+ */
+@Slf4j
+@Component
+public class LivenessTracker implements DisposableBean {
+
+    /**
+     * Liveness is not tracked, every registration is alive
+     */
+    public static final String MODE_NONE = "none";
+
+    /**
+     * Liveness is derived from the heartbeats published by the agents
+     */
+    public static final String MODE_HEARTBEAT = "heartbeat";
+
+    /**
+     * Liveness is derived from the members of the consumer groups
+     */
+    public static final String MODE_CONSUMER_GROUP = "consumer-group";
+
+    private final LivenessProbe probe;
+    private final ScheduledExecutorService executor;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor used by Spring.
+     *
+     * @param kafkaConfiguration Kafka configuration
+     * @param mode               Source of the liveness: none, heartbeat or consumer-group
+     * @param timeout            Time after which an agent without heartbeat is considered gone, in milliseconds
+     * @param checkInterval      Interval between two liveness checks, in milliseconds
+     * @param heartbeatTopic     Topic of the agent heartbeats
+     */
+    @Autowired
+    public LivenessTracker(KafkaConfiguration kafkaConfiguration,
+                           @Value("${kafka.liveness.mode:" + MODE_NONE + "}") String mode,
+                           @Value("${kafka.liveness.timeout:15000}") long timeout,
+                           @Value("${kafka.liveness.check-interval:5000}") long checkInterval,
+                           @Value("${kafka.liveness.heartbeat-topic:" + KafkaConfiguration.DEFAULT_HEARTBEAT_TOPIC_NAME + "}") String heartbeatTopic) {
+        this.probe = createProbe(kafkaConfiguration, mode.toLowerCase(), Duration.ofMillis(timeout), heartbeatTopic);
+        if (probe == null) {
+            this.executor = null;
+            return;
+        }
+
+        log.info("Tracking the liveness of the registrations from {} every {} ms", mode, checkInterval);
+        probe.refresh();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "liveness-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::check, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor used for testing, the checks are run by calling {@link #check()}.
+     *
+     * @param probe The liveness probe, null to disable liveness tracking
+     */
+    public LivenessTracker(LivenessProbe probe) {
+        this.probe = probe;
+        this.executor = null;
+    }
+
+    /**
+     * @return a tracker considering every registration alive
+     */
+    public static LivenessTracker disabled() {
+        return new LivenessTracker(null);
+    }
+
+    /**
+     * @return true if the liveness of the registrations is tracked
+     */
+    public boolean isEnabled() {
+        return probe != null;
+    }
+
+    /**
+     * Checks if a registration has a live agent.
+     *
+     * @param registration The registration
+     * @return true if an agent consumes the requests of the registration or liveness is not tracked
+     */
+    public boolean isAlive(Registration registration) {
+        return probe == null || probe.isAlive(registration);
+    }
+
+    /**
+     * Adds a listener notified after each liveness check.
+     *
+     * @param listener The listener
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Refreshes the probe and notifies the listeners.
+     */
+    public void check() {
+        if (probe == null) {
+            return;
+        }
+
+        try {
+            probe.refresh();
+        } catch (Exception e) {
+            log.error("Error refreshing the liveness of the registrations", e);
+            return;
+        }
+
+        listeners.forEach(listener -> {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("Error applying the liveness of the registrations", e);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (probe != null) {
+            probe.close();
+        }
+    }
+
+    private static LivenessProbe createProbe(KafkaConfiguration kafkaConfiguration,
+                                             String mode,
+                                             Duration timeout,
+                                             String heartbeatTopic) {
+        return switch (mode) {
+            case MODE_NONE -> null;
+            case MODE_HEARTBEAT -> {
+                final KafkaCache<String, String> heartbeats = new KafkaCache<>(
+                        KafkaPropertiesFactory.getCacheConfig(
+                                kafkaConfiguration,
+                                heartbeatTopic,
+                                "heartbeats",
+                                false,
+                                RegistrationStore.IN_MEMORY),
+                        Serdes.String(),
+                        Serdes.String(),
+                        null,
+                        null);
+                heartbeats.init();
+                yield new HeartbeatLivenessProbe(heartbeats, timeout, Clock.systemUTC());
+            }
+            case MODE_CONSUMER_GROUP -> new ConsumerGroupLivenessProbe(
+                    Admin.create(KafkaPropertiesFactory.getAdminConfig(kafkaConfiguration)),
+                    timeout);
+            default -> throw new IllegalArgumentException("Unknown liveness mode: " + mode
+                    + ", expected " + MODE_NONE + ", " + MODE_HEARTBEAT + " or " + MODE_CONSUMER_GROUP);
+        };
+    }
+}
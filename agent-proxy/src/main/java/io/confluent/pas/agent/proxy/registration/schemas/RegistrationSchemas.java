@@ -1,61 +1,44 @@
 package io.confluent.pas.agent.proxy.registration.schemas;
 
-import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
-import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
 import io.confluent.pas.agent.common.services.schemas.Registration;
-import io.confluent.pas.agent.common.utils.Lazy;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.IOException;
-
+/**
+ * The request and response schemas of a registration, resolved through the shared {@link SchemaCache}.
+ */
 @Slf4j
 public class RegistrationSchemas {
 
-    private final Lazy<RegistrationSchema> requestSchema;
-    private final Lazy<RegistrationSchema> responseSchema;
+    private final SchemaCache schemaCache;
+    private final String requestSubject;
+    private final String responseSubject;
 
     public RegistrationSchema getRequestSchema() {
-        return requestSchema.get();
+        return getSchema(requestSubject);
     }
 
     public RegistrationSchema getResponseSchema() {
-        return responseSchema.get();
+        return getSchema(responseSubject);
     }
 
-    public RegistrationSchemas(SchemaRegistryClient client,
-                               Registration registration) throws IOException, RestClientException {
-        this.requestSchema = new Lazy<>(() -> {
-            try {
-                return getSchema(registration.getRequestTopicName(), client);
-            } catch (RestClientException | IOException e) {
-                log.error("Failed to get request schema", e);
-                throw new RuntimeException(e);
-            }
-        });
-        this.responseSchema = new Lazy<>(() -> {
-            try {
-                return getSchema(registration.getResponseTopicName(), client);
-            } catch (RestClientException | IOException e) {
-                log.error("Failed to get response schema", e);
-                throw new RuntimeException(e);
-            }
-        });
+    public RegistrationSchemas(SchemaCache schemaCache, Registration registration) {
+        this.schemaCache = schemaCache;
+        this.requestSubject = SchemaCache.getSubject(registration.getRequestTopicName());
+        this.responseSubject = SchemaCache.getSubject(registration.getResponseTopicName());
     }
 
     /**
-     * Get the schema for a topic
+     * Get the schema of a subject
      *
-     * @param topicName The topic name
+     * @param subject The subject
      * @return The schema
-     * @throws RestClientException If the schema cannot be retrieved
-     * @throws IOException         If the schema cannot be retrieved
      */
-    private static RegistrationSchema getSchema(String topicName,
-                                                SchemaRegistryClient schemaRegistryClient) throws RestClientException, IOException {
-        final String subject = topicName + "-value";
-        final String schema = schemaRegistryClient.getLatestSchemaMetadata(subject).getSchema();
-
-
-        return new RegistrationSchema(schema);
+    private RegistrationSchema getSchema(String subject) {
+        try {
+            return schemaCache.get(subject);
+        } catch (RuntimeException e) {
+            log.error("Failed to get schema of {}", subject, e);
+            throw e;
+        }
     }
 }
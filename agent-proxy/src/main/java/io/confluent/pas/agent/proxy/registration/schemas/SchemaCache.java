@@ -0,0 +1,167 @@
+package io.confluent.pas.agent.proxy.registration.schemas;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.confluent.kafka.schemaregistry.client.SchemaMetadata;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.pas.agent.common.services.KafkaConfiguration;
+import io.confluent.pas.agent.common.services.KafkaPropertiesFactory;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Proxy-wide cache of the registration schemas, shared by all the registration handlers.
+ * <p>
+ * The latest schema of each subject is cached and refreshed in the background once the refresh
+ * interval has elapsed, stale schemas being served while they are reloaded. Parsed schemas are
+ * kept per subject and version, so that a refresh returning the same version does not parse the
+ * schema again. Schemas are prefetched when registrations arrive, which keeps the Schema Registry
+ * round trips off the request path. Hits and misses are exposed as cache metrics.
+ */
+@Slf4j
+@Component
+public class SchemaCache implements DisposableBean {
+
+    static final String CACHE_NAME = "registration-schemas";
+
+    /**
+     * Identifies a version of the schema of a subject.
+     */
+    private record SchemaVersion(String subject, int version) {
+    }
+
+    private final SchemaRegistryClient client;
+    private final ExecutorService executor;
+    private final LoadingCache<String, RegistrationSchema> latestSchemas;
+    private final Cache<SchemaVersion, RegistrationSchema> schemaVersions;
+
+    @Autowired
+    public SchemaCache(KafkaConfiguration kafkaConfiguration,
+                       MeterRegistry meterRegistry,
+                       @Value("${kafka.schema-cache-size:10000}") int cacheSize,
+                       @Value("${kafka.schema-cache-refresh-interval:60000}") long refreshInterval) {
+        this(KafkaPropertiesFactory.getSchemRegistryClient(kafkaConfiguration),
+                meterRegistry,
+                cacheSize,
+                Duration.ofMillis(refreshInterval));
+    }
+
+    public SchemaCache(SchemaRegistryClient client) {
+        this(client, new SimpleMeterRegistry(), 10000, Duration.ofMinutes(1));
+    }
+
+    public SchemaCache(SchemaRegistryClient client,
+                       MeterRegistry meterRegistry,
+                       int cacheSize,
+                       Duration refreshInterval) {
+        this.client = client;
+        // Schema Registry calls are blocking, they are loaded on virtual threads
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.schemaVersions = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+        this.latestSchemas = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .refreshAfterWrite(refreshInterval)
+                .executor(executor)
+                .recordStats()
+                .build(this::loadLatestSchema);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, latestSchemas, CACHE_NAME);
+    }
+
+    /**
+     * Returns the latest schema of the subject, loading it if it is not cached yet.
+     *
+     * @param subject The subject
+     * @return The schema
+     */
+    public RegistrationSchema get(String subject) {
+        return latestSchemas.get(subject);
+    }
+
+    /**
+     * Loads or refreshes the schemas of the registrations in the background.
+     *
+     * @param registrations The registrations
+     */
+    public void prefetch(Collection<Registration> registrations) {
+        final List<String> subjects = registrations.stream()
+                .filter(Objects::nonNull)
+                .flatMap(registration -> getSubjects(registration).stream())
+                .distinct()
+                .toList();
+
+        if (!subjects.isEmpty()) {
+            log.debug("Prefetching {} schemas", subjects.size());
+            latestSchemas.refreshAll(subjects);
+        }
+    }
+
+    /**
+     * Drops the schemas of a registration.
+     *
+     * @param registration The registration
+     */
+    public void invalidate(Registration registration) {
+        latestSchemas.invalidateAll(getSubjects(registration));
+    }
+
+    /**
+     * Returns the subject of the schema of a topic.
+     *
+     * @param topicName The topic name
+     * @return The subject
+     */
+    public static String getSubject(String topicName) {
+        return topicName + "-value";
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static List<String> getSubjects(Registration registration) {
+        return List.of(
+                getSubject(registration.getRequestTopicName()),
+                getSubject(registration.getResponseTopicName()));
+    }
+
+    /**
+     * Loads the latest schema of a subject, reusing the parsed schema if the version is known.
+     *
+     * @param subject The subject
+     * @return The schema
+     * @throws Exception if the schema cannot be retrieved or parsed
+     */
+    private RegistrationSchema loadLatestSchema(String subject) throws Exception {
+        final SchemaMetadata metadata = client.getLatestSchemaMetadata(subject);
+        final SchemaVersion version = new SchemaVersion(subject, metadata.getVersion());
+
+        final RegistrationSchema cached = schemaVersions.getIfPresent(version);
+        if (cached != null) {
+            return cached;
+        }
+
+        log.info("Loaded schema of {} version {}", subject, metadata.getVersion());
+        final RegistrationSchema schema = new RegistrationSchema(metadata.getSchema());
+        schemaVersions.put(version, schema);
+        return schema;
+    }
+}
@@ -0,0 +1,68 @@
+package io.confluent.pas.agent.proxy.registration.sharding;
+
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Consistent hash ring assigning registration names to proxy nodes.
+ * <p>
+ * Each node is placed on the ring at several positions, its virtual nodes, and owns the names hashed
+ * between the position of the previous virtual node and its own. When a node joins or leaves, only
+ * the names of the ring segments it gains or loses change owner, roughly 1/N of the names.
+ * <p>
+ * Names and nodes are hashed with murmur2, the hash used by Kafka to partition the records, so that
+ * every node builds the same ring from the same members. Instances are immutable.
+ */
+public class ConsistentHashRing {
+
+    private final NavigableMap<Integer, String> ring = new TreeMap<>();
+    private final Set<String> nodes;
+
+    /**
+     * Builds the ring of a set of nodes.
+     *
+     * @param nodes        Identifiers of the nodes
+     * @param virtualNodes Number of positions of each node on the ring
+     */
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be greater than 0");
+        }
+
+        // Sort the nodes so that hash collisions are resolved the same way on every node
+        this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * Returns the node owning a key.
+     *
+     * @param key The key, i.e. the name of the registration
+     * @return The identifier of the owner, empty if the ring has no node
+     */
+    public Optional<String> getOwner(String key) {
+        if (ring.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final Map.Entry<Integer, String> entry = ring.ceilingEntry(hash(key));
+        return Optional.of(entry != null ? entry.getValue() : ring.firstEntry().getValue());
+    }
+
+    /**
+     * @return the identifiers of the nodes of the ring, sorted
+     */
+    public Set<String> getNodes() {
+        return nodes;
+    }
+
+    private static int hash(String value) {
+        return Utils.murmur2(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
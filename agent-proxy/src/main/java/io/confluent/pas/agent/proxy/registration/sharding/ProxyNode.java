@@ -0,0 +1,11 @@
+package io.confluent.pas.agent.proxy.registration.sharding;
+
+/**
+ * A proxy node member of the registry sharding.
+ *
+ * @param id        Unique identifier of the node
+ * @param url       Base URL under which the other nodes reach the node
+ * @param heartbeat Time of the last heartbeat of the node, in milliseconds since the epoch
+ */
+public record ProxyNode(String id, String url, long heartbeat) {
+}
@@ -0,0 +1,404 @@
+package io.confluent.pas.agent.proxy.registration.sharding;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.confluent.pas.agent.common.services.KafkaConfiguration;
+import io.confluent.pas.agent.common.services.KafkaPropertiesFactory;
+import io.confluent.pas.agent.common.services.RegistrationStore;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import io.kcache.CacheUpdateHandler;
+import io.kcache.KafkaCache;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.Serdes;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shards the registrations across the proxy nodes.
+ * <p>
+ * Each node owns the registrations whose name falls into its slice of a consistent hash ring, it is the
+ * only one subscribing to their response topics and sending their requests. The other nodes forward
+ * the calls they receive for them to the owner.
+ * <p>
+ * The membership is kept in a compacted topic: each node publishes its URL and a heartbeat on a regular
+ * basis, the nodes from which no new heartbeat was read for the timeout are dropped from the ring. The
+ * expiry is based on the local time the heartbeats are read at, not on the time they carry, so that
+ * clock skew between the nodes does not evict a healthy one. The listeners are notified whenever the
+ * members change, so that the registrations are rebalanced.
+ * <p>
+ * When sharding is disabled, every registration is local.
+ */
+@Slf4j
+@Component
+public class ShardManager implements DisposableBean {
+
+    /**
+     * Header identifying the node which forwarded a call. The owner serves a forwarded call or fails it,
+     * it never forwards it again, so that calls do not bounce between nodes while the ring changes.
+     */
+    public static final String FORWARDED_BY_HEADER = "X-Agent-Proxy-Forwarded-By";
+    /**
+     * Query parameter identifying the node which redirected a call, the counterpart of
+     * {@link #FORWARDED_BY_HEADER} for the redirected REST calls.
+     */
+    public static final String FORWARDED_BY_PARAM = "forwardedBy";
+
+    private static final ParameterizedTypeReference<Map<String, Object>> MAP_TYPE = new ParameterizedTypeReference<>() {
+    };
+
+    /**
+     * Last heartbeat read from a node, with the local time it was read at.
+     */
+    private record ReceivedHeartbeat(long heartbeat, long receivedAt) {
+    }
+
+    private final boolean enabled;
+    private final ProxyNode self;
+    private final Map<String, String> membership;
+    private final int virtualNodes;
+    private final Duration nodeTimeout;
+    private final Clock clock;
+    private final WebClient webClient;
+    private final ScheduledExecutorService heartbeatExecutor;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, ReceivedHeartbeat> receivedHeartbeats = new ConcurrentHashMap<>();
+    private volatile Map<String, ProxyNode> members = Map.of();
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * Constructor used by Spring.
+     *
+     * @param kafkaConfiguration Kafka configuration
+     * @param enabled            Whether the registrations are sharded across the nodes
+     * @param nodeId             Identifier of this node, the Kafka client ID by default
+     * @param advertisedUrl      URL under which the other nodes reach this node
+     * @param virtualNodes       Number of positions of each node on the hash ring
+     * @param heartbeatInterval  Interval between two heartbeats, in milliseconds
+     * @param nodeTimeout        Time after which a node without heartbeat is dropped, in milliseconds
+     * @param membershipTopic    Topic holding the membership
+     * @param forwardBasicAuth   Credentials, user:password, sent with the forwarded calls
+     */
+    @Autowired
+    public ShardManager(KafkaConfiguration kafkaConfiguration,
+                        @Value("${kafka.shard.enabled:false}") boolean enabled,
+                        @Value("${kafka.shard.node-id:#{null}}") String nodeId,
+                        @Value("${kafka.shard.advertised-url:#{null}}") String advertisedUrl,
+                        @Value("${kafka.shard.virtual-nodes:128}") int virtualNodes,
+                        @Value("${kafka.shard.heartbeat-interval:5000}") long heartbeatInterval,
+                        @Value("${kafka.shard.node-timeout:15000}") long nodeTimeout,
+                        @Value("${kafka.shard.membership-topic:_agent_proxy_nodes}") String membershipTopic,
+                        @Value("${kafka.shard.forward-basic-auth:#{null}}") String forwardBasicAuth) {
+        this.enabled = enabled;
+        this.virtualNodes = virtualNodes;
+        this.nodeTimeout = Duration.ofMillis(nodeTimeout);
+        this.clock = Clock.systemUTC();
+
+        if (!enabled) {
+            this.self = new ProxyNode(nodeId, advertisedUrl, 0);
+            this.membership = Map.of();
+            this.webClient = null;
+            this.heartbeatExecutor = null;
+            return;
+        }
+
+        if (StringUtils.isEmpty(advertisedUrl)) {
+            throw new IllegalArgumentException("kafka.shard.advertised-url is required when sharding is enabled");
+        }
+
+        final String id = StringUtils.isNotEmpty(nodeId)
+                ? nodeId
+                : StringUtils.defaultIfEmpty(kafkaConfiguration.clientId(), UUID.randomUUID().toString());
+        this.self = new ProxyNode(id, StringUtils.removeEnd(advertisedUrl, "/"), 0);
+        this.webClient = createWebClient(forwardBasicAuth);
+        this.membership = createMembershipCache(kafkaConfiguration, membershipTopic);
+
+        heartbeat();
+        log.info("Node {} joined the registry sharding with members {}", self.id(), members.keySet());
+
+        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "shard-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleAtFixedRate(this::heartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor used for testing, the heartbeats are sent by calling {@link #heartbeat()}.
+     *
+     * @param self         This node
+     * @param membership   Membership store, node identifier to serialized node
+     * @param virtualNodes Number of positions of each node on the hash ring
+     * @param nodeTimeout  Time after which a node without heartbeat is dropped
+     * @param clock        Clock of the heartbeats and of their expiry
+     */
+    public ShardManager(ProxyNode self,
+                        Map<String, String> membership,
+                        int virtualNodes,
+                        Duration nodeTimeout,
+                        Clock clock) {
+        this.enabled = true;
+        this.self = self;
+        this.membership = membership;
+        this.virtualNodes = virtualNodes;
+        this.nodeTimeout = nodeTimeout;
+        this.clock = clock;
+        this.webClient = WebClient.create();
+        this.heartbeatExecutor = null;
+    }
+
+    private ShardManager() {
+        this.enabled = false;
+        this.self = new ProxyNode(null, null, 0);
+        this.membership = Map.of();
+        this.virtualNodes = 1;
+        this.nodeTimeout = Duration.ZERO;
+        this.clock = Clock.systemUTC();
+        this.webClient = null;
+        this.heartbeatExecutor = null;
+    }
+
+    /**
+     * @return a disabled shard manager, every registration is local
+     */
+    public static ShardManager local() {
+        return new ShardManager();
+    }
+
+    /**
+     * @return true if the registrations are sharded across the nodes
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return this node
+     */
+    public ProxyNode getSelf() {
+        return self;
+    }
+
+    /**
+     * @return the live members, including this node
+     */
+    public Collection<ProxyNode> getMembers() {
+        return members.values();
+    }
+
+    /**
+     * Checks if a registration is owned by this node.
+     *
+     * @param name The name of the registration
+     * @return true if this node owns the registration or sharding is disabled
+     */
+    public boolean isLocal(String name) {
+        return getOwner(name)
+                .map(owner -> owner.id().equals(self.id()))
+                .orElse(true);
+    }
+
+    /**
+     * Returns the node owning a registration.
+     *
+     * @param name The name of the registration
+     * @return The owner, empty if sharding is disabled
+     */
+    public Optional<ProxyNode> getOwner(String name) {
+        final ConsistentHashRing currentRing = ring;
+        if (!enabled || currentRing == null) {
+            return Optional.empty();
+        }
+
+        return currentRing.getOwner(name).map(members::get);
+    }
+
+    /**
+     * Adds a listener notified when the members change.
+     *
+     * @param listener The listener
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Forwards a call to the node owning the registration, through its REST endpoint.
+     *
+     * @param name      The name of the registration
+     * @param arguments The arguments of the call
+     * @return The response of the owner
+     */
+    public Mono<Map<String, Object>> forward(String name, Map<String, Object> arguments) {
+        final ProxyNode owner = getOwner(name).orElse(null);
+        if (owner == null || owner.id().equals(self.id())) {
+            return Mono.error(new IllegalStateException("Registration " + name + " is not owned by another node"));
+        }
+
+        log.debug("Forwarding call to {} to node {}", name, owner.id());
+        return webClient.post()
+                .uri(owner.url() + "/agents/{name}", name)
+                .header(FORWARDED_BY_HEADER, self.id())
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(arguments)
+                .retrieve()
+                .bodyToMono(MAP_TYPE);
+    }
+
+    /**
+     * Publishes the heartbeat of this node and refreshes the members.
+     */
+    public void heartbeat() {
+        try {
+            membership.put(self.id(), JsonUtils.toString(new ProxyNode(self.id(), self.url(), clock.millis())));
+        } catch (Exception e) {
+            log.error("Error publishing the heartbeat of node {}", self.id(), e);
+        }
+
+        refresh();
+    }
+
+    /**
+     * Rebuilds the ring from the membership, notifying the listeners if the members changed.
+     */
+    public void refresh() {
+        final long now = clock.millis();
+        final Map<String, ProxyNode> liveMembers = new TreeMap<>();
+        membership.forEach((id, value) -> {
+            final ProxyNode node = parse(value);
+            if (node == null) {
+                return;
+            }
+
+            // The heartbeat of a node is only compared with its previous one, never with the local clock
+            final ReceivedHeartbeat received = receivedHeartbeats.compute(id, (key, previous) ->
+                    previous != null && previous.heartbeat() == node.heartbeat()
+                            ? previous
+                            : new ReceivedHeartbeat(node.heartbeat(), now));
+            if (now - received.receivedAt() <= nodeTimeout.toMillis()) {
+                liveMembers.put(id, node);
+            }
+        });
+        receivedHeartbeats.keySet().removeIf(id -> !membership.containsKey(id));
+        // This node is alive as long as it runs, even if its heartbeat has not been read back yet
+        liveMembers.putIfAbsent(self.id(), self);
+
+        final boolean changed;
+        synchronized (this) {
+            changed = ring == null || !ring.getNodes().equals(liveMembers.keySet());
+            members = Collections.unmodifiableMap(liveMembers);
+            if (changed) {
+                ring = new ConsistentHashRing(liveMembers.keySet(), virtualNodes);
+            }
+        }
+
+        if (changed) {
+            log.info("Registry shard members changed: {}", liveMembers.keySet());
+            listeners.forEach(listener -> {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    log.error("Error rebalancing the registrations", e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
+        }
+
+        if (!enabled) {
+            return;
+        }
+
+        // Leave the ring right away rather than after the timeout
+        try {
+            membership.remove(self.id());
+        } catch (Exception e) {
+            log.warn("Error removing node {} from the membership", self.id(), e);
+        }
+
+        if (membership instanceof KafkaCache<String, String> cache) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                log.error("Error closing the membership cache", e);
+            }
+        }
+    }
+
+    private ProxyNode parse(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return JsonUtils.toObject(value, ProxyNode.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring invalid node: {}", value, e);
+            return null;
+        }
+    }
+
+    private KafkaCache<String, String> createMembershipCache(KafkaConfiguration kafkaConfiguration,
+                                                             String membershipTopic) {
+        final KafkaCache<String, String> cache = new KafkaCache<>(
+                KafkaPropertiesFactory.getCacheConfig(
+                        kafkaConfiguration,
+                        membershipTopic,
+                        "nodes",
+                        false,
+                        RegistrationStore.IN_MEMORY),
+                Serdes.String(),
+                Serdes.String(),
+                new CacheUpdateHandler<>() {
+                    @Override
+                    public void handleUpdate(String key,
+                                             String value,
+                                             String oldValue,
+                                             TopicPartition tp,
+                                             long offset,
+                                             long ts) {
+                        if (ring != null) {
+                            refresh();
+                        }
+                    }
+                },
+                null);
+        cache.init();
+
+        return cache;
+    }
+
+    private static WebClient createWebClient(String forwardBasicAuth) {
+        final WebClient.Builder builder = WebClient.builder();
+        if (StringUtils.isNotEmpty(forwardBasicAuth)) {
+            final String user = StringUtils.substringBefore(forwardBasicAuth, ":");
+            final String password = StringUtils.substringAfter(forwardBasicAuth, ":");
+            builder.defaultHeaders(headers -> headers.setBasicAuth(user, password));
+        }
+
+        return builder.build();
+    }
+}
@@ -1,21 +1,30 @@
 package io.confluent.pas.agent.proxy.rest.agents;
 
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
 import io.confluent.pas.agent.common.services.schemas.*;
 import io.confluent.pas.agent.common.utils.JsonUtils;
 import io.confluent.pas.agent.common.utils.UriUtils;
+import io.confluent.pas.agent.proxy.registration.RequestResponseHandler;
+import io.confluent.pas.agent.proxy.registration.exceptions.AgentUnavailableException;
+import io.confluent.pas.agent.proxy.registration.exceptions.CircuitOpenException;
+import io.confluent.pas.agent.proxy.registration.exceptions.TooManyRequestsException;
 import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
+import io.confluent.pas.agent.proxy.registration.sharding.ProxyNode;
+import io.confluent.pas.agent.proxy.registration.sharding.ShardManager;
 import io.swagger.v3.oas.models.PathItem;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -36,6 +45,9 @@ import java.util.function.Function;
  * The server supports two main types of endpoints:
  * 1. Standard API endpoints (POST-based tool operations)
  * 2. Resource-based endpoints (GET-based resource access)
+ * <p>
+ * The response fields offloaded by the agents to the claim check are streamed from the blob store
+ * to the client, without being loaded in memory.
  */
 @Slf4j
 @Component
@@ -68,27 +80,48 @@ public class AgentAsyncServer {
      */
     private final Map<String, RegistrationsItem> registrations = new ConcurrentHashMap<>();
 
+    /**
+     * Immutable snapshot of the registered endpoints served to the list requests, rebuilt on change
+     */
+    private volatile List<RegistrationsItem> registrationsSnapshot = List.of();
+
     /**
      * Generator for OpenAPI documentation
      */
     private final AgentOpenApiGenerator openApiGenerator;
 
+    /**
+     * Locates the node owning the tools not served by this node
+     */
+    private final ShardManager shardManager;
+
+    /**
+     * Resolves the response fields offloaded by the agents
+     */
+    private final RequestResponseHandler requestResponseHandler;
+
     /**
      * Constructs a new AgentAsyncServer with an OpenAPI generator.
      *
-     * @param openApiGenerator The generator for OpenAPI documentation
+     * @param openApiGenerator       The generator for OpenAPI documentation
+     * @param shardManager           Locates the node owning each registration
+     * @param requestResponseHandler Resolves the response fields offloaded by the agents
      */
-    public AgentAsyncServer(AgentOpenApiGenerator openApiGenerator) {
+    public AgentAsyncServer(AgentOpenApiGenerator openApiGenerator,
+                            ShardManager shardManager,
+                            RequestResponseHandler requestResponseHandler) {
         this.openApiGenerator = openApiGenerator;
+        this.shardManager = shardManager;
+        this.requestResponseHandler = requestResponseHandler;
     }
 
     /**
      * Retrieves all currently registered endpoints.
      *
-     * @return A list of all registered endpoints
+     * @return An immutable list of all registered endpoints
      */
     public List<RegistrationsItem> getRegistrations() {
-        return new ArrayList<>(registrations.values());
+        return registrationsSnapshot;
     }
 
     /**
@@ -116,7 +149,24 @@ public class AgentAsyncServer {
     public Mono<Void> addRegistration(Registration registration,
                                       RegistrationSchemas schemas,
                                       Function<Map<String, Object>, Mono<Map<String, Object>>> call) {
-        registrations.put(registration.getName(), new RegistrationsItem(registration, schemas, call));
+        synchronized (registrations) {
+            registrations.put(registration.getName(), new RegistrationsItem(registration, schemas, call));
+            registrationsSnapshot = List.copyOf(registrations.values());
+        }
+        return Mono.empty();
+    }
+
+    /**
+     * Removes an endpoint registration from the server.
+     *
+     * @param registrationName The name of the registration to remove
+     * @return Empty Mono indicating completion
+     */
+    public Mono<Void> removeRegistration(String registrationName) {
+        synchronized (registrations) {
+            registrations.remove(registrationName);
+            registrationsSnapshot = List.copyOf(registrations.values());
+        }
         return Mono.empty();
     }
 
@@ -169,7 +219,8 @@ public class AgentAsyncServer {
     /**
      * Processes a POST request for a tool endpoint.
      * This method handles the complete request lifecycle including validation,
-     * invocation of the appropriate handler, and error handling.
+     * invocation of the appropriate handler, and error handling. Requests to a tool
+     * owned by another node are redirected to that node.
      *
      * @param request The incoming server request
      * @return A Mono containing the server response
@@ -183,6 +234,25 @@ public class AgentAsyncServer {
         log.debug("Processing request for {}", toolName);
 
         if (isNotRegistered(toolName)) {
+            final ProxyNode owner = shardManager.getOwner(toolName)
+                    .filter(node -> !node.id().equals(shardManager.getSelf().id()))
+                    .orElse(null);
+            if (owner != null && isForwarded(request)) {
+                // The nodes disagree on the owner while the ring changes, a forwarded call is never forwarded again
+                return createErrorResponse(HttpStatus.SERVICE_UNAVAILABLE,
+                        String.format("Tool '%s' is not owned by this node, the registrations are being rebalanced",
+                                toolName));
+            }
+            if (owner != null) {
+                // 307 keeps the method and the body of the request
+                log.debug("Redirecting request for {} to node {}", toolName, owner.id());
+                return ServerResponse.temporaryRedirect(UriComponentsBuilder.fromUriString(owner.url() + request.path())
+                        .queryParam(ShardManager.FORWARDED_BY_PARAM, shardManager.getSelf().id())
+                        .build()
+                        .encode()
+                        .toUri()).build();
+            }
+
             return createErrorResponse(HttpStatus.BAD_REQUEST,
                     String.format("Tool '%s' is not registered", toolName));
         }
@@ -192,15 +262,24 @@ public class AgentAsyncServer {
                 .flatMap(arguments -> callRegistration(toolName, arguments))
                 .doOnError(e -> log.error("Error processing request for tool {}: {}",
                         toolName, e.getMessage(), e))
-                .flatMap(response -> ServerResponse.ok()
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .bodyValue(response))
+                .flatMap(this::createToolResponse)
                 .onErrorResume(e -> createErrorResponse(
-                        HttpStatus.INTERNAL_SERVER_ERROR,
+                        getErrorStatus(e),
                         String.format("Error processing request for tool '%s': %s",
                                 toolName, e.getMessage())));
     }
 
+    /**
+     * Checks if a request was forwarded or redirected by another node.
+     *
+     * @param request The incoming server request
+     * @return true if another node already forwarded the request
+     */
+    private static boolean isForwarded(ServerRequest request) {
+        return request.headers().firstHeader(ShardManager.FORWARDED_BY_HEADER) != null
+                || request.queryParam(ShardManager.FORWARDED_BY_PARAM).isPresent();
+    }
+
     /**
      * Processes a GET request for a resource endpoint.
      * This method handles the complete request lifecycle for resource-based
@@ -234,19 +313,55 @@ public class AgentAsyncServer {
                         requestPath, e.getMessage(), e))
                 .flatMap(this::createResourceResponse)
                 .onErrorResume(e -> createErrorResponse(
-                        HttpStatus.INTERNAL_SERVER_ERROR,
+                        getErrorStatus(e),
                         String.format("Error processing resource request: %s", e.getMessage())));
     }
 
+    /**
+     * Creates a server response from a tool response.
+     * A response holding offloaded fields is streamed, the offloaded fields being read from the blob store
+     * while the response is written.
+     *
+     * @param response The raw response map from the tool handler
+     * @return A Mono containing the JSON server response
+     */
+    private Mono<ServerResponse> createToolResponse(Map<String, Object> response) {
+        final ClaimCheck claimCheck = requestResponseHandler.getClaimCheck();
+        if (claimCheck == null || !ClaimCheckBodies.holdsReferences(response)) {
+            return ServerResponse.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(response);
+        }
+
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromDataBuffers(ClaimCheckBodies.writeJson(
+                        claimCheck,
+                        response,
+                        DefaultDataBufferFactory.sharedInstance)));
+    }
+
     /**
      * Creates a server response from a resource response.
      * Handles content type resolution and response formatting based on the resource
-     * type.
+     * type. An offloaded blob or text is streamed from the blob store as is.
      *
      * @param response The raw response map from the resource handler
      * @return A Mono containing the formatted server response
      */
     private Mono<ServerResponse> createResourceResponse(Map<String, Object> response) {
+        final ClaimCheck claimCheck = requestResponseHandler.getClaimCheck();
+        final Object content = response.get(
+                ResourceResponse.ResponseType.BLOB.getValue().equals(response.get("type")) ? "blob" : "text");
+        if (claimCheck != null && ClaimCheck.isReference(content)) {
+            return ServerResponse.ok()
+                    .contentType(MediaType.parseMediaType((String) response.get("mimeType")))
+                    .body(BodyInserters.fromDataBuffers(ClaimCheckBodies.readField(
+                            claimCheck,
+                            content,
+                            DefaultDataBufferFactory.sharedInstance)));
+        }
+
         final ResourceResponse resourceResponse = JsonUtils.toObject(response, ResourceResponse.class);
         final MediaType mediaType = MediaType.parseMediaType(resourceResponse.getMimeType());
         final String responseContent = extractResponseContent(resourceResponse);
@@ -295,6 +410,25 @@ public class AgentAsyncServer {
         return urlParts.isEmpty() ? null : urlParts.getFirst();
     }
 
+    /**
+     * Maps an error to the HTTP status returned to the caller.
+     * Requests rejected by the admission control are reported as 429 so that clients can back off,
+     * requests to a registration whose circuit breaker is open or without live agent as 503.
+     *
+     * @param error The error
+     * @return The HTTP status
+     */
+    private HttpStatus getErrorStatus(Throwable error) {
+        if (error instanceof TooManyRequestsException) {
+            return HttpStatus.TOO_MANY_REQUESTS;
+        }
+        if (error instanceof CircuitOpenException || error instanceof AgentUnavailableException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
     /**
      * Creates a standardized error response with the given status and message.
      * Logs the error and formats it as a JSON response with error details.
@@ -0,0 +1,165 @@
+package io.confluent.pas.agent.proxy.rest.agents;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the response bodies holding fields offloaded to the claim check.
+ * <p>
+ * The offloaded fields are read from the blob store in chunks and written to the client as they are
+ * read, so that a large blob is never held on the heap as a whole.
+ */
+class ClaimCheckBodies {
+
+    static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Checks whether a response holds offloaded fields.
+     *
+     * @param response The response
+     * @return true if at least one of its fields is a reference
+     */
+    static boolean holdsReferences(Map<String, Object> response) {
+        return response.values().stream().anyMatch(ClaimCheck::isReference);
+    }
+
+    /**
+     * Streams the text of an offloaded field as is.
+     *
+     * @param claimCheck    The claim check
+     * @param reference     The reference of the field
+     * @param bufferFactory The factory of the buffers
+     * @return The UTF-8 text of the field
+     */
+    static Flux<DataBuffer> readField(ClaimCheck claimCheck, Object reference, DataBufferFactory bufferFactory) {
+        return DataBufferUtils.readInputStream(() -> claimCheck.open(reference), bufferFactory, CHUNK_SIZE)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Streams a response as JSON, its offloaded fields written as JSON strings.
+     *
+     * @param claimCheck    The claim check
+     * @param response      The response
+     * @param bufferFactory The factory of the buffers
+     * @return The JSON of the response
+     */
+    static Flux<DataBuffer> writeJson(ClaimCheck claimCheck,
+                                      Map<String, Object> response,
+                                      DataBufferFactory bufferFactory) {
+        final List<Flux<DataBuffer>> parts = new ArrayList<>();
+        final ByteArrayOutputStream inline = new ByteArrayOutputStream();
+
+        inline.writeBytes("{".getBytes(StandardCharsets.UTF_8));
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : response.entrySet()) {
+            if (!first) {
+                inline.writeBytes(",".getBytes(StandardCharsets.UTF_8));
+            }
+            first = false;
+            inline.writeBytes(toJson(entry.getKey()));
+            inline.writeBytes(":".getBytes(StandardCharsets.UTF_8));
+
+            if (!ClaimCheck.isReference(entry.getValue())) {
+                inline.writeBytes(toJson(entry.getValue()));
+                continue;
+            }
+
+            // Flush the fields written so far, then stream the offloaded field between its quotes
+            inline.writeBytes("\"".getBytes(StandardCharsets.UTF_8));
+            parts.add(Flux.just(bufferFactory.wrap(inline.toByteArray())));
+            parts.add(writeString(claimCheck, entry.getValue(), bufferFactory));
+            inline.reset();
+            inline.writeBytes("\"".getBytes(StandardCharsets.UTF_8));
+        }
+        inline.writeBytes("}".getBytes(StandardCharsets.UTF_8));
+        parts.add(Flux.just(bufferFactory.wrap(inline.toByteArray())));
+
+        return Flux.concat(parts);
+    }
+
+    /**
+     * Streams the text of an offloaded field escaped as the content of a JSON string.
+     *
+     * @param claimCheck    The claim check
+     * @param reference     The reference of the field
+     * @param bufferFactory The factory of the buffers
+     * @return The escaped UTF-8 text of the field, without its quotes
+     */
+    private static Flux<DataBuffer> writeString(ClaimCheck claimCheck,
+                                                Object reference,
+                                                DataBufferFactory bufferFactory) {
+        final JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+
+        return Flux.using(
+                        () -> new InputStreamReader(claimCheck.open(reference), StandardCharsets.UTF_8),
+                        reader -> Flux.<DataBuffer, char[]>generate(() -> new char[0], (pending, sink) -> {
+                            final char[] buffer = Arrays.copyOf(pending, CHUNK_SIZE);
+                            final int read = read(reader, buffer, pending.length);
+                            if (read < 0 && pending.length == 0) {
+                                sink.complete();
+                                return pending;
+                            }
+
+                            // A surrogate pair split between two chunks is only escaped once complete
+                            final int length = pending.length + Math.max(read, 0);
+                            final int escaped = read >= 0 && Character.isHighSurrogate(buffer[length - 1])
+                                    ? length - 1
+                                    : length;
+                            sink.next(bufferFactory.wrap(encoder.quoteAsUTF8(new String(buffer, 0, escaped))));
+                            return Arrays.copyOfRange(buffer, escaped, length);
+                        }),
+                        ClaimCheckBodies::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Reads the next chunk of a field.
+     *
+     * @param reader The reader of the field
+     * @param buffer The buffer of the chunk
+     * @param offset The offset the chunk is read at
+     * @return The number of characters read, -1 once the field is read
+     */
+    private static int read(Reader reader, char[] buffer, int offset) {
+        try {
+            return reader.read(buffer, offset, buffer.length - offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read an offloaded field", e);
+        }
+    }
+
+    private static byte[] toJson(Object value) {
+        try {
+            return JsonUtils.toString(value).getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize the response", e);
+        }
+    }
+
+    private static void close(Reader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,36 +1,217 @@
 package io.confluent.pas.agent.proxy.rest.control;
 
 import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.proxy.registration.CircuitBreaker;
 import io.confluent.pas.agent.proxy.registration.RegistrationCoordinator;
-import io.confluent.pas.agent.proxy.registration.handlers.RegistrationHandler;
+import io.confluent.pas.agent.proxy.registration.ResultCache;
+import io.confluent.pas.agent.proxy.registration.handlers.CompositeHandler;
+import io.confluent.pas.agent.proxy.registration.sharding.ProxyNode;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.List;
+import java.util.*;
+import java.util.function.Predicate;
 
 @Slf4j
 @RestController
 @Tag(name = "Control API", description = "Control API for registration management")
 public class ControlAPIController {
 
+    /**
+     * Header holding the cursor of the next page of registrations
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final RegistrationCoordinator coordinator;
 
+    /**
+     * Identifies this process in the ETags, the version of the registrations being local to the process: it
+     * restarts after a restart and differs between the nodes behind a load balancer
+     */
+    private final String bootId = UUID.randomUUID().toString();
+
     public ControlAPIController(RegistrationCoordinator coordinator) {
         this.coordinator = coordinator;
     }
 
+    /**
+     * Lists the registrations in name order.
+     * <p>
+     * When a limit is given, the name to pass as cursor to get the next page is returned in the
+     * {@value #NEXT_CURSOR_HEADER} header, the header is missing on the last page. The response carries
+     * the version of the registrations on this process as ETag, a request whose If-None-Match matches it
+     * is answered with 304 without listing the registrations.
+     *
+     * @param cursor      Name of the last registration of the previous page
+     * @param limit       Maximum number of registrations returned, 0 for all
+     * @param type        Only return the registrations of this type, tool or resource
+     * @param prefix      Only return the registrations whose name starts with this prefix
+     * @param ifNoneMatch ETag of the registrations already known by the client
+     * @return The page of registrations
+     */
     @GetMapping("/control/registrations")
-    public List<Registration> getRegistrations() {
+    public ResponseEntity<List<Registration>> getRegistrations(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "0") int limit,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "prefix", required = false) String prefix,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (limit < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+
+        // Read the version first, the registrations listed are at least as recent as the ETag
+        final String etag = "\"" + bootId + "-" + coordinator.getVersion() + "\"";
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        final Predicate<Registration> typeFilter = getTypeFilter(type);
+        final String namePrefix = StringUtils.defaultString(prefix);
+
+        // Start from the prefix rather than from the first registration when the cursor is before it
+        final boolean fromPrefix = StringUtils.isNotEmpty(namePrefix)
+                && (cursor == null || cursor.compareTo(namePrefix) < 0);
+        final Collection<CompositeHandler> handlers = fromPrefix
+                ? coordinator.getRegistrationHandlers(namePrefix, true)
+                : coordinator.getRegistrationHandlers(cursor, false);
+
+        final List<Registration> page = new ArrayList<>();
+        String nextCursor = null;
+        for (CompositeHandler handler : handlers) {
+            final Registration registration = handler.getRegistration();
+            if (!registration.getName().startsWith(namePrefix)) {
+                // Names are sorted, no further registration has the prefix
+                break;
+            }
+            if (!typeFilter.test(registration)) {
+                continue;
+            }
+            if (limit > 0 && page.size() == limit) {
+                nextCursor = page.getLast().getName();
+                break;
+            }
+
+            page.add(registration);
+        }
+
+        final ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+
+        return response.body(page);
+    }
+
+    /**
+     * Registers or updates several registrations in a single batch.
+     *
+     * @param registrations The registrations
+     */
+    @PostMapping("/control/registrations")
+    public void registerAll(@RequestBody List<Registration> registrations) {
+        final Set<String> names = new HashSet<>();
+        for (Registration registration : registrations) {
+            if (StringUtils.isEmpty(registration.getName())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Registration name is required");
+            }
+            if (!names.add(registration.getName())) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST,
+                        String.format("Registration with name %s is duplicated", registration.getName())
+                );
+            }
+        }
+
+        coordinator.registerAll(registrations);
+    }
+
+    /**
+     * Unregisters several registrations, the names which are not registered are ignored.
+     *
+     * @param names The names of the registrations
+     */
+    @PostMapping("/control/registrations/unregister")
+    public void unregisterAll(@RequestBody List<String> names) {
+        coordinator.unregisterAll(names.stream()
+                .filter(coordinator::isRegistered)
+                .distinct()
+                .toList());
+    }
+
+    @GetMapping("/control/circuit-breakers")
+    public List<CircuitBreaker.Snapshot> getCircuitBreakers() {
+        return coordinator
+                .getAllRegistrationHandlers()
+                .stream()
+                .map(handler -> handler.getCircuitBreaker().getSnapshot())
+                .toList();
+    }
+
+    @GetMapping("/control/nodes")
+    public Collection<ProxyNode> getNodes() {
+        return coordinator.getShardManager().getMembers();
+    }
+
+    @GetMapping("/control/registration/{name}/circuit-breaker")
+    public CircuitBreaker.Snapshot getCircuitBreaker(@PathVariable("name") String name) {
+        return coordinator
+                .getAllRegistrationHandlers()
+                .stream()
+                .filter(handler -> handler.getRegistration().getName().equals(name))
+                .findFirst()
+                .map(handler -> handler.getCircuitBreaker().getSnapshot())
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND,
+                        String.format("Registration with name %s not found", name)
+                ));
+    }
+
+    /**
+     * Returns the statistics of the cached responses of the registrations caching their responses.
+     *
+     * @return The statistics, including the hit ratio of each registration
+     */
+    @GetMapping("/control/caches")
+    public List<ResultCache.Snapshot> getResultCaches() {
         return coordinator
                 .getAllRegistrationHandlers()
                 .stream()
-                .map(RegistrationHandler::getRegistration)
+                .filter(handler -> handler.getRegistration().isCached())
+                .map(CompositeHandler::getResultCacheSnapshot)
                 .toList();
     }
 
+    /**
+     * Drops the cached responses of every registration on this node.
+     */
+    @DeleteMapping("/control/caches")
+    public void invalidateResultCaches() {
+        coordinator.getRequestResponseHandler().getResultCache().invalidateAll();
+    }
+
+    @GetMapping("/control/registration/{name}/cache")
+    public ResultCache.Snapshot getResultCache(@PathVariable("name") String name) {
+        return getRegistrationHandler(name).getResultCacheSnapshot();
+    }
+
+    /**
+     * Drops the cached responses of a registration on this node, the next requests are sent to the agent.
+     *
+     * @param name The name of the registration
+     */
+    @DeleteMapping("/control/registration/{name}/cache")
+    public void invalidateResultCache(@PathVariable("name") String name) {
+        final Registration registration = getRegistrationHandler(name).getRegistration();
+        coordinator.getRequestResponseHandler().getResultCache().invalidate(registration);
+    }
+
     @PostMapping("/control/registration")
     public void register(Registration registration) {
         if (coordinator.isRegistered(registration.getName())) {
@@ -66,4 +247,42 @@ public class ControlAPIController {
 
         coordinator.unregister(name);
     }
+
+    private CompositeHandler getRegistrationHandler(String name) {
+        return coordinator
+                .getAllRegistrationHandlers()
+                .stream()
+                .filter(handler -> handler.getRegistration().getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND,
+                        String.format("Registration with name %s not found", name)
+                ));
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (StringUtils.isEmpty(ifNoneMatch)) {
+            return false;
+        }
+
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(value -> StringUtils.removeStart(value, "W/"))
+                .anyMatch(value -> value.equals("*") || value.equals(etag));
+    }
+
+    private static Predicate<Registration> getTypeFilter(String type) {
+        if (StringUtils.isEmpty(type)) {
+            return registration -> true;
+        }
+
+        return switch (type.toLowerCase()) {
+            case "tool" -> registration -> !registration.isResource();
+            case "resource" -> Registration::isResource;
+            default -> throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    String.format("Unknown registration type %s, expected tool or resource", type)
+            );
+        };
+    }
 }
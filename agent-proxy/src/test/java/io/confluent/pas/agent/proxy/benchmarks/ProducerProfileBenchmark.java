@@ -0,0 +1,136 @@
+package io.confluent.pas.agent.proxy.benchmarks;
+
+import io.confluent.pas.agent.common.services.ProducerProfile;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.testcontainers.kafka.KafkaContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the producer profiles the registrations opt into: the acknowledged latency of a single request,
+ * as sent by an interactive tool call, and the throughput of bursts of requests, as sent by bulk agent-to-agent
+ * traffic.
+ * <p>
+ * The requests are sent to the broker given by the {@code benchmark.bootstrap-servers} system property, a Kafka
+ * container is started otherwise, Docker is then required. Run it from the IDE or with the main method.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProducerProfileBenchmark {
+
+    private static final String KAFKA_IMAGE = "apache/kafka:3.7.0";
+    private static final String TOPIC = "producer-profile-benchmark";
+    private static final int PARTITIONS = 3;
+    private static final int BURST = 1000;
+
+    @Param({"default", "latency", "throughput"})
+    public String profile;
+
+    private KafkaContainer kafka;
+    private KafkaProducer<byte[], byte[]> producer;
+    private byte[] request;
+
+    @Setup
+    public void setUp() throws ExecutionException, InterruptedException {
+        String bootstrapServers = System.getProperty("benchmark.bootstrap-servers");
+        if (bootstrapServers == null) {
+            kafka = new KafkaContainer(KAFKA_IMAGE).withStartupTimeout(Duration.ofMinutes(2));
+            kafka.start();
+            bootstrapServers = kafka.getBootstrapServers();
+        }
+
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers))) {
+            if (!admin.listTopics().names().get().contains(TOPIC)) {
+                admin.createTopics(List.of(new NewTopic(TOPIC, PARTITIONS, (short) 1))).all().get();
+            }
+        }
+
+        final Properties properties = new Properties();
+        properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        properties.putAll(ProducerProfile.fromValue(profile, ProducerProfile.DEFAULT).getProperties());
+        producer = new KafkaProducer<>(properties);
+
+        // About 1 KB of tool call arguments, as repetitive as the JSON requests usually are
+        request = IntStream.range(0, 16)
+                .mapToObj(i -> "\"argument" + i + "\":{\"id\":" + i + ",\"value\":\"value of argument " + i + "\"}")
+                .collect(Collectors.joining(",", "{", "}"))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        producer.close();
+        if (kafka != null) {
+            kafka.stop();
+        }
+    }
+
+    /**
+     * A single request sent and acknowledged before the next one, the way an interactive tool call waits.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public RecordMetadata singleRequest() throws ExecutionException, InterruptedException {
+        return producer.send(newRecord()).get();
+    }
+
+    /**
+     * Bursts of requests sent at once and acknowledged together, reported per request.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST)
+    public RecordMetadata requestBurst() throws ExecutionException, InterruptedException {
+        @SuppressWarnings("unchecked") final Future<RecordMetadata>[] sent = new Future[BURST];
+        for (int i = 0; i < BURST; i++) {
+            sent[i] = producer.send(newRecord());
+        }
+
+        RecordMetadata metadata = null;
+        for (Future<RecordMetadata> future : sent) {
+            metadata = future.get();
+        }
+
+        return metadata;
+    }
+
+    private ProducerRecord<byte[], byte[]> newRecord() {
+        return new ProducerRecord<>(TOPIC, UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8), request);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(ProducerProfileBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
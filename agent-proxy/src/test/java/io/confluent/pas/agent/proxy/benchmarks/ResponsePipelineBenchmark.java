@@ -0,0 +1,93 @@
+package io.confluent.pas.agent.proxy.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Response;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponseEnvelope;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponseEnvelopeDeserializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the former response pipeline, which parsed and serialized the payload several times
+ * between the Kafka record and the tool result, with the single pass decoder.
+ * <p>
+ * Run it from the IDE or with the main method, the GC profiler reports the allocation rate per
+ * operation ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponsePipelineBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({"10", "1000"})
+    public int fields;
+
+    private byte[] record;
+    private ResponseEnvelopeDeserializer deserializer;
+
+    @Setup
+    public void setUp() {
+        final String payload = IntStream.range(0, fields)
+                .mapToObj(i -> "\"field" + i + "\":{\"id\":" + i + ",\"value\":\"value of field " + i + "\"}")
+                .collect(Collectors.joining(",", "{", "}"));
+        final byte[] json = ("{\"requestIndex\":0,\"status\":\"completed\",\"payload\":" + payload + "}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        // Schema Registry wire format: magic byte, schema id and the JSON document
+        record = ByteBuffer.allocate(5 + json.length)
+                .put((byte) 0)
+                .putInt(1)
+                .put(json)
+                .array();
+        deserializer = new ResponseEnvelopeDeserializer();
+    }
+
+    /**
+     * Former pipeline: the record is parsed into a tree by the Schema Registry deserializer,
+     * serialized back to a string, bound to a {@link Response}, converted back to a tree and
+     * finally serialized to the tool result text.
+     */
+    @Benchmark
+    public String legacyPipeline() throws IOException {
+        final JsonNode node = MAPPER.readTree(record, 5, record.length - 5);
+        final Response response = JsonUtils.toObject(node.toString(), Response.class);
+        final JsonNode payload = JsonUtils.toJsonNode(response.getPayload());
+        return JsonUtils.toString(payload);
+    }
+
+    /**
+     * Current pipeline: the envelope is streamed once and the payload is handed over as raw bytes.
+     */
+    @Benchmark
+    public String singlePassPipeline() {
+        final ResponseEnvelope response = deserializer.deserialize("responses", record);
+        return response.getPayload().asString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(ResponsePipelineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
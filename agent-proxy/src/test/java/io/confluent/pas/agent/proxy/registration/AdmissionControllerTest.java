@@ -0,0 +1,113 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.proxy.registration.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+
+    private final Registration tool1 = new Registration("tool1", "description", "requestTopic1", "responseTopic1");
+    private final Registration tool2 = new Registration("tool2", "description", "requestTopic2", "responseTopic2");
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testRegistrationLimit() {
+        final AdmissionController controller = new AdmissionController(0, 2, meterRegistry);
+
+        final AdmissionController.Permit permit = controller.acquire(tool1);
+        controller.acquire(tool1);
+        assertThrows(TooManyRequestsException.class, () -> controller.acquire(tool1));
+
+        // Other registrations are not affected
+        controller.acquire(tool2);
+        assertEquals(3, controller.getInFlight());
+
+        // Releasing twice only frees a single slot
+        permit.close();
+        permit.close();
+        assertEquals(1, controller.getInFlight(tool1));
+        controller.acquire(tool1);
+        assertThrows(TooManyRequestsException.class, () -> controller.acquire(tool1));
+
+        assertEquals(2.0, meterRegistry.get(AdmissionController.REJECTED_METRIC)
+                .tag("registration", "tool1")
+                .counter()
+                .count());
+        assertEquals(2.0, meterRegistry.get(AdmissionController.IN_FLIGHT_METRIC)
+                .tag("registration", "tool1")
+                .gauge()
+                .value());
+    }
+
+    @Test
+    void testGlobalLimit() {
+        final AdmissionController controller = new AdmissionController(2, 0, meterRegistry);
+
+        controller.acquire(tool1);
+        final AdmissionController.Permit permit = controller.acquire(tool2);
+        assertThrows(TooManyRequestsException.class, () -> controller.acquire(tool1));
+        assertEquals(2, controller.getInFlight());
+
+        permit.close();
+        controller.acquire(tool1);
+        assertEquals(2, controller.getInFlight(tool1));
+
+        assertEquals(1.0, meterRegistry.get(AdmissionController.REJECTED_METRIC)
+                .tag("registration", "all")
+                .counter()
+                .count());
+        assertEquals(2.0, meterRegistry.get(AdmissionController.IN_FLIGHT_METRIC)
+                .tag("registration", "all")
+                .gauge()
+                .value());
+    }
+
+    @Test
+    void testRejectedRequestDoesNotHoldGlobalSlot() {
+        final AdmissionController controller = new AdmissionController(10, 1, meterRegistry);
+
+        controller.acquire(tool1);
+        assertThrows(TooManyRequestsException.class, () -> controller.acquire(tool1));
+
+        assertEquals(1, controller.getInFlight());
+    }
+
+    @Test
+    void testRemove() {
+        final AdmissionController controller = new AdmissionController(0, 1, meterRegistry);
+
+        final AdmissionController.Permit permit = controller.acquire(tool1);
+        controller.remove(tool1);
+
+        assertEquals(0, controller.getInFlight(tool1));
+        assertTrue(meterRegistry.find(AdmissionController.IN_FLIGHT_METRIC).tag("registration", "tool1").meters().isEmpty());
+        assertTrue(meterRegistry.find(AdmissionController.REJECTED_METRIC).tag("registration", "tool1").meters().isEmpty());
+
+        // A permit acquired before the removal still releases its global slot
+        permit.close();
+        assertEquals(0, controller.getInFlight());
+        controller.acquire(tool1);
+        assertEquals(1, controller.getInFlight(tool1));
+    }
+
+    @Test
+    void testUnlimited() {
+        final AdmissionController controller = AdmissionController.unlimited();
+
+        for (int i = 0; i < 1000; i++) {
+            controller.acquire(tool1);
+        }
+
+        assertEquals(1000, controller.getInFlight(tool1));
+    }
+}
@@ -0,0 +1,140 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import io.confluent.pas.agent.proxy.registration.exceptions.CircuitOpenException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    /**
+     * Clock moved forward manually
+     */
+    private static class TestClock extends Clock {
+        private long millis = 1_000_000;
+
+        void advance(Duration duration) {
+            millis += duration.toMillis();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    private final TestClock clock = new TestClock();
+
+    private void timeout(CircuitBreaker breaker) {
+        try (CircuitBreaker.Call call = breaker.acquire()) {
+            call.onTimeout();
+        }
+    }
+
+    @Test
+    void testOpensAfterConsecutiveTimeouts() {
+        final CircuitBreaker breaker = new CircuitBreaker("tool", 3, OPEN_DURATION, clock);
+
+        timeout(breaker);
+        timeout(breaker);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getSnapshot().state());
+
+        timeout(breaker);
+        final CircuitBreaker.Snapshot snapshot = breaker.getSnapshot();
+        assertEquals(CircuitBreaker.State.OPEN, snapshot.state());
+        assertEquals(3, snapshot.consecutiveFailures());
+        assertEquals(clock.instant(), snapshot.openedAt());
+
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+    }
+
+    @Test
+    void testResponseResetsFailures() {
+        final CircuitBreaker breaker = new CircuitBreaker("tool", 3, OPEN_DURATION, clock);
+
+        timeout(breaker);
+        timeout(breaker);
+        breaker.acquire().onSuccess();
+        timeout(breaker);
+        timeout(breaker);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getSnapshot().state());
+        assertEquals(2, breaker.getSnapshot().consecutiveFailures());
+    }
+
+    @Test
+    void testProbeClosesBreaker() {
+        final CircuitBreaker breaker = new CircuitBreaker("tool", 1, OPEN_DURATION, clock);
+        timeout(breaker);
+
+        clock.advance(OPEN_DURATION);
+        final CircuitBreaker.Call probe = breaker.acquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getSnapshot().state());
+
+        // Only one probe at a time
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+
+        probe.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getSnapshot().state());
+        assertEquals(0, breaker.getSnapshot().consecutiveFailures());
+        assertDoesNotThrow(breaker::acquire);
+    }
+
+    @Test
+    void testFailedProbeReopensBreaker() {
+        final CircuitBreaker breaker = new CircuitBreaker("tool", 1, OPEN_DURATION, clock);
+        timeout(breaker);
+
+        clock.advance(OPEN_DURATION);
+        timeout(breaker);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getSnapshot().state());
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+
+        clock.advance(OPEN_DURATION.minusSeconds(1));
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+    }
+
+    @Test
+    void testAbortedProbeLetsNextCallProbe() {
+        final CircuitBreaker breaker = new CircuitBreaker("tool", 1, OPEN_DURATION, clock);
+        timeout(breaker);
+
+        clock.advance(OPEN_DURATION);
+        breaker.acquire().close();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getSnapshot().state());
+        assertDoesNotThrow(breaker::acquire);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getSnapshot().state());
+    }
+
+    @Test
+    void testDisabledBreaker() {
+        final CircuitBreaker breaker = new CircuitBreaker("tool", 0, OPEN_DURATION, clock);
+
+        for (int i = 0; i < 100; i++) {
+            timeout(breaker);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getSnapshot().state());
+        assertNull(breaker.getSnapshot().openedAt());
+    }
+}
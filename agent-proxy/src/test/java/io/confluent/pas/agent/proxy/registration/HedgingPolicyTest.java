@@ -0,0 +1,66 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgingPolicyTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HedgingPolicy policy = new HedgingPolicy(20, Schedulers.parallel(), meterRegistry);
+
+    private static Registration createRegistration(Double hedgePercentile) {
+        final Registration registration = new Registration("tool", "description", "requests", "responses");
+        registration.setHedgePercentile(hedgePercentile);
+        return registration;
+    }
+
+    @Test
+    void testDelayFollowsLatencyPercentile() {
+        final Registration registration = createRegistration(0.95);
+
+        assertEquals(150, policy.getDelay(registration, 150));
+        assertEquals(20, policy.getDelay(registration, 5));
+        assertEquals(-1, policy.getDelay(registration, -1));
+    }
+
+    @Test
+    void testRegistrationsWithoutPercentileOrBatchedAreNotHedged() {
+        assertEquals(-1, policy.getDelay(createRegistration(null), 150));
+        assertEquals(-1, policy.getDelay(createRegistration(1.5), 150));
+
+        final Registration batched = createRegistration(0.95);
+        batched.setMaxBatchSize(10);
+        assertEquals(-1, policy.getDelay(batched, 150));
+    }
+
+    @Test
+    void testHedgeGoesToAnotherPartition() {
+        final Registration registration = createRegistration(0.95);
+
+        IntStream.range(0, 100).forEach(i -> {
+            final int partition = policy.choosePartition(registration, 2, 6);
+            assertNotEquals(2, partition);
+            assertTrue(partition >= 0 && partition < 6);
+        });
+
+        assertEquals(100, policy.getHedgedRequests(registration));
+        assertEquals(100, meterRegistry.get(HedgingPolicy.HEDGED_METRIC)
+                .tag("registration", "tool")
+                .counter()
+                .count());
+    }
+
+    @Test
+    void testSinglePartitionTopicIsNotHedged() {
+        final Registration registration = createRegistration(0.95);
+
+        assertEquals(-1, policy.choosePartition(registration, 0, 1));
+        assertEquals(0, policy.getHedgedRequests(registration));
+    }
+}
@@ -0,0 +1,320 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import io.confluent.kafka.schemaregistry.client.SchemaMetadata;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.pas.agent.common.services.RegistrationService;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.common.services.schemas.RegistrationKey;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import io.confluent.pas.agent.common.utils.ShardedExecutor;
+import io.confluent.pas.agent.proxy.registration.events.NewRegistrationEvent;
+import io.confluent.pas.agent.proxy.registration.events.UpdatedRegistrationEvent;
+import io.confluent.pas.agent.proxy.registration.handlers.CompositeHandler;
+import io.confluent.pas.agent.proxy.registration.liveness.LivenessProbe;
+import io.confluent.pas.agent.proxy.registration.liveness.LivenessTracker;
+import io.confluent.pas.agent.proxy.registration.schemas.SchemaCache;
+import io.confluent.pas.agent.proxy.registration.sharding.ProxyNode;
+import io.confluent.pas.agent.proxy.registration.sharding.ShardManager;
+import io.confluent.pas.agent.proxy.rest.a2a.A2AAsyncServer;
+import io.confluent.pas.agent.proxy.rest.agents.AgentAsyncServer;
+import io.modelcontextprotocol.server.McpAsyncServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class RegistrationCoordinatorTest {
+
+    private static final String SCHEMA = """
+            {"type":"object","properties":{"query":{"type":"string"}}}""";
+
+    @Mock
+    private RequestResponseHandler requestResponseHandler;
+
+    @Mock
+    private McpAsyncServer mcpServer;
+
+    @Mock
+    private AgentAsyncServer restServer;
+
+    @Mock
+    private A2AAsyncServer a2aAsyncServer;
+
+    @Mock
+    private SchemaRegistryClient schemaRegistryClient;
+
+    @Mock
+    private RegistrationService<RegistrationKey, Registration> registrationService;
+
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private ShardedExecutor executor;
+    private RegistrationCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(requestResponseHandler.getResultCache()).thenReturn(ResultCache.withDefaults());
+
+        executor = new ShardedExecutor("registration-test", 2, false);
+        coordinator = new RegistrationCoordinator(
+                requestResponseHandler,
+                mcpServer,
+                restServer,
+                a2aAsyncServer,
+                new SchemaCache(schemaRegistryClient),
+                registrationService,
+                applicationEventPublisher,
+                RegistrationCoordinator.Options.defaults().withRegistrationExecutor(executor));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void testRegistrationsAreProcessedInParallelWithoutBlockingTheCallback() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // Schema lookups hang until released, as a slow Schema Registry would
+        when(schemaRegistryClient.getLatestSchemaMetadata(anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            throw new IllegalStateException("Schema Registry unavailable");
+        });
+
+        // "a" and "b" are hashed to different lanes
+        final Map<RegistrationKey, Registration> registrations = new LinkedHashMap<>();
+        registrations.put(new RegistrationKey("a"), new Registration("a", "description", "a-request", "a-response"));
+        registrations.put(new RegistrationKey("b"), new Registration("b", "description", "b-request", "b-response"));
+
+        // The callback returns while both registrations are still being initialized
+        coordinator.onRegistration(registrations);
+        verify(requestResponseHandler, times(1)).addRegistrations(registrations.values());
+
+        assertTrue(started.await(5, TimeUnit.SECONDS), "Registrations were not processed concurrently");
+        release.countDown();
+    }
+
+    @Test
+    void testUnchangedRegistrationIsIgnored() throws Exception {
+        final RegistrationCoordinator directCoordinator = createDirectCoordinator();
+
+        directCoordinator.onRegistration(Map.of(new RegistrationKey("tool"),
+                new Registration("tool", "description", "tool-request", "tool-response")));
+        directCoordinator.onRegistration(Map.of(new RegistrationKey("tool"),
+                new Registration("tool", "description", "tool-request", "tool-response")));
+
+        verify(mcpServer, times(1)).addTool(any());
+        verify(mcpServer, never()).removeTool(anyString());
+        verify(restServer, times(1)).addRegistration(any(), any(), any());
+        verify(applicationEventPublisher, times(1)).publishEvent(any(NewRegistrationEvent.class));
+    }
+
+    @Test
+    void testOnlyNewOrChangedRegistrationsArePrefetched() throws Exception {
+        createDirectCoordinator();
+        final SchemaCache schemaCache = spy(new SchemaCache(schemaRegistryClient));
+        final RegistrationCoordinator directCoordinator = new RegistrationCoordinator(
+                requestResponseHandler,
+                mcpServer,
+                restServer,
+                a2aAsyncServer,
+                schemaCache,
+                registrationService,
+                applicationEventPublisher,
+                RegistrationCoordinator.Options.defaults());
+        final Registration registration = new Registration("tool", "description", "tool-request", "tool-response");
+        final Registration changed = new Registration("tool", "description", "tool-request", "tool-response-v2");
+
+        directCoordinator.onRegistration(Map.of(new RegistrationKey("tool"), registration));
+        directCoordinator.onRegistration(Map.of(new RegistrationKey("tool"),
+                new Registration("tool", "description", "tool-request", "tool-response")));
+        directCoordinator.onRegistration(Map.of(new RegistrationKey("tool"), changed));
+
+        verify(schemaCache, times(1)).prefetch(List.of(registration));
+        verify(schemaCache, times(1)).prefetch(List.of(changed));
+        verify(schemaCache, times(2)).prefetch(any());
+    }
+
+    @Test
+    void testRoutingChangeIsAppliedWithoutReRegisteringTheTool() throws Exception {
+        final RegistrationCoordinator directCoordinator = createDirectCoordinator();
+
+        directCoordinator.onRegistration(Map.of(new RegistrationKey("tool"),
+                new Registration("tool", "description", "tool-request", "tool-response")));
+        final CompositeHandler handler = directCoordinator.getAllRegistrationHandlers().getFirst();
+
+        directCoordinator.onRegistration(Map.of(new RegistrationKey("tool"),
+                new Registration("tool", "description", "tool-request", "tool-response-v2")));
+
+        // The same handler now routes the requests to the new topic
+        final List<CompositeHandler> handlers = directCoordinator.getAllRegistrationHandlers();
+        assertEquals(1, handlers.size());
+        assertSame(handler, handlers.getFirst());
+        assertEquals("tool-response-v2", handler.getRegistration().getResponseTopicName());
+
+        // The tool definition did not change, MCP clients are not notified
+        verify(mcpServer, times(1)).addTool(any());
+        verify(mcpServer, never()).removeTool(anyString());
+        verify(restServer, times(2)).addRegistration(any(), any(), any());
+        verify(applicationEventPublisher, times(1)).publishEvent(any(UpdatedRegistrationEvent.class));
+    }
+
+    @Test
+    void testDescriptionChangeReRegistersTheTool() throws Exception {
+        final RegistrationCoordinator directCoordinator = createDirectCoordinator();
+
+        directCoordinator.onRegistration(Map.of(new RegistrationKey("tool"),
+                new Registration("tool", "description", "tool-request", "tool-response")));
+        directCoordinator.onRegistration(Map.of(new RegistrationKey("tool"),
+                new Registration("tool", "new description", "tool-request", "tool-response")));
+
+        assertTrue(directCoordinator.isRegistered("tool"));
+        verify(mcpServer, times(1)).removeTool("tool");
+        verify(mcpServer, times(2)).addTool(any());
+        // The handler is updated, not torn down
+        verify(requestResponseHandler, never()).removeCircuitBreaker(any());
+    }
+
+    @Test
+    void testToolOwnedByAnotherNodeIsTakenOverWhenTheNodeLeaves() throws Exception {
+        final Map<String, String> membership = new ConcurrentHashMap<>();
+        final ShardManager shardManager = new ShardManager(
+                new ProxyNode("node-1", "http://node-1:8080", 0),
+                membership,
+                128,
+                Duration.ofSeconds(15),
+                Clock.systemUTC());
+        membership.put("node-2", JsonUtils.toString(
+                new ProxyNode("node-2", "http://node-2:8080", System.currentTimeMillis())));
+        shardManager.heartbeat();
+
+        final String name = IntStream.range(0, 100)
+                .mapToObj(i -> "tool-" + i)
+                .filter(toolName -> !shardManager.isLocal(toolName))
+                .findFirst()
+                .orElseThrow();
+        final Registration registration = new Registration(name, "description", name + "-request", name + "-response");
+        final RegistrationCoordinator directCoordinator = createDirectCoordinator(shardManager);
+
+        // The tool is listed, but its responses are consumed by node-2
+        directCoordinator.onRegistration(Map.of(new RegistrationKey(name), registration));
+        assertFalse(directCoordinator.getAllRegistrationHandlers().getFirst().isLocal());
+        verify(requestResponseHandler, never()).addRegistrations(any());
+        verify(mcpServer, times(1)).addTool(any());
+        verify(restServer, never()).addRegistration(any(), any(), any());
+
+        // node-2 leaves, the tool is handed over to this node
+        membership.remove("node-2");
+        shardManager.heartbeat();
+        when(registrationService.getAllRegistrations()).thenReturn(List.of(registration));
+        directCoordinator.rebalance();
+
+        assertTrue(directCoordinator.getAllRegistrationHandlers().getFirst().isLocal());
+        verify(requestResponseHandler, times(1)).addRegistrations(List.of(registration));
+        verify(mcpServer, times(1)).removeTool(name);
+        verify(mcpServer, times(2)).addTool(any());
+        verify(restServer, times(1)).addRegistration(any(), any(), any());
+    }
+
+    @Test
+    void testToolWithoutLiveAgentIsHiddenUntilTheAgentIsBack() throws Exception {
+        final AtomicBoolean alive = new AtomicBoolean(false);
+        final LivenessTracker livenessTracker = new LivenessTracker(new LivenessProbe() {
+            @Override
+            public void refresh() {
+            }
+
+            @Override
+            public boolean isAlive(Registration registration) {
+                return alive.get();
+            }
+        });
+        final RegistrationCoordinator directCoordinator = createDirectCoordinator(ShardManager.local(), livenessTracker);
+        livenessTracker.addListener(directCoordinator::checkLiveness);
+
+        // The tool starts hidden, no agent consumes its requests
+        directCoordinator.onRegistration(Map.of(new RegistrationKey("tool"),
+                new Registration("tool", "description", "tool-request", "tool-response")));
+        assertTrue(directCoordinator.isRegistered("tool"));
+        assertFalse(directCoordinator.getAllRegistrationHandlers().getFirst().isAvailable());
+        verify(mcpServer, times(1)).addTool(any());
+        verify(mcpServer, times(1)).removeTool("tool");
+
+        // The agent comes back, the tool is listed again
+        alive.set(true);
+        livenessTracker.check();
+        assertTrue(directCoordinator.getAllRegistrationHandlers().getFirst().isAvailable());
+        verify(mcpServer, times(2)).addTool(any());
+
+        // Nothing changes while the agent stays alive
+        livenessTracker.check();
+        verify(mcpServer, times(2)).addTool(any());
+        verify(mcpServer, times(1)).removeTool("tool");
+    }
+
+    /**
+     * Creates a coordinator processing the registrations on the calling thread, with servers accepting
+     * every registration.
+     */
+    private RegistrationCoordinator createDirectCoordinator() throws Exception {
+        return createDirectCoordinator(ShardManager.local());
+    }
+
+    /**
+     * Creates a coordinator processing the registrations on the calling thread, with servers accepting
+     * every registration and the given shard manager.
+     */
+    private RegistrationCoordinator createDirectCoordinator(ShardManager shardManager) throws Exception {
+        return createDirectCoordinator(shardManager, LivenessTracker.disabled());
+    }
+
+    /**
+     * Creates a coordinator processing the registrations on the calling thread, with servers accepting
+     * every registration, the given shard manager and liveness tracker.
+     */
+    private RegistrationCoordinator createDirectCoordinator(ShardManager shardManager,
+                                                            LivenessTracker livenessTracker) throws Exception {
+        when(schemaRegistryClient.getLatestSchemaMetadata(anyString())).thenReturn(new SchemaMetadata(1, 1, SCHEMA));
+        when(mcpServer.addTool(any())).thenReturn(Mono.empty());
+        when(mcpServer.removeTool(anyString())).thenReturn(Mono.empty());
+        when(restServer.addRegistration(any(), any(), any())).thenReturn(Mono.empty());
+        when(restServer.removeRegistration(anyString())).thenReturn(Mono.empty());
+        when(a2aAsyncServer.addRegistration(any(), any())).thenReturn(Mono.empty());
+
+        return new RegistrationCoordinator(
+                requestResponseHandler,
+                mcpServer,
+                restServer,
+                a2aAsyncServer,
+                new SchemaCache(schemaRegistryClient),
+                registrationService,
+                applicationEventPublisher,
+                RegistrationCoordinator.Options.defaults()
+                        .withShardManager(shardManager)
+                        .withLivenessTracker(livenessTracker));
+    }
+}
@@ -0,0 +1,57 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.common.services.schemas.ResourceRegistration;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistrationDiffTest {
+
+    @Test
+    void testIdenticalRegistrationsHaveNoDiff() {
+        final RegistrationDiff diff = RegistrationDiff.of(
+                new Registration("tool", "description", "tool-request", "tool-response"),
+                new Registration("tool", "description", "tool-request", "tool-response"));
+
+        assertTrue(diff.isEmpty());
+        assertFalse(diff.isTypeChange());
+    }
+
+    @Test
+    void testChangedFieldsAreListed() {
+        final Registration previous = new Registration("tool", "description", "tool-request", "tool-response");
+        final Registration updated = new Registration("tool", "new description", "tool-request", "tool-response-v2");
+
+        final RegistrationDiff diff = RegistrationDiff.of(previous, updated);
+
+        assertFalse(diff.isEmpty());
+        assertEquals(Set.of("description", "responseTopicName"), diff.getChangedFields());
+    }
+
+    @Test
+    void testMissingAndNullFieldsAreEqual() {
+        final Registration previous = new Registration("tool", "description", "tool-request", "tool-response");
+        final Registration updated = new Registration("tool", "description", "tool-request", "tool-response");
+        updated.setMaxBatchSize(null);
+
+        assertTrue(RegistrationDiff.of(previous, updated).isEmpty());
+
+        updated.setMaxBatchSize(10);
+        assertEquals(Set.of("maxBatchSize"), RegistrationDiff.of(previous, updated).getChangedFields());
+    }
+
+    @Test
+    void testTypeChange() {
+        final Registration previous = new Registration("tool", "description", "tool-request", "tool-response");
+        final ResourceRegistration updated = new ResourceRegistration(
+                "tool", "description", "tool-request", "tool-response", "text/plain", "tool");
+
+        final RegistrationDiff diff = RegistrationDiff.of(previous, updated);
+
+        assertFalse(diff.isEmpty());
+        assertTrue(diff.isTypeChange());
+    }
+}
@@ -1,17 +1,39 @@
 package io.confluent.pas.agent.proxy.registration;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import io.confluent.pas.agent.common.services.KafkaConfiguration;
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
 import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
 import io.confluent.pas.agent.proxy.registration.kafka.ConsumerService;
 import io.confluent.pas.agent.proxy.registration.kafka.ProducerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.micrometer.observation.ObservationRegistry;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.*;
+import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 class RequestResponseHandlerTest {
@@ -44,7 +66,11 @@ class RequestResponseHandlerTest {
         when(kafkaConfiguration.topicConfiguration()).thenReturn(new KafkaConfiguration.DefaultTopicConfiguration());
         when(kafkaConfiguration.saslMechanism()).thenReturn(KafkaConfiguration.DEFAULT_SASL_MECHANISM);
 
-        requestResponseHandler = new RequestResponseHandler(producerService, consumerService, observationRegistry);
+        requestResponseHandler = new RequestResponseHandler(
+                producerService,
+                consumerService,
+                observationRegistry,
+                RequestResponseHandler.Options.defaults());
     }
 
     @Test
@@ -54,6 +80,30 @@ class RequestResponseHandlerTest {
         verify(consumerService, times(1)).addRegistrations(registrations);
     }
 
+    @Test
+    void testChannelReleasesPermitWhenRegistrationFails() {
+        final Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        final AdmissionController admissionController = new AdmissionController(0, 1, new SimpleMeterRegistry());
+        final RequestResponseHandler handler = new RequestResponseHandler(
+                producerService,
+                consumerService,
+                observationRegistry,
+                RequestResponseHandler.Options.defaults().withAdmissionController(admissionController));
+        doThrow(new IllegalStateException("Cannot subscribe"))
+                .when(consumerService)
+                .registerResponseHandler(any(), any(), any(), any());
+
+        assertThrows(IllegalStateException.class, () -> RequestResponseChannel.builder()
+                .correlationId("correlationId")
+                .registration(registration)
+                .requestResponseHandler(handler)
+                .responseProcessor((channel, correlationId, response) -> {
+                })
+                .build());
+
+        assertEquals(0, admissionController.getInFlight(registration));
+    }
+
 //    @Test
 //    void testSendRequestResponse() throws ExecutionException, InterruptedException {
 //        Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
@@ -72,6 +122,80 @@ class RequestResponseHandlerTest {
 //        verify(consumerService, times(1)).registerResponseHandler(eq(registration), eq(correlationId), any());
 //    }
 
+    @Test
+    void testHedgeDelayFollowsLatencies() {
+        Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        when(consumerService.getLatencyPercentile(registration, 0.9)).thenReturn(150L);
+
+        assertEquals(-1, requestResponseHandler.getHedgeDelay(registration));
+
+        registration.setHedgePercentile(0.9);
+        assertEquals(150, requestResponseHandler.getHedgeDelay(registration));
+    }
+
+    @Test
+    void testHedgedRequestIsSentToAnotherPartition() {
+        Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        registration.setHedgePercentile(0.9);
+        Key key = new Key("correlationId");
+        JsonNode request = JsonNodeFactory.instance.objectNode();
+        when(producerService.getPartitionCount(registration)).thenReturn(2);
+        when(producerService.send(any(Registration.class), anyInt(), any(), any())).thenReturn(Mono.just(0));
+
+        requestResponseHandler.sendHedgedRequest(registration, 1, key, request).block();
+
+        verify(producerService, times(1)).send(registration, 0, key, request);
+    }
+
+    @Test
+    void testPartitionCountIsNotReadOnTheCallingThread() {
+        Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        AtomicReference<Thread> lookupThread = new AtomicReference<>();
+        when(producerService.getPartitionCount(registration)).thenAnswer(invocation -> {
+            lookupThread.set(Thread.currentThread());
+            return 1;
+        });
+
+        requestResponseHandler.sendHedgedRequest(registration, 0, new Key("correlationId"), null).block();
+
+        assertNotNull(lookupThread.get());
+        assertNotEquals(Thread.currentThread(), lookupThread.get());
+    }
+
+    @Test
+    void testSinglePartitionRequestIsNotHedged() {
+        Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        registration.setHedgePercentile(0.9);
+        when(producerService.getPartitionCount(registration)).thenReturn(1);
+
+        requestResponseHandler.sendHedgedRequest(registration, 0, new Key("correlationId"), null).block();
+
+        verify(producerService, never()).send(any(Registration.class), anyInt(), any(), any());
+    }
+
+    @Test
+    void testExpiredBlobsAreDeleted(@TempDir Path directory) throws Exception {
+        final ClaimCheck claimCheck = ClaimCheck.create(directory.toString(), 0);
+        final String expired = claimCheck.getBlobStore().put(new ByteArrayInputStream(new byte[]{1}));
+        final String recent = claimCheck.getBlobStore().put(new ByteArrayInputStream(new byte[]{2}));
+        Files.setLastModifiedTime(directory.resolve(expired), FileTime.from(Instant.now().minusSeconds(3600)));
+
+        final RequestResponseHandler handler = new RequestResponseHandler(producerService,
+                consumerService,
+                observationRegistry,
+                RequestResponseHandler.Options.defaults().withClaimCheck(claimCheck, Duration.ofSeconds(2)));
+        try {
+            for (int i = 0; i < 50 && Files.exists(directory.resolve(expired)); i++) {
+                Thread.sleep(100);
+            }
+
+            assertFalse(Files.exists(directory.resolve(expired)));
+            assertTrue(Files.exists(directory.resolve(recent)));
+        } finally {
+            handler.destroy();
+        }
+    }
+
     @Test
     void testDestroy() throws Exception {
         requestResponseHandler.destroy();
@@ -0,0 +1,171 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponsePayload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Time source of the cache, advanced by the tests
+    private final AtomicLong nanos = new AtomicLong();
+    private final ResultCache resultCache = new ResultCache(1024, Duration.ZERO, nanos::get, meterRegistry);
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private static Registration createRegistration(String name, Integer ttlMs) {
+        final Registration registration = new Registration(name, "description", "requests", "responses");
+        registration.setCacheTtlMs(ttlMs);
+        return registration;
+    }
+
+    private ResponsePayload get(Registration registration, String key) {
+        return resultCache.get(registration, key, () -> {
+            requests.incrementAndGet();
+            return Mono.just(new ResponsePayload(JsonNodeFactory.instance.textNode("response")));
+        }).block(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testResponseIsCached() {
+        final Registration registration = createRegistration("tool", 60000);
+
+        assertEquals("\"response\"", get(registration, "key").asString());
+        assertEquals("\"response\"", get(registration, "key").asString());
+        get(registration, "other");
+
+        assertEquals(2, requests.get());
+        final ResultCache.Snapshot snapshot = resultCache.getSnapshot(registration);
+        assertEquals(1, snapshot.hits());
+        assertEquals(2, snapshot.misses());
+        assertEquals(2, snapshot.entries());
+        assertEquals(1024, snapshot.maxWeight());
+        assertEquals(1.0 / 3, meterRegistry.get(ResultCache.HIT_RATIO_METRIC)
+                .tag("registration", "tool")
+                .gauge()
+                .value(), 0.001);
+    }
+
+    @Test
+    void testRegistrationWithoutTtlIsNotCached() {
+        final Registration registration = createRegistration("tool", null);
+
+        get(registration, "key");
+        get(registration, "key");
+
+        assertEquals(2, requests.get());
+        assertTrue(resultCache.getSnapshots(List.of(registration)).isEmpty());
+    }
+
+    @Test
+    void testResponseExpires() {
+        final Registration registration = createRegistration("tool", 50);
+
+        get(registration, "key");
+        nanos.addAndGet(Duration.ofMillis(40).toNanos());
+        get(registration, "key");
+        assertEquals(1, requests.get());
+
+        nanos.addAndGet(Duration.ofMillis(20).toNanos());
+        get(registration, "key");
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testTtlIsCappedByMaxTtl() {
+        final ResultCache capped = new ResultCache(1024, Duration.ofMinutes(30), nanos::get, meterRegistry);
+        final Registration registration = createRegistration("tool", 3600000);
+
+        capped.get(registration, "key", () -> Mono.just(new ResponsePayload(JsonNodeFactory.instance.textNode("response"))))
+                .block(Duration.ofSeconds(1));
+
+        assertEquals(Duration.ofMinutes(30).toMillis(), capped.getSnapshot(registration).ttlMs());
+    }
+
+    @Test
+    void testErrorIsNotCached() {
+        final Registration registration = createRegistration("tool", 60000);
+
+        assertThrows(IllegalStateException.class, () -> resultCache.get(registration, "key",
+                () -> Mono.<ResponsePayload>error(new IllegalStateException("Agent error"))).block(Duration.ofSeconds(1)));
+        get(registration, "key");
+
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void testInvalidation() {
+        final Registration registration = createRegistration("tool", 60000);
+        final Registration other = createRegistration("other", 60000);
+        get(registration, "key");
+        get(other, "key");
+
+        resultCache.invalidate(registration);
+        get(registration, "key");
+        get(other, "key");
+        assertEquals(3, requests.get());
+
+        resultCache.invalidateAll();
+        get(registration, "key");
+        get(other, "key");
+        assertEquals(5, requests.get());
+    }
+
+    @Test
+    void testRemovedRegistrationDropsItsMetrics() {
+        final Registration registration = createRegistration("tool", 60000);
+        get(registration, "key");
+        assertNotNull(meterRegistry.find(ResultCache.HIT_RATIO_METRIC).tag("registration", "tool").gauge());
+
+        resultCache.remove(registration);
+
+        assertNull(meterRegistry.find(ResultCache.REQUESTS_METRIC).tag("registration", "tool").counter());
+        assertNull(meterRegistry.find(ResultCache.HIT_RATIO_METRIC).tag("registration", "tool").gauge());
+        assertEquals(0, resultCache.getSnapshot(registration).misses());
+        // The proxy-wide metrics are kept
+        assertNotNull(meterRegistry.find(ResultCache.HIT_RATIO_METRIC).tag("registration", "all").gauge());
+    }
+
+    @Test
+    void testChangedSettingsDropTheCache() {
+        final Registration registration = createRegistration("tool", 60000);
+        get(registration, "key");
+
+        registration.setCacheMaxWeight(4096);
+        get(registration, "key");
+
+        assertEquals(2, requests.get());
+        assertEquals(4096, resultCache.getSnapshot(registration).maxWeight());
+    }
+
+    @Test
+    void testCompactPayloadOnlyKeepsItsBytes() {
+        final byte[] record = "{\"batch\":[{\"a\":1},{\"b\":2}]}".getBytes(StandardCharsets.UTF_8);
+        final ResponsePayload payload = new ResponsePayload(record, 10, 7);
+
+        final ResponsePayload compacted = payload.compact();
+
+        assertEquals("{\"a\":1}", compacted.asString());
+        assertEquals(7, compacted.size());
+    }
+
+    @Test
+    void testNodePayloadIsWeighedInUtf8Bytes() {
+        final String text = "caf\u00e9 \u20ac \uD83D\uDE00";
+        final ResponsePayload payload = new ResponsePayload(JsonNodeFactory.instance.textNode(text));
+
+        // Quotes, 3 ASCII letters, 2 spaces, then 2, 3 and 4 bytes for the accent, the euro sign and the emoji
+        assertEquals(16, payload.size());
+        assertEquals(payload.asString().getBytes(StandardCharsets.UTF_8).length, payload.size());
+    }
+}
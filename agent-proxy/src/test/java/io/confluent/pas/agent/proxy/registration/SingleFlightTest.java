@@ -0,0 +1,94 @@
+package io.confluent.pas.agent.proxy.registration;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void testConcurrentCallsShareTheResult() {
+        final AtomicInteger calls = new AtomicInteger();
+        final Sinks.One<String> response = Sinks.one();
+
+        final Mono<String> first = singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return response.asMono();
+        }).cache();
+        final Mono<String> second = singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return response.asMono();
+        }).cache();
+        first.subscribe();
+        second.subscribe();
+
+        assertEquals(1, calls.get());
+        assertEquals(1, singleFlight.getInFlight());
+        assertEquals(1, singleFlight.getCoalesced());
+
+        response.tryEmitValue("result");
+
+        assertEquals("result", first.block(Duration.ofSeconds(1)));
+        assertEquals("result", second.block(Duration.ofSeconds(1)));
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    void testErrorIsSharedAndNotRemembered() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return Mono.error(new IllegalStateException("Agent error"));
+        }).block(Duration.ofSeconds(1)));
+
+        assertEquals("retried", singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return Mono.just("retried");
+        }).block(Duration.ofSeconds(1)));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testCallIsCancelledOnceEveryCallerCancelled() {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final Mono<String> call = Mono.<String>never().doOnCancel(() -> cancelled.set(true));
+
+        final Disposable first = singleFlight.execute("key", () -> call).subscribe();
+        final Disposable second = singleFlight.execute("key", () -> call).subscribe();
+
+        first.dispose();
+        assertFalse(cancelled.get());
+
+        second.dispose();
+        assertTrue(cancelled.get());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    void testKeyIgnoresArgumentOrder() {
+        final Map<String, Object> arguments = new LinkedHashMap<>();
+        arguments.put("name", "John");
+        arguments.put("filters", Map.of("b", 2, "a", 1));
+        final Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("filters", new LinkedHashMap<>(Map.of("a", 1, "b", 2)));
+        reordered.put("name", "John");
+
+        assertEquals(SingleFlight.key("tool", arguments), SingleFlight.key("tool", reordered));
+        assertNotEquals(SingleFlight.key("tool", arguments), SingleFlight.key("other", arguments));
+        assertNotEquals(SingleFlight.key("tool", Map.of("names", List.of("John", "Jane"))),
+                SingleFlight.key("tool", Map.of("names", List.of("Jane", "John"))));
+    }
+}
@@ -0,0 +1,397 @@
+package io.confluent.pas.agent.proxy.registration.handlers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.proxy.registration.AdmissionController;
+import io.confluent.pas.agent.proxy.registration.CircuitBreaker;
+import io.confluent.pas.agent.proxy.registration.RequestResponseHandler;
+import io.confluent.pas.agent.proxy.registration.ResultCache;
+import io.confluent.pas.agent.proxy.registration.exceptions.AgentUnavailableException;
+import io.confluent.pas.agent.proxy.registration.exceptions.CircuitOpenException;
+import io.confluent.pas.agent.proxy.registration.exceptions.TooManyRequestsException;
+import io.confluent.pas.agent.proxy.frameworks.java.models.ResponseStatus;
+import io.confluent.pas.agent.proxy.registration.kafka.ConsumerService;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponseEnvelope;
+import io.confluent.pas.agent.proxy.registration.kafka.ResponsePayload;
+import io.confluent.pas.agent.proxy.registration.kafka.exceptions.TimeoutException;
+import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchema;
+import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AbstractRegistrationHandlerTest {
+
+    /**
+     * Well above the size of the former blocking thread pool (10)
+     */
+    private static final int CONCURRENT_REQUESTS = 200;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Mock
+    private RequestResponseHandler requestResponseHandler;
+
+    @Mock
+    private RegistrationSchemas schemas;
+
+    @Mock
+    private RegistrationSchema requestSchema;
+
+    private final Map<String, ConsumerService.ResponseHandler> responseHandlers = new ConcurrentHashMap<>();
+    private final Map<String, ConsumerService.ErrorHandler> errorHandlers = new ConcurrentHashMap<>();
+
+    // Times the hedge delays, advanced by the tests
+    private final VirtualTimeScheduler hedgeScheduler = VirtualTimeScheduler.create();
+
+    private TestHandler handler;
+
+    static class TestHandler extends AbstractRegistrationHandler<Registration, Object, JsonNode> {
+        TestHandler(Registration registration,
+                    RegistrationSchemas schemas,
+                    RequestResponseHandler requestResponseHandler) {
+            super(registration, schemas, new Object(), requestResponseHandler, ResponsePayload::asNode);
+        }
+
+        Mono<JsonNode> call(Map<String, Object> arguments) {
+            return onRequest(arguments);
+        }
+
+        @Override
+        public Mono<Void> initialize() {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Void> teardown() {
+            return Mono.empty();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        when(schemas.getRequestSchema()).thenReturn(requestSchema);
+        when(requestSchema.envelope(any())).thenAnswer(invocation -> MAPPER.valueToTree(invocation.getArgument(0)));
+
+        when(requestResponseHandler.getCircuitBreaker(any()))
+                .thenReturn(new CircuitBreaker("testTool", 0, Duration.ZERO));
+        when(requestResponseHandler.acquirePermit(any())).thenReturn(() -> {
+        });
+        when(requestResponseHandler.awaitResponseTopic(any())).thenReturn(Mono.empty());
+        when(requestResponseHandler.getResultCache()).thenReturn(ResultCache.withDefaults());
+        when(requestResponseHandler.getHedgeScheduler()).thenReturn(hedgeScheduler);
+        doAnswer(invocation -> {
+            responseHandlers.put(invocation.getArgument(1), invocation.getArgument(2));
+            errorHandlers.put(invocation.getArgument(1), invocation.getArgument(3));
+            return null;
+        }).when(requestResponseHandler).registerHandler(any(), anyString(), any(), any());
+
+        final Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        handler = new TestHandler(registration, schemas, requestResponseHandler);
+    }
+
+    @Test
+    void testConcurrentInFlightRequestsAreNotCapped() throws Exception {
+        // The broker acknowledgement is held back so every send stays in flight
+        final Sinks.Empty<Void> brokerAck = Sinks.empty();
+        final CountDownLatch sendsInFlight = new CountDownLatch(CONCURRENT_REQUESTS);
+
+        when(requestResponseHandler.sendRequest(any(), any(), any())).thenAnswer(invocation -> {
+            sendsInFlight.countDown();
+            return brokerAck.asMono();
+        });
+
+        final List<Mono<JsonNode>> calls = Flux.range(0, CONCURRENT_REQUESTS)
+                .map(i -> handler.call(Map.of("index", i)).subscribeOn(Schedulers.parallel()).cache())
+                .collectList()
+                .block();
+        assertNotNull(calls);
+        calls.forEach(Mono::subscribe);
+
+        // Every request must reach the producer while none of the sends has been acknowledged
+        assertTrue(sendsInFlight.await(5, TimeUnit.SECONDS),
+                "Only " + (CONCURRENT_REQUESTS - sendsInFlight.getCount()) + " requests were in flight");
+        assertEquals(CONCURRENT_REQUESTS, responseHandlers.size());
+
+        brokerAck.tryEmitEmpty();
+
+        // Reply to every request and make sure every caller receives its response
+        final ResponseEnvelope response = new ResponseEnvelope(
+                0,
+                ResponseStatus.COMPLETED,
+                null,
+                null,
+                new ResponsePayload(MAPPER.readTree("{\"ok\":true}")));
+        responseHandlers.values().forEach(responseHandler -> responseHandler.handle(response));
+
+        final List<JsonNode> results = Flux.merge(calls).collectList().block(Duration.ofSeconds(5));
+        assertNotNull(results);
+        assertEquals(CONCURRENT_REQUESTS, results.size());
+        results.forEach(result -> assertTrue(result.get("ok").asBoolean()));
+    }
+
+    @Test
+    void testRejectedRequestIsNotSent() {
+        when(requestResponseHandler.acquirePermit(any()))
+                .thenThrow(new TooManyRequestsException("Too many requests in flight"));
+
+        assertThrows(TooManyRequestsException.class,
+                () -> handler.call(Map.of("index", 0)).block(Duration.ofSeconds(5)));
+
+        verify(requestResponseHandler, never()).registerHandler(any(), anyString(), any(), any());
+        verify(requestResponseHandler, never()).sendRequest(any(), any(), any());
+    }
+
+    @Test
+    void testOpenCircuitRejectsRequest() {
+        final CircuitBreaker breaker = new CircuitBreaker("testTool", 1, Duration.ofMinutes(1));
+        breaker.acquire().onTimeout();
+        when(requestResponseHandler.getCircuitBreaker(any())).thenReturn(breaker);
+
+        assertThrows(CircuitOpenException.class,
+                () -> handler.call(Map.of("index", 0)).block(Duration.ofSeconds(5)));
+
+        verify(requestResponseHandler, never()).acquirePermit(any());
+        verify(requestResponseHandler, never()).sendRequest(any(), any(), any());
+    }
+
+    @Test
+    void testIdenticalConcurrentRequestsAreCoalesced() throws Exception {
+        final Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        registration.setCoalesceRequests(true);
+        handler = new TestHandler(registration, schemas, requestResponseHandler);
+        when(requestResponseHandler.sendRequest(any(), any(), any())).thenReturn(Mono.empty());
+
+        final Mono<JsonNode> first = handler.call(Map.of("name", "John", "scope", "info")).cache();
+        final Mono<JsonNode> second = handler.call(Map.of("scope", "info", "name", "John")).cache();
+        final Mono<JsonNode> other = handler.call(Map.of("name", "Jane", "scope", "info")).cache();
+        first.subscribe();
+        second.subscribe();
+        other.subscribe();
+
+        // Same arguments in a different order share the request in flight
+        verify(requestResponseHandler, times(2)).sendRequest(any(), any(), any());
+        assertEquals(1, handler.getSingleFlight().getCoalesced());
+
+        final ResponseEnvelope response = new ResponseEnvelope(
+                0,
+                ResponseStatus.COMPLETED,
+                null,
+                null,
+                new ResponsePayload(MAPPER.readTree("{\"ok\":true}")));
+        responseHandlers.values().forEach(responseHandler -> responseHandler.handle(response));
+
+        assertTrue(first.block(Duration.ofSeconds(5)).get("ok").asBoolean());
+        assertTrue(second.block(Duration.ofSeconds(5)).get("ok").asBoolean());
+        assertTrue(other.block(Duration.ofSeconds(5)).get("ok").asBoolean());
+        assertEquals(0, handler.getSingleFlight().getInFlight());
+
+        // Once answered, the same call is sent again
+        handler.call(Map.of("name", "John", "scope", "info")).subscribe();
+        verify(requestResponseHandler, times(3)).sendRequest(any(), any(), any());
+    }
+
+    @Test
+    void testRequestsAreNotCoalescedByDefault() {
+        when(requestResponseHandler.sendRequest(any(), any(), any())).thenReturn(Mono.empty());
+
+        handler.call(Map.of("name", "John")).subscribe();
+        handler.call(Map.of("name", "John")).subscribe();
+
+        verify(requestResponseHandler, times(2)).sendRequest(any(), any(), any());
+    }
+
+    @Test
+    void testCachedResponseIsServedWithoutRequest() throws Exception {
+        final Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        registration.setCacheTtlMs(60000);
+        handler = new TestHandler(registration, schemas, requestResponseHandler);
+        when(requestResponseHandler.sendRequest(any(), any(), any())).thenReturn(Mono.empty());
+
+        final Mono<JsonNode> first = handler.call(Map.of("name", "John", "scope", "info")).cache();
+        first.subscribe();
+
+        final ResponseEnvelope response = new ResponseEnvelope(
+                0,
+                ResponseStatus.COMPLETED,
+                null,
+                null,
+                new ResponsePayload(MAPPER.readTree("{\"ok\":true}")));
+        responseHandlers.values().forEach(responseHandler -> responseHandler.handle(response));
+        assertTrue(first.block(Duration.ofSeconds(5)).get("ok").asBoolean());
+
+        // Same arguments in a different order are served from the cache
+        final JsonNode cached = handler.call(Map.of("scope", "info", "name", "John")).block(Duration.ofSeconds(5));
+        assertTrue(cached.get("ok").asBoolean());
+        verify(requestResponseHandler, times(1)).sendRequest(any(), any(), any());
+
+        final ResultCache.Snapshot snapshot = requestResponseHandler.getResultCache().getSnapshot(registration);
+        assertEquals(1, snapshot.hits());
+        assertEquals(1, snapshot.misses());
+        assertEquals(0.5, snapshot.hitRatio());
+    }
+
+    @Test
+    void testFailedResponseIsNotCached() {
+        final Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        registration.setCacheTtlMs(60000);
+        handler = new TestHandler(registration, schemas, requestResponseHandler);
+        when(requestResponseHandler.sendRequest(any(), any(), any())).thenReturn(Mono.empty());
+
+        handler.call(Map.of("index", 0)).subscribe(result -> {
+        }, error -> {
+        });
+        errorHandlers.values().forEach(errorHandler -> errorHandler.onError(new TimeoutException("Timeout")));
+
+        handler.call(Map.of("index", 0)).subscribe();
+        verify(requestResponseHandler, times(2)).sendRequest(any(), any(), any());
+    }
+
+    @Test
+    void testLateRequestIsHedged() throws Exception {
+        final Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        registration.setHedgePercentile(0.95);
+        handler = new TestHandler(registration, schemas, requestResponseHandler);
+        when(requestResponseHandler.getHedgeDelay(any())).thenReturn(10L);
+        when(requestResponseHandler.sendHedgeableRequest(any(), any(), any())).thenReturn(Mono.just(3));
+        when(requestResponseHandler.sendHedgedRequest(any(), anyInt(), any(), any())).thenReturn(Mono.empty());
+
+        final Mono<JsonNode> call = handler.call(Map.of("name", "John")).cache();
+        call.subscribe();
+
+        hedgeScheduler.advanceTimeBy(Duration.ofMillis(9));
+        verify(requestResponseHandler, never()).sendHedgedRequest(any(), anyInt(), any(), any());
+        hedgeScheduler.advanceTimeBy(Duration.ofMillis(1));
+
+        // Sent again, with the next request index, away from the partition of the first request
+        final ArgumentCaptor<JsonNode> hedgedRequest = ArgumentCaptor.forClass(JsonNode.class);
+        verify(requestResponseHandler).sendHedgedRequest(any(), eq(3), any(), hedgedRequest.capture());
+        assertEquals(1, hedgedRequest.getValue().get("requestIndex").asInt());
+        assertEquals("John", hedgedRequest.getValue().get("payload").get("name").asText());
+
+        final ResponseEnvelope response = new ResponseEnvelope(
+                1,
+                ResponseStatus.COMPLETED,
+                null,
+                null,
+                new ResponsePayload(MAPPER.readTree("{\"ok\":true}")));
+        responseHandlers.values().forEach(responseHandler -> responseHandler.handle(response));
+        assertTrue(call.block(Duration.ofSeconds(5)).get("ok").asBoolean());
+    }
+
+    @Test
+    void testAnsweredRequestIsNotHedged() throws Exception {
+        final Registration registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        registration.setHedgePercentile(0.95);
+        handler = new TestHandler(registration, schemas, requestResponseHandler);
+        when(requestResponseHandler.getHedgeDelay(any())).thenReturn(200L);
+        when(requestResponseHandler.sendHedgeableRequest(any(), any(), any())).thenReturn(Mono.just(0));
+
+        final Mono<JsonNode> call = handler.call(Map.of("name", "John")).cache();
+        call.subscribe();
+
+        final ResponseEnvelope response = new ResponseEnvelope(
+                0,
+                ResponseStatus.COMPLETED,
+                null,
+                null,
+                new ResponsePayload(MAPPER.readTree("{\"ok\":true}")));
+        responseHandlers.values().forEach(responseHandler -> responseHandler.handle(response));
+        assertTrue(call.block(Duration.ofSeconds(5)).get("ok").asBoolean());
+
+        hedgeScheduler.advanceTimeBy(Duration.ofMillis(400));
+        verify(requestResponseHandler, never()).sendHedgedRequest(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void testUnavailableRegistrationFailsFast() {
+        handler.setAvailable(false).block();
+
+        assertThrows(AgentUnavailableException.class,
+                () -> handler.call(Map.of("index", 0)).block(Duration.ofSeconds(5)));
+
+        verify(requestResponseHandler, never()).acquirePermit(any());
+        verify(requestResponseHandler, never()).sendRequest(any(), any(), any());
+    }
+
+    @Test
+    void testTimeoutOpensCircuit() {
+        final CircuitBreaker breaker = new CircuitBreaker("testTool", 1, Duration.ofMinutes(1));
+        when(requestResponseHandler.getCircuitBreaker(any())).thenReturn(breaker);
+        when(requestResponseHandler.sendRequest(any(), any(), any())).thenReturn(Mono.empty());
+
+        final Mono<JsonNode> call = handler.call(Map.of("index", 0));
+        call.subscribe(result -> {
+        }, error -> {
+        });
+
+        // Simulate the response timeout raised by the consumer service
+        errorHandlers.values().forEach(errorHandler ->
+                errorHandler.onError(new TimeoutException("Timeout")));
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getSnapshot().state());
+    }
+
+    @Test
+    void testPermitIsReleasedOnCompletion() {
+        final AdmissionController.Permit permit = mock(AdmissionController.Permit.class);
+        when(requestResponseHandler.acquirePermit(any())).thenReturn(permit);
+        when(requestResponseHandler.sendRequest(any(), any(), any()))
+                .thenReturn(Mono.error(new RuntimeException("Broker unavailable")));
+
+        assertThrows(RuntimeException.class,
+                () -> handler.call(Map.of("index", 0)).block(Duration.ofSeconds(5)));
+
+        verify(permit, times(1)).close();
+        verify(requestResponseHandler, times(1)).unregisterHandler(any(), anyString());
+    }
+
+    @Test
+    void testCancelledCallIsNotSent() {
+        // The response topic is never ready, the call is cancelled while waiting for it
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        when(requestResponseHandler.awaitResponseTopic(any()))
+                .thenReturn(Mono.<Void>never().doOnCancel(() -> cancelled.set(true)));
+
+        handler.call(Map.of("index", 0)).subscribe().dispose();
+
+        assertTrue(cancelled.get());
+        verify(requestResponseHandler, never()).sendRequest(any(), any(), any());
+        verify(requestResponseHandler, times(1)).unregisterHandler(any(), anyString());
+    }
+
+    @Test
+    void testSendErrorIsPropagated() {
+        when(requestResponseHandler.sendRequest(any(), any(), any()))
+                .thenReturn(Mono.error(new RuntimeException("Broker unavailable")));
+
+        final RuntimeException error = assertThrows(RuntimeException.class,
+                () -> handler.call(Map.of("index", 0)).block(Duration.ofSeconds(5)));
+        assertEquals("Broker unavailable", error.getMessage());
+    }
+}
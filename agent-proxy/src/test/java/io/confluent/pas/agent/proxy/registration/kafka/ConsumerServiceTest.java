@@ -1,33 +1,86 @@
 package io.confluent.pas.agent.proxy.registration.kafka;
 
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.common.utils.ShardedExecutor;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
+import io.confluent.pas.agent.proxy.frameworks.java.models.ResponseStatus;
+import io.confluent.pas.agent.proxy.registration.kafka.exceptions.TimeoutException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class ConsumerServiceTest {
 
     @Mock
-    private Consumer<Key, JsonNode> consumer;
+    private Consumer<byte[], byte[]> consumer;
+
+    @Mock
+    private Deserializer<Key> keyDeserializer;
+
+    @Mock
+    private Deserializer<ResponseEnvelope> valueDeserializer;
 
     private ConsumerService consumerService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        consumerService = new ConsumerService(consumer, 10000);
+        consumerService = new ConsumerService(
+                consumer,
+                keyDeserializer,
+                valueDeserializer,
+                ConsumerService.Options.defaults(10000));
+    }
+
+    private static ConsumerRecord<byte[], byte[]> createRecord(String correlationId, byte[] key, byte[] value) {
+        ConsumerRecord<byte[], byte[]> record = new ConsumerRecord<>("responseTopic", 0, 0, key, value);
+        if (correlationId != null) {
+            record.headers().add(Key.CORRELATION_ID_HEADER, correlationId.getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+
+    private static ResponseEnvelope createResponse() throws IOException {
+        JsonNode payload = new ObjectMapper().readTree("{\"message\": \"testMessage\"}");
+        return new ResponseEnvelope(0, ResponseStatus.COMPLETED, null, null, new ResponsePayload(payload));
+    }
+
+    private ConsumerService createServiceWithShortTimeout() throws IOException {
+        consumerService.close();
+        return new ConsumerService(
+                consumer,
+                keyDeserializer,
+                valueDeserializer,
+                ConsumerService.Options.defaults(50)
+                        .withTimeoutScheduler(() -> new TimeoutScheduler(Duration.ofMillis(5), 64)));
     }
 
     @Test
@@ -63,13 +116,259 @@ class ConsumerServiceTest {
 
         consumerService.registerResponseHandler(registration, "correlationId", handler, errorHandler);
 
-        ObjectMapper mapper = new ObjectMapper();
-        Key key = new Key("correlationId");
-        JsonNode message = mapper.readTree("{\"message\": \"testMessage\"}");
+        ResponseEnvelope message = createResponse();
+        byte[] value = "value".getBytes(StandardCharsets.UTF_8);
+        when(valueDeserializer.deserialize(eq("responseTopic"), any(Headers.class), eq(value))).thenReturn(message);
+
+        consumerService.handleResponse(createRecord("correlationId", "key".getBytes(StandardCharsets.UTF_8), value));
+
+        verify(handler).handle(message);
+        verify(keyDeserializer, never()).deserialize(any(), any(Headers.class), any(byte[].class));
+    }
+
+    @Test
+    void testHandleResponseFallsBackOnKey() throws IOException {
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        ConsumerService.ResponseHandler handler = mock(ConsumerService.ResponseHandler.class);
+        ConsumerService.ErrorHandler errorHandler = mock(ConsumerService.ErrorHandler.class);
+
+        consumerService.registerResponseHandler(registration, "correlationId", handler, errorHandler);
+
+        ResponseEnvelope message = createResponse();
+        byte[] key = "key".getBytes(StandardCharsets.UTF_8);
+        byte[] value = "value".getBytes(StandardCharsets.UTF_8);
+        when(keyDeserializer.deserialize(eq("responseTopic"), any(Headers.class), eq(key))).thenReturn(new Key("correlationId"));
+        when(valueDeserializer.deserialize(eq("responseTopic"), any(Headers.class), eq(value))).thenReturn(message);
+
+        consumerService.handleResponse(createRecord(null, key, value));
+
+        verify(handler).handle(message);
+    }
+
+    @Test
+    void testUnmatchedResponseIsNotDeserialized() {
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        ConsumerService.ResponseHandler handler = mock(ConsumerService.ResponseHandler.class);
+
+        consumerService.registerResponseHandler(registration, "correlationId", handler, mock(ConsumerService.ErrorHandler.class));
+        consumerService.handleResponse(createRecord("otherCorrelationId", new byte[]{1}, new byte[]{2}));
+
+        verify(handler, never()).handle(any());
+        verifyNoInteractions(keyDeserializer, valueDeserializer);
+    }
+
+    @Test
+    void testHedgeDuplicateIsDiscardedWithoutWarning() throws IOException {
+        final Logger logger = (Logger) LoggerFactory.getLogger(ConsumerService.class);
+        final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        try {
+            Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+            ConsumerService.ResponseHandler handler = mock(ConsumerService.ResponseHandler.class);
+            ConsumerService.ErrorHandler errorHandler = mock(ConsumerService.ErrorHandler.class);
+            when(valueDeserializer.deserialize(any(), any(Headers.class), any(byte[].class))).thenReturn(createResponse());
+
+            consumerService.registerResponseHandler(registration, "correlationId", handler, errorHandler);
+            // The hedged request and the original one both get a response, the second is discarded
+            consumerService.handleResponse(createRecord("correlationId", null, new byte[]{1}));
+            consumerService.handleResponse(createRecord("correlationId", null, new byte[]{2}));
+
+            verify(handler, times(1)).handle(any());
+            verify(errorHandler, never()).onError(any());
+            assertTrue(appender.list.stream().noneMatch(event -> event.getLevel().isGreaterOrEqual(Level.WARN)));
+        } finally {
+            logger.detachAppender(appender);
+        }
+    }
+
+    @Test
+    void testDeserializationErrorIsReported() {
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        ConsumerService.ResponseHandler handler = mock(ConsumerService.ResponseHandler.class);
+        ConsumerService.ErrorHandler errorHandler = mock(ConsumerService.ErrorHandler.class);
+        when(valueDeserializer.deserialize(any(), any(Headers.class), any(byte[].class)))
+                .thenThrow(new SerializationException("Invalid payload"));
+
+        consumerService.registerResponseHandler(registration, "correlationId", handler, errorHandler);
+        consumerService.handleResponse(createRecord("correlationId", null, new byte[]{2}));
+
+        verify(handler, never()).handle(any());
+        verify(errorHandler).onError(any(SerializationException.class));
+    }
+
+    @Test
+    void testHandlerExpiresWithoutPolling() throws Exception {
+        consumerService = createServiceWithShortTimeout();
+
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        ConsumerService.ResponseHandler handler = mock(ConsumerService.ResponseHandler.class);
+        ConsumerService.ErrorHandler errorHandler = mock(ConsumerService.ErrorHandler.class);
+
+        consumerService.registerResponseHandler(registration, "correlationId", handler, errorHandler);
+
+        // The timeout fires from the scheduler thread, the consumer is never polled
+        verify(errorHandler, timeout(2000)).onError(any(TimeoutException.class));
+        verify(handler, never()).handle(any());
+        assertFalse(consumerService.getResponseHandlers()
+                .get("responseTopic")
+                .registrationHandlers()
+                .containsKey("correlationid"));
+    }
+
+    @Test
+    void testRemovedRegistrationIsUnsubscribedOnceDrained() throws IOException {
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        consumerService.registerResponseHandler(registration, "correlationId",
+                mock(ConsumerService.ResponseHandler.class), mock(ConsumerService.ErrorHandler.class));
+
+        consumerService.removeRegistration(registration);
+
+        // A response is still expected, the topic is kept
+        verify(consumer, never()).unsubscribe(any());
+        assertTrue(consumerService.getResponseHandlers().get("responseTopic").draining().get());
+
+        byte[] value = "value".getBytes(StandardCharsets.UTF_8);
+        when(valueDeserializer.deserialize(eq("responseTopic"), any(Headers.class), eq(value))).thenReturn(createResponse());
+        consumerService.handleResponse(createRecord("correlationId", null, value));
+
+        verify(consumer).unsubscribe("responseTopic");
+        assertFalse(consumerService.getResponseHandlers().containsKey("responseTopic"));
+    }
+
+    @Test
+    void testDrainingRegistrationIsUnsubscribedOnTimeout() throws Exception {
+        consumerService = createServiceWithShortTimeout();
+
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        ConsumerService.ErrorHandler errorHandler = mock(ConsumerService.ErrorHandler.class);
+        consumerService.registerResponseHandler(registration, "correlationId",
+                mock(ConsumerService.ResponseHandler.class), errorHandler);
+
+        consumerService.removeRegistration(registration);
+
+        verify(errorHandler, timeout(2000)).onError(any(TimeoutException.class));
+        verify(consumer, timeout(2000)).unsubscribe("responseTopic");
+        assertFalse(consumerService.getResponseHandlers().containsKey("responseTopic"));
+    }
+
+    @Test
+    void testRegistrationServedAgainStopsDraining() {
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        consumerService.registerResponseHandler(registration, "correlationId",
+                mock(ConsumerService.ResponseHandler.class), mock(ConsumerService.ErrorHandler.class));
+        consumerService.removeRegistration(registration);
+
+        consumerService.registerResponseHandler(registration, "otherCorrelationId",
+                mock(ConsumerService.ResponseHandler.class), mock(ConsumerService.ErrorHandler.class));
+        consumerService.unregisterResponseHandler(registration, "correlationId");
+        consumerService.unregisterResponseHandler(registration, "otherCorrelationId");
+
+        verify(consumer, never()).unsubscribe(any());
+        assertFalse(consumerService.getResponseHandlers().get("responseTopic").draining().get());
+    }
+
+    @Test
+    void testKeyCarriesDeadlineOfHandler() {
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        registration.setResponseTimeoutMs(5000);
+        long before = System.currentTimeMillis();
+
+        assertNull(consumerService.createKey(registration, "correlationId").getDeadline());
+
+        consumerService.registerResponseHandler(registration, "correlationId",
+                mock(ConsumerService.ResponseHandler.class), mock(ConsumerService.ErrorHandler.class));
+        Long deadline = consumerService.createKey(registration, "correlationId").getDeadline();
+
+        assertNotNull(deadline);
+        assertTrue(deadline >= before + 5000 && deadline <= System.currentTimeMillis() + 5000);
+    }
+
+    @Test
+    void testRegistrationTimeoutOverridesDefault() throws IOException {
+        consumerService.close();
+        consumerService = new ConsumerService(
+                consumer,
+                keyDeserializer,
+                valueDeserializer,
+                ConsumerService.Options.defaults(60000)
+                        .withTimeoutScheduler(() -> new TimeoutScheduler(Duration.ofMillis(5), 64)));
+
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        registration.setResponseTimeoutMs(50);
+        ConsumerService.ResponseHandler handler = mock(ConsumerService.ResponseHandler.class);
+        ConsumerService.ErrorHandler errorHandler = mock(ConsumerService.ErrorHandler.class);
+
+        consumerService.registerResponseHandler(registration, "correlationId", handler, errorHandler);
+
+        // Expires after the timeout of the registration, long before the default one
+        verify(errorHandler, timeout(2000)).onError(any(TimeoutException.class));
+        verify(handler, never()).handle(any());
+    }
 
-        consumerService.handleResponse("responseTopic", key, message);
+    @Test
+    void testResponseCancelsTimeout() throws Exception {
+        consumerService = createServiceWithShortTimeout();
+
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        ConsumerService.ResponseHandler handler = mock(ConsumerService.ResponseHandler.class);
+        ConsumerService.ErrorHandler errorHandler = mock(ConsumerService.ErrorHandler.class);
+
+        consumerService.registerResponseHandler(registration, "correlationId", handler, errorHandler);
+        ResponseEnvelope message = createResponse();
+        when(valueDeserializer.deserialize(any(), any(Headers.class), any(byte[].class))).thenReturn(message);
+        consumerService.handleResponse(createRecord("correlationId", null, new byte[]{1}));
 
         verify(handler).handle(message);
+        Thread.sleep(200);
+        verify(errorHandler, never()).onError(any());
+    }
+
+    @Test
+    void testUnregisterCancelsTimeout() throws Exception {
+        consumerService = createServiceWithShortTimeout();
+
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        ConsumerService.ErrorHandler errorHandler = mock(ConsumerService.ErrorHandler.class);
+
+        consumerService.registerResponseHandler(registration, "correlationId", mock(ConsumerService.ResponseHandler.class), errorHandler);
+        consumerService.unregisterResponseHandler(registration, "correlationId");
+
+        Thread.sleep(200);
+        verify(errorHandler, never()).onError(any());
+    }
+
+    @Test
+    void testResponsesAreDispatchedOffThePollingThread() throws Exception {
+        consumerService.close();
+        consumerService = new ConsumerService(
+                consumer,
+                keyDeserializer,
+                valueDeserializer,
+                ConsumerService.Options.defaults(10000)
+                        .withDispatcher(new ShardedExecutor("test-dispatcher", 4, false)));
+
+        Registration registration = new Registration("testTool", "testDescription", "requestTopic", "responseTopic");
+        ResponseEnvelope message = createResponse();
+        when(valueDeserializer.deserialize(any(), any(Headers.class), any(byte[].class))).thenReturn(message);
+
+        int count = 100;
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            consumerService.registerResponseHandler(registration, "correlationId-" + i, response -> {
+                threads.add(Thread.currentThread().getName());
+                latch.countDown();
+            }, mock(ConsumerService.ErrorHandler.class));
+        }
+
+        for (int i = 0; i < count; i++) {
+            consumerService.handleResponse(createRecord("correlationId-" + i, null, new byte[]{1}));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertFalse(threads.contains(Thread.currentThread().getName()));
+        assertTrue(threads.size() > 1);
     }
 
     @Test
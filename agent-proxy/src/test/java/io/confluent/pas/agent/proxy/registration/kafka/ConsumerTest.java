@@ -3,7 +3,10 @@ package io.confluent.pas.agent.proxy.registration.kafka;
 import io.confluent.pas.agent.common.services.KafkaConfiguration;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,10 +14,20 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class ConsumerTest {
@@ -42,9 +55,9 @@ class ConsumerTest {
         when(kafkaConfiguration.registrationTopicName()).thenReturn(KafkaConfiguration.DEFAULT_REGISTRATION_TOPIC_NAME);
         when(kafkaConfiguration.topicConfiguration()).thenReturn(new KafkaConfiguration.DefaultTopicConfiguration());
         when(kafkaConfiguration.saslMechanism()).thenReturn(KafkaConfiguration.DEFAULT_SASL_MECHANISM);
+        when(kafkaConsumer.poll(any(Duration.class))).thenReturn(ConsumerRecords.empty());
 
-
-        consumer = new Consumer<>(consumerHandler, kafkaConsumer, mock(Consumer.TimeoutChecker.class));
+        consumer = new Consumer<>(consumerHandler, kafkaConsumer);
     }
 
     @Test
@@ -53,6 +66,23 @@ class ConsumerTest {
         assertTrue(consumer.isSubscribed("test-topic"));
     }
 
+    @Test
+    void testConcurrentSubscribe() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Callable<CompletableFuture<Void>> subscribe = () -> consumer.subscribe("test-topic");
+            final List<Future<CompletableFuture<Void>>> subscriptions = executor.invokeAll(List.of(subscribe, subscribe));
+
+            // Neither subscription fails, both wait for the same readiness
+            for (Future<CompletableFuture<Void>> subscription : subscriptions) {
+                assertFalse(subscription.get().isCompletedExceptionally());
+            }
+            assertTrue(consumer.isSubscribed("test-topic"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     void testUnsubscribe() {
         consumer.subscribe("test-topic");
@@ -71,7 +101,7 @@ class ConsumerTest {
         ConsumerRecord<String, String> record = new ConsumerRecord<>("test-topic", 0, 0, "key", "value");
         consumer.subscribe("test-topic");
         consumer.processRecord(record);
-        verify(consumerHandler).onMessage("test-topic", "key", "value");
+        verify(consumerHandler).onMessage(record);
     }
 
     @Test
@@ -90,4 +120,93 @@ class ConsumerTest {
         executorService.shutdown();
         assertTrue(executorService.isShutdown());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSubscribeAssignsAndPositionsPartitions() throws Exception {
+        when(kafkaConsumer.partitionsFor(eq("test-topic"), any(Duration.class))).thenReturn(List.of(
+                new PartitionInfo("test-topic", 0, null, null, null),
+                new PartitionInfo("test-topic", 1, null, null, null)));
+
+        consumer.subscribe("test-topic");
+        consumer.whenReady("test-topic").get(5, TimeUnit.SECONDS);
+
+        List<TopicPartition> partitions = List.of(new TopicPartition("test-topic", 0), new TopicPartition("test-topic", 1));
+        verify(kafkaConsumer).assign(partitions);
+        verify(kafkaConsumer).seekToEnd(partitions);
+        verify(kafkaConsumer).position(partitions.get(0));
+        verify(kafkaConsumer).position(partitions.get(1));
+        verify(kafkaConsumer, never()).subscribe(anyCollection());
+        verify(kafkaConsumer, never()).unsubscribe();
+    }
+
+    @Test
+    void testAddingTopicOnlyPositionsNewPartitions() throws Exception {
+        when(kafkaConsumer.partitionsFor(eq("topic-a"), any(Duration.class)))
+                .thenReturn(List.of(new PartitionInfo("topic-a", 0, null, null, null)));
+        when(kafkaConsumer.partitionsFor(eq("topic-b"), any(Duration.class)))
+                .thenReturn(List.of(new PartitionInfo("topic-b", 0, null, null, null)));
+
+        consumer.subscribe("topic-a");
+        consumer.whenReady("topic-a").get(5, TimeUnit.SECONDS);
+        consumer.subscribe("topic-b");
+        consumer.whenReady("topic-b").get(5, TimeUnit.SECONDS);
+
+        verify(kafkaConsumer).seekToEnd(List.of(new TopicPartition("topic-a", 0)));
+        verify(kafkaConsumer).seekToEnd(List.of(new TopicPartition("topic-b", 0)));
+        verify(kafkaConsumer).assign(argThat(assignment -> assignment.size() == 2));
+    }
+
+    @Test
+    void testTopicWithoutPartitionsIsRetried() throws Exception {
+        when(kafkaConsumer.partitionsFor(eq("test-topic"), any(Duration.class)))
+                .thenReturn(List.of())
+                .thenReturn(List.of(new PartitionInfo("test-topic", 0, null, null, null)));
+
+        consumer.subscribe("test-topic");
+        CompletableFuture<Void> readiness = consumer.whenReady("test-topic");
+
+        readiness.get(5, TimeUnit.SECONDS);
+        verify(kafkaConsumer, times(2)).partitionsFor(eq("test-topic"), any(Duration.class));
+        verify(kafkaConsumer).assign(List.of(new TopicPartition("test-topic", 0)));
+    }
+
+    @Test
+    void testInstanceRoutingAssignsReplyPartition() throws Exception {
+        Consumer<String, String> instanceConsumer = new Consumer<>(
+                consumerHandler,
+                kafkaConsumer,
+                ReplyRouting.instance("instance-1", 2));
+        when(kafkaConsumer.partitionsFor(eq("test-topic"), any(Duration.class))).thenReturn(List.of(
+                new PartitionInfo("test-topic", 1, null, null, null),
+                new PartitionInfo("test-topic", 0, null, null, null),
+                new PartitionInfo("test-topic", 2, null, null, null)));
+
+        try {
+            instanceConsumer.subscribe("test-topic");
+            instanceConsumer.whenReady("test-topic").get(5, TimeUnit.SECONDS);
+
+            verify(kafkaConsumer).assign(List.of(new TopicPartition("test-topic", 2)));
+            assertEquals(2, instanceConsumer.getReplyPartition("test-topic"));
+        } finally {
+            instanceConsumer.close();
+        }
+    }
+
+    @Test
+    void testSharedRoutingHasNoReplyPartition() throws Exception {
+        when(kafkaConsumer.partitionsFor(eq("test-topic"), any(Duration.class)))
+                .thenReturn(List.of(new PartitionInfo("test-topic", 0, null, null, null)));
+
+        consumer.subscribe("test-topic");
+        consumer.whenReady("test-topic").get(5, TimeUnit.SECONDS);
+
+        assertNull(consumer.getReplyPartition("test-topic"));
+    }
+
+    @Test
+    void testWhenReadyNotSubscribed() {
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> consumer.whenReady("unknown-topic").get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+    }
+}
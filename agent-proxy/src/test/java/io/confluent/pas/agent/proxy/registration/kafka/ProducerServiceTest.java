@@ -2,12 +2,15 @@ package io.confluent.pas.agent.proxy.registration.kafka;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.pas.agent.common.services.ProducerProfile;
+import io.confluent.pas.agent.common.services.schemas.Registration;
 import io.confluent.pas.agent.common.utils.Lazy;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -16,6 +19,9 @@ import org.mockito.MockitoAnnotations;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -74,6 +80,33 @@ class ProducerServiceTest {
         assertEquals(value, capturedRecord.value());
     }
 
+    @Test
+    void testSendCarriesDeadlineAndReplyPartitionHeaders() throws Exception {
+        Key key = new Key("value", 2);
+        key.setDeadline(1234L);
+        JsonNode value = new ObjectMapper().readTree("{\"value\": \"test\"}");
+
+        when(kafkaProducer.send(any(ProducerRecord.class), any(Callback.class)))
+                .thenAnswer(invocation -> {
+                    ((Callback) invocation.getArgument(1)).onCompletion(mock(RecordMetadata.class), null);
+                    return null;
+                });
+
+        StepVerifier.create(producerService.send("test-topic", key, value))
+                .expectComplete()
+                .verify();
+
+        ArgumentCaptor<ProducerRecord> recordCaptor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaProducer).send(recordCaptor.capture(), any());
+
+        Header header = recordCaptor.getValue().headers().lastHeader(Key.DEADLINE_HEADER);
+        assertNotNull(header);
+        assertEquals("1234", new String(header.value(), StandardCharsets.UTF_8));
+        header = recordCaptor.getValue().headers().lastHeader(Key.REPLY_PARTITION_HEADER);
+        assertNotNull(header);
+        assertEquals("2", new String(header.value(), StandardCharsets.UTF_8));
+    }
+
     @Test
     void testSendWithException() throws Exception {
         String topic = "test-topic";
@@ -95,6 +128,66 @@ class ProducerServiceTest {
                 .verify();
     }
 
+    @Test
+    void testRegistrationsAreSentWithTheProducerOfTheirProfile() {
+        final Map<ProducerProfile, KafkaProducer<Key, JsonNode>> producers = new EnumMap<>(ProducerProfile.class);
+        final ProducerService service = new ProducerService(
+                profile -> new Lazy<>(() -> producers.computeIfAbsent(profile, p -> mockProducer())),
+                ProducerProfile.LATENCY);
+
+        final Registration latency = new Registration("latencyTool", "description", "requestTopic", "responseTopic");
+        final Registration throughput = new Registration("bulkAgent", "description", "requestTopic", "responseTopic");
+        throughput.setProducerProfile("throughput");
+        final Registration unknown = new Registration("otherTool", "description", "requestTopic", "responseTopic");
+        unknown.setProducerProfile("unknown");
+
+        assertEquals(ProducerProfile.LATENCY, service.getProfile(latency));
+        assertEquals(ProducerProfile.THROUGHPUT, service.getProfile(throughput));
+        assertEquals(ProducerProfile.LATENCY, service.getProfile(unknown));
+
+        StepVerifier.create(service.send(latency, null, new Key("id-1"), null)).expectNext(0).verifyComplete();
+        StepVerifier.create(service.send(throughput, 1, new Key("id-2"), null)).expectNext(0).verifyComplete();
+
+        assertEquals(2, producers.size());
+        verify(producers.get(ProducerProfile.LATENCY)).send(any(ProducerRecord.class), any(Callback.class));
+        final ArgumentCaptor<ProducerRecord> recordCaptor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(producers.get(ProducerProfile.THROUGHPUT)).send(recordCaptor.capture(), any(Callback.class));
+        assertEquals("requestTopic", recordCaptor.getValue().topic());
+        assertEquals(1, recordCaptor.getValue().partition());
+
+        service.close();
+        producers.values().forEach(producer -> verify(producer).close());
+    }
+
+    @Test
+    void testPartitionCountIsReadFromTheProducerOfTheProfile() {
+        final Map<ProducerProfile, KafkaProducer<Key, JsonNode>> producers = new EnumMap<>(ProducerProfile.class);
+        final ProducerService service = new ProducerService(
+                profile -> new Lazy<>(() -> producers.computeIfAbsent(profile, p -> mockProducer())),
+                ProducerProfile.LATENCY);
+
+        final Registration throughput = new Registration("bulkAgent", "description", "requestTopic", "responseTopic");
+        throughput.setProducerProfile("throughput");
+
+        assertEquals(0, service.getPartitionCount(throughput));
+        assertEquals(0, service.getPartitionCount(throughput));
+
+        // The default profile producer is never created, the metadata is only read once
+        assertEquals(1, producers.size());
+        verify(producers.get(ProducerProfile.THROUGHPUT), times(1)).partitionsFor("requestTopic");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static KafkaProducer<Key, JsonNode> mockProducer() {
+        final KafkaProducer<Key, JsonNode> producer = mock(KafkaProducer.class);
+        when(producer.send(any(ProducerRecord.class), any(Callback.class)))
+                .thenAnswer(invocation -> {
+                    ((Callback) invocation.getArgument(1)).onCompletion(mock(RecordMetadata.class), null);
+                    return null;
+                });
+        return producer;
+    }
+
     @Test
     void testClose() {
         producerService.close();
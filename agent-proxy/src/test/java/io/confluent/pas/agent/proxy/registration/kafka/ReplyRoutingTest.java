@@ -0,0 +1,49 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplyRoutingTest {
+
+    private static final List<TopicPartition> PARTITIONS = IntStream.range(0, 6)
+            .mapToObj(partition -> new TopicPartition("responses", partition))
+            .toList();
+
+    @Test
+    void testSharedSelectsAllPartitions() {
+        ReplyRouting routing = ReplyRouting.from("shared", "instance-1", -1);
+
+        assertEquals(ReplyRouting.Mode.SHARED, routing.getMode());
+        assertEquals(PARTITIONS, routing.selectPartitions(PARTITIONS));
+    }
+
+    @Test
+    void testInstanceWithExplicitPartition() {
+        ReplyRouting routing = ReplyRouting.from("instance", "instance-1", 4);
+
+        assertEquals(ReplyRouting.Mode.INSTANCE, routing.getMode());
+        assertEquals(List.of(new TopicPartition("responses", 4)), routing.selectPartitions(PARTITIONS));
+    }
+
+    @Test
+    void testInstanceWithDerivedPartitionIsStable() {
+        ReplyRouting routing = ReplyRouting.from("INSTANCE", "instance-1", -1);
+
+        List<TopicPartition> selected = routing.selectPartitions(PARTITIONS);
+        assertEquals(1, selected.size());
+        assertEquals(selected, ReplyRouting.instance("instance-1", -1).selectPartitions(PARTITIONS));
+    }
+
+    @Test
+    void testInstanceWithoutInstanceId() {
+        ReplyRouting routing = ReplyRouting.instance(null, -1);
+
+        assertNotNull(routing.getInstanceId());
+        assertEquals(1, routing.selectPartitions(PARTITIONS).size());
+    }
+}
@@ -0,0 +1,134 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Request;
+import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchema;
+import io.confluent.pas.agent.proxy.registration.schemas.RegistrationSchemas;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class RequestBatcherTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Mock
+    private ProducerService producerService;
+
+    @Mock
+    private RegistrationSchemas schemas;
+
+    @Mock
+    private RegistrationSchema requestSchema;
+
+    private Registration registration;
+    private VirtualTimeScheduler scheduler;
+    private RequestBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        when(schemas.getRequestSchema()).thenReturn(requestSchema);
+        when(requestSchema.envelope(any())).thenAnswer(invocation -> MAPPER.valueToTree(invocation.getArgument(0)));
+        when(producerService.send(any(Registration.class), any(), any(), any())).thenReturn(Mono.empty());
+
+        registration = new Registration("testTool", "description", "requestTopic", "responseTopic");
+        registration.setMaxBatchSize(3);
+        registration.setBatchLingerMs(10);
+
+        scheduler = VirtualTimeScheduler.create();
+        batcher = new RequestBatcher(registration, producerService, scheduler);
+    }
+
+    private Mono<Void> send(String correlationId, int value) {
+        return batcher.send(new Key(correlationId, 2), new Request(0, Map.of("value", value)), schemas).cache();
+    }
+
+    @Test
+    void testFullBatchIsSentImmediately() {
+        final Mono<Void> first = send("id-1", 1);
+        final Mono<Void> second = send("id-2", 2);
+        final Mono<Void> third = send("id-3", 3);
+        first.subscribe();
+        second.subscribe();
+        verify(producerService, never()).send(any(Registration.class), any(), any(), any());
+
+        third.subscribe();
+
+        final ArgumentCaptor<Key> key = ArgumentCaptor.forClass(Key.class);
+        final ArgumentCaptor<JsonNode> value = ArgumentCaptor.forClass(JsonNode.class);
+        verify(producerService, times(1)).send(eq(registration), isNull(), key.capture(), value.capture());
+
+        assertEquals(2, key.getValue().getReplyPartition());
+        final JsonNode batch = value.getValue().get("batch");
+        assertEquals(3, batch.size());
+        assertEquals("id-1", batch.get(0).get("correlationId").asText());
+        assertEquals("id-3", batch.get(2).get("correlationId").asText());
+        assertEquals(3, batch.get(2).get("payload").get("value").asInt());
+
+        assertDoesNotThrow(() -> Mono.when(first, second, third).block(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void testBatchIsSentAfterLinger() {
+        send("id-1", 1).subscribe();
+        send("id-2", 2).subscribe();
+
+        scheduler.advanceTimeBy(Duration.ofMillis(9));
+        verify(producerService, never()).send(any(Registration.class), any(), any(), any());
+
+        scheduler.advanceTimeBy(Duration.ofMillis(1));
+        final ArgumentCaptor<JsonNode> value = ArgumentCaptor.forClass(JsonNode.class);
+        verify(producerService, times(1)).send(any(Registration.class), any(), any(), value.capture());
+        assertEquals(2, value.getValue().get("batch").size());
+    }
+
+    @Test
+    void testSingleRequestIsNotWrapped() {
+        send("id-1", 1).subscribe();
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+        final ArgumentCaptor<Key> key = ArgumentCaptor.forClass(Key.class);
+        final ArgumentCaptor<JsonNode> value = ArgumentCaptor.forClass(JsonNode.class);
+        verify(producerService, times(1)).send(any(Registration.class), any(), key.capture(), value.capture());
+
+        assertEquals("id-1", key.getValue().getCorrelationId());
+        assertTrue(value.getValue().get("batch").isNull());
+        assertEquals(1, value.getValue().get("payload").get("value").asInt());
+    }
+
+    @Test
+    void testSendErrorIsPropagatedToEveryRequest() {
+        when(producerService.send(any(Registration.class), any(), any(), any())).thenReturn(Mono.error(new RuntimeException("Broker unavailable")));
+
+        final Mono<Void> first = send("id-1", 1);
+        final Mono<Void> second = send("id-2", 2);
+        first.subscribe(v -> {
+        }, e -> {
+        });
+        second.subscribe(v -> {
+        }, e -> {
+        });
+        batcher.flush();
+
+        assertThrows(RuntimeException.class, () -> first.block(Duration.ofSeconds(1)));
+        assertThrows(RuntimeException.class, () -> second.block(Duration.ofSeconds(1)));
+    }
+}
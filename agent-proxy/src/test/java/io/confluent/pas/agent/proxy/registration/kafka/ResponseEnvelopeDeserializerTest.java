@@ -0,0 +1,89 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import io.confluent.pas.agent.proxy.frameworks.java.models.ResponseStatus;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseEnvelopeDeserializerTest {
+
+    private final ResponseEnvelopeDeserializer deserializer = new ResponseEnvelopeDeserializer();
+
+    /**
+     * Adds the Schema Registry wire format header to a JSON document
+     */
+    private static byte[] withHeader(String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(5 + body.length)
+                .put((byte) 0)
+                .putInt(42)
+                .put(body)
+                .array();
+    }
+
+    @Test
+    void testDecodeCompletedResponse() {
+        String payload = "{\"result\":{\"values\":[1,2,3],\"text\":\"café }\"},\"count\":3}";
+        ResponseEnvelope response = deserializer.deserialize("responses", withHeader(
+                "{\"requestIndex\":7,\"status\":\"completed\",\"payload\":  " + payload + " ,\"extra\":{\"a\":[1]}}"));
+
+        assertEquals(7, response.getRequestIndex());
+        assertEquals(ResponseStatus.COMPLETED, response.getStatus());
+        assertNull(response.getMessage());
+        assertNull(response.getException());
+
+        // The raw payload is returned as is, without being parsed
+        assertEquals(payload, response.getPayload().asString());
+        assertEquals(3, response.getPayload().asNode().get("count").asInt());
+
+        Map<String, Object> map = response.getPayload().asMap();
+        assertEquals(3, map.get("count"));
+    }
+
+    @Test
+    void testDecodeWithoutHeader() {
+        ResponseEnvelope response = deserializer.deserialize("responses",
+                "{\"payload\":{\"ok\":true},\"requestIndex\":1,\"status\":\"completed\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(1, response.getRequestIndex());
+        assertEquals("{\"ok\":true}", response.getPayload().asString());
+    }
+
+    @Test
+    void testDecodeErrorResponse() {
+        ResponseEnvelope response = deserializer.deserialize("responses", withHeader(
+                "{\"requestIndex\":0,\"status\":\"error\",\"message\":\"failed\",\"payload\":null," +
+                        "\"exception\":{\"type\":\"java.lang.IllegalStateException\",\"message\":\"failed\"}}"));
+
+        assertEquals(ResponseStatus.ERROR, response.getStatus());
+        assertEquals("failed", response.getMessage());
+        assertEquals("java.lang.IllegalStateException", response.getException().getType());
+        assertNull(response.getPayload());
+    }
+
+    @Test
+    void testDecodeScalarPayload() {
+        ResponseEnvelope response = deserializer.deserialize("responses", withHeader(
+                "{\"requestIndex\":0,\"status\":\"completed\",\"payload\":\"text\"}"));
+
+        assertEquals("\"text\"", response.getPayload().asString());
+    }
+
+    @Test
+    void testInvalidResponses() {
+        assertNull(deserializer.deserialize("responses", null));
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("responses", withHeader("[1,2]")));
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("responses", withHeader("{\"requestIndex\":0}")));
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("responses", withHeader("{\"status\":\"unknown\"}")));
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("responses", withHeader("{\"status\":")));
+    }
+}
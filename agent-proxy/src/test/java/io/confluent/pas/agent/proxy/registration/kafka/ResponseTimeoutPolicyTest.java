@@ -0,0 +1,111 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseTimeoutPolicyTest {
+
+    private static final long DEFAULT_TIMEOUT = 20000;
+
+    private final Registration registration = new Registration("tool", "description", "requests", "responses");
+
+    private ResponseTimeoutPolicy createAdaptivePolicy() {
+        return new ResponseTimeoutPolicy(DEFAULT_TIMEOUT, ResponseTimeoutPolicy.MODE_ADAPTIVE, 0.99, 2.0, 100, 60000, 10);
+    }
+
+    @Test
+    void testStaticPolicyUsesDefaultTimeout() {
+        final ResponseTimeoutPolicy policy = ResponseTimeoutPolicy.fixed(DEFAULT_TIMEOUT);
+        IntStream.range(0, 100).forEach(i -> policy.record(registration, 10));
+
+        assertFalse(policy.isAdaptive());
+        assertEquals(DEFAULT_TIMEOUT, policy.getTimeout(registration));
+    }
+
+    @Test
+    void testRegistrationTimeoutOverridesPolicy() {
+        final ResponseTimeoutPolicy policy = createAdaptivePolicy();
+        IntStream.range(0, 100).forEach(i -> policy.record(registration, 10));
+        registration.setResponseTimeoutMs(5000);
+
+        assertEquals(5000, policy.getTimeout(registration));
+        assertEquals(5000, ResponseTimeoutPolicy.fixed(DEFAULT_TIMEOUT).getTimeout(registration));
+    }
+
+    @Test
+    void testAdaptiveTimeoutNeedsMinimumSamples() {
+        final ResponseTimeoutPolicy policy = createAdaptivePolicy();
+        IntStream.range(0, 9).forEach(i -> policy.record(registration, 500));
+        assertEquals(DEFAULT_TIMEOUT, policy.getTimeout(registration));
+
+        policy.record(registration, 500);
+        assertEquals(1000, policy.getTimeout(registration));
+    }
+
+    @Test
+    void testAdaptiveTimeoutFollowsPercentile() {
+        final ResponseTimeoutPolicy policy = createAdaptivePolicy();
+        // 1 to 100 ms, the 99th percentile is 99 ms
+        IntStream.rangeClosed(1, 100).forEach(latency -> policy.record(registration, latency));
+        // Recomputed every few samples
+        IntStream.range(0, 12).forEach(i -> policy.record(registration, 1));
+
+        final long timeout = policy.getTimeout(registration);
+        assertTrue(timeout >= 190 && timeout <= 200, "Unexpected timeout " + timeout);
+    }
+
+    @Test
+    void testAdaptiveTimeoutIsClamped() {
+        final ResponseTimeoutPolicy fastPolicy = createAdaptivePolicy();
+        IntStream.range(0, 10).forEach(i -> fastPolicy.record(registration, 1));
+        assertEquals(100, fastPolicy.getTimeout(registration));
+
+        final ResponseTimeoutPolicy slowPolicy = createAdaptivePolicy();
+        IntStream.range(0, 10).forEach(i -> slowPolicy.record(registration, 50000));
+        assertEquals(60000, slowPolicy.getTimeout(registration));
+    }
+
+    @Test
+    void testRegistrationsAreTrackedSeparately() {
+        final ResponseTimeoutPolicy policy = createAdaptivePolicy();
+        final Registration other = new Registration("other", "description", "requests", "responses");
+        IntStream.range(0, 10).forEach(i -> policy.record(registration, 500));
+
+        assertEquals(1000, policy.getTimeout(registration));
+        assertEquals(DEFAULT_TIMEOUT, policy.getTimeout(other));
+
+        policy.remove(registration);
+        assertEquals(DEFAULT_TIMEOUT, policy.getTimeout(registration));
+    }
+
+    @Test
+    void testLatencyPercentileOfHedgedRegistration() {
+        // Latencies are tracked in static mode for the hedged registrations only
+        final ResponseTimeoutPolicy policy = new ResponseTimeoutPolicy(
+                DEFAULT_TIMEOUT, ResponseTimeoutPolicy.MODE_STATIC, 0.99, 2.0, 100, 60000, 10);
+        IntStream.rangeClosed(1, 100).forEach(latency -> policy.record(registration, latency));
+        assertEquals(-1, policy.getLatencyPercentile(registration, 0.95));
+
+        registration.setHedgePercentile(0.95);
+        IntStream.range(0, 9).forEach(i -> policy.record(registration, 50));
+        assertEquals(-1, policy.getLatencyPercentile(registration, 0.95));
+
+        policy.record(registration, 50);
+        assertEquals(50, policy.getLatencyPercentile(registration, 0.95));
+        assertEquals(DEFAULT_TIMEOUT, policy.getTimeout(registration));
+    }
+
+    @Test
+    void testInvalidConfigurationIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ResponseTimeoutPolicy(DEFAULT_TIMEOUT, "unknown", 0.99, 2.0, 100, 60000, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ResponseTimeoutPolicy(DEFAULT_TIMEOUT, ResponseTimeoutPolicy.MODE_ADAPTIVE, 1.5, 2.0, 100, 60000, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ResponseTimeoutPolicy(DEFAULT_TIMEOUT, ResponseTimeoutPolicy.MODE_ADAPTIVE, 0.99, 2.0, 600, 100, 10));
+    }
+}
@@ -0,0 +1,107 @@
+package io.confluent.pas.agent.proxy.registration.kafka;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeoutSchedulerTest {
+
+    private TimeoutScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new TimeoutScheduler(Duration.ofMillis(5), 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void testTimeoutExpires() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        TimeoutScheduler.Timeout timeout = scheduler.schedule(t -> latch.countDown(), 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, scheduler.getPendingTimeouts());
+    }
+
+    @Test
+    void testTimeoutLongerThanOneRotation() throws InterruptedException {
+        // 8 buckets of 5ms, the timeout needs several rotations of the wheel
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        scheduler.schedule(t -> latch.countDown(), 150, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+    }
+
+    @Test
+    void testCancelledTimeoutDoesNotRun() throws InterruptedException {
+        AtomicInteger executions = new AtomicInteger();
+
+        TimeoutScheduler.Timeout timeout = scheduler.schedule(t -> executions.incrementAndGet(), 20, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, scheduler.getPendingTimeouts());
+
+        Thread.sleep(100);
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void testCancelledTimeoutIsRemovedFromItsBucket() throws InterruptedException {
+        TimeoutScheduler.Timeout timeout = scheduler.schedule(t -> {
+        }, 10, TimeUnit.SECONDS);
+        awaitBucketedTimeouts(1);
+
+        // The bucket is emptied on the next tick, not when the wheel reaches it 10s later
+        assertTrue(timeout.cancel());
+        awaitBucketedTimeouts(0);
+    }
+
+    @Test
+    void testManyTimeouts() throws InterruptedException {
+        int count = 10_000;
+        CountDownLatch latch = new CountDownLatch(count / 2);
+
+        for (int i = 0; i < count; i++) {
+            TimeoutScheduler.Timeout timeout = scheduler.schedule(t -> latch.countDown(), i % 50, TimeUnit.MILLISECONDS);
+            if (i % 2 == 1) {
+                timeout.cancel();
+            }
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getPendingTimeouts());
+    }
+
+    @Test
+    void testScheduleAfterClose() {
+        scheduler.close();
+        assertThrows(IllegalStateException.class,
+                () -> scheduler.schedule(t -> {
+                }, 10, TimeUnit.MILLISECONDS));
+    }
+
+    private void awaitBucketedTimeouts(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (scheduler.getBucketedTimeouts() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, scheduler.getBucketedTimeouts());
+    }
+}
@@ -0,0 +1,147 @@
+package io.confluent.pas.agent.proxy.registration.liveness;
+
+import io.confluent.pas.agent.common.services.AgentHeartbeat;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeartbeatLivenessProbeTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    private final Map<String, String> heartbeats = new ConcurrentHashMap<>();
+    private final Registration registration = new Registration("tool", "description", "requests", "responses");
+    private MutableClock clock;
+    private HeartbeatLivenessProbe probe;
+
+    private static class MutableClock extends Clock {
+        private Instant instant = Instant.ofEpochMilli(1_000_000);
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        probe = new HeartbeatLivenessProbe(heartbeats, TIMEOUT, clock);
+    }
+
+    private void beat(String instanceId) throws Exception {
+        beat(instanceId, clock.millis());
+    }
+
+    private void beat(String instanceId, long timestamp) throws Exception {
+        final AgentHeartbeat heartbeat = new AgentHeartbeat("tool", instanceId, timestamp);
+        heartbeats.put(heartbeat.key(), JsonUtils.toString(heartbeat));
+    }
+
+    @Test
+    void testRegistrationWithoutHeartbeatIsNotAlive() {
+        probe.refresh();
+
+        assertFalse(probe.isAlive(registration));
+    }
+
+    @Test
+    void testRecentHeartbeatIsAlive() throws Exception {
+        beat("instance-1");
+        probe.refresh();
+
+        assertTrue(probe.isAlive(registration));
+    }
+
+    @Test
+    void testExpiredHeartbeatIsNotAlive() throws Exception {
+        beat("instance-1");
+        probe.refresh();
+
+        clock.advance(TIMEOUT.plusSeconds(1));
+
+        assertFalse(probe.isAlive(registration));
+    }
+
+    @Test
+    void testSkewedClockDoesNotHideRegistration() throws Exception {
+        // The agent runs a minute behind, its heartbeats are still fresh when they are read
+        beat("instance-1", clock.millis() - Duration.ofMinutes(1).toMillis());
+        probe.refresh();
+        assertTrue(probe.isAlive(registration));
+
+        clock.advance(Duration.ofSeconds(10));
+        beat("instance-1", clock.millis() - Duration.ofMinutes(1).toMillis());
+        clock.advance(Duration.ofSeconds(10));
+        probe.refresh();
+        assertTrue(probe.isAlive(registration));
+
+        // Without new heartbeat, it expires once the timeout elapsed since the last one was read
+        clock.advance(TIMEOUT.plusSeconds(1));
+        probe.refresh();
+        assertFalse(probe.isAlive(registration));
+    }
+
+    @Test
+    void testAnyLiveInstanceKeepsRegistrationAlive() throws Exception {
+        beat("instance-1");
+        clock.advance(Duration.ofSeconds(10));
+        beat("instance-2");
+        probe.refresh();
+
+        clock.advance(Duration.ofSeconds(10));
+
+        assertTrue(probe.isAlive(registration));
+    }
+
+    @Test
+    void testLeavingInstanceIsNotAlive() throws Exception {
+        beat("instance-1");
+        probe.refresh();
+
+        // The tombstone published by an instance leaving removes its heartbeat
+        heartbeats.remove(AgentHeartbeat.key("tool", "instance-1"));
+        probe.refresh();
+
+        assertFalse(probe.isAlive(registration));
+    }
+
+    @Test
+    void testTrackerNotifiesListenersAfterCheck() throws Exception {
+        final LivenessTracker tracker = new LivenessTracker(probe);
+        final AtomicInteger checks = new AtomicInteger();
+        tracker.addListener(checks::incrementAndGet);
+
+        beat("instance-1");
+        tracker.check();
+
+        assertEquals(1, checks.get());
+        assertTrue(tracker.isAlive(registration));
+        assertTrue(LivenessTracker.disabled().isAlive(registration));
+    }
+}
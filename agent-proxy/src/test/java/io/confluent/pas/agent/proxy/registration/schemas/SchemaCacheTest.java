@@ -0,0 +1,109 @@
+package io.confluent.pas.agent.proxy.registration.schemas;
+
+import io.confluent.kafka.schemaregistry.client.SchemaMetadata;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.pas.agent.common.services.schemas.Registration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SchemaCacheTest {
+
+    private static final String SCHEMA = """
+            {"type":"object","properties":{"requestIndex":{"type":"integer"},"payload":{"type":"object"}}}""";
+
+    @Mock
+    private SchemaRegistryClient client;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SchemaCache schemaCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+
+        when(client.getLatestSchemaMetadata(anyString())).thenReturn(new SchemaMetadata(1, 1, SCHEMA));
+
+        meterRegistry = new SimpleMeterRegistry();
+        schemaCache = new SchemaCache(client, meterRegistry, 100, Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        schemaCache.destroy();
+    }
+
+    @Test
+    void testSchemaIsLoadedOnce() throws Exception {
+        final RegistrationSchema schema = schemaCache.get("tool-request-value");
+        assertSame(schema, schemaCache.get("tool-request-value"));
+
+        verify(client, times(1)).getLatestSchemaMetadata("tool-request-value");
+        assertEquals(1.0, meterRegistry.get("cache.gets")
+                .tag("cache", SchemaCache.CACHE_NAME)
+                .tag("result", "hit")
+                .functionCounter()
+                .count());
+        assertEquals(1.0, meterRegistry.get("cache.gets")
+                .tag("cache", SchemaCache.CACHE_NAME)
+                .tag("result", "miss")
+                .functionCounter()
+                .count());
+    }
+
+    @Test
+    void testPrefetch() throws Exception {
+        final Registration registration = new Registration("tool", "description", "tool-request", "tool-response");
+
+        schemaCache.prefetch(List.of(registration));
+
+        verify(client, timeout(5000)).getLatestSchemaMetadata("tool-request-value");
+        verify(client, timeout(5000)).getLatestSchemaMetadata("tool-response-value");
+
+        final RegistrationSchemas schemas = new RegistrationSchemas(schemaCache, registration);
+        assertNotNull(schemas.getRequestSchema());
+        assertNotNull(schemas.getResponseSchema());
+    }
+
+    @Test
+    void testRefreshReusesParsedVersion() throws Exception {
+        final Registration registration = new Registration("tool", "description", "tool-request", "tool-response");
+        final RegistrationSchema schema = schemaCache.get("tool-request-value");
+
+        // Same version, the parsed schema is reused
+        schemaCache.prefetch(List.of(registration));
+        verify(client, timeout(5000).times(2)).getLatestSchemaMetadata("tool-request-value");
+        assertSame(schema, schemaCache.get("tool-request-value"));
+
+        // New version, the schema is parsed again
+        when(client.getLatestSchemaMetadata("tool-request-value")).thenReturn(new SchemaMetadata(2, 2, SCHEMA));
+        schemaCache.prefetch(List.of(registration));
+        verify(client, timeout(5000).times(3)).getLatestSchemaMetadata("tool-request-value");
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (schemaCache.get("tool-request-value") == schema && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotSame(schema, schemaCache.get("tool-request-value"));
+    }
+
+    @Test
+    void testInvalidate() throws Exception {
+        final Registration registration = new Registration("tool", "description", "tool-request", "tool-response");
+        schemaCache.get("tool-request-value");
+
+        schemaCache.invalidate(registration);
+        schemaCache.get("tool-request-value");
+
+        verify(client, times(2)).getLatestSchemaMetadata("tool-request-value");
+    }
+}
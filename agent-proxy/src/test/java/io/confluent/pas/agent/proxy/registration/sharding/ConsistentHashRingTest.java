@@ -0,0 +1,64 @@
+package io.confluent.pas.agent.proxy.registration.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 10_000;
+
+    @Test
+    void testEmptyRingHasNoOwner() {
+        assertEquals(Optional.empty(), new ConsistentHashRing(List.of(), 128).getOwner("tool"));
+    }
+
+    @Test
+    void testOwnerDoesNotDependOnNodeOrder() {
+        final ConsistentHashRing ring = new ConsistentHashRing(List.of("node-1", "node-2", "node-3"), 128);
+        final ConsistentHashRing reversed = new ConsistentHashRing(List.of("node-3", "node-2", "node-1"), 128);
+
+        IntStream.range(0, KEYS)
+                .mapToObj(i -> "tool-" + i)
+                .forEach(key -> assertEquals(ring.getOwner(key), reversed.getOwner(key)));
+    }
+
+    @Test
+    void testKeysAreSpreadAcrossNodes() {
+        final ConsistentHashRing ring = new ConsistentHashRing(List.of("node-1", "node-2", "node-3"), 128);
+
+        final Map<String, Integer> counts = new HashMap<>();
+        IntStream.range(0, KEYS)
+                .mapToObj(i -> ring.getOwner("tool-" + i).orElseThrow())
+                .forEach(owner -> counts.merge(owner, 1, Integer::sum));
+
+        assertEquals(3, counts.size());
+        // Each node should get roughly a third of the keys
+        counts.values().forEach(count -> assertTrue(count > KEYS / 5, "Unbalanced ring: " + counts));
+    }
+
+    @Test
+    void testAddingNodeOnlyMovesKeysToIt() {
+        final ConsistentHashRing ring = new ConsistentHashRing(List.of("node-1", "node-2", "node-3"), 128);
+        final ConsistentHashRing grown = new ConsistentHashRing(List.of("node-1", "node-2", "node-3", "node-4"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            final String before = ring.getOwner("tool-" + i).orElseThrow();
+            final String after = grown.getOwner("tool-" + i).orElseThrow();
+            if (!before.equals(after)) {
+                assertEquals("node-4", after);
+                moved++;
+            }
+        }
+
+        // Roughly a quarter of the keys move to the new node
+        assertTrue(moved > 0 && moved < KEYS / 2, "Moved " + moved + " keys");
+    }
+}
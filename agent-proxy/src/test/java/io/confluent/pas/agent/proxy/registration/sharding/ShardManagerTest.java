@@ -0,0 +1,143 @@
+package io.confluent.pas.agent.proxy.registration.sharding;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardManagerTest {
+
+    private static final Duration NODE_TIMEOUT = Duration.ofSeconds(15);
+
+    private final Map<String, String> membership = new ConcurrentHashMap<>();
+    private final ProxyNode self = new ProxyNode("node-1", "http://node-1:8080", 0);
+    private final AtomicInteger rebalances = new AtomicInteger();
+    private MutableClock clock;
+    private ShardManager shardManager;
+
+    private static class MutableClock extends Clock {
+        private Instant instant = Instant.ofEpochMilli(1_000_000);
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        shardManager = new ShardManager(self, membership, 128, NODE_TIMEOUT, clock);
+        shardManager.addListener(rebalances::incrementAndGet);
+    }
+
+    @Test
+    void testSingleNodeOwnsEverything() {
+        shardManager.heartbeat();
+
+        assertTrue(shardManager.isEnabled());
+        assertEquals(1, shardManager.getMembers().size());
+        IntStream.range(0, 100).forEach(i -> assertTrue(shardManager.isLocal("tool-" + i)));
+    }
+
+    @Test
+    void testRegistrationsAreSplitWithOtherNode() throws JsonProcessingException {
+        publish("node-2", clock.millis());
+        shardManager.heartbeat();
+
+        assertEquals(2, shardManager.getMembers().size());
+        final long local = IntStream.range(0, 100)
+                .filter(i -> shardManager.isLocal("tool-" + i))
+                .count();
+        assertTrue(local > 0 && local < 100, "Local registrations: " + local);
+
+        IntStream.range(0, 100)
+                .mapToObj(i -> "tool-" + i)
+                .filter(name -> !shardManager.isLocal(name))
+                .forEach(name -> assertEquals("http://node-2:8080", shardManager.getOwner(name).orElseThrow().url()));
+    }
+
+    @Test
+    void testExpiredNodeLeavesRing() throws JsonProcessingException {
+        publish("node-2", clock.millis());
+        shardManager.heartbeat();
+        assertEquals(1, rebalances.get());
+
+        // node-2 stops sending heartbeats
+        clock.advance(NODE_TIMEOUT.plusSeconds(1));
+        shardManager.heartbeat();
+
+        assertEquals(2, rebalances.get());
+        assertEquals(1, shardManager.getMembers().size());
+        IntStream.range(0, 100).forEach(i -> assertTrue(shardManager.isLocal("tool-" + i)));
+    }
+
+    @Test
+    void testSkewedClockDoesNotEvictNode() throws JsonProcessingException {
+        // node-2 runs a minute behind, its heartbeats are still fresh when they are read
+        publish("node-2", clock.millis() - Duration.ofMinutes(1).toMillis());
+        shardManager.heartbeat();
+        assertEquals(2, shardManager.getMembers().size());
+
+        clock.advance(Duration.ofSeconds(10));
+        publish("node-2", clock.millis() - Duration.ofMinutes(1).toMillis());
+        clock.advance(Duration.ofSeconds(10));
+        shardManager.heartbeat();
+        assertEquals(2, shardManager.getMembers().size());
+
+        // Without new heartbeat, it expires once the timeout elapsed since the last one was read
+        clock.advance(NODE_TIMEOUT.plusSeconds(1));
+        shardManager.heartbeat();
+        assertEquals(1, shardManager.getMembers().size());
+    }
+
+    @Test
+    void testUnchangedMembersDoNotRebalance() throws JsonProcessingException {
+        publish("node-2", clock.millis());
+        shardManager.heartbeat();
+
+        clock.advance(Duration.ofSeconds(5));
+        publish("node-2", clock.millis());
+        shardManager.heartbeat();
+
+        assertEquals(1, rebalances.get());
+    }
+
+    @Test
+    void testDisabledShardManagerIsLocal() {
+        final ShardManager local = ShardManager.local();
+
+        assertFalse(local.isEnabled());
+        assertTrue(local.isLocal("tool"));
+        assertTrue(local.getOwner("tool").isEmpty());
+    }
+
+    private void publish(String id, long heartbeat) throws JsonProcessingException {
+        membership.put(id, JsonUtils.toString(new ProxyNode(id, "http://" + id + ":8080", heartbeat)));
+    }
+}
@@ -0,0 +1,65 @@
+package io.confluent.pas.agent.proxy.rest.agents;
+
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaimCheckBodiesTest {
+
+    @TempDir
+    private Path directory;
+
+    private static String join(Flux<DataBuffer> body) {
+        final DataBuffer joined = DataBufferUtils.join(body).block(Duration.ofSeconds(5));
+        assertNotNull(joined);
+        return joined.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testOffloadedFieldIsStreamedAsJsonString() throws Exception {
+        final ClaimCheck claimCheck = ClaimCheck.create(directory.toString(), 16);
+        // The emoji is split between two chunks, the quotes and line breaks have to be escaped
+        final String content = "x".repeat(ClaimCheckBodies.CHUNK_SIZE - 1) + "😀 \"quoted\"\nend";
+        final Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("name", "report");
+        payload.put("content", content);
+        payload.put("pages", 12);
+
+        final Map<String, Object> response = claimCheck.offload(payload);
+        assertTrue(ClaimCheckBodies.holdsReferences(response));
+
+        final String json = join(ClaimCheckBodies.writeJson(claimCheck, response, DefaultDataBufferFactory.sharedInstance));
+
+        assertEquals(payload, JsonUtils.toMap(json));
+    }
+
+    @Test
+    void testOffloadedFieldIsReadAsIs() {
+        final ClaimCheck claimCheck = ClaimCheck.create(directory.toString(), 16);
+        final String blob = "QUJD".repeat(10000);
+        final Map<String, Object> response = claimCheck.offload(Map.of("type", "blob", "blob", blob));
+
+        assertEquals(blob, join(ClaimCheckBodies.readField(
+                claimCheck,
+                response.get("blob"),
+                DefaultDataBufferFactory.sharedInstance)));
+    }
+
+    @Test
+    void testResponseWithoutReferences() {
+        assertFalse(ClaimCheckBodies.holdsReferences(Map.of("name", "report", "nested", Map.of("size", 1))));
+    }
+}
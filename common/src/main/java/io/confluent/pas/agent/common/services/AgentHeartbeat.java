@@ -0,0 +1,32 @@
+package io.confluent.pas.agent.common.services;
+
+/**
+ * Heartbeat published by an agent instance while it consumes the requests of a registration.
+ * <p>
+ * Heartbeats are published as plain JSON to a compacted topic, keyed by {@link #key()}, so that the
+ * topic only keeps the last heartbeat of each instance. An instance leaving publishes a tombstone.
+ *
+ * @param registration Name of the registration served by the instance
+ * @param instanceId   Identifier of the agent instance
+ * @param timestamp    Time of the heartbeat, in milliseconds since the epoch
+ */
+public record AgentHeartbeat(String registration, String instanceId, long timestamp) {
+
+    /**
+     * @return the key of the heartbeat, unique per registration and instance
+     */
+    public String key() {
+        return key(registration, instanceId);
+    }
+
+    /**
+     * Returns the key of the heartbeats of an instance.
+     *
+     * @param registration Name of the registration served by the instance
+     * @param instanceId   Identifier of the agent instance
+     * @return the key of the heartbeats
+     */
+    public static String key(String registration, String instanceId) {
+        return registration + "/" + instanceId;
+    }
+}
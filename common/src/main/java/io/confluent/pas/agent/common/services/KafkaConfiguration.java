@@ -1,5 +1,7 @@
 package io.confluent.pas.agent.common.services;
 
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
+
 /**
  * Interface defining the configuration properties required for Kafka connectivity.
  * This interface provides access to essential Kafka and Schema Registry settings
@@ -22,6 +24,11 @@ public interface KafkaConfiguration {
      */
     String DEFAULT_REGISTRATION_TOPIC_NAME = "_agent_registry";
 
+    /**
+     * Default topic name used for agent heartbeats.
+     */
+    String DEFAULT_HEARTBEAT_TOPIC_NAME = "_agent_heartbeats";
+
     /**
      * Default implementation of TopicConfiguration providing basic topic settings.
      */
@@ -100,6 +107,36 @@ public interface KafkaConfiguration {
         return DEFAULT_REGISTRATION_TOPIC_NAME;
     }
 
+    /**
+     * Gets the Kafka topic name for agent heartbeats.
+     * Defaults to _agent_heartbeats if not overridden.
+     *
+     * @return The Kafka topic name for heartbeats
+     */
+    default String heartbeatTopicName() {
+        return DEFAULT_HEARTBEAT_TOPIC_NAME;
+    }
+
+    /**
+     * Gets the directory the large payload fields are offloaded to, see {@link ClaimCheck}.
+     * Defaults to null if not overridden, the payloads then travel inline.
+     *
+     * @return The claim-check directory, shared with the proxy
+     */
+    default String claimCheckDirectory() {
+        return null;
+    }
+
+    /**
+     * Gets the size in bytes above which a payload field is offloaded.
+     * Defaults to 256 KB if not overridden.
+     *
+     * @return The claim-check threshold
+     */
+    default int claimCheckThreshold() {
+        return ClaimCheck.DEFAULT_THRESHOLD;
+    }
+
     /**
      * Gets the topic configuration settings.
      * Returns a new instance of DefaultTopicConfiguration if not overridden.
@@ -31,10 +31,23 @@ public class KafkaPropertiesFactory {
      * @return Properties configured for Kafka Streams
      */
     public static Properties getKStreamsProperties(KafkaConfiguration configration) {
+        return getKStreamsProperties(configration, ProducerProfile.DEFAULT);
+    }
+
+    /**
+     * Creates properties for Kafka Streams whose producer applies a profile.
+     *
+     * @param configration The Kafka configuration containing connection and auth details
+     * @param profile      The profile of the producer sending the responses
+     * @return Properties configured for Kafka Streams
+     */
+    public static Properties getKStreamsProperties(KafkaConfiguration configration, ProducerProfile profile) {
         Properties properties = getDefaultProperties(configration, "");
         properties.put("application.id", configration.applicationId());
         properties.put("default.key.serde", Serdes.ByteArraySerde.class);
         properties.put("default.value.serde", Serdes.ByteArraySerde.class);
+        // Same prefix as StreamsConfig.producerPrefix, the streams library is not a dependency of this module
+        profile.getProperties().forEach((key, value) -> properties.put("producer." + key, value));
         return properties;
     }
 
@@ -96,11 +109,27 @@ public class KafkaPropertiesFactory {
      * @return Properties configured for a Kafka producer
      */
     public static Properties getProducerProperties(KafkaConfiguration configration) {
+        return getProducerProperties(configration, ProducerProfile.DEFAULT);
+    }
+
+    /**
+     * Creates properties for a Kafka producer with JSON schema serialization applying a profile.
+     * The producers of the other profiles get the name of their profile as client ID suffix.
+     *
+     * @param configration The Kafka configuration containing connection and auth details
+     * @param profile      The profile of the producer
+     * @return Properties configured for a Kafka producer
+     */
+    public static Properties getProducerProperties(KafkaConfiguration configration, ProducerProfile profile) {
         Properties properties = getDefaultProperties(configration, "");
-        properties.put(ProducerConfig.CLIENT_ID_CONFIG, configration.applicationId() + "-" + configration.clientId());
+        final String clientId = configration.applicationId() + "-" + configration.clientId();
+        properties.put(ProducerConfig.CLIENT_ID_CONFIG, profile == ProducerProfile.DEFAULT
+                ? clientId
+                : clientId + "-" + profile.getValue());
         properties.put("key.serializer", KafkaJsonSchemaSerializer.class.getName());
         properties.put("value.serializer", KafkaJsonSchemaSerializer.class.getName());
         properties.put(KafkaJsonSchemaSerializerConfig.AUTO_REGISTER_SCHEMAS, false);
+        properties.putAll(profile.getProperties());
         return properties;
     }
 
@@ -147,10 +176,48 @@ public class KafkaPropertiesFactory {
      * @return KafkaCacheConfig configured for the cache
      */
     public static KafkaCacheConfig getCacheConfig(KafkaConfiguration configration, boolean readOnly) {
+        return getCacheConfig(configration, readOnly, RegistrationStore.IN_MEMORY);
+    }
+
+    /**
+     * Creates configuration for a Kafka cache backed by a local store.
+     * Persistent stores checkpoint the offsets read in their data directory.
+     *
+     * @param configration The Kafka configuration containing connection and auth details
+     * @param readOnly     Whether the cache should be read-only
+     * @param store        The local store backing the cache
+     * @return KafkaCacheConfig configured for the cache
+     */
+    public static KafkaCacheConfig getCacheConfig(KafkaConfiguration configration,
+                                                  boolean readOnly,
+                                                  RegistrationStore store) {
+        return getCacheConfig(configration, configration.registrationTopicName(), "registration", readOnly, store);
+    }
+
+    /**
+     * Creates configuration for a Kafka cache of any topic.
+     *
+     * @param configration The Kafka configuration containing connection and auth details
+     * @param topicName    The topic backing the cache
+     * @param cacheName    Name of the cache, used as suffix of the client and group IDs
+     * @param readOnly     Whether the cache should be read-only
+     * @param store        The local store backing the cache
+     * @return KafkaCacheConfig configured for the cache
+     */
+    public static KafkaCacheConfig getCacheConfig(KafkaConfiguration configration,
+                                                  String topicName,
+                                                  String cacheName,
+                                                  boolean readOnly,
+                                                  RegistrationStore store) {
         Properties properties = getDefaultProperties(configration, "kafkacache.");
-        properties.put(KafkaCacheConfig.KAFKACACHE_TOPIC_CONFIG, configration.registrationTopicName());
-        properties.put(KafkaCacheConfig.KAFKACACHE_CLIENT_ID_CONFIG, configration.applicationId() + "-registration" + "-" + configration.clientId());
-        properties.put(KafkaCacheConfig.KAFKACACHE_GROUP_ID_CONFIG, configration.applicationId() + "-registration" + "-group");
+        properties.put(KafkaCacheConfig.KAFKACACHE_BACKING_CACHE_CONFIG, store.backingCache());
+        if (store.isPersistent()) {
+            properties.put(KafkaCacheConfig.KAFKACACHE_DATA_DIR_CONFIG, store.dataDir());
+            properties.put(KafkaCacheConfig.KAFKACACHE_CHECKPOINT_DIR_CONFIG, store.dataDir());
+        }
+        properties.put(KafkaCacheConfig.KAFKACACHE_TOPIC_CONFIG, topicName);
+        properties.put(KafkaCacheConfig.KAFKACACHE_CLIENT_ID_CONFIG, configration.applicationId() + "-" + cacheName + "-" + configration.clientId());
+        properties.put(KafkaCacheConfig.KAFKACACHE_GROUP_ID_CONFIG, configration.applicationId() + "-" + cacheName + "-group");
         properties.put(KafkaCacheConfig.KAFKACACHE_TOPIC_READ_ONLY_CONFIG, readOnly);
         return new KafkaCacheConfig(properties);
     }
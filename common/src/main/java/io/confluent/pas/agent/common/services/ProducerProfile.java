@@ -0,0 +1,79 @@
+package io.confluent.pas.agent.common.services;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.record.CompressionType;
+
+import java.util.Map;
+
+/**
+ * Named set of producer settings a registration opts into with its {@code producerProfile}.
+ * <p>
+ * Interactive tool calls want their requests sent as soon as possible: the latency profile does not
+ * linger, does not compress and only waits for the leader to acknowledge. Bulk agent-to-agent traffic
+ * wants fewer and larger requests: the throughput profile lingers to fill large batches compressed with
+ * zstd. The default profile keeps the Kafka producer defaults.
+ */
+public enum ProducerProfile {
+    DEFAULT("default", Map.of()),
+    LATENCY("latency", Map.of(
+            ProducerConfig.LINGER_MS_CONFIG, 0,
+            ProducerConfig.ACKS_CONFIG, "1",
+            // Idempotence requires acks=all
+            ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, false,
+            ProducerConfig.COMPRESSION_TYPE_CONFIG, CompressionType.NONE.name)),
+    THROUGHPUT("throughput", Map.of(
+            ProducerConfig.LINGER_MS_CONFIG, 20,
+            ProducerConfig.BATCH_SIZE_CONFIG, 256 * 1024,
+            ProducerConfig.ACKS_CONFIG, "all",
+            ProducerConfig.COMPRESSION_TYPE_CONFIG, CompressionType.ZSTD.name));
+
+    private final String value;
+    private final Map<String, Object> properties;
+
+    ProducerProfile(String value, Map<String, Object> properties) {
+        this.value = value;
+        this.properties = properties;
+    }
+
+    /**
+     * @return the name of the profile, as set in the registrations and the configuration
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return the producer properties of the profile, overriding the producer defaults
+     */
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns the profile of a name.
+     *
+     * @param value        The name of the profile, case-insensitive
+     * @param defaultValue The profile returned if the name is not set
+     * @return The profile
+     * @throws IllegalArgumentException if the name is not the name of a profile
+     */
+    public static ProducerProfile fromValue(String value, ProducerProfile defaultValue) {
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+
+        for (ProducerProfile profile : values()) {
+            if (profile.value.equalsIgnoreCase(value)) {
+                return profile;
+            }
+        }
+
+        throw new IllegalArgumentException("Unexpected producer profile '" + value + "'");
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
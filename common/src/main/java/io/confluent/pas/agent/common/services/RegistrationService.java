@@ -9,12 +9,16 @@ import io.confluent.pas.agent.common.services.schemas.Registration;
 import io.confluent.pas.agent.common.services.schemas.RegistrationKey;
 import io.confluent.pas.agent.common.utils.SchemaUtils;
 import io.kcache.KafkaCache;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +33,12 @@ public class RegistrationService<K extends RegistrationKey, R extends Registrati
 
     private final Map<K, R> registrationCache;
 
+    /**
+     * Time taken to load the registrations before the service is ready
+     */
+    @Getter
+    private final Duration timeToReady;
+
     /**
      * Constructor for RegistrationService with a handler.
      *
@@ -43,11 +53,34 @@ public class RegistrationService<K extends RegistrationKey, R extends Registrati
                                Class<R> registrationClass,
                                boolean readOnly,
                                RegistrationServiceHandler.Handler<K, R> handler) {
-        this(initialize(kafkaConfiguration,
+        this(kafkaConfiguration, registrationKeyClass, registrationClass, readOnly, RegistrationStore.IN_MEMORY, handler);
+    }
+
+    /**
+     * Constructor for RegistrationService with a handler and a local store.
+     *
+     * @param kafkaConfiguration   the Kafka configuration
+     * @param registrationKeyClass the class type of the registration key
+     * @param registrationClass    the class type of the registration
+     * @param readOnly             whether the service is read-only
+     * @param store                the local store backing the registration cache
+     * @param handler              the handler for processing registration updates
+     */
+    public RegistrationService(KafkaConfiguration kafkaConfiguration,
+                               Class<K> registrationKeyClass,
+                               Class<R> registrationClass,
+                               boolean readOnly,
+                               RegistrationStore store,
+                               RegistrationServiceHandler.Handler<K, R> handler) {
+        final long start = System.nanoTime();
+        this.registrationCache = initialize(kafkaConfiguration,
                 registrationKeyClass,
                 registrationClass,
                 readOnly,
-                handler));
+                store,
+                handler);
+        this.timeToReady = Duration.ofNanos(System.nanoTime() - start);
+        log.info("Registration service ready in {} ms", timeToReady.toMillis());
     }
 
     /**
@@ -57,6 +90,7 @@ public class RegistrationService<K extends RegistrationKey, R extends Registrati
      */
     public RegistrationService(Map<K, R> registrationCache) {
         this.registrationCache = registrationCache;
+        this.timeToReady = Duration.ZERO;
     }
 
     /**
@@ -155,6 +189,20 @@ public class RegistrationService<K extends RegistrationKey, R extends Registrati
         registrationCache.put(key, registration);
     }
 
+    /**
+     * Register several registrations at once.
+     * The records are sent in a single batch and the call waits for the last one only.
+     *
+     * @param registrations the registrations by key
+     */
+    public void registerAll(Map<K, R> registrations) {
+        if (registrations.isEmpty()) {
+            return;
+        }
+
+        registrationCache.putAll(registrations);
+    }
+
     /**
      * Unregister a registration.
      *
@@ -165,6 +213,16 @@ public class RegistrationService<K extends RegistrationKey, R extends Registrati
         registrationCache.remove(key);
     }
 
+    /**
+     * Unregister several registrations.
+     *
+     * @param keys the registration keys
+     */
+    public void unregisterAll(Collection<K> keys) {
+        // The Kafka cache has no batched removal, each tombstone is written on its own
+        keys.forEach(registrationCache::remove);
+    }
+
 
     /**
      * Initialize the registration service.
@@ -174,6 +232,7 @@ public class RegistrationService<K extends RegistrationKey, R extends Registrati
      * @param registrationKeyClass the class type of the registration key
      * @param registrationClass    the class type of the registration
      * @param readOnly             whether the service is read-only
+     * @param store                the local store backing the cache
      * @param handler              the handler for processing registration updates
      *                             (optional, can be null)
      * @return the initialized Kafka cache
@@ -183,6 +242,7 @@ public class RegistrationService<K extends RegistrationKey, R extends Registrati
             Class<K> registrationKeyClass,
             Class<R> registrationClass,
             boolean readOnly,
+            RegistrationStore store,
             RegistrationServiceHandler.Handler<K, R> handler) {
         // Retrieve the Schema Registry configuration settings from KafkaPropertiesFactory.
         final Map<String, Object> srConfig = KafkaPropertiesFactory.getSchemaRegistryConfig(kafkaConfiguration);
@@ -205,11 +265,11 @@ public class RegistrationService<K extends RegistrationKey, R extends Registrati
         valueSerdes.configure(srConfig, false);
 
         final RegistrationServiceHandler<K, R> serviceHandler = handler != null
-                ? new RegistrationServiceHandler<>(handler)
+                ? new RegistrationServiceHandler<>(handler, store.isPersistent())
                 : null;
 
         final KafkaCache<K, R> cache = new KafkaCache<>(
-                KafkaPropertiesFactory.getCacheConfig(kafkaConfiguration, readOnly),
+                KafkaPropertiesFactory.getCacheConfig(kafkaConfiguration, readOnly, store),
                 keySerdes,
                 valueSerdes,
                 serviceHandler,
@@ -218,6 +278,13 @@ public class RegistrationService<K extends RegistrationKey, R extends Registrati
 
         cache.init();
 
+        if (serviceHandler != null && store.isPersistent()) {
+            // Only the records published since the last checkpoint were read, the restored registrations
+            // have to be published as well
+            log.info("Restored {} registrations from the {} store", cache.size(), store.backingCache());
+            serviceHandler.publishAll(new HashMap<>(cache));
+        }
+
         if (serviceHandler != null && serviceHandler.isEmpty()) {
             final String registrationTopic = kafkaConfiguration.registrationTopicName();
 
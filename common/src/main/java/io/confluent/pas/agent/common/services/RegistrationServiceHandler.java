@@ -35,6 +35,12 @@ public class RegistrationServiceHandler<K extends RegistrationKey, R extends Reg
     private final Map<K, R> accumulator = new HashMap<>();
     private boolean initialized = false;
 
+    /**
+     * True if the cache is restored from a persistent store, the updates read at startup are then only
+     * the ones published since the last checkpoint and the registrations are published by {@link #publishAll}
+     */
+    private final boolean restored;
+
     @Getter
     private boolean empty;
 
@@ -44,7 +50,29 @@ public class RegistrationServiceHandler<K extends RegistrationKey, R extends Reg
      * @param handler the handler to process registration updates
      */
     public RegistrationServiceHandler(Handler<K, R> handler) {
+        this(handler, false);
+    }
+
+    /**
+     * Constructor for RegistrationServiceHandler.
+     *
+     * @param handler  the handler to process registration updates
+     * @param restored whether the cache is restored from a persistent store
+     */
+    public RegistrationServiceHandler(Handler<K, R> handler, boolean restored) {
         this.handler = handler;
+        this.restored = restored;
+    }
+
+    /**
+     * Publishes all the registrations of a restored cache once it is initialized.
+     *
+     * @param registrations the registrations in the cache
+     */
+    public void publishAll(Map<K, R> registrations) {
+        if (!registrations.isEmpty()) {
+            handler.handleRegistrations(registrations);
+        }
     }
 
     /**
@@ -62,6 +90,9 @@ public class RegistrationServiceHandler<K extends RegistrationKey, R extends Reg
             // No event, we might need to register the schemas
             log.info("No registration found in the cache, registering ");
             empty = true;
+        } else if (restored) {
+            // The accumulated updates are already applied to the restored cache, which is published as a whole
+            accumulator.clear();
         } else if (!accumulator.isEmpty()) {
             handler.handleRegistrations(accumulator);
             accumulator.clear();
@@ -0,0 +1,40 @@
+package io.confluent.pas.agent.common.services;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Local store backing the registration cache.
+ * <p>
+ * The registrations are kept in memory by default and the whole registration topic is read at startup.
+ * A persistent store, e.g. rocksdb, keeps the registrations and the offsets read on disk, so that only
+ * the records published since the last checkpoint are read when the service restarts.
+ *
+ * @param backingCache The KCache backing cache type: memory, rocksdb, bdbje, lmdb or mapdb
+ * @param dataDir      Directory of the store and of its offset checkpoints, required for persistent stores
+ */
+public record RegistrationStore(String backingCache, String dataDir) {
+
+    /**
+     * Backing cache type of the in-memory store
+     */
+    public static final String MEMORY = "memory";
+
+    /**
+     * In-memory store, rebuilt from the registration topic at every start
+     */
+    public static final RegistrationStore IN_MEMORY = new RegistrationStore(MEMORY, null);
+
+    public RegistrationStore {
+        backingCache = StringUtils.isBlank(backingCache) ? MEMORY : backingCache.toLowerCase();
+        if (!MEMORY.equals(backingCache) && StringUtils.isBlank(dataDir)) {
+            throw new IllegalArgumentException("A data directory is required for the " + backingCache + " store");
+        }
+    }
+
+    /**
+     * @return true if the registrations and offsets survive a restart
+     */
+    public boolean isPersistent() {
+        return !MEMORY.equals(backingCache);
+    }
+}
@@ -0,0 +1,52 @@
+package io.confluent.pas.agent.common.services.claimcheck;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+
+/**
+ * Stores the payloads too large to travel on a topic, see {@link ClaimCheck}.
+ * <p>
+ * The agents write the blobs and the proxy reads them, both must therefore reach the same store.
+ * Blobs are immutable and addressed by the opaque reference returned when they are written.
+ */
+public interface BlobStore {
+
+    /**
+     * Writes a blob.
+     *
+     * @param content The content of the blob, read until its end but not closed
+     * @return The reference of the blob
+     * @throws IOException if the blob cannot be written
+     */
+    String put(InputStream content) throws IOException;
+
+    /**
+     * Opens a blob for reading.
+     *
+     * @param reference The reference of the blob
+     * @return The content of the blob, to be closed by the caller
+     * @throws IOException if the blob does not exist or cannot be read
+     */
+    InputStream open(String reference) throws IOException;
+
+    /**
+     * Deletes a blob, does nothing if it does not exist.
+     *
+     * @param reference The reference of the blob
+     * @throws IOException if the blob cannot be deleted
+     */
+    void delete(String reference) throws IOException;
+
+    /**
+     * Deletes the blobs written before an instant.
+     * Stores expiring their blobs on their own do not need to implement it.
+     *
+     * @param instant The instant
+     * @return The number of deleted blobs
+     * @throws IOException if the blobs cannot be listed
+     */
+    default int deleteOlderThan(Instant instant) throws IOException {
+        return 0;
+    }
+}
@@ -0,0 +1,250 @@
+package io.confluent.pas.agent.common.services.claimcheck;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Moves the large fields of the payloads out of the records, following the claim-check pattern.
+ * <p>
+ * The top-level text fields of a payload larger than the threshold, such as the blob of a
+ * {@code BlobResourceResponse}, are written to the {@link BlobStore} and replaced by a reference:
+ * {@code {"$claimCheck": "<reference>", "size": <bytes>}}. The blob holds the UTF-8 text of the
+ * field, so that the proxy can stream it to its clients as is. The references are resolved by the proxy,
+ * the agents and the proxy must therefore share the same store.
+ */
+@Slf4j
+public class ClaimCheck {
+
+    /**
+     * Field of the reference holding the blob reference.
+     */
+    public static final String REFERENCE_FIELD = "$claimCheck";
+
+    /**
+     * Field of the reference holding the size of the blob in bytes.
+     */
+    public static final String SIZE_FIELD = "size";
+
+    /**
+     * Threshold applied when none is configured, 256 KB.
+     */
+    public static final int DEFAULT_THRESHOLD = 256 * 1024;
+
+    private final BlobStore blobStore;
+    private final int threshold;
+
+    /**
+     * Creates a claim check storing its blobs in a directory.
+     *
+     * @param directory The directory of the blobs, null or empty to disable the claim check
+     * @param threshold The size in bytes above which a field is offloaded, {@link #DEFAULT_THRESHOLD} if not positive
+     * @return The claim check, null if disabled
+     * @throws UncheckedIOException if the directory cannot be created
+     */
+    public static ClaimCheck create(String directory, int threshold) {
+        if (directory == null || directory.isBlank()) {
+            return null;
+        }
+
+        try {
+            log.info("Offloading the payload fields larger than {} bytes to {}", threshold, directory);
+            return new ClaimCheck(new FileSystemBlobStore(Path.of(directory)), threshold);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create the claim-check directory " + directory, e);
+        }
+    }
+
+    /**
+     * Creates a claim check.
+     *
+     * @param blobStore The store of the blobs
+     * @param threshold The size in bytes above which a field is offloaded, {@link #DEFAULT_THRESHOLD} if not positive
+     */
+    public ClaimCheck(BlobStore blobStore, int threshold) {
+        this.blobStore = blobStore;
+        this.threshold = threshold > 0 ? threshold : DEFAULT_THRESHOLD;
+    }
+
+    /**
+     * @return the store of the blobs
+     */
+    public BlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    /**
+     * Offloads the top-level text fields of a payload larger than the threshold.
+     *
+     * @param payload The payload, left unchanged
+     * @return The payload with its large fields replaced by references, the payload itself if none was offloaded
+     * @throws UncheckedIOException if a field cannot be written to the store
+     */
+    public Map<String, Object> offload(Map<String, Object> payload) {
+        if (payload == null) {
+            return null;
+        }
+
+        Map<String, Object> offloaded = null;
+        for (Map.Entry<String, Object> entry : payload.entrySet()) {
+            // A character takes at least one byte, only the fields that may exceed the threshold are encoded
+            if (!(entry.getValue() instanceof String text) || text.length() <= threshold / 3) {
+                continue;
+            }
+
+            final byte[] content = text.getBytes(StandardCharsets.UTF_8);
+            if (content.length <= threshold) {
+                continue;
+            }
+
+            if (offloaded == null) {
+                offloaded = new LinkedHashMap<>(payload);
+            }
+            offloaded.put(entry.getKey(), put(content));
+        }
+
+        return offloaded == null ? payload : offloaded;
+    }
+
+    /**
+     * Checks whether a value is a reference to a blob.
+     *
+     * @param value A field of a payload, as a map value or a JSON node
+     * @return true if the value is a reference
+     */
+    public static boolean isReference(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return map.get(REFERENCE_FIELD) instanceof String;
+        }
+
+        return value instanceof JsonNode node && node.isObject() && node.path(REFERENCE_FIELD).isTextual();
+    }
+
+    /**
+     * Returns the blob reference of a reference.
+     *
+     * @param value A reference, see {@link #isReference(Object)}
+     * @return The blob reference
+     */
+    public static String getReference(Object value) {
+        if (value instanceof JsonNode node) {
+            return node.path(REFERENCE_FIELD).asText();
+        }
+
+        return (String) ((Map<?, ?>) value).get(REFERENCE_FIELD);
+    }
+
+    /**
+     * Checks whether the JSON text of a payload may hold references, without parsing it.
+     *
+     * @param json The JSON text of a payload
+     * @return false if the payload holds no reference
+     */
+    public static boolean mayHoldReferences(String json) {
+        return json.contains("\"" + REFERENCE_FIELD + "\"");
+    }
+
+    /**
+     * Opens the blob of a reference.
+     *
+     * @param value A reference, see {@link #isReference(Object)}
+     * @return The UTF-8 text of the offloaded field, to be closed by the caller
+     * @throws IOException if the blob does not exist or cannot be read
+     */
+    public InputStream open(Object value) throws IOException {
+        return blobStore.open(getReference(value));
+    }
+
+    /**
+     * Replaces the references of a payload by the text they refer to.
+     * The text is loaded in memory, streaming it with {@link #open(Object)} should be preferred.
+     *
+     * @param payload The payload, left unchanged
+     * @return The payload with its references resolved, the payload itself if it holds none
+     * @throws UncheckedIOException if a blob cannot be read
+     */
+    public Map<String, Object> resolve(Map<String, Object> payload) {
+        if (payload == null) {
+            return null;
+        }
+
+        Map<String, Object> resolved = null;
+        for (Map.Entry<String, Object> entry : payload.entrySet()) {
+            if (isReference(entry.getValue())) {
+                if (resolved == null) {
+                    resolved = new LinkedHashMap<>(payload);
+                }
+                resolved.put(entry.getKey(), read(entry.getValue()));
+            }
+        }
+
+        return resolved == null ? payload : resolved;
+    }
+
+    /**
+     * Replaces the references of a payload by the text they refer to.
+     * The text is loaded in memory, streaming it with {@link #open(Object)} should be preferred.
+     *
+     * @param payload The payload, left unchanged
+     * @return The payload with its references resolved, the payload itself if it holds none
+     * @throws UncheckedIOException if a blob cannot be read
+     */
+    public JsonNode resolve(JsonNode payload) {
+        if (payload == null || !payload.isObject()) {
+            return payload;
+        }
+
+        ObjectNode resolved = null;
+        for (Iterator<Map.Entry<String, JsonNode>> fields = payload.fields(); fields.hasNext(); ) {
+            final Map.Entry<String, JsonNode> field = fields.next();
+            if (isReference(field.getValue())) {
+                if (resolved == null) {
+                    resolved = payload.deepCopy();
+                }
+                resolved.put(field.getKey(), read(field.getValue()));
+            }
+        }
+
+        return resolved == null ? payload : resolved;
+    }
+
+    /**
+     * Writes a field to the store.
+     *
+     * @param content The UTF-8 text of the field
+     * @return The reference replacing the field
+     */
+    private Map<String, Object> put(byte[] content) {
+        try {
+            final String reference = blobStore.put(new ByteArrayInputStream(content));
+            log.debug("Offloaded {} bytes to blob {}", content.length, reference);
+            return Map.of(REFERENCE_FIELD, reference, SIZE_FIELD, content.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to offload a payload field of " + content.length + " bytes", e);
+        }
+    }
+
+    /**
+     * Reads the text of a reference.
+     *
+     * @param value A reference
+     * @return The text
+     */
+    private String read(Object value) {
+        try (InputStream content = open(value)) {
+            return new String(content.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read blob " + getReference(value), e);
+        }
+    }
+}
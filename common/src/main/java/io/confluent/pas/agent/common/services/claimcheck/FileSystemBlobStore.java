@@ -0,0 +1,114 @@
+package io.confluent.pas.agent.common.services.claimcheck;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Stores the blobs as files of a directory, shared by the agents and the proxy through a volume.
+ * <p>
+ * Blobs are written to a temporary file first and then moved in place, so that a reader never sees a
+ * partially written blob. References are random UUIDs, any other reference is rejected so that a
+ * reference received from a topic cannot point outside of the directory.
+ */
+@Slf4j
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    // Temporary files may still be written to, they are only swept once abandoned for long
+    static final Duration TEMPORARY_GRACE_PERIOD = Duration.ofDays(1);
+
+    private final Path directory;
+
+    /**
+     * Creates a store, creating its directory if needed.
+     *
+     * @param directory The directory of the blobs
+     * @throws IOException if the directory cannot be created
+     */
+    public FileSystemBlobStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    @Override
+    public String put(InputStream content) throws IOException {
+        final String reference = UUID.randomUUID().toString();
+        final Path temporary = directory.resolve(reference + TEMPORARY_SUFFIX);
+
+        try {
+            Files.copy(content, temporary);
+            Files.move(temporary, directory.resolve(reference), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        return reference;
+    }
+
+    @Override
+    public InputStream open(String reference) throws IOException {
+        return Files.newInputStream(resolve(reference));
+    }
+
+    @Override
+    public void delete(String reference) throws IOException {
+        Files.deleteIfExists(resolve(reference));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Temporary files of blobs being written are left alone unless they were not modified for
+     * {@link #TEMPORARY_GRACE_PERIOD} after the instant, which only happens when their writer died.
+     */
+    @Override
+    public int deleteOlderThan(Instant instant) throws IOException {
+        final Instant temporaryInstant = instant.minus(TEMPORARY_GRACE_PERIOD);
+        int deleted = 0;
+        try (DirectoryStream<Path> blobs = Files.newDirectoryStream(directory)) {
+            for (Path blob : blobs) {
+                final Instant limit = blob.getFileName().toString().endsWith(TEMPORARY_SUFFIX)
+                        ? temporaryInstant
+                        : instant;
+                try {
+                    if (Files.getLastModifiedTime(blob).toInstant().isBefore(limit)) {
+                        Files.deleteIfExists(blob);
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to delete blob {}", blob.getFileName(), e);
+                }
+            }
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Returns the file of a blob.
+     *
+     * @param reference The reference of the blob
+     * @return The file
+     * @throws IllegalArgumentException if the reference was not issued by this store
+     */
+    private Path resolve(String reference) {
+        try {
+            if (UUID.fromString(reference).toString().equals(reference)) {
+                return directory.resolve(reference);
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below
+        }
+
+        throw new IllegalArgumentException("Invalid blob reference: " + reference);
+    }
+}
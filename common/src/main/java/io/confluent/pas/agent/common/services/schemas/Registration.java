@@ -72,6 +72,94 @@ import org.apache.commons.lang3.StringUtils;
                 }
              ],
              "default":"N/A"
+          },
+          "maxBatchSize":{
+             "connect.index":9,
+             "oneOf":[
+                {
+                   "type":"null"
+                },
+                {
+                   "type":"integer"
+                }
+             ]
+          },
+          "batchLingerMs":{
+             "connect.index":10,
+             "oneOf":[
+                {
+                   "type":"null"
+                },
+                {
+                   "type":"integer"
+                }
+             ]
+          },
+          "responseTimeoutMs":{
+             "connect.index":11,
+             "oneOf":[
+                {
+                   "type":"null"
+                },
+                {
+                   "type":"integer"
+                }
+             ]
+          },
+          "coalesceRequests":{
+             "connect.index":12,
+             "oneOf":[
+                {
+                   "type":"null"
+                },
+                {
+                   "type":"boolean"
+                }
+             ]
+          },
+          "cacheTtlMs":{
+             "connect.index":13,
+             "oneOf":[
+                {
+                   "type":"null"
+                },
+                {
+                   "type":"integer"
+                }
+             ]
+          },
+          "cacheMaxWeight":{
+             "connect.index":14,
+             "oneOf":[
+                {
+                   "type":"null"
+                },
+                {
+                   "type":"integer"
+                }
+             ]
+          },
+          "hedgePercentile":{
+             "connect.index":15,
+             "oneOf":[
+                {
+                   "type":"null"
+                },
+                {
+                   "type":"number"
+                }
+             ]
+          },
+          "producerProfile":{
+             "connect.index":16,
+             "oneOf":[
+                {
+                   "type":"null"
+                },
+                {
+                   "type":"string"
+                }
+             ]
           }
            },
            "required":[
@@ -112,11 +200,86 @@ public class Registration {
     private String responseTopicName;
     @JsonProperty(value = "version", defaultValue = "N/A")
     private String version;
+    /**
+     * Maximum number of requests packed into a single record, batching is disabled if not set or lower than 2.
+     * Only agents able to unpack batched requests should set it.
+     */
+    @JsonProperty(value = "maxBatchSize")
+    private Integer maxBatchSize;
+    /**
+     * Maximum time in milliseconds a request waits for other requests to be batched with.
+     */
+    @JsonProperty(value = "batchLingerMs")
+    private Integer batchLingerMs;
+    /**
+     * Maximum time in milliseconds a request waits for its response, the proxy timeout applies if not set.
+     */
+    @JsonProperty(value = "responseTimeoutMs")
+    private Integer responseTimeoutMs;
+    /**
+     * Identical concurrent requests share a single request to the agent when set.
+     * Only agents whose responses depend on the request arguments alone should set it.
+     */
+    @JsonProperty(value = "coalesceRequests")
+    private Boolean coalesceRequests;
+    /**
+     * Time in milliseconds the responses are cached for, caching is disabled if not set or lower than 1.
+     * Only agents whose responses depend on the request arguments alone should set it.
+     */
+    @JsonProperty(value = "cacheTtlMs")
+    private Integer cacheTtlMs;
+    /**
+     * Maximum size in bytes of the cached responses, the proxy limit applies if not set.
+     */
+    @JsonProperty(value = "cacheMaxWeight")
+    private Integer cacheMaxWeight;
+    /**
+     * Percentile of the observed latencies after which a request without response is sent again to another
+     * partition, e.g. 0.95. Hedging is disabled if not set. Only agents whose requests can safely be processed
+     * twice should set it.
+     */
+    @JsonProperty(value = "hedgePercentile")
+    private Double hedgePercentile;
+    /**
+     * Producer profile the requests are sent with, {@code latency} or {@code throughput}, see
+     * {@link io.confluent.pas.agent.common.services.ProducerProfile}. The proxy profile applies if not set.
+     */
+    @JsonProperty(value = "producerProfile")
+    private String producerProfile;
 
     public Registration(String name, String description, String requestTopicName, String responseTopicName) {
         this(TOOL, name, description, requestTopicName, responseTopicName, "N/A");
     }
 
+    public Registration(String registrationType,
+                        String name,
+                        String description,
+                        String requestTopicName,
+                        String responseTopicName,
+                        String version) {
+        this(registrationType, name, description, requestTopicName, responseTopicName, version, null, null, null, null, null, null, null, null);
+    }
+
+    @JsonIgnore
+    public boolean isBatched() {
+        return maxBatchSize != null && maxBatchSize > 1;
+    }
+
+    @JsonIgnore
+    public boolean isCoalesced() {
+        return Boolean.TRUE.equals(coalesceRequests);
+    }
+
+    @JsonIgnore
+    public boolean isCached() {
+        return cacheTtlMs != null && cacheTtlMs > 0;
+    }
+
+    @JsonIgnore
+    public boolean isHedged() {
+        return hedgePercentile != null && hedgePercentile > 0 && hedgePercentile <= 1;
+    }
+
     @JsonIgnore
     public boolean isResource() {
         return StringUtils.equals(registrationType, RESOURCE);
@@ -67,6 +67,28 @@ import org.apache.commons.lang3.StringUtils;
                        "type":"string"
                     }
                  ]
+              },
+              "cacheTtlMs":{
+                 "connect.index":13,
+                 "oneOf":[
+                    {
+                       "type":"null"
+                    },
+                    {
+                       "type":"integer"
+                    }
+                 ]
+              },
+              "cacheMaxWeight":{
+                 "connect.index":14,
+                 "oneOf":[
+                    {
+                       "type":"null"
+                    },
+                    {
+                       "type":"integer"
+                    }
+                 ]
               }
            },
            "required":[
@@ -1,5 +1,6 @@
 package io.confluent.pas.agent.common.utils;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -126,6 +127,46 @@ public class JsonUtils {
         return MAPPER.valueToTree(object);
     }
 
+    /**
+     * Creates a parser reading JSON from a slice of a byte array.
+     * Byte offsets reported by the parser are relative to the start of the slice.
+     *
+     * @param data   the buffer containing UTF-8 encoded JSON
+     * @param offset the offset of the JSON in the buffer
+     * @param length the length of the JSON
+     * @return a parser bound to the shared object mapper
+     * @throws IOException if the parser cannot be created
+     */
+    public static JsonParser createParser(byte[] data, int offset, int length) throws IOException {
+        return MAPPER.createParser(data, offset, length);
+    }
+
+    /**
+     * Converts a slice of a byte array containing UTF-8 encoded JSON to a JsonNode.
+     *
+     * @param data   the buffer containing the JSON
+     * @param offset the offset of the JSON in the buffer
+     * @param length the length of the JSON
+     * @return a JsonNode representation of the JSON
+     * @throws IOException if an error occurs during deserialization
+     */
+    public static JsonNode toJsonNode(byte[] data, int offset, int length) throws IOException {
+        return MAPPER.readTree(data, offset, length);
+    }
+
+    /**
+     * Converts a slice of a byte array containing UTF-8 encoded JSON to a Map<String, Object>.
+     *
+     * @param data   the buffer containing the JSON
+     * @param offset the offset of the JSON in the buffer
+     * @param length the length of the JSON
+     * @return a Map representation of the JSON
+     * @throws IOException if an error occurs during deserialization
+     */
+    public static Map<String, Object> toMap(byte[] data, int offset, int length) throws IOException {
+        return MAPPER.readValue(data, offset, length, MAP_TYPE);
+    }
+
     /**
      * Converts an object to a JSON string.
      *
@@ -0,0 +1,152 @@
+package io.confluent.pas.agent.common.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor dispatching tasks onto a fixed number of single-threaded lanes.
+ * <p>
+ * Tasks are assigned to a lane by hashing their shard key, so that tasks sharing the same key
+ * run sequentially and in submission order while tasks with different keys run in parallel.
+ * Lanes can run on platform or virtual threads. When a lane queue is bounded and full, the
+ * submitting thread blocks until there is room, which applies back pressure without breaking
+ * the ordering. With no lanes, tasks run on the submitting thread.
+ */
+@Slf4j
+public class ShardedExecutor implements AutoCloseable {
+
+    private final String name;
+    private final ThreadPoolExecutor[] lanes;
+
+    /**
+     * Creates an executor with unbounded lane queues.
+     *
+     * @param name           Name prefix of the lane threads
+     * @param laneCount      Number of lanes, 0 to run the tasks on the submitting thread
+     * @param virtualThreads Whether lanes run on virtual threads
+     */
+    public ShardedExecutor(String name, int laneCount, boolean virtualThreads) {
+        this(name, laneCount, virtualThreads, 0);
+    }
+
+    /**
+     * Creates an executor.
+     *
+     * @param name           Name prefix of the lane threads
+     * @param laneCount      Number of lanes, 0 to run the tasks on the submitting thread
+     * @param virtualThreads Whether lanes run on virtual threads
+     * @param queueCapacity  Maximum number of pending tasks per lane, 0 for unbounded
+     */
+    public ShardedExecutor(String name, int laneCount, boolean virtualThreads, int queueCapacity) {
+        if (laneCount < 0) {
+            throw new IllegalArgumentException("laneCount must not be negative");
+        }
+
+        this.name = name;
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            final String threadName = name + "-" + i;
+            final ThreadFactory threadFactory = virtualThreads
+                    ? Thread.ofVirtual().name(threadName).factory()
+                    : Thread.ofPlatform().name(threadName).daemon(true).factory();
+            final BlockingQueue<Runnable> queue = queueCapacity > 0
+                    ? new LinkedBlockingQueue<>(queueCapacity)
+                    : new LinkedBlockingQueue<>();
+
+            lanes[i] = new ThreadPoolExecutor(1, 1,
+                    0L, TimeUnit.MILLISECONDS,
+                    queue,
+                    threadFactory,
+                    new BlockWhenFull());
+        }
+    }
+
+    /**
+     * Creates an executor running the tasks on the submitting thread.
+     *
+     * @return A direct executor
+     */
+    public static ShardedExecutor direct() {
+        return new ShardedExecutor("direct", 0, false);
+    }
+
+    /**
+     * @return the number of lanes
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Executes a task on the lane of the shard key.
+     *
+     * @param shardKey The key selecting the lane
+     * @param task     The task to run
+     */
+    public void execute(Object shardKey, Runnable task) {
+        if (lanes.length == 0) {
+            runSafely(task);
+            return;
+        }
+
+        final int lane = Math.floorMod(shardKey == null ? 0 : shardKey.hashCode(), lanes.length);
+        lanes[lane].execute(() -> runSafely(task));
+    }
+
+    /**
+     * Stops accepting tasks and waits for the pending ones to complete.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+
+        try {
+            for (ExecutorService lane : lanes) {
+                if (!lane.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.error("Lane of executor {} did not terminate", name);
+                    lane.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            log.error("Interrupted while waiting for executor {} to terminate", name, e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.error("Error executing task on executor {}", name, e);
+        }
+    }
+
+    /**
+     * Blocks the submitting thread until the lane has room for the task.
+     */
+    private static class BlockWhenFull implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for room in the lane", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.confluent.pas.agent.common.services;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class ProducerProfileTest {
+
+    @Mock
+    private KafkaConfiguration kafkaConfiguration;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(kafkaConfiguration.brokerServers()).thenReturn("localhost:9092");
+        when(kafkaConfiguration.schemaRegistryUrl()).thenReturn("http://localhost:8081");
+        when(kafkaConfiguration.applicationId()).thenReturn("proxy");
+        when(kafkaConfiguration.clientId()).thenReturn("client");
+    }
+
+    @Test
+    public void testFromValue() {
+        assertEquals(ProducerProfile.LATENCY, ProducerProfile.fromValue(null, ProducerProfile.LATENCY));
+        assertEquals(ProducerProfile.DEFAULT, ProducerProfile.fromValue(" ", ProducerProfile.DEFAULT));
+        assertEquals(ProducerProfile.THROUGHPUT, ProducerProfile.fromValue("Throughput", ProducerProfile.DEFAULT));
+        assertThrows(IllegalArgumentException.class, () -> ProducerProfile.fromValue("fast", ProducerProfile.DEFAULT));
+    }
+
+    @Test
+    public void testProducerPropertiesApplyTheProfile() {
+        final Properties defaults = KafkaPropertiesFactory.getProducerProperties(kafkaConfiguration);
+        final Properties throughput = KafkaPropertiesFactory.getProducerProperties(kafkaConfiguration, ProducerProfile.THROUGHPUT);
+
+        assertEquals("proxy-client", defaults.get(ProducerConfig.CLIENT_ID_CONFIG));
+        assertFalse(defaults.containsKey(ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("proxy-client-throughput", throughput.get(ProducerConfig.CLIENT_ID_CONFIG));
+        assertEquals("zstd", throughput.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+        assertEquals(20, throughput.get(ProducerConfig.LINGER_MS_CONFIG));
+    }
+
+    @Test
+    public void testStreamsPropertiesApplyTheProfileToTheirProducer() {
+        final Properties latency = KafkaPropertiesFactory.getKStreamsProperties(kafkaConfiguration, ProducerProfile.LATENCY);
+
+        assertEquals(0, latency.get("producer." + ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("1", latency.get("producer." + ProducerConfig.ACKS_CONFIG));
+        assertFalse(latency.containsKey(ProducerConfig.ACKS_CONFIG));
+    }
+}
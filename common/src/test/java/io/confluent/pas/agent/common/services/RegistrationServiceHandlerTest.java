@@ -80,4 +80,25 @@ public class RegistrationServiceHandlerTest {
             put(key, null);
         }});
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRestoredCacheIsPublishedAsAWhole() {
+        final RegistrationServiceHandler<RegistrationKey, Registration> restoredHandler =
+                new RegistrationServiceHandler<>(handler, true);
+        RegistrationKey key = new RegistrationKey("key");
+        Registration value = new Registration();
+        TopicPartition tp = new TopicPartition("topic", 0);
+
+        // Only the delta since the last checkpoint is read, it must not be published on its own
+        restoredHandler.handleUpdate(key, value, null, tp, 10L, 0L);
+        restoredHandler.cacheInitialized(2, new HashMap<>());
+        verify(handler, never()).handleRegistrations(any());
+
+        final Map<RegistrationKey, Registration> restored = Map.of(
+                key, value,
+                new RegistrationKey("restored"), new Registration());
+        restoredHandler.publishAll(restored);
+
+        verify(handler, times(1)).handleRegistrations(restored);
+    }
+}
@@ -10,8 +10,10 @@ import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 public class RegistrationServiceTest {
@@ -73,6 +75,36 @@ public class RegistrationServiceTest {
         verify(registrationCache, times(1)).remove(key);
     }
 
+    @Test
+    public void testRegisterAll() {
+        Map<RegistrationKey, Registration> registrations = Map.of(
+                new RegistrationKey("a"), new Registration("a", "description", "a-request", "a-response"),
+                new RegistrationKey("b"), new Registration("b", "description", "b-request", "b-response"));
+
+        registrationService.registerAll(registrations);
+
+        verify(registrationCache, times(1)).putAll(registrations);
+        verify(registrationCache, never()).put(any(), any());
+    }
+
+    @Test
+    public void testRegisterAllIgnoresEmptyBatch() {
+        registrationService.registerAll(Map.of());
+
+        verify(registrationCache, never()).putAll(any());
+    }
+
+    @Test
+    public void testUnregisterAll() {
+        RegistrationKey a = new RegistrationKey("a");
+        RegistrationKey b = new RegistrationKey("b");
+
+        registrationService.unregisterAll(List.of(a, b));
+
+        verify(registrationCache, times(1)).remove(a);
+        verify(registrationCache, times(1)).remove(b);
+    }
+
     @Test
     public void testClose() throws IOException {
         registrationService.close();
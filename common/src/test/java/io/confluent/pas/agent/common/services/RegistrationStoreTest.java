@@ -0,0 +1,25 @@
+package io.confluent.pas.agent.common.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegistrationStoreTest {
+
+    @Test
+    public void testDefaultsToMemory() {
+        final RegistrationStore store = new RegistrationStore(null, null);
+
+        assertEquals(RegistrationStore.MEMORY, store.backingCache());
+        assertFalse(store.isPersistent());
+    }
+
+    @Test
+    public void testPersistentStoreRequiresADataDirectory() {
+        assertThrows(IllegalArgumentException.class, () -> new RegistrationStore("rocksdb", null));
+
+        final RegistrationStore store = new RegistrationStore("RocksDB", "/var/lib/agent-proxy");
+        assertEquals("rocksdb", store.backingCache());
+        assertTrue(store.isPersistent());
+    }
+}
@@ -0,0 +1,105 @@
+package io.confluent.pas.agent.common.services.claimcheck;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClaimCheckTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testLargeFieldsAreOffloaded() throws IOException {
+        final ClaimCheck claimCheck = ClaimCheck.create(directory.toString(), 16);
+        final String blob = "é".repeat(20);
+        final Map<String, Object> payload = Map.of("type", "blob", "blob", blob, "count", 42);
+
+        final Map<String, Object> offloaded = claimCheck.offload(payload);
+
+        assertEquals("blob", offloaded.get("type"));
+        assertEquals(42, offloaded.get("count"));
+        assertTrue(ClaimCheck.isReference(offloaded.get("blob")));
+        assertEquals(40, ((Map<?, ?>) offloaded.get("blob")).get(ClaimCheck.SIZE_FIELD));
+        try (InputStream content = claimCheck.open(offloaded.get("blob"))) {
+            assertEquals(blob, new String(content.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        assertEquals(payload, claimCheck.resolve(offloaded));
+        final JsonNode node = JsonUtils.toJsonNode(offloaded);
+        assertTrue(ClaimCheck.mayHoldReferences(node.toString()));
+        assertEquals(blob, claimCheck.resolve(node).get("blob").asText());
+        assertTrue(ClaimCheck.isReference(node.get("blob")));
+    }
+
+    @Test
+    public void testSmallPayloadIsLeftUnchanged() {
+        final ClaimCheck claimCheck = ClaimCheck.create(directory.toString(), 16);
+        final Map<String, Object> payload = Map.of("text", "short", "nested", Map.of("text", "x".repeat(64)));
+
+        assertSame(payload, claimCheck.offload(payload));
+        assertSame(payload, claimCheck.resolve(payload));
+        assertFalse(ClaimCheck.mayHoldReferences(JsonUtils.toJsonNode(payload).toString()));
+    }
+
+    @Test
+    public void testDisabledWithoutDirectory() {
+        assertNull(ClaimCheck.create(null, 16));
+        assertNull(ClaimCheck.create(" ", 16));
+    }
+
+    @Test
+    public void testStoreRejectsForeignReferences() throws IOException {
+        final FileSystemBlobStore store = new FileSystemBlobStore(directory);
+
+        assertThrows(IllegalArgumentException.class, () -> store.open("../secret"));
+        assertThrows(IllegalArgumentException.class, () -> store.delete("blob"));
+    }
+
+    @Test
+    public void testStoreDeletesOldBlobs() throws IOException {
+        final FileSystemBlobStore store = new FileSystemBlobStore(directory);
+        final String old = store.put(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        final String recent = store.put(new ByteArrayInputStream(new byte[]{4, 5, 6}));
+        Files.setLastModifiedTime(directory.resolve(old), FileTime.from(Instant.now().minusSeconds(3600)));
+
+        assertEquals(1, store.deleteOlderThan(Instant.now().minusSeconds(60)));
+
+        assertThrows(IOException.class, () -> store.open(old));
+        try (InputStream content = store.open(recent)) {
+            assertArrayEquals(new byte[]{4, 5, 6}, content.readAllBytes());
+        }
+        store.delete(recent);
+        assertThrows(IOException.class, () -> store.open(recent));
+    }
+
+    @Test
+    public void testStoreKeepsTemporaryFilesDuringTheGracePeriod() throws IOException {
+        final FileSystemBlobStore store = new FileSystemBlobStore(directory);
+        final Path writing = Files.write(directory.resolve("writing.tmp"), new byte[]{1});
+        final Path abandoned = Files.write(directory.resolve("abandoned.tmp"), new byte[]{2});
+        final Instant instant = Instant.now().minusSeconds(60);
+        Files.setLastModifiedTime(writing, FileTime.from(instant.minusSeconds(3600)));
+        Files.setLastModifiedTime(abandoned, FileTime.from(instant
+                .minus(FileSystemBlobStore.TEMPORARY_GRACE_PERIOD)
+                .minusSeconds(3600)));
+
+        assertEquals(1, store.deleteOlderThan(instant));
+
+        assertTrue(Files.exists(writing));
+        assertFalse(Files.exists(abandoned));
+    }
+}
@@ -0,0 +1,112 @@
+package io.confluent.pas.agent.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedExecutorTest {
+
+    @Test
+    public void testTasksWithSameKeyRunInOrder() throws InterruptedException {
+        final int keys = 16;
+        final int tasksPerKey = 500;
+        final Map<Integer, List<Integer>> executions = new ConcurrentHashMap<>();
+        final CountDownLatch latch = new CountDownLatch(keys * tasksPerKey);
+
+        try (ShardedExecutor executor = new ShardedExecutor("test", 4, false)) {
+            for (int i = 0; i < tasksPerKey; i++) {
+                for (int key = 0; key < keys; key++) {
+                    final int sequence = i;
+                    final int shardKey = key;
+                    executor.execute(shardKey, () -> {
+                        executions.computeIfAbsent(shardKey, k -> new ArrayList<>()).add(sequence);
+                        latch.countDown();
+                    });
+                }
+            }
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+
+        executions.values().forEach(sequences -> {
+            assertEquals(tasksPerKey, sequences.size());
+            for (int i = 0; i < tasksPerKey; i++) {
+                assertEquals(i, sequences.get(i));
+            }
+        });
+    }
+
+    @Test
+    public void testTasksRunOnSeveralLanes() throws InterruptedException {
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final CountDownLatch latch = new CountDownLatch(100);
+
+        try (ShardedExecutor executor = new ShardedExecutor("lane", 4, true)) {
+            for (int i = 0; i < 100; i++) {
+                executor.execute("key-" + i, () -> {
+                    threads.add(Thread.currentThread().getName());
+                    latch.countDown();
+                });
+            }
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+
+        assertTrue(threads.size() > 1);
+        threads.forEach(thread -> assertTrue(thread.startsWith("lane-")));
+    }
+
+    @Test
+    public void testBoundedLaneBlocksInsteadOfRejecting() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(10);
+
+        try (ShardedExecutor executor = new ShardedExecutor("bounded", 1, false, 2)) {
+            executor.execute("key", () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            final Thread producer = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    executor.execute("key", done::countDown);
+                }
+            });
+            producer.start();
+
+            // The producer is blocked by the full lane until the first task completes
+            Thread.sleep(100);
+            assertTrue(producer.isAlive());
+
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            producer.join(1000);
+        }
+    }
+
+    @Test
+    public void testDirectExecutorRunsOnCallerThread() {
+        final Thread caller = Thread.currentThread();
+        final List<Thread> threads = new ArrayList<>();
+
+        try (ShardedExecutor executor = ShardedExecutor.direct()) {
+            executor.execute("key", () -> threads.add(Thread.currentThread()));
+            executor.execute("key", () -> {
+                throw new IllegalStateException("Failure is logged");
+            });
+        }
+
+        assertEquals(List.of(caller), threads);
+    }
+}
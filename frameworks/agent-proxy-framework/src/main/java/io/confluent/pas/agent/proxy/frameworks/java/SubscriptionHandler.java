@@ -5,9 +5,13 @@ import io.confluent.kafka.serializers.json.KafkaJsonSchemaDeserializer;
 import io.confluent.kafka.serializers.json.KafkaJsonSchemaSerializer;
 import io.confluent.pas.agent.common.services.KafkaConfiguration;
 import io.confluent.pas.agent.common.services.KafkaPropertiesFactory;
+import io.confluent.pas.agent.common.services.ProducerProfile;
 import io.confluent.pas.agent.common.services.RegistrationService;
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
 import io.confluent.pas.agent.common.services.schemas.Registration;
 import io.confluent.pas.agent.common.services.schemas.RegistrationKey;
+import io.confluent.pas.agent.proxy.frameworks.java.kafka.HeartbeatPublisher;
+import io.confluent.pas.agent.proxy.frameworks.java.kafka.ReplyPartitioner;
 import io.confluent.pas.agent.proxy.frameworks.java.kafka.TopicManagement;
 import io.confluent.pas.agent.proxy.frameworks.java.kafka.impl.TopicManagementImpl;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
@@ -25,6 +29,7 @@ import org.apache.kafka.streams.kstream.Produced;
 import java.io.Closeable;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 /**
@@ -67,7 +72,11 @@ public class SubscriptionHandler<REQ, RES> implements Closeable {
     private final Serdes.WrapperSerde<Response> responseSerde;
     private final Supplier<TopicManagement> topicManagementSupplier;
     private final KStreamsSupplier kafkaStreamsSupplier;
+    private final Supplier<HeartbeatPublisher> heartbeatPublisherSupplier;
+    private final AtomicLong expiredRequests = new AtomicLong();
+    private final ClaimCheck claimCheck;
     private KafkaStreams kafkaStreams;
+    private HeartbeatPublisher heartbeatPublisher;
 
     /**
      * Creates a new subscription handler with the specified message types.
@@ -87,7 +96,8 @@ public class SubscriptionHandler<REQ, RES> implements Closeable {
                         RegistrationKey.class,
                         Registration.class),
                 () -> new TopicManagementImpl(kafkaConfiguration),
-                KafkaStreams::new
+                KafkaStreams::new,
+                () -> new HeartbeatPublisher(kafkaConfiguration)
         );
     }
 
@@ -105,6 +115,31 @@ public class SubscriptionHandler<REQ, RES> implements Closeable {
                                RegistrationService<RegistrationKey, Registration> registrationService,
                                Supplier<TopicManagement> topicManagementSupplier,
                                KStreamsSupplier kafkaStreamsSupplier) {
+        this(kafkaConfiguration,
+                requestClass,
+                responseClass,
+                registrationService,
+                topicManagementSupplier,
+                kafkaStreamsSupplier,
+                null);
+    }
+
+    /**
+     * Creates a new subscription handler publishing heartbeats while the requests are consumed.
+     *
+     * @param kafkaConfiguration         Kafka cluster configuration
+     * @param requestClass               Class type for request payloads
+     * @param responseClass              Class type for response payloads
+     * @param registrationService        Registration service for storing capabilities
+     * @param heartbeatPublisherSupplier Supplier of the heartbeat publisher, null to publish no heartbeat
+     */
+    public SubscriptionHandler(KafkaConfiguration kafkaConfiguration,
+                               Class<REQ> requestClass,
+                               Class<RES> responseClass,
+                               RegistrationService<RegistrationKey, Registration> registrationService,
+                               Supplier<TopicManagement> topicManagementSupplier,
+                               KStreamsSupplier kafkaStreamsSupplier,
+                               Supplier<HeartbeatPublisher> heartbeatPublisherSupplier) {
         this.kafkaConfiguration = kafkaConfiguration;
         this.requestClass = requestClass;
         this.responseClass = responseClass;
@@ -114,6 +149,10 @@ public class SubscriptionHandler<REQ, RES> implements Closeable {
         this.responseSerde = createSerde(Response.class, false);
         this.topicManagementSupplier = topicManagementSupplier;
         this.kafkaStreamsSupplier = kafkaStreamsSupplier;
+        this.heartbeatPublisherSupplier = heartbeatPublisherSupplier;
+        this.claimCheck = ClaimCheck.create(
+                kafkaConfiguration.claimCheckDirectory(),
+                kafkaConfiguration.claimCheckThreshold());
     }
 
     /**
@@ -158,6 +197,16 @@ public class SubscriptionHandler<REQ, RES> implements Closeable {
         }
     }
 
+    /**
+     * Returns the number of requests skipped because their deadline had passed when they were
+     * consumed: the proxy no longer waited for their response.
+     *
+     * @return The number of expired requests
+     */
+    public long getExpiredRequests() {
+        return expiredRequests.get();
+    }
+
     /**
      * Releases all resources used by this handler.
      */
@@ -165,6 +214,16 @@ public class SubscriptionHandler<REQ, RES> implements Closeable {
     public void close() {
         log.info("Closing subscription handler resources");
 
+        // Tell the proxy this instance is leaving before it stops consuming
+        if (heartbeatPublisher != null) {
+            try {
+                heartbeatPublisher.close();
+                log.debug("Heartbeat publisher closed successfully");
+            } catch (Exception e) {
+                log.warn("Error closing heartbeat publisher", e);
+            }
+        }
+
         if (kafkaStreams != null) {
             try {
                 kafkaStreams.close();
@@ -241,6 +300,20 @@ public class SubscriptionHandler<REQ, RES> implements Closeable {
                                    RequestHandler<REQ, RES> handler) {
         registerCapability(registration);
         setupAndStartKafkaStreams(registration, handler);
+        startHeartbeats(registration);
+    }
+
+    /**
+     * Starts publishing the heartbeats of the registration while the requests are consumed.
+     */
+    private void startHeartbeats(Registration registration) {
+        if (heartbeatPublisherSupplier == null) {
+            return;
+        }
+
+        final KafkaStreams streams = kafkaStreams;
+        heartbeatPublisher = heartbeatPublisherSupplier.get();
+        heartbeatPublisher.start(registration.getName(), () -> streams.state().isRunningOrRebalancing());
     }
 
     /**
@@ -265,12 +338,15 @@ public class SubscriptionHandler<REQ, RES> implements Closeable {
         StreamsBuilder builder = new StreamsBuilder();
 
         builder.stream(registration.getRequestTopicName(), Consumed.with(keySerde, requestSerde))
-                .process(new SubscriptionHandlerSupplier<>(handler, requestClass))
-                .to(registration.getResponseTopicName(), Produced.with(keySerde, responseSerde));
+                .process(new SubscriptionHandlerSupplier<>(handler, requestClass, expiredRequests, claimCheck))
+                .to(registration.getResponseTopicName(), Produced.with(keySerde, responseSerde)
+                        .withStreamPartitioner(new ReplyPartitioner()));
 
         final Topology topology = builder.build();
-        kafkaStreams = kafkaStreamsSupplier.get(topology,
-                KafkaPropertiesFactory.getKStreamsProperties(kafkaConfiguration));
+        // The responses are sent with the producer profile of the registration
+        kafkaStreams = kafkaStreamsSupplier.get(topology, KafkaPropertiesFactory.getKStreamsProperties(
+                kafkaConfiguration,
+                ProducerProfile.fromValue(registration.getProducerProfile(), ProducerProfile.DEFAULT)));
 
         log.info("Starting Kafka Streams for registration: {}", registration.getName());
         kafkaStreams.start();
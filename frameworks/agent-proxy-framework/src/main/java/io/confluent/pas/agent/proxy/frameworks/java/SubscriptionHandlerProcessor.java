@@ -1,27 +1,77 @@
 package io.confluent.pas.agent.proxy.frameworks.java;
 
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
 import io.confluent.pas.agent.common.utils.JsonUtils;
+import io.confluent.pas.agent.proxy.frameworks.java.models.BatchEntry;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Request;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Response;
 import io.confluent.pas.agent.proxy.frameworks.java.models.ResponseStatus;
 import io.confluent.pas.agent.proxy.frameworks.java.subscription.SubscriptionRequest;
 import io.confluent.pas.agent.proxy.frameworks.java.subscription.SubscriptionResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.apache.kafka.streams.processor.api.Processor;
 import org.apache.kafka.streams.processor.api.ProcessorContext;
 import org.apache.kafka.streams.processor.api.Record;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands the requests consumed from the request topic to the handler and forwards its responses.
+ * <p>
+ * Requests whose deadline has passed are skipped without invoking the handler: the proxy no longer
+ * waits for their response, so processing them would only waste the capacity of the agent.
+ * <p>
+ * With a claim check, the large fields of the responses are offloaded to its blob store and only
+ * their references travel on the response topic.
+ */
+@Slf4j
 public class SubscriptionHandlerProcessor<REQ, RES> implements Processor<Key, Request, Key, Response> {
 
     private final SubscriptionHandler.RequestHandler<REQ, RES> subscriptionHandler;
     private final Class<REQ> requestClass;
+    private final AtomicLong expiredRequests;
+    private final ClaimCheck claimCheck;
 
     private ProcessorContext<Key, Response> context;
 
     public SubscriptionHandlerProcessor(SubscriptionHandler.RequestHandler<REQ, RES> subscriptionHandler,
                                         Class<REQ> requestClass) {
+        this(subscriptionHandler, requestClass, new AtomicLong());
+    }
+
+    public SubscriptionHandlerProcessor(SubscriptionHandler.RequestHandler<REQ, RES> subscriptionHandler,
+                                        Class<REQ> requestClass,
+                                        AtomicLong expiredRequests) {
+        this(subscriptionHandler, requestClass, expiredRequests, null);
+    }
+
+    /**
+     * @param subscriptionHandler The handler of the requests
+     * @param requestClass        The class of the request payload
+     * @param expiredRequests     Counter of the requests skipped because their deadline had passed
+     * @param claimCheck          The claim check offloading the large response fields, null to send them inline
+     */
+    public SubscriptionHandlerProcessor(SubscriptionHandler.RequestHandler<REQ, RES> subscriptionHandler,
+                                        Class<REQ> requestClass,
+                                        AtomicLong expiredRequests,
+                                        ClaimCheck claimCheck) {
         this.subscriptionHandler = subscriptionHandler;
         this.requestClass = requestClass;
+        this.expiredRequests = expiredRequests;
+        this.claimCheck = claimCheck;
+    }
+
+    /**
+     * @return the number of requests skipped because their deadline had passed
+     */
+    public long getExpiredRequests() {
+        return expiredRequests.get();
     }
 
     @Override
@@ -31,24 +81,80 @@ public class SubscriptionHandlerProcessor<REQ, RES> implements Processor<Key, Re
 
     @Override
     public void process(Record<Key, Request> record) {
-        final REQ request = JsonUtils.toObject(record.value().getPayload(), requestClass);
+        final Request value = record.value();
+        final Long deadline = getLongHeader(record.headers(), Key.DEADLINE_HEADER);
+        final Long replyPartitionHeader = getLongHeader(record.headers(), Key.REPLY_PARTITION_HEADER);
+        final Integer replyPartition = replyPartitionHeader == null ? null : replyPartitionHeader.intValue();
+        if (!value.isBatch()) {
+            record.key().setDeadline(deadline);
+            record.key().setReplyPartition(replyPartition);
+            processRequest(record.key(), value.getPayload());
+            return;
+        }
+
+        // Unpack the batch, each entry is answered with its own response routed to its own caller
+        for (BatchEntry entry : value.getBatch()) {
+            final Key key = new Key(entry.getCorrelationId(), replyPartition);
+            key.setDeadline(entry.getDeadline() != null ? entry.getDeadline() : deadline);
+            processRequest(key, entry.getPayload());
+        }
+    }
+
+    private void processRequest(Key key, Map<String, Object> payload) {
+        if (key.isExpired(context.currentSystemTimeMs())) {
+            expiredRequests.incrementAndGet();
+            log.debug("Skipping request {}, its deadline has passed", key.getCorrelationId());
+            return;
+        }
+
+        final REQ request = JsonUtils.toObject(payload, requestClass);
 
         final SubscriptionRequest<REQ, RES> subscriptionRequest = new SubscriptionRequest<>(
-                record.key(),
+                key,
                 request,
                 this::sendResponse);
 
         subscriptionHandler.onRequest(subscriptionRequest);
     }
 
+    /**
+     * Reads a numeric header of a request, such as its deadline or its reply partition.
+     *
+     * @param headers The headers of the request
+     * @param name    The name of the header
+     * @return The value of the header, null if the request has none
+     */
+    private static Long getLongHeader(Headers headers, String name) {
+        final Header header = headers == null ? null : headers.lastHeader(name);
+        if (header == null || header.value() == null) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {} header", name, e);
+            return null;
+        }
+    }
+
     void sendResponse(SubscriptionResponse<RES> subscriptionResponse) {
         final Response response = new Response();
         response.setStatus(ResponseStatus.COMPLETED);
-        response.setPayload(JsonUtils.toMap(subscriptionResponse.response()));
+        final Map<String, Object> payload = JsonUtils.toMap(subscriptionResponse.response());
+        response.setPayload(claimCheck == null ? payload : claimCheck.offload(payload));
+
+        // The correlation ID header lets the proxy route the response without deserializing it
+        final Headers headers = new RecordHeaders();
+        final String correlationId = subscriptionResponse.key().getCorrelationId();
+        if (correlationId != null) {
+            headers.add(Key.CORRELATION_ID_HEADER, correlationId.getBytes(StandardCharsets.UTF_8));
+        }
 
         context.forward(new Record<>(
                 subscriptionResponse.key(),
                 response,
-                System.currentTimeMillis()));
+                System.currentTimeMillis(),
+                headers));
     }
 }
@@ -1,5 +1,6 @@
 package io.confluent.pas.agent.proxy.frameworks.java;
 
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Request;
 import io.confluent.pas.agent.proxy.frameworks.java.models.Response;
@@ -7,14 +8,18 @@ import lombok.AllArgsConstructor;
 import org.apache.kafka.streams.processor.api.Processor;
 import org.apache.kafka.streams.processor.api.ProcessorSupplier;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 @AllArgsConstructor
 public class SubscriptionHandlerSupplier<REQ, RES> implements ProcessorSupplier<Key, Request, Key, Response> {
 
     private final SubscriptionHandler.RequestHandler<REQ, RES> subscriptionHandler;
     private final Class<REQ> requestClass;
+    private final AtomicLong expiredRequests;
+    private final ClaimCheck claimCheck;
 
     @Override
     public Processor<Key, Request, Key, Response> get() {
-        return new SubscriptionHandlerProcessor<>(subscriptionHandler, requestClass);
+        return new SubscriptionHandlerProcessor<>(subscriptionHandler, requestClass, expiredRequests, claimCheck);
     }
 }
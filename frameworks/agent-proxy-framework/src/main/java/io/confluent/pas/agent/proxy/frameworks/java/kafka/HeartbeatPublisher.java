@@ -0,0 +1,153 @@
+package io.confluent.pas.agent.proxy.frameworks.java.kafka;
+
+import io.confluent.pas.agent.common.services.AgentHeartbeat;
+import io.confluent.pas.agent.common.services.KafkaConfiguration;
+import io.confluent.pas.agent.common.services.KafkaPropertiesFactory;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Publishes the heartbeats of an agent instance serving a registration.
+ * <p>
+ * A heartbeat is only published while the instance is actually consuming the requests, so that the
+ * proxy can tell a registration whose agents are gone from a registration whose agents are busy.
+ * Heartbeats are plain JSON strings, without schema, to keep them as light as possible.
+ */
+@Slf4j
+public class HeartbeatPublisher implements Closeable {
+
+    /**
+     * Default interval between two heartbeats
+     */
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(5);
+
+    private final Producer<String, String> producer;
+    private final String topic;
+    private final String instanceId;
+    private final Duration interval;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+    private String registrationName;
+    private BooleanSupplier consuming;
+    private ScheduledFuture<?> task;
+
+    /**
+     * Creates a publisher sending the heartbeats to the heartbeat topic of the configuration.
+     *
+     * @param kafkaConfiguration Kafka configuration
+     */
+    public HeartbeatPublisher(KafkaConfiguration kafkaConfiguration) {
+        this(new KafkaProducer<>(getProducerProperties(kafkaConfiguration)),
+                kafkaConfiguration.heartbeatTopicName(),
+                kafkaConfiguration.applicationId() + "-" + kafkaConfiguration.clientId(),
+                DEFAULT_INTERVAL,
+                Clock.systemUTC());
+    }
+
+    /**
+     * Creates a publisher.
+     *
+     * @param producer   Producer sending the heartbeats
+     * @param topic      Topic of the heartbeats
+     * @param instanceId Identifier of this agent instance
+     * @param interval   Interval between two heartbeats
+     * @param clock      Clock of the heartbeats
+     */
+    public HeartbeatPublisher(Producer<String, String> producer,
+                              String topic,
+                              String instanceId,
+                              Duration interval,
+                              Clock clock) {
+        this.producer = producer;
+        this.topic = topic;
+        this.instanceId = instanceId;
+        this.interval = interval;
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "agent-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts publishing the heartbeats of a registration.
+     *
+     * @param registrationName Name of the registration served by this instance
+     * @param consuming        Tells whether this instance is consuming the requests
+     */
+    public synchronized void start(String registrationName, BooleanSupplier consuming) {
+        if (task != null) {
+            throw new IllegalStateException("Heartbeats already started for " + this.registrationName);
+        }
+
+        log.info("Publishing heartbeats of {} every {} ms", registrationName, interval.toMillis());
+        this.registrationName = registrationName;
+        this.consuming = consuming;
+        this.task = executor.scheduleAtFixedRate(this::beat, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publishes a heartbeat if this instance is consuming the requests.
+     */
+    void beat() {
+        if (!consuming.getAsBoolean()) {
+            log.debug("Not consuming the requests of {}, skipping heartbeat", registrationName);
+            return;
+        }
+
+        try {
+            final AgentHeartbeat heartbeat = new AgentHeartbeat(registrationName, instanceId, clock.millis());
+            producer.send(new ProducerRecord<>(topic, heartbeat.key(), JsonUtils.toString(heartbeat)), (metadata, error) -> {
+                if (error != null) {
+                    log.warn("Failed to publish heartbeat of {}", registrationName, error);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to publish heartbeat of {}", registrationName, e);
+        }
+    }
+
+    /**
+     * Stops the heartbeats and tells the proxy this instance is leaving.
+     */
+    @Override
+    public synchronized void close() {
+        executor.shutdownNow();
+
+        if (task != null) {
+            try {
+                producer.send(new ProducerRecord<>(topic, AgentHeartbeat.key(registrationName, instanceId), null));
+                producer.flush();
+            } catch (Exception e) {
+                log.warn("Failed to publish the last heartbeat of {}", registrationName, e);
+            }
+        }
+
+        producer.close();
+    }
+
+    private static Properties getProducerProperties(KafkaConfiguration kafkaConfiguration) {
+        final Properties properties = KafkaPropertiesFactory.getProducerProperties(kafkaConfiguration);
+        properties.put(ProducerConfig.CLIENT_ID_CONFIG,
+                kafkaConfiguration.applicationId() + "-heartbeat-" + kafkaConfiguration.clientId());
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        return properties;
+    }
+}
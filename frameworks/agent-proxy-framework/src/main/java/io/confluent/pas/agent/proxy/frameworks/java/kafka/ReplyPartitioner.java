@@ -0,0 +1,31 @@
+package io.confluent.pas.agent.proxy.frameworks.java.kafka;
+
+import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.processor.StreamPartitioner;
+
+/**
+ * Partitioner for the response topic honouring the reply partition requested by the proxy.
+ * Responses without a reply partition use the default partitioning.
+ */
+@Slf4j
+public class ReplyPartitioner implements StreamPartitioner<Key, Response> {
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Integer partition(String topic, Key key, Response value, int numPartitions) {
+        if (key == null || key.getReplyPartition() == null) {
+            return null;
+        }
+
+        final int replyPartition = key.getReplyPartition();
+        if (replyPartition < 0 || replyPartition >= numPartitions) {
+            log.warn("Invalid reply partition {} for topic {} with {} partitions, using default partitioning",
+                    replyPartition, topic, numPartitions);
+            return null;
+        }
+
+        return replyPartition;
+    }
+}
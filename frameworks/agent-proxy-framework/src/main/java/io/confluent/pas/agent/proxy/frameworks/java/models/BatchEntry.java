@@ -0,0 +1,43 @@
+package io.confluent.pas.agent.proxy.frameworks.java.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * A request packed into a batched {@link Request}.
+ * Each entry keeps the correlation ID of its caller, so that it is answered with its own response.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchEntry {
+
+    /**
+     * The correlation ID of the request.
+     */
+    private String correlationId;
+
+    /**
+     * The index of the request within its correlation ID.
+     */
+    private int requestIndex;
+
+    /**
+     * The payload of the request.
+     */
+    private Map<String, Object> payload;
+
+    /**
+     * The deadline of the request in milliseconds since the epoch, null if the request has none.
+     */
+    private Long deadline;
+
+    public BatchEntry(String correlationId, int requestIndex, Map<String, Object> payload) {
+        this(correlationId, requestIndex, payload, null);
+    }
+}
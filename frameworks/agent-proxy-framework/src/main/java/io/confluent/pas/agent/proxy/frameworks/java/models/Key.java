@@ -1,7 +1,7 @@
 package io.confluent.pas.agent.proxy.frameworks.java.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.confluent.kafka.schemaregistry.annotations.Schema;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -24,8 +24,55 @@ import lombok.Setter;
         refs = {})
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 public class Key {
+    /**
+     * Header carrying the correlation ID, letting consumers route a record without deserializing it.
+     */
+    public static final String CORRELATION_ID_HEADER = "correlation-id";
+
+    /**
+     * Header carrying the deadline of a request, in milliseconds since the epoch. The proxy no longer
+     * waits for the response past this point.
+     */
+    public static final String DEADLINE_HEADER = "deadline";
+
+    /**
+     * Header carrying the partition of the response topic the response must be produced to.
+     */
+    public static final String REPLY_PARTITION_HEADER = "reply-partition";
+
     private String correlationId;
+    /**
+     * Partition of the response topic the response must be produced to, null to use the default
+     * partitioning. Set by the proxy when replies are routed to the instance which sent the request, and
+     * carried in the {@link #REPLY_PARTITION_HEADER} header so that the key schema is unchanged.
+     */
+    @JsonIgnore
+    private Integer replyPartition;
+
+    /**
+     * Deadline of the request in milliseconds since the epoch, null if the request has none. Carried in
+     * the {@link #DEADLINE_HEADER} header rather than in the key, so that agents ignoring it are not affected.
+     */
+    @JsonIgnore
+    private Long deadline;
+
+    public Key(String correlationId) {
+        this(correlationId, null);
+    }
+
+    public Key(String correlationId, Integer replyPartition) {
+        this.correlationId = correlationId;
+        this.replyPartition = replyPartition;
+    }
+
+    /**
+     * @param now The current time in milliseconds since the epoch
+     * @return true if the deadline of the request has passed
+     */
+    @JsonIgnore
+    public boolean isExpired(long now) {
+        return deadline != null && now > deadline;
+    }
 }
@@ -1,5 +1,6 @@
 package io.confluent.pas.agent.proxy.frameworks.java.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -13,12 +14,14 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Represents a request in the agent proxy framework.
  * This class encapsulates a request with an index and a payload.
  * The payload is represented as a JsonNode which allows for flexible data structures.
+ * A batched request carries several requests, each with its own correlation ID, in its batch.
  * The class is annotated with a JSON schema that defines its structure.
  */
 @Schema(value = """
@@ -31,6 +34,20 @@ import java.util.Map;
               "payload":{
                  "connect.index":1,
                  "type":"object"
+              },
+              "batch":{
+                 "connect.index":2,
+                 "oneOf":[
+                    {
+                       "type":"null"
+                    },
+                    {
+                       "type":"array",
+                       "items":{
+                          "type":"object"
+                       }
+                    }
+                 ]
               }
            },
            "required":[
@@ -58,6 +75,33 @@ public class Request {
      */
     private Map<String, Object> payload;
 
+    /**
+     * The requests packed into this request, null if the request is not batched.
+     */
+    private List<BatchEntry> batch;
+
+    public Request(int requestIndex, Map<String, Object> payload) {
+        this(requestIndex, payload, null);
+    }
+
+    /**
+     * Creates a batched request.
+     *
+     * @param entries The requests to pack
+     * @return The batched request
+     */
+    public static Request batch(List<BatchEntry> entries) {
+        return new Request(0, Map.of(), entries);
+    }
+
+    /**
+     * @return true if the request carries a batch of requests
+     */
+    @JsonIgnore
+    public boolean isBatch() {
+        return batch != null;
+    }
+
     /**
      * Generates a JsonSchema for the Request class with a specific payload class.
      * This method creates a schema that combines the Request schema with the payload's schema.
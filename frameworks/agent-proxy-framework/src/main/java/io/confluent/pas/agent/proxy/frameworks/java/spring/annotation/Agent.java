@@ -43,4 +43,48 @@ public @interface Agent {
      * The class type for the response message payload.
      */
     Class<?> responseClass();
+
+    /**
+     * Maximum number of requests the proxy may pack into a single record, 0 disables batching.
+     */
+    int max_batch_size() default 0;
+
+    /**
+     * Maximum time in milliseconds the proxy waits to fill a batch.
+     */
+    int batch_linger_ms() default 0;
+
+    /**
+     * Maximum time in milliseconds the proxy waits for a response, 0 uses the proxy timeout.
+     */
+    int response_timeout_ms() default 0;
+
+    /**
+     * Lets the proxy share a single request between identical concurrent calls. Only set it when the
+     * response depends on the request arguments alone.
+     */
+    boolean coalesce_requests() default false;
+
+    /**
+     * Time in milliseconds the proxy caches the responses for, 0 disables caching. Only set it when the
+     * response depends on the request arguments alone.
+     */
+    int cache_ttl_ms() default 0;
+
+    /**
+     * Maximum size in bytes of the responses cached by the proxy, 0 uses the proxy limit.
+     */
+    int cache_max_weight() default 0;
+
+    /**
+     * Percentile of the observed latencies after which the proxy sends a request without response again to
+     * another partition, e.g. 0.95, 0 disables hedging. Only set it when a request can safely be processed twice.
+     */
+    double hedge_percentile() default 0;
+
+    /**
+     * Producer profile of the requests and responses, {@code latency} or {@code throughput}, empty for the
+     * profile of the proxy and the Kafka producer defaults.
+     */
+    String producer_profile() default "";
 }
\ No newline at end of file
@@ -200,6 +200,12 @@ public class AgentRegistrar implements InitializingBean, Closeable {
                 responseTopic,
                 resource.contentType(),
                 resource.path());
+        if (resource.cache_ttl_ms() > 0) {
+            registration.setCacheTtlMs(resource.cache_ttl_ms());
+        }
+        if (resource.cache_max_weight() > 0) {
+            registration.setCacheMaxWeight(resource.cache_max_weight());
+        }
 
         // Create and start a subscription handler for the resource
         SubscriptionHandler<?, ?> subscriptionHandler = subscriptionHandlerSupplier.get(
@@ -231,6 +237,28 @@ public class AgentRegistrar implements InitializingBean, Closeable {
                 agent.description(),
                 requestTopic,
                 responseTopic);
+        if (agent.max_batch_size() > 1) {
+            registration.setMaxBatchSize(agent.max_batch_size());
+            registration.setBatchLingerMs(agent.batch_linger_ms());
+        }
+        if (agent.response_timeout_ms() > 0) {
+            registration.setResponseTimeoutMs(agent.response_timeout_ms());
+        }
+        if (agent.coalesce_requests()) {
+            registration.setCoalesceRequests(true);
+        }
+        if (agent.cache_ttl_ms() > 0) {
+            registration.setCacheTtlMs(agent.cache_ttl_ms());
+        }
+        if (agent.cache_max_weight() > 0) {
+            registration.setCacheMaxWeight(agent.cache_max_weight());
+        }
+        if (agent.hedge_percentile() > 0) {
+            registration.setHedgePercentile(agent.hedge_percentile());
+        }
+        if (!agent.producer_profile().isEmpty()) {
+            registration.setProducerProfile(agent.producer_profile());
+        }
 
         // Create and start a subscription handler for the agent
         SubscriptionHandler<?, ?> subscriptionHandler = subscriptionHandlerSupplier.get(
@@ -51,4 +51,14 @@ public @interface Resource {
      * Must extend ResourceResponse.
      */
     Class<? extends ResourceResponse> responseClass();
+
+    /**
+     * Time in milliseconds the proxy caches the resource contents for, 0 disables caching.
+     */
+    int cache_ttl_ms() default 0;
+
+    /**
+     * Maximum size in bytes of the resource contents cached by the proxy, 0 uses the proxy limit.
+     */
+    int cache_max_weight() default 0;
 }
\ No newline at end of file
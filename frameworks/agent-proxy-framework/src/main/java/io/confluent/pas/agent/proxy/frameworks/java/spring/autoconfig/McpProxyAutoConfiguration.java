@@ -2,6 +2,7 @@ package io.confluent.pas.agent.proxy.frameworks.java.spring.autoconfig;
 
 import io.confluent.pas.agent.common.services.KafkaConfiguration;
 import io.confluent.pas.agent.common.services.TopicConfiguration;
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
 import io.confluent.pas.agent.common.utils.ClientID;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
@@ -78,6 +79,18 @@ public class McpProxyAutoConfiguration {
     @Value("${kafka.topic-configuration:#{null}}")
     private TopicConfiguration topicConfiguration;
 
+    /**
+     * Directory the large response fields are offloaded to, shared with the proxy (disabled if empty)
+     */
+    @Value("${kafka.claim-check-directory:#{null}}")
+    private String claimCheckDirectory;
+
+    /**
+     * Size in bytes above which a response field is offloaded (defaults to ClaimCheck.DEFAULT_THRESHOLD)
+     */
+    @Value("${kafka.claim-check-threshold:" + ClaimCheck.DEFAULT_THRESHOLD + "}")
+    private int claimCheckThreshold;
+
     /**
      * Implementation record for Kafka configuration settings.
      * Provides immutable storage of all Kafka-related configuration parameters.
@@ -86,7 +99,9 @@ public class McpProxyAutoConfiguration {
                                          String applicationId,
                                          String securityProtocol, String saslMechanism, String saslJaasConfig,
                                          String schemaRegistryBasicAuthUserInfo, String registrationTopicName,
-                                         TopicConfiguration topicConfiguration) implements KafkaConfiguration {
+                                         TopicConfiguration topicConfiguration,
+                                         String claimCheckDirectory,
+                                         int claimCheckThreshold) implements KafkaConfiguration {
 
         /**
          * Constructs a new KafkaConfigurationImpl with the specified parameters.
@@ -101,7 +116,9 @@ public class McpProxyAutoConfiguration {
                                       String saslJaasConfig,
                                       String schemaRegistryBasicAuthUserInfo,
                                       String registrationTopicName,
-                                      TopicConfiguration topicConfiguration) {
+                                      TopicConfiguration topicConfiguration,
+                                      String claimCheckDirectory,
+                                      int claimCheckThreshold) {
             this.clientId = StringUtils.isEmpty(clientId) ? ClientID.getOrCreateClientId() : clientId;
             this.brokerServers = brokerServers;
             this.schemaRegistryUrl = schemaRegistryUrl;
@@ -114,6 +131,8 @@ public class McpProxyAutoConfiguration {
             this.topicConfiguration = topicConfiguration == null
                     ? new DefaultTopicConfiguration()
                     : topicConfiguration;
+            this.claimCheckDirectory = claimCheckDirectory;
+            this.claimCheckThreshold = claimCheckThreshold;
         }
 
         /**
@@ -147,7 +166,9 @@ public class McpProxyAutoConfiguration {
                 saslJaasConfig,
                 schemaRegistryBasicAuthUserInfo,
                 registrationTopicName,
-                topicConfiguration
+                topicConfiguration,
+                claimCheckDirectory,
+                claimCheckThreshold
         );
     }
 
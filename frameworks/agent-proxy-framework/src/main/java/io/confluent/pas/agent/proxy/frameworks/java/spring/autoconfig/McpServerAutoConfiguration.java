@@ -1,6 +1,7 @@
 package io.confluent.pas.agent.proxy.frameworks.java.spring.autoconfig;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.pas.agent.proxy.frameworks.java.spring.mcp.ListChangedNotificationCoalescer;
 import io.modelcontextprotocol.server.McpAsyncServer;
 import io.modelcontextprotocol.server.McpServer;
 import io.modelcontextprotocol.server.transport.StdioServerTransportProvider;
@@ -16,6 +17,8 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.reactive.function.server.RouterFunction;
 
+import java.time.Duration;
+
 /**
  * Auto-configuration class for Model Control Protocol (MCP) server.
  * Configures and initializes the MCP server with either SSE or stdio transport.
@@ -43,6 +46,12 @@ public class McpServerAutoConfiguration {
     @Value("${mcp.server.version}")
     private String version;
 
+    /**
+     * Time in milliseconds during which the list-changed notifications are merged, disabled if 0
+     */
+    @Value("${mcp.server.list-changed-window:0}")
+    private long listChangedWindow;
+
     /**
      * Creates a WebFluxSseServerTransport bean if the transport mode is set to SSE.
      * This transport is used for handling Server-Sent Events (SSE).
@@ -84,6 +93,7 @@ public class McpServerAutoConfiguration {
      * Creates an asynchronous MCP server instance.
      * This method initializes the server with the specified transport and server information.
      * Configures server capabilities including tools support, resource management, and logging.
+     * The list-changed notifications are coalesced if a window is configured.
      *
      * @param transport the ServerMcpTransport instance (either SSE or stdio)
      * @return the configured McpAsyncServer instance
@@ -96,7 +106,11 @@ public class McpServerAutoConfiguration {
                 version,
                 transport.getClass().getSimpleName());
 
-        return McpServer.async(transport)
+        final McpServerTransportProvider serverTransport = listChangedWindow > 0
+                ? new ListChangedNotificationCoalescer(transport, Duration.ofMillis(listChangedWindow))
+                : transport;
+
+        return McpServer.async(serverTransport)
                 .serverInfo(name, version)
                 .capabilities(McpSchema.ServerCapabilities
                         .builder()
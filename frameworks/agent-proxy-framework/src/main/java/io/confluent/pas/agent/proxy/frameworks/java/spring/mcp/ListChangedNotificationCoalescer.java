@@ -0,0 +1,131 @@
+package io.confluent.pas.agent.proxy.frameworks.java.spring.mcp;
+
+import io.modelcontextprotocol.spec.McpSchema;
+import io.modelcontextprotocol.spec.McpServerSession;
+import io.modelcontextprotocol.spec.McpServerTransportProvider;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport provider coalescing the list-changed notifications sent to the MCP clients.
+ * <p>
+ * The MCP server notifies every connected client each time a tool, resource or prompt is added or
+ * removed, and clients usually list the tools again on each notification. When many registrations
+ * change at once, e.g. at startup, the notifications received within the window are merged into a
+ * single one per list. The window starts with the first notification, so a steady stream of changes
+ * still notifies the clients once per window. All the other messages are sent as is.
+ */
+@Slf4j
+public class ListChangedNotificationCoalescer implements McpServerTransportProvider {
+
+    /**
+     * Notifications without parameters which can be merged
+     */
+    private static final Set<String> COALESCED_METHODS = Set.of(
+            McpSchema.METHOD_NOTIFICATION_TOOLS_LIST_CHANGED,
+            McpSchema.METHOD_NOTIFICATION_RESOURCES_LIST_CHANGED,
+            McpSchema.METHOD_NOTIFICATION_PROMPTS_LIST_CHANGED);
+
+    private final McpServerTransportProvider delegate;
+    private final long windowMs;
+    private final Scheduler scheduler;
+    private final Object lock = new Object();
+    private final Set<String> pending = new LinkedHashSet<>();
+    private Disposable flushTask;
+
+    /**
+     * Creates a coalescer flushing the notifications on the parallel scheduler.
+     *
+     * @param delegate The transport provider sending the messages
+     * @param window   Time during which the notifications are merged
+     */
+    public ListChangedNotificationCoalescer(McpServerTransportProvider delegate, Duration window) {
+        this(delegate, window, Schedulers.parallel());
+    }
+
+    /**
+     * Creates a coalescer.
+     *
+     * @param delegate  The transport provider sending the messages
+     * @param window    Time during which the notifications are merged
+     * @param scheduler Scheduler flushing the notifications at the end of the window
+     */
+    public ListChangedNotificationCoalescer(McpServerTransportProvider delegate, Duration window, Scheduler scheduler) {
+        this.delegate = delegate;
+        this.windowMs = window.toMillis();
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void setSessionFactory(McpServerSession.Factory sessionFactory) {
+        delegate.setSessionFactory(sessionFactory);
+    }
+
+    /**
+     * Sends a notification to all the clients, list-changed notifications are deferred until the end of
+     * the window and complete immediately.
+     *
+     * @param method The notification method
+     * @param params The notification parameters
+     * @return A Mono completing when the notification is sent or deferred
+     */
+    @Override
+    public Mono<Void> notifyClients(String method, Map<String, Object> params) {
+        if (!COALESCED_METHODS.contains(method)) {
+            return delegate.notifyClients(method, params);
+        }
+
+        synchronized (lock) {
+            pending.add(method);
+            if (flushTask == null) {
+                flushTask = scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        return Mono.empty();
+    }
+
+    /**
+     * Sends the pending notifications, once per list.
+     */
+    public void flush() {
+        final List<String> methods;
+        synchronized (lock) {
+            methods = new ArrayList<>(pending);
+            pending.clear();
+            if (flushTask != null) {
+                flushTask.dispose();
+                flushTask = null;
+            }
+        }
+
+        methods.forEach(method -> {
+            log.debug("Notifying clients: {}", method);
+            delegate.notifyClients(method, null)
+                    .subscribe(null, error -> log.warn("Failed to notify clients: {}", method, error));
+        });
+    }
+
+    @Override
+    public Mono<Void> closeGracefully() {
+        return Mono.fromRunnable(this::flush)
+                .then(delegate.closeGracefully());
+    }
+
+    @Override
+    public void close() {
+        flush();
+        delegate.close();
+    }
+}
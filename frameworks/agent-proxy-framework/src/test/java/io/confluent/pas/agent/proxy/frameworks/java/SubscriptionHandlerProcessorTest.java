@@ -0,0 +1,185 @@
+package io.confluent.pas.agent.proxy.frameworks.java;
+
+import io.confluent.pas.agent.common.services.claimcheck.ClaimCheck;
+import io.confluent.pas.agent.proxy.frameworks.java.models.BatchEntry;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Request;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Response;
+import io.confluent.pas.agent.proxy.frameworks.java.subscription.SubscriptionRequest;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SubscriptionHandlerProcessorTest {
+
+    public record Operation(int a, int b) {
+    }
+
+    public record Result(int result) {
+    }
+
+    public record Document(String name, String content) {
+    }
+
+    private final List<SubscriptionRequest<Operation, Result>> requests = new ArrayList<>();
+
+    private ProcessorContext<Key, Response> context;
+    private SubscriptionHandlerProcessor<Operation, Result> processor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        context = mock(ProcessorContext.class);
+        processor = new SubscriptionHandlerProcessor<>(requests::add, Operation.class);
+        processor.init(context);
+    }
+
+    @Test
+    public void testProcessRequest() {
+        final RecordHeaders headers = new RecordHeaders();
+        headers.add(Key.REPLY_PARTITION_HEADER, "3".getBytes(StandardCharsets.UTF_8));
+        processor.process(new Record<>(
+                new Key("id-1"),
+                new Request(0, Map.of("a", 1, "b", 2)),
+                0L,
+                headers));
+
+        assertEquals(1, requests.size());
+        assertEquals("id-1", requests.getFirst().getKey().getCorrelationId());
+        assertEquals(3, requests.getFirst().getKey().getReplyPartition());
+        assertEquals(new Operation(1, 2), requests.getFirst().getRequest());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testProcessBatchedRequest() {
+        final RecordHeaders headers = new RecordHeaders();
+        headers.add(Key.REPLY_PARTITION_HEADER, "3".getBytes(StandardCharsets.UTF_8));
+        processor.process(new Record<>(
+                new Key("id-1"),
+                Request.batch(List.of(
+                        new BatchEntry("id-1", 0, Map.of("a", 1, "b", 2)),
+                        new BatchEntry("id-2", 0, Map.of("a", 3, "b", 4)))),
+                0L,
+                headers));
+
+        assertEquals(2, requests.size());
+        assertEquals(new Operation(1, 2), requests.get(0).getRequest());
+        assertEquals(new Operation(3, 4), requests.get(1).getRequest());
+
+        // Every entry is answered on its own, routed with its own correlation ID
+        requests.forEach(request -> request.respond(new Result(request.getRequest().a() + request.getRequest().b())).block());
+
+        final ArgumentCaptor<Record<Key, Response>> captor = ArgumentCaptor.forClass(Record.class);
+        verify(context, times(2)).forward(captor.capture());
+
+        final List<Record<Key, Response>> responses = captor.getAllValues();
+        assertEquals("id-1", responses.get(0).key().getCorrelationId());
+        assertEquals(3, responses.get(0).key().getReplyPartition());
+        assertEquals(3, responses.get(0).value().getPayload().get("result"));
+        assertEquals("id-2", responses.get(1).key().getCorrelationId());
+        assertEquals(3, responses.get(1).key().getReplyPartition());
+        assertEquals(7, responses.get(1).value().getPayload().get("result"));
+
+        final Header header = responses.get(1).headers().lastHeader(Key.CORRELATION_ID_HEADER);
+        assertEquals("id-2", new String(header.value(), StandardCharsets.UTF_8));
+    }
+
+    private static RecordHeaders deadlineHeaders(long deadline) {
+        final RecordHeaders headers = new RecordHeaders();
+        headers.add(Key.DEADLINE_HEADER, Long.toString(deadline).getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+
+    @Test
+    public void testExpiredRequestIsSkipped() {
+        when(context.currentSystemTimeMs()).thenReturn(2000L);
+
+        processor.process(new Record<>(
+                new Key("id-1", 3),
+                new Request(0, Map.of("a", 1, "b", 2)),
+                0L,
+                deadlineHeaders(1000L)));
+
+        assertTrue(requests.isEmpty());
+        assertEquals(1, processor.getExpiredRequests());
+    }
+
+    @Test
+    public void testRequestBeforeDeadlineIsProcessed() {
+        when(context.currentSystemTimeMs()).thenReturn(500L);
+
+        processor.process(new Record<>(
+                new Key("id-1", 3),
+                new Request(0, Map.of("a", 1, "b", 2)),
+                0L,
+                deadlineHeaders(1000L)));
+
+        assertEquals(1, requests.size());
+        assertEquals(1000L, requests.getFirst().getKey().getDeadline());
+        assertEquals(0, processor.getExpiredRequests());
+    }
+
+    @Test
+    public void testExpiredBatchEntriesAreSkipped() {
+        when(context.currentSystemTimeMs()).thenReturn(2000L);
+
+        processor.process(new Record<>(
+                new Key("id-1", 3),
+                Request.batch(List.of(
+                        new BatchEntry("id-1", 0, Map.of("a", 1, "b", 2), 1000L),
+                        new BatchEntry("id-2", 0, Map.of("a", 3, "b", 4), 3000L))),
+                0L));
+
+        assertEquals(1, requests.size());
+        assertEquals("id-2", requests.getFirst().getKey().getCorrelationId());
+        assertEquals(1, processor.getExpiredRequests());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLargeResponseFieldIsOffloaded(@TempDir Path directory) throws Exception {
+        final ClaimCheck claimCheck = ClaimCheck.create(directory.toString(), 64);
+        final List<SubscriptionRequest<Operation, Document>> documentRequests = new ArrayList<>();
+        final SubscriptionHandlerProcessor<Operation, Document> documentProcessor = new SubscriptionHandlerProcessor<>(
+                documentRequests::add,
+                Operation.class,
+                new AtomicLong(),
+                claimCheck);
+        documentProcessor.init(context);
+
+        documentProcessor.process(new Record<>(
+                new Key("id-1", 3),
+                new Request(0, Map.of("a", 1, "b", 2)),
+                0L));
+        final String content = "x".repeat(1000);
+        documentRequests.getFirst().respond(new Document("report", content)).block();
+
+        final ArgumentCaptor<Record<Key, Response>> captor = ArgumentCaptor.forClass(Record.class);
+        verify(context).forward(captor.capture());
+
+        // Only the reference of the content travels on the topic
+        final Map<String, Object> payload = captor.getValue().value().getPayload();
+        assertEquals("report", payload.get("name"));
+        assertTrue(ClaimCheck.isReference(payload.get("content")));
+        try (InputStream blob = claimCheck.open(payload.get("content"))) {
+            assertEquals(content, new String(blob.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.confluent.pas.agent.proxy.frameworks.java.kafka;
+
+import io.confluent.pas.agent.common.services.AgentHeartbeat;
+import io.confluent.pas.agent.common.utils.JsonUtils;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeartbeatPublisherTest {
+
+    private static final Instant NOW = Instant.ofEpochMilli(1_000_000);
+
+    private final AtomicBoolean consuming = new AtomicBoolean(true);
+    private MockProducer<String, String> producer;
+    private HeartbeatPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        // A long interval so that only the heartbeats published by the test are sent
+        publisher = new HeartbeatPublisher(
+                producer,
+                "_agent_heartbeats",
+                "instance-1",
+                Duration.ofHours(1),
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (!producer.closed()) {
+            publisher.close();
+        }
+    }
+
+    @Test
+    void testHeartbeatIsPublishedWhileConsuming() throws Exception {
+        publisher.start("tool", consuming::get);
+        awaitHistorySize(1);
+
+        final ProducerRecord<String, String> record = producer.history().getFirst();
+        assertEquals("_agent_heartbeats", record.topic());
+        assertEquals("tool/instance-1", record.key());
+        assertEquals(new AgentHeartbeat("tool", "instance-1", NOW.toEpochMilli()),
+                JsonUtils.toObject(record.value(), AgentHeartbeat.class));
+    }
+
+    @Test
+    void testNoHeartbeatWhenNotConsuming() throws Exception {
+        consuming.set(false);
+        publisher.start("tool", consuming::get);
+
+        publisher.beat();
+
+        assertTrue(producer.history().isEmpty());
+    }
+
+    @Test
+    void testCloseSendsTombstone() throws Exception {
+        consuming.set(false);
+        publisher.start("tool", consuming::get);
+
+        publisher.close();
+
+        assertEquals(1, producer.history().size());
+        assertEquals("tool/instance-1", producer.history().getFirst().key());
+        assertNull(producer.history().getFirst().value());
+        assertTrue(producer.closed());
+    }
+
+    @Test
+    void testCannotStartTwice() {
+        publisher.start("tool", consuming::get);
+
+        assertThrows(IllegalStateException.class, () -> publisher.start("other", consuming::get));
+    }
+
+    private void awaitHistorySize(int size) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (producer.history().size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, producer.history().size());
+    }
+}
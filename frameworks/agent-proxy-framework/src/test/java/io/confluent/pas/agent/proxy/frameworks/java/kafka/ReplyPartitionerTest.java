@@ -0,0 +1,29 @@
+package io.confluent.pas.agent.proxy.frameworks.java.kafka;
+
+import io.confluent.pas.agent.proxy.frameworks.java.models.Key;
+import io.confluent.pas.agent.proxy.frameworks.java.models.Response;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplyPartitionerTest {
+
+    private final ReplyPartitioner partitioner = new ReplyPartitioner();
+
+    @Test
+    void testReplyPartitionIsHonoured() {
+        assertEquals(3, partitioner.partition("responses", new Key("id", 3), new Response(), 6));
+    }
+
+    @Test
+    void testDefaultPartitioningWithoutReplyPartition() {
+        assertNull(partitioner.partition("responses", new Key("id"), new Response(), 6));
+        assertNull(partitioner.partition("responses", null, new Response(), 6));
+    }
+
+    @Test
+    void testDefaultPartitioningWithInvalidReplyPartition() {
+        assertNull(partitioner.partition("responses", new Key("id", 6), new Response(), 6));
+        assertNull(partitioner.partition("responses", new Key("id", -1), new Response(), 6));
+    }
+}
@@ -0,0 +1,47 @@
+package io.confluent.pas.agent.proxy.frameworks.java.models;
+
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import io.confluent.kafka.serializers.json.KafkaJsonSchemaDeserializer;
+import io.confluent.kafka.serializers.json.KafkaJsonSchemaDeserializerConfig;
+import io.confluent.kafka.serializers.json.KafkaJsonSchemaSerializer;
+import io.confluent.kafka.serializers.json.KafkaJsonSchemaSerializerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyTest {
+
+    private static final String SCOPE = "key-test";
+
+    @AfterEach
+    void tearDown() {
+        MockSchemaRegistry.dropScope(SCOPE);
+    }
+
+    @Test
+    void testKeyRoundTripsThroughTheSchemaSerdes() {
+        final Map<String, Object> config = Map.of(
+                KafkaJsonSchemaSerializerConfig.SCHEMA_REGISTRY_URL_CONFIG, "mock://" + SCOPE,
+                KafkaJsonSchemaSerializerConfig.AUTO_REGISTER_SCHEMAS, true,
+                KafkaJsonSchemaDeserializerConfig.JSON_KEY_TYPE, Key.class.getName());
+
+        try (KafkaJsonSchemaSerializer<Key> serializer = new KafkaJsonSchemaSerializer<>();
+             KafkaJsonSchemaDeserializer<Key> deserializer = new KafkaJsonSchemaDeserializer<>()) {
+            serializer.configure(config, true);
+            deserializer.configure(config, true);
+
+            final Key key = new Key("correlationId", 3);
+            key.setDeadline(1000L);
+
+            final Key deserialized = deserializer.deserialize("topic", serializer.serialize("topic", key));
+
+            assertEquals("correlationId", deserialized.getCorrelationId());
+            // Carried in headers, not in the key
+            assertNull(deserialized.getReplyPartition());
+            assertNull(deserialized.getDeadline());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.confluent.pas.agent.proxy.frameworks.java.spring.mcp;
+
+import io.modelcontextprotocol.spec.McpSchema;
+import io.modelcontextprotocol.spec.McpServerTransportProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ListChangedNotificationCoalescerTest {
+
+    private McpServerTransportProvider delegate;
+
+    @BeforeEach
+    public void setUp() {
+        delegate = mock(McpServerTransportProvider.class);
+        when(delegate.notifyClients(anyString(), any())).thenReturn(Mono.empty());
+        when(delegate.closeGracefully()).thenReturn(Mono.empty());
+    }
+
+    @Test
+    public void testNotificationsAreMergedWithinTheWindow() throws Exception {
+        final ListChangedNotificationCoalescer coalescer =
+                new ListChangedNotificationCoalescer(delegate, Duration.ofMillis(100));
+
+        for (int i = 0; i < 50; i++) {
+            coalescer.notifyClients(McpSchema.METHOD_NOTIFICATION_TOOLS_LIST_CHANGED, null).block();
+        }
+        coalescer.notifyClients(McpSchema.METHOD_NOTIFICATION_RESOURCES_LIST_CHANGED, null).block();
+
+        verify(delegate, timeout(5000).times(1))
+                .notifyClients(McpSchema.METHOD_NOTIFICATION_TOOLS_LIST_CHANGED, null);
+        verify(delegate, timeout(5000).times(1))
+                .notifyClients(McpSchema.METHOD_NOTIFICATION_RESOURCES_LIST_CHANGED, null);
+
+        // A change after the window is notified again
+        coalescer.notifyClients(McpSchema.METHOD_NOTIFICATION_TOOLS_LIST_CHANGED, null).block();
+        verify(delegate, timeout(5000).times(2))
+                .notifyClients(McpSchema.METHOD_NOTIFICATION_TOOLS_LIST_CHANGED, null);
+    }
+
+    @Test
+    public void testOtherNotificationsAreSentImmediately() {
+        final ListChangedNotificationCoalescer coalescer =
+                new ListChangedNotificationCoalescer(delegate, Duration.ofMinutes(1));
+        final Map<String, Object> params = Map.of("level", "info");
+
+        coalescer.notifyClients(McpSchema.METHOD_NOTIFICATION_MESSAGE, params).block();
+
+        verify(delegate, times(1)).notifyClients(McpSchema.METHOD_NOTIFICATION_MESSAGE, params);
+    }
+
+    @Test
+    public void testPendingNotificationsAreSentOnClose() {
+        final ListChangedNotificationCoalescer coalescer =
+                new ListChangedNotificationCoalescer(delegate, Duration.ofMinutes(1));
+
+        coalescer.notifyClients(McpSchema.METHOD_NOTIFICATION_TOOLS_LIST_CHANGED, null).block();
+        verify(delegate, never()).notifyClients(anyString(), any());
+
+        coalescer.closeGracefully().block();
+
+        verify(delegate, times(1)).notifyClients(eq(McpSchema.METHOD_NOTIFICATION_TOOLS_LIST_CHANGED), any());
+        verify(delegate, times(1)).closeGracefully();
+    }
+}
@@ -10,6 +10,8 @@ public class KafkaToolConfiguration implements KafkaConfiguration {
     private final String applicationId;
     private final String saslJaasConfig;
     private final String schemaRegistryBasicAuthUserInfo;
+    private final String claimCheckDirectory;
+    private final int claimCheckThreshold;
 
     public KafkaToolConfiguration(KafkaConfiguration other, AgentConfiguration.ToolConfiguration tool) {
         this.clientId = other.clientId();
@@ -18,6 +20,8 @@ public class KafkaToolConfiguration implements KafkaConfiguration {
         this.applicationId = tool.getName() + "_" + other.applicationId();
         this.saslJaasConfig = other.saslJaasConfig();
         this.schemaRegistryBasicAuthUserInfo = other.schemaRegistryBasicAuthUserInfo();
+        this.claimCheckDirectory = other.claimCheckDirectory();
+        this.claimCheckThreshold = other.claimCheckThreshold();
     }
 
     @Override
@@ -49,4 +53,14 @@ public class KafkaToolConfiguration implements KafkaConfiguration {
     public String schemaRegistryBasicAuthUserInfo() {
         return schemaRegistryBasicAuthUserInfo;
     }
+
+    @Override
+    public String claimCheckDirectory() {
+        return claimCheckDirectory;
+    }
+
+    @Override
+    public int claimCheckThreshold() {
+        return claimCheckThreshold;
+    }
 }